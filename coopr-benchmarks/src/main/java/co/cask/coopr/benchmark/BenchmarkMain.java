@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Coopr benchmarks. Takes the same arguments as the JMH runner, and always adds the GC profiler so that
+ * the allocation rate is reported next to the throughput of each benchmark.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    if (commandLineOptions.shouldHelp()) {
+      commandLineOptions.showHelp();
+      return;
+    }
+    if (commandLineOptions.shouldList()) {
+      new Runner(commandLineOptions).list();
+      return;
+    }
+    new Runner(new OptionsBuilder()
+                 .parent(commandLineOptions)
+                 .addProfiler(GCProfiler.class)
+                 .build()).run();
+  }
+}
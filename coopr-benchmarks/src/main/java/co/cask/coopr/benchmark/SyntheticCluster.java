@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.benchmark;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.cluster.NodeProperties;
+import co.cask.coopr.layout.ClusterLayoutSearch;
+import co.cask.coopr.layout.NodeLayout;
+import co.cask.coopr.layout.NodeLayoutGenerator;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.spec.service.ServiceAction;
+import co.cask.coopr.spec.service.ServiceDependencies;
+import co.cask.coopr.spec.template.ClusterDefaults;
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.Compatibilities;
+import co.cask.coopr.spec.template.Constraints;
+import co.cask.coopr.spec.template.LayoutConstraint;
+import co.cask.coopr.spec.template.ServiceConstraint;
+import co.cask.coopr.spec.template.SizeConstraint;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a cluster template, services and cluster config with a configurable number of services and service
+ * constraints, shaped like a typical master/worker cluster. The first constrained service, and every other one after
+ * it, is a master that must be on exactly one node, and must not be on the same node as the next master. The other
+ * constrained services are workers that must be on at least one node, must all be on the same nodes, and must not be
+ * on the same nodes as any master. Services that are not constrained are placed on every node. Each worker depends on
+ * the master before it, and each unconstrained service depends on the one before it.
+ */
+public final class SyntheticCluster {
+  public static final String CLUSTER_ID = "1";
+  public static final String CLUSTER_NAME = "synthetic";
+  private static final ServiceAction CHEF_ACTION =
+    new ServiceAction("chef-solo", ImmutableMap.of("run_list", "recipe[synthetic]"));
+
+  private final List<String> serviceNames;
+  private final ClusterTemplate template;
+  private final Map<String, Service> serviceMap;
+  private final Map<String, String> hardwareTypeMap;
+  private final Map<String, Map<String, String>> imageTypeMap;
+  private final JsonObject config;
+
+  /**
+   * Create a synthetic cluster.
+   *
+   * @param numServices Number of services on the cluster.
+   * @param numConstraints Number of those services that have service constraints. Must not be more than the number
+   *                       of services.
+   */
+  public SyntheticCluster(int numServices, int numConstraints) {
+    this.serviceNames = Lists.newArrayList();
+    for (int i = 0; i < numServices; i++) {
+      serviceNames.add("service-" + i);
+    }
+
+    Map<String, ServiceConstraint> serviceConstraints = Maps.newHashMap();
+    Set<String> masters = Sets.newHashSet();
+    Set<String> workers = Sets.newHashSet();
+    Set<Set<String>> cantCoexist = Sets.newHashSet();
+    for (int i = 0; i < numConstraints; i++) {
+      String service = serviceNames.get(i);
+      if (isMaster(i)) {
+        serviceConstraints.put(service, new ServiceConstraint(null, null, 1, 1));
+        masters.add(service);
+        if (i >= 2) {
+          cantCoexist.add(ImmutableSet.of(serviceNames.get(i - 2), service));
+        }
+      } else {
+        serviceConstraints.put(service, new ServiceConstraint(null, null, 1, null));
+        workers.add(service);
+      }
+    }
+    for (String master : masters) {
+      for (String worker : workers) {
+        cantCoexist.add(ImmutableSet.of(master, worker));
+      }
+    }
+    Set<Set<String>> mustCoexist = workers.size() > 1 ?
+      ImmutableSet.<Set<String>>of(workers) : ImmutableSet.<Set<String>>of();
+
+    this.config = createConfig(numConstraints);
+    Set<String> services = ImmutableSet.copyOf(serviceNames);
+    this.template = ClusterTemplate.builder()
+      .setName(CLUSTER_NAME)
+      .setDescription("synthetic template with " + numServices + " services and " + numConstraints + " constraints")
+      .setClusterDefaults(
+        ClusterDefaults.builder().setServices(services).setProvider("joyent").setConfig(config).build())
+      .setCompatibilities(Compatibilities.builder().setServices(services).build())
+      .setConstraints(new Constraints(serviceConstraints, new LayoutConstraint(mustCoexist, cantCoexist),
+                                      SizeConstraint.EMPTY))
+      .build();
+
+    this.serviceMap = Maps.newHashMap();
+    for (int i = 0; i < numServices; i++) {
+      ServiceDependencies dependencies = ServiceDependencies.EMPTY_SERVICE_DEPENDENCIES;
+      if (i < numConstraints && !isMaster(i)) {
+        dependencies = ServiceDependencies.runtimeRequires(serviceNames.get(i - 1));
+      } else if (i > numConstraints) {
+        dependencies = ServiceDependencies.runtimeRequires(serviceNames.get(i - 1));
+      }
+      Service service = Service.builder()
+        .setName(serviceNames.get(i))
+        .setDependencies(dependencies)
+        .setProvisionerActions(ImmutableMap.<ProvisionerAction, ServiceAction>of(
+          ProvisionerAction.INSTALL, CHEF_ACTION,
+          ProvisionerAction.CONFIGURE, CHEF_ACTION,
+          ProvisionerAction.START, CHEF_ACTION))
+        .build();
+      serviceMap.put(service.getName(), service);
+    }
+
+    this.hardwareTypeMap = ImmutableMap.of("small", "small-flavor", "medium", "medium-flavor", "large", "large-flavor");
+    this.imageTypeMap = ImmutableMap.<String, Map<String, String>>of(
+      "centos6", ImmutableMap.of("image", "centos6-image", "sshuser", "root"),
+      "ubuntu12", ImmutableMap.of("image", "ubuntu12-image", "sshuser", "root"));
+  }
+
+  private static boolean isMaster(int serviceIndex) {
+    return serviceIndex % 2 == 0;
+  }
+
+  // config with a few typical macros for each constrained service
+  private JsonObject createConfig(int numConstraints) {
+    JsonObject config = new JsonObject();
+    for (int i = 0; i < numConstraints; i++) {
+      String service = serviceNames.get(i);
+      JsonObject serviceConfig = new JsonObject();
+      serviceConfig.addProperty("hosts", "%host.service." + service + "%");
+      serviceConfig.addProperty("first", "%host.service." + service + "[0]%");
+      serviceConfig.addProperty("quorum", "%join(map(host.service." + service + ",'$:2181'),',')%");
+      serviceConfig.addProperty("size", "%num.service." + service + "%");
+      serviceConfig.addProperty("myid", "%instance.self.service." + service + "%");
+      serviceConfig.addProperty("static", "not a macro");
+      config.add(service, serviceConfig);
+    }
+    return config;
+  }
+
+  public Set<String> getServiceNames() {
+    return ImmutableSet.copyOf(serviceNames);
+  }
+
+  public ClusterTemplate getTemplate() {
+    return template;
+  }
+
+  public Map<String, Service> getServiceMap() {
+    return serviceMap;
+  }
+
+  public Map<String, String> getHardwareTypeMap() {
+    return hardwareTypeMap;
+  }
+
+  public Map<String, Map<String, String>> getImageTypeMap() {
+    return imageTypeMap;
+  }
+
+  public JsonObject getConfig() {
+    return config;
+  }
+
+  /**
+   * Create the nodes of a cluster of the given size, laid out the same way the solver would lay them out.
+   *
+   * @param numMachines Number of nodes in the cluster.
+   * @return Nodes in the cluster.
+   */
+  public Set<Node> createNodes(int numMachines) {
+    List<NodeLayout> nodePreferences = new NodeLayoutGenerator(
+      template, getServiceNames(), hardwareTypeMap.keySet(), imageTypeMap.keySet()).generateNodeLayoutPreferences();
+    int[] nodeCounts = ClusterLayoutSearch.ITERATIVE.findValidNodeCounts(
+      nodePreferences, template, getServiceNames(), numMachines);
+    Preconditions.checkArgument(nodeCounts != null, "No valid layout for %s machines", numMachines);
+
+    Set<Node> nodes = Sets.newHashSet();
+    int nodeNum = 1000;
+    for (int i = 0; i < nodeCounts.length; i++) {
+      NodeLayout nodeLayout = nodePreferences.get(i);
+      Set<Service> nodeServices = Sets.newHashSet();
+      for (String serviceName : nodeLayout.getServiceNames()) {
+        nodeServices.add(serviceMap.get(serviceName));
+      }
+      for (int j = 0; j < nodeCounts[i]; j++) {
+        NodeProperties nodeProperties = NodeProperties.builder()
+          .setHostname(CLUSTER_NAME + nodeNum + ".local")
+          .addIPAddress("access_v4", "10.0." + (nodeNum / 256) + "." + (nodeNum % 256))
+          .setNodenum(nodeNum)
+          .setHardwaretype(nodeLayout.getHardwareTypeName())
+          .setImagetype(nodeLayout.getImageTypeName())
+          .setServices(nodeServices)
+          .build();
+        nodes.add(new Node("node-" + nodeNum, CLUSTER_ID, nodeServices, nodeProperties));
+        nodeNum++;
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Create a cluster object for the given node ids, using this cluster's services and config.
+   *
+   * @param nodeIds Ids of the nodes in the cluster.
+   * @return Cluster with the given nodes.
+   */
+  public Cluster createCluster(Set<String> nodeIds) {
+    return Cluster.builder()
+      .setID(CLUSTER_ID)
+      .setName(CLUSTER_NAME)
+      .setAccount(new Account("user", "tenant"))
+      .setClusterTemplate(template)
+      .setNodes(nodeIds)
+      .setServices(getServiceNames())
+      .setConfig(config)
+      .build();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import co.cask.coopr.spec.template.ClusterTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks finding how many of each node layout to use in a cluster, with each type of layout search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterLayoutFinderBenchmark {
+
+  @Param({"10"})
+  private int numServices;
+
+  @Param({"4", "8"})
+  private int numConstraints;
+
+  @Param({"10", "100", "1000", "10000"})
+  private int numMachines;
+
+  @Param({"ITERATIVE", "BRANCH_AND_BOUND"})
+  private String search;
+
+  private ClusterLayoutSearch layoutSearch;
+  private List<NodeLayout> nodePreferences;
+  private ClusterTemplate template;
+  private Set<String> services;
+
+  @Setup
+  public void setup() {
+    SyntheticCluster cluster = new SyntheticCluster(numServices, numConstraints);
+    template = cluster.getTemplate();
+    services = cluster.getServiceNames();
+    nodePreferences = new NodeLayoutGenerator(template, services, cluster.getHardwareTypeMap().keySet(),
+                                              cluster.getImageTypeMap().keySet()).generateNodeLayoutPreferences();
+    layoutSearch = new ClusterLayoutSearch(ClusterLayoutSearch.Type.valueOf(search), 0, 0);
+  }
+
+  @Benchmark
+  public int[] findValidNodeCounts() {
+    return layoutSearch.findValidNodeCounts(nodePreferences, template, services, numMachines);
+  }
+}
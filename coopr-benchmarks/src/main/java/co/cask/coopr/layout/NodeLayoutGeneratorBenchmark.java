@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generating the node layout preferences for a cluster template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeLayoutGeneratorBenchmark {
+
+  @Param({"10", "50"})
+  private int numServices;
+
+  @Param({"2", "4", "8"})
+  private int numConstraints;
+
+  private NodeLayoutGenerator generator;
+
+  @Setup
+  public void setup() {
+    SyntheticCluster cluster = new SyntheticCluster(numServices, numConstraints);
+    generator = new NodeLayoutGenerator(cluster.getTemplate(), cluster.getServiceNames(),
+                                        cluster.getHardwareTypeMap().keySet(), cluster.getImageTypeMap().keySet());
+  }
+
+  @Benchmark
+  public List<NodeLayout> generateNodeLayoutPreferences() {
+    return generator.generateNodeLayoutPreferences();
+  }
+}
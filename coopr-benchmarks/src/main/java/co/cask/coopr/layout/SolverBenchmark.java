@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import co.cask.coopr.cluster.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks solving the nodes of a cluster, which is everything {@link Solver#solveClusterNodes} does after it has
+ * looked up the template, services, hardware types and image types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+  @Param({"10", "50"})
+  private int numServices;
+
+  @Param({"4", "8"})
+  private int numConstraints;
+
+  @Param({"10", "100", "1000", "10000"})
+  private int numMachines;
+
+  @Param({"ITERATIVE", "BRANCH_AND_BOUND"})
+  private String search;
+
+  private SyntheticCluster cluster;
+  private ClusterLayoutSearch layoutSearch;
+
+  @Setup
+  public void setup() {
+    cluster = new SyntheticCluster(numServices, numConstraints);
+    layoutSearch = new ClusterLayoutSearch(ClusterLayoutSearch.Type.valueOf(search), 0, 0);
+  }
+
+  @Benchmark
+  public Map<String, Node> solveConstraints() {
+    return Solver.solveConstraints(SyntheticCluster.CLUSTER_ID, cluster.getTemplate(), SyntheticCluster.CLUSTER_NAME,
+                                   numMachines, cluster.getHardwareTypeMap(), cluster.getImageTypeMap(),
+                                   cluster.getServiceNames(), cluster.getServiceMap(), null, layoutSearch);
+  }
+}
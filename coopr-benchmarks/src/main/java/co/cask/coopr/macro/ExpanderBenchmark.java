@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.macro;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks expanding the macros in a cluster config for a single node, and for every node in the cluster as is
+ * done when a stage of tasks is scheduled. Expansion is measured both with {@link Expander}, which parses and
+ * evaluates every macro for every node, and with {@link JsonTemplate}, which parses them once per cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpanderBenchmark {
+
+  @Param({"4", "8"})
+  private int numConstraints;
+
+  @Param({"10", "100", "1000"})
+  private int numMachines;
+
+  private Cluster cluster;
+  private Set<Node> clusterNodes;
+  private Node node;
+  private JsonObject config;
+
+  @Setup
+  public void setup() {
+    SyntheticCluster syntheticCluster = new SyntheticCluster(numConstraints, numConstraints);
+    clusterNodes = Sets.newTreeSet(syntheticCluster.createNodes(numMachines));
+    Set<String> nodeIds = Sets.newHashSet();
+    for (Node clusterNode : clusterNodes) {
+      nodeIds.add(clusterNode.getId());
+    }
+    cluster = syntheticCluster.createCluster(nodeIds);
+    node = clusterNodes.iterator().next();
+    config = syntheticCluster.getConfig();
+  }
+
+  @Benchmark
+  public JsonElement expandNode() throws Exception {
+    return Expander.expand(config, null, cluster, clusterNodes, node);
+  }
+
+  @Benchmark
+  public void expandAllNodes(Blackhole blackhole) throws Exception {
+    for (Node clusterNode : clusterNodes) {
+      blackhole.consume(Expander.expand(config, null, cluster, clusterNodes, clusterNode));
+    }
+  }
+
+  @Benchmark
+  public void expandAllNodesWithTemplate(Blackhole blackhole) throws Exception {
+    JsonTemplate.ClusterExpansion expansion = JsonTemplate.compile(config).forCluster(cluster, clusterNodes);
+    for (Node clusterNode : clusterNodes) {
+      blackhole.consume(expansion.expand(clusterNode));
+    }
+  }
+}
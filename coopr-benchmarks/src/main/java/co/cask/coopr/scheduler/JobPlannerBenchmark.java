@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.scheduler.dag.TaskNode;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.JobId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks planning the tasks of a cluster create job and ordering them into stages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobPlannerBenchmark {
+
+  @Param({"10", "50"})
+  private int numServices;
+
+  @Param({"4"})
+  private int numConstraints;
+
+  @Param({"10", "100", "1000"})
+  private int numMachines;
+
+  private Set<Node> clusterNodes;
+  private ClusterJob job;
+
+  @Setup
+  public void setup() {
+    clusterNodes = new SyntheticCluster(numServices, numConstraints).createNodes(numMachines);
+    job = new ClusterJob(JobId.fromString(SyntheticCluster.CLUSTER_ID + "-001"), ClusterAction.CLUSTER_CREATE);
+  }
+
+  @Benchmark
+  public List<Set<TaskNode>> linearizeDependentTasks() {
+    return new JobPlanner(job, clusterNodes).linearizeDependentTasks();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.blob;
+
+import co.cask.coopr.benchmark.SyntheticCluster;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.codec.json.guice.CodecModules;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.JobId;
+import co.cask.coopr.scheduler.task.TaskId;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks writing and reading the cluster, job and node blobs of the cluster store in each blob format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlobFormatBenchmark {
+
+  @Param({"json", "binary", "compressed_binary"})
+  private String format;
+
+  @Param({"10", "1000"})
+  private int numMachines;
+
+  private Gson gson;
+  private BlobFormat blobFormat;
+  private Cluster cluster;
+  private ClusterJob job;
+  private Node node;
+  private byte[] clusterBlob;
+  private byte[] jobBlob;
+  private byte[] nodeBlob;
+
+  @Setup
+  public void setup() {
+    gson = Guice.createInjector(new CodecModules().getModule()).getInstance(Gson.class);
+    blobFormat = BlobFormat.valueOf(format.toUpperCase());
+
+    SyntheticCluster syntheticCluster = new SyntheticCluster(10, 4);
+    Set<Node> nodes = syntheticCluster.createNodes(numMachines);
+    Set<String> nodeIds = Sets.newHashSet();
+    for (Node clusterNode : nodes) {
+      nodeIds.add(clusterNode.getId());
+    }
+    cluster = syntheticCluster.createCluster(nodeIds);
+    node = nodes.iterator().next();
+
+    // a create job has several tasks for every node
+    JobId jobId = JobId.fromString(SyntheticCluster.CLUSTER_ID + "-001");
+    job = new ClusterJob(jobId, ClusterAction.CLUSTER_CREATE);
+    for (int i = 0; i < numMachines * 5; i++) {
+      job.setTaskStatus(new TaskId(jobId, i).getId(), ClusterTask.Status.COMPLETE);
+    }
+
+    clusterBlob = blobFormat.encode(gson, cluster, Cluster.class);
+    jobBlob = blobFormat.encode(gson, job, ClusterJob.class);
+    nodeBlob = blobFormat.encode(gson, node, Node.class);
+  }
+
+  @Benchmark
+  public byte[] writeCluster() {
+    return blobFormat.encode(gson, cluster, Cluster.class);
+  }
+
+  @Benchmark
+  public Cluster readCluster() {
+    return BlobFormat.decodeAny(gson, clusterBlob, Cluster.class);
+  }
+
+  @Benchmark
+  public byte[] writeJob() {
+    return blobFormat.encode(gson, job, ClusterJob.class);
+  }
+
+  @Benchmark
+  public ClusterJob readJob() {
+    return BlobFormat.decodeAny(gson, jobBlob, ClusterJob.class);
+  }
+
+  @Benchmark
+  public byte[] writeNode() {
+    return blobFormat.encode(gson, node, Node.class);
+  }
+
+  @Benchmark
+  public Node readNode() {
+    return BlobFormat.decodeAny(gson, nodeBlob, Node.class);
+  }
+}
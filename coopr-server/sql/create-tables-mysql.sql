@@ -28,7 +28,8 @@ CREATE TABLE IF NOT EXISTS clusters (
     cluster MEDIUMBLOB,
     PRIMARY KEY (id),
     INDEX cluster_account_index (tenant_id, owner_id, id),
-    INDEX ctime_index (create_time)
+    INDEX ctime_index (create_time),
+    INDEX tenant_ctime_index (tenant_id, create_time, id)
 ) ENGINE = InnoDB;
 
 CREATE TABLE IF NOT EXISTS jobs ( 
@@ -37,6 +38,7 @@ CREATE TABLE IF NOT EXISTS jobs (
     status VARCHAR(32),
     create_time TIMESTAMP DEFAULT '0000-00-00 00:00:00',
     job MEDIUMBLOB,
+    progress VARCHAR(255),
     PRIMARY KEY (cluster_id, job_num),
     FOREIGN KEY (cluster_id) REFERENCES clusters(id),
     INDEX ctime_index (create_time)
@@ -149,6 +151,7 @@ CREATE TABLE IF NOT EXISTS provisioners (
     last_heartbeat TIMESTAMP NULL,
     capacity_total INTEGER,
     capacity_free INTEGER,
+    version BIGINT,
     provisioner MEDIUMBLOB,
     PRIMARY KEY (id),
     INDEX heartbeat_index (last_heartbeat),
@@ -172,6 +175,7 @@ CREATE TABLE IF NOT EXISTS pluginMeta (
     resource_type VARCHAR(255),
     name VARCHAR(255),
     version INTEGER,
+    digest VARCHAR(64),
     live BOOLEAN,
     slated BOOLEAN,
     deleted BOOLEAN,
@@ -193,3 +197,28 @@ CREATE TABLE IF NOT EXISTS sensitiveFields (
     fields MEDIUMBLOB,
     PRIMARY KEY (tenant_id, cluster_id)
 ) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS nodeLifetimes (
+    cluster_id BIGINT,
+    node_id VARCHAR(64),
+    tenant_id VARCHAR(64),
+    user_id VARCHAR(255),
+    cluster_template_name VARCHAR(255),
+    create_time TIMESTAMP DEFAULT '0000-00-00 00:00:00',
+    delete_time TIMESTAMP NULL,
+    PRIMARY KEY (cluster_id, node_id, create_time),
+    INDEX ctime_index (create_time),
+    INDEX dtime_index (delete_time)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS nodeUsageRollups (
+    tenant_id VARCHAR(64),
+    user_id VARCHAR(255),
+    cluster_template_name VARCHAR(255),
+    period BIGINT,
+    period_start BIGINT,
+    node_delta BIGINT,
+    node_millis BIGINT,
+    PRIMARY KEY (tenant_id, user_id, cluster_template_name, period, period_start),
+    INDEX period_index (period, period_start)
+) ENGINE = InnoDB;
@@ -0,0 +1,55 @@
+#
+# Copyright © 2016 Cask Data, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# to use, run:
+# mysql -u $user -p -h $hostname $dbname < upgrade-tables-0.9.9-to-0.9.10.sql
+#
+# then populate the new tables from existing tasks with co.cask.coopr.upgrade.BackfillNodeUsage
+
+# Node usage rollups
+CREATE TABLE IF NOT EXISTS nodeLifetimes (
+    cluster_id BIGINT,
+    node_id VARCHAR(64),
+    tenant_id VARCHAR(64),
+    user_id VARCHAR(255),
+    cluster_template_name VARCHAR(255),
+    create_time TIMESTAMP DEFAULT '0000-00-00 00:00:00',
+    delete_time TIMESTAMP NULL,
+    PRIMARY KEY (cluster_id, node_id, create_time),
+    INDEX ctime_index (create_time),
+    INDEX dtime_index (delete_time)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS nodeUsageRollups (
+    tenant_id VARCHAR(64),
+    user_id VARCHAR(255),
+    cluster_template_name VARCHAR(255),
+    period BIGINT,
+    period_start BIGINT,
+    node_delta BIGINT,
+    node_millis BIGINT,
+    PRIMARY KEY (tenant_id, user_id, cluster_template_name, period, period_start),
+    INDEX period_index (period, period_start)
+) ENGINE = InnoDB;
+
+# Paginated cluster listings
+ALTER TABLE `jobs` ADD progress VARCHAR(255) AFTER job;
+ALTER TABLE `clusters` ADD INDEX tenant_ctime_index (tenant_id, create_time, id);
+
+# Plugin resource digests
+ALTER TABLE `pluginMeta` ADD digest VARCHAR(64) AFTER version;
+
+# Optimistic provisioner updates
+ALTER TABLE `provisioners` ADD version BIGINT DEFAULT 0 AFTER capacity_free;
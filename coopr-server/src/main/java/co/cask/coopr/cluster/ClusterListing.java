@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.cluster;
+
+import com.google.common.base.Objects;
+
+/**
+ * Listing of a {@link Cluster}, used in responding to paginated REST API calls. Unlike a {@link ClusterSummary}, a
+ * listing only contains fields that are stored in their own columns, so that listing clusters does not require reading
+ * full clusters and jobs.
+ */
+public class ClusterListing {
+  private final String id;
+  private final String name;
+  private final String ownerId;
+  private final long createTime;
+  private final long expireTime;
+  private final Cluster.Status status;
+  private final String latestJobId;
+  private final ClusterJobProgress progress;
+
+  public ClusterListing(String id, String name, String ownerId, long createTime, long expireTime,
+                        Cluster.Status status, String latestJobId, ClusterJobProgress progress) {
+    this.id = id;
+    this.name = name;
+    this.ownerId = ownerId;
+    this.createTime = createTime;
+    this.expireTime = expireTime;
+    this.status = status;
+    this.latestJobId = latestJobId;
+    this.progress = progress;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getOwnerId() {
+    return ownerId;
+  }
+
+  public long getCreateTime() {
+    return createTime;
+  }
+
+  public long getExpireTime() {
+    return expireTime;
+  }
+
+  public Cluster.Status getStatus() {
+    return status;
+  }
+
+  public String getLatestJobId() {
+    return latestJobId;
+  }
+
+  public ClusterJobProgress getProgress() {
+    return progress;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ClusterListing that = (ClusterListing) o;
+
+    return Objects.equal(id, that.id) &&
+      Objects.equal(name, that.name) &&
+      Objects.equal(ownerId, that.ownerId) &&
+      createTime == that.createTime &&
+      expireTime == that.expireTime &&
+      status == that.status &&
+      Objects.equal(latestJobId, that.latestJobId) &&
+      Objects.equal(progress, that.progress);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(id, name, ownerId, createTime, expireTime, status, latestJobId, progress);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("id", id)
+      .add("name", name)
+      .add("ownerId", ownerId)
+      .add("createTime", createTime)
+      .add("expireTime", expireTime)
+      .add("status", status)
+      .add("latestJobId", latestJobId)
+      .toString();
+  }
+}
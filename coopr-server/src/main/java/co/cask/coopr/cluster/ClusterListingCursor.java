@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.cluster;
+
+import com.google.common.base.Objects;
+
+/**
+ * Position in a listing of clusters, which are listed from newest to oldest by create time, and then by id. A page
+ * of clusters after a cursor starts with the first cluster listed after the cluster the cursor was created from, even
+ * if clusters were added or removed in between.
+ */
+public final class ClusterListingCursor {
+  private static final char SEPARATOR = '-';
+  private final long createTime;
+  private final long id;
+
+  public ClusterListingCursor(long createTime, long id) {
+    this.createTime = createTime;
+    this.id = id;
+  }
+
+  /**
+   * Get the cursor positioned at the given cluster listing.
+   *
+   * @param listing Listing to get the cursor of
+   * @return Cursor positioned at the listing
+   */
+  public static ClusterListingCursor of(ClusterListing listing) {
+    return new ClusterListingCursor(listing.getCreateTime(), Long.parseLong(listing.getId()));
+  }
+
+  /**
+   * Parse a cursor from its string form.
+   *
+   * @param cursor String form of the cursor, as returned by {@link #toString()}
+   * @return Parsed cursor
+   * @throws IllegalArgumentException if the string is not a valid cursor
+   */
+  public static ClusterListingCursor fromString(String cursor) {
+    int index = cursor.indexOf(SEPARATOR);
+    if (index < 0) {
+      throw new IllegalArgumentException("Invalid cluster cursor " + cursor);
+    }
+    try {
+      return new ClusterListingCursor(Long.parseLong(cursor.substring(0, index)),
+                                      Long.parseLong(cursor.substring(index + 1)));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cluster cursor " + cursor, e);
+    }
+  }
+
+  public long getCreateTime() {
+    return createTime;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ClusterListingCursor that = (ClusterListingCursor) o;
+
+    return createTime == that.createTime && id == that.id;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(createTime, id);
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(createTime) + SEPARATOR + id;
+  }
+}
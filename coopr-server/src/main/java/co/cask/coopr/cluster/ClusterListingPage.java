@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.cluster;
+
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+/**
+ * A page of {@link ClusterListing}s, with the cursor to get the next page from.
+ */
+public class ClusterListingPage {
+  private final List<ClusterListing> clusters;
+  private final String next;
+
+  public ClusterListingPage(List<ClusterListing> clusters, ClusterListingCursor next) {
+    this.clusters = clusters;
+    this.next = next == null ? null : next.toString();
+  }
+
+  public List<ClusterListing> getClusters() {
+    return clusters;
+  }
+
+  /**
+   * Get the cursor to pass to get the next page.
+   *
+   * @return Cursor of the next page, or null if this is the last page
+   */
+  public String getNext() {
+    return next;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ClusterListingPage that = (ClusterListingPage) o;
+
+    return Objects.equal(clusters, that.clusters) && Objects.equal(next, that.next);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(clusters, next);
+  }
+}
@@ -139,6 +139,28 @@ public class ClusterService {
     }
   }
 
+  /**
+   * Get a page of listings of clusters visible to the given account that are in one of the given states, from newest
+   * to oldest, starting after the given cursor.
+   *
+   * @param account Account to get cluster listings for.
+   * @param states Returned clusters must be in one of these states. If empty, clusters in any state are returned.
+   * @param after Cursor to start listing after, or null to start with the newest cluster.
+   * @param limit Max number of listings in the page.
+   * @return Page of listings, with the cursor of the next page if there are more clusters.
+   * @throws IOException if there was an exception reading the cluster data from the store.
+   */
+  public ClusterListingPage getClusterListings(Account account, Set<Cluster.Status> states,
+                                               ClusterListingCursor after, int limit) throws IOException {
+    // read one extra listing to know whether there is a next page
+    List<ClusterListing> listings = clusterStoreService.getView(account).getClusterListings(states, after, limit + 1);
+    if (listings.size() <= limit) {
+      return new ClusterListingPage(listings, null);
+    }
+    listings = listings.subList(0, limit);
+    return new ClusterListingPage(listings, ClusterListingCursor.of(listings.get(limit - 1)));
+  }
+
   /**
    * Submit a request to create a cluster, creating a placeholder cluster object and adding a task to solve for a
    * layout to the solver queue.
@@ -53,7 +53,8 @@ public class ResourceCollectionCodec implements JsonSerializer<ResourceCollectio
      *         "active": [
      *           {
      *             "name":"reactor",
-     *             "version":9
+     *             "version":9,
+     *             "digest":"6d6e1ef8..."
      *           }
      *         ]
      *       }
@@ -93,6 +94,9 @@ public class ResourceCollectionCodec implements JsonSerializer<ResourceCollectio
         JsonObject metaObj = new JsonObject();
         metaObj.addProperty("name", meta.getName());
         metaObj.addProperty("version", meta.getVersion());
+        if (meta.getDigest() != null) {
+          metaObj.addProperty("digest", meta.getDigest());
+        }
         activeList.add(metaObj);
       }
       resourceListObj.add("active", activeList);
@@ -16,7 +16,9 @@
 
 package co.cask.coopr.codec.json.current;
 
+import co.cask.coopr.provisioner.placement.PlacementPolicyType;
 import co.cask.coopr.spec.TenantSpecification;
+import com.google.common.base.Preconditions;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -40,7 +42,13 @@ public class TenantSpecificationCodec implements JsonDeserializer<TenantSpecific
     Integer workers = context.deserialize(jsonObj.get("workers"), Integer.class);
     Integer maxClusters = context.deserialize(jsonObj.get("maxClusters"), Integer.class);
     Integer maxNodes = context.deserialize(jsonObj.get("maxNodes"), Integer.class);
+    PlacementPolicyType placementPolicy =
+      context.deserialize(jsonObj.get("placementPolicy"), PlacementPolicyType.class);
+    // unknown values deserialize to null
+    Preconditions.checkArgument(placementPolicy != null || jsonObj.get("placementPolicy") == null ||
+                                  jsonObj.get("placementPolicy").isJsonNull(),
+                                "unknown placement policy " + jsonObj.get("placementPolicy"));
 
-    return new TenantSpecification(name, description, workers, maxClusters, maxNodes);
+    return new TenantSpecification(name, description, workers, maxClusters, maxNodes, placementPolicy);
   }
 }
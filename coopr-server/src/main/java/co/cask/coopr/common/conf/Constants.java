@@ -53,12 +53,28 @@ public class Constants {
   public static final String DB_PASSWORD = "server.db.password";
   public static final String DB_VALIDATION_QUERY = "server.jdbc.validation.query";
   public static final String DB_MAX_ACTIVE_CONNECTIONS = "server.jdbc.max.active.connections";
+  public static final String BLOB_FORMAT = "server.db.blob.format";
+  public static final String DEFAULT_BLOB_FORMAT = "json";
   public static final String LOCAL_DATA_DIR = "server.local.data.dir";
   public static final String EMBEDDED_DERBY_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
 
   public static final String SCHEDULER_INTERVAL_SECS = "server.scheduler.run.interval.seconds";
   public static final String SOLVER_NUM_THREADS = "server.solver.num.threads";
+  public static final String SOLVER_LAYOUT_SEARCH = "server.solver.layout.search";
+  public static final String DEFAULT_SOLVER_LAYOUT_SEARCH = "iterative";
+  public static final String SOLVER_LAYOUT_SEARCH_MAX_ITERATIONS = "server.solver.layout.search.max.iterations";
+  public static final long DEFAULT_SOLVER_LAYOUT_SEARCH_MAX_ITERATIONS = 10000000;
+  public static final String SOLVER_LAYOUT_SEARCH_MAX_MILLIS = "server.solver.layout.search.max.millis";
+  public static final long DEFAULT_SOLVER_LAYOUT_SEARCH_MAX_MILLIS = 30000;
+  public static final String JOB_SCHEDULER_NUM_THREADS = "server.scheduler.job.num.threads";
+  public static final int DEFAULT_JOB_SCHEDULER_NUM_THREADS = 1;
   public static final String TASK_TIMEOUT_SECS = "server.task.timeout.seconds";
+  public static final String TASK_TAKE_MAX_WAIT_SECS = "server.task.take.max.wait.seconds";
+  public static final int DEFAULT_TASK_TAKE_MAX_WAIT_SECS = 20;
+  public static final String TASK_TAKE_MAX_WAITING_FRACTION = "server.task.take.max.waiting.fraction";
+  public static final float DEFAULT_TASK_TAKE_MAX_WAITING_FRACTION = 0.5f;
+  public static final String TASK_TAKE_MAX_BATCH_SIZE = "server.task.take.max.batch.size";
+  public static final int DEFAULT_TASK_TAKE_MAX_BATCH_SIZE = 10;
   public static final String CLUSTER_CLEANUP_SECS = "server.cluster.cleanup.seconds";
   public static final String NETTY_EXEC_NUM_THREADS = "server.netty.exec.num.threads";
   public static final String NETTY_WORKER_NUM_THREADS = "server.netty.worker.num.threads";
@@ -70,6 +86,10 @@ public class Constants {
 
   public static final String ID_START_NUM = "server.ids.start.num";
   public static final String ID_INCREMENT_BY = "server.ids.increment.by";
+  public static final String ID_BLOCK_SIZE = "server.ids.block.size";
+  public static final int DEFAULT_ID_BLOCK_SIZE = 100;
+
+  public static final String ENTITY_CACHE_ENABLED = "server.entity.cache.enabled";
 
   public static final String CALLBACK_CLASS = "server.callback.class";
   public static final String PLUGIN_STORE_CLASS = "server.plugin.store.class";
@@ -77,10 +97,15 @@ public class Constants {
 
   public static final String PROVISIONER_TIMEOUT_SECS = "server.provisioner.timeout.secs";
   public static final String PROVISIONER_TIMEOUT_CHECK_INTERVAL_SECS = "server.provisioner.timeout.check.interval.secs";
+  public static final String PROVISIONER_HEARTBEAT_FLUSH_INTERVAL_SECS =
+    "server.provisioner.heartbeat.flush.interval.secs";
   public static final String PROVISIONER_REQUEST_MAX_RETRIES = "server.provisioner.request.max.retries";
   public static final String PROVISIONER_REQUEST_MS_BETWEEN_RETRIES = "server.provisioner.request.ms.between.retries";
   public static final String PROVISIONER_REQUEST_SOCKET_TIMEOUT_MS = "server.provisioner.request.socket.timeout.ms";
   public static final String PROVISIONER_REQUEST_CONNECT_TIMEOUT_MS = "server.provisioner.request.connect.timeout.ms";
+  public static final String PROVISIONER_REQUEST_THREADS = "server.provisioner.request.threads";
+  public static final String PROVISIONER_PLACEMENT_POLICY = "server.provisioner.placement.policy";
+  public static final String DEFAULT_PROVISIONER_PLACEMENT_POLICY = "spread";
 
   /**
    * Config settings for the crendential store.
@@ -115,6 +140,8 @@ public class Constants {
    */
   public static final class Metrics {
     public static final String QUEUE_CACHE_SECONDS = "server.metrics.queue.cache.seconds";
+    public static final int DEFAULT_QUEUE_CACHE_SECONDS = 10;
+    public static final String ROLLUPS_ENABLED = "server.metrics.rollups.enabled";
   }
 
   /**
@@ -155,6 +182,8 @@ public class Constants {
    */
   public static final class Queue {
     public static final String WORKER_BALANCE = "worker.balance.queue";
+    public static final String TRACKING_TYPE = "server.queue.tracking.type";
+    public static final String DEFAULT_TRACKING_TYPE = "map";
   }
 
   /**
@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.Service;
 
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * A group of {@link TrackingQueue TrackingQueues} that usually serve a similar purpose. Elements must be added to
@@ -128,4 +129,34 @@ public interface QueueGroup extends Service {
    * @return Iterator over all queued elements in the queue.
    */
   Iterator<QueuedElement> getQueued(String queueName);
+
+  /**
+   * Get the number of queued and being consumed elements of a specific queue. See {@link TrackingQueue#getMetrics()}
+   * for how the numbers are kept.
+   *
+   * @param queueName Queue to get metrics for.
+   * @return Metrics of the queue.
+   */
+  QueueMetrics getMetrics(String queueName);
+
+  /**
+   * Registers a callback that is run whenever an element is added to any queue in the group, including elements added
+   * through other instances of the group. Several additions may result in a single run of the callback, so it should
+   * be treated as a hint that there are elements to take rather than as a count of added elements.
+   *
+   * @param callback Callback to run when elements are added.
+   * @param executor Executor to run the callback with.
+   */
+  void addElementAddedCallback(Runnable callback, Executor executor);
+
+  /**
+   * Registers a callback that is run whenever an element is added to the given queue, including elements added
+   * through other instances of the group. As with {@link #addElementAddedCallback(Runnable, Executor)}, the callback
+   * should be treated as a hint that there are elements to take.
+   *
+   * @param queueName Name of the queue to run the callback for.
+   * @param callback Callback to run when elements are added to the queue.
+   * @param executor Executor to run the callback with.
+   */
+  void addElementAddedCallback(String queueName, Runnable callback, Executor executor);
 }
@@ -123,6 +123,16 @@ public interface TrackingQueue {
    */
   int size();
 
+  /**
+   * Get the number of queued and being consumed elements. The numbers are kept in counters that are updated as
+   * elements are added, taken, finished and removed, so this does not go through the elements of the queue except
+   * when the counters are periodically recounted. Changes made to the queue by other processes are only reflected
+   * after the next recount.
+   *
+   * @return metrics of the queue.
+   */
+  QueueMetrics getMetrics();
+
   /**
    * Defines Tracking Queue Consuming Status.
    */
@@ -1,9 +1,11 @@
 package co.cask.coopr.common.queue.guice;
 
+import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.TrackingQueue;
+import co.cask.coopr.common.queue.internal.ElementsTrackingType;
 import co.cask.coopr.common.queue.internal.LazyZKTrackingQueue;
 import co.cask.coopr.common.queue.internal.ZKQueueService;
 import com.google.inject.AbstractModule;
@@ -16,16 +18,38 @@ import org.apache.twill.zookeeper.ZKClient;
  */
 public class QueueModule extends AbstractModule {
   private final ZKClient zkClient;
+  private final ElementsTrackingType trackingType;
+  private final long metricsRecountSeconds;
 
   public QueueModule(ZKClient zkClient) {
+    this(zkClient, ElementsTrackingType.MAP);
+  }
+
+  public QueueModule(ZKClient zkClient, Configuration conf) {
+    this(zkClient,
+         ElementsTrackingType.valueOf(
+           conf.get(Constants.Queue.TRACKING_TYPE, Constants.Queue.DEFAULT_TRACKING_TYPE).toUpperCase()),
+         conf.getLong(Constants.Metrics.QUEUE_CACHE_SECONDS, Constants.Metrics.DEFAULT_QUEUE_CACHE_SECONDS));
+  }
+
+  public QueueModule(ZKClient zkClient, ElementsTrackingType trackingType) {
+    this(zkClient, trackingType, Constants.Metrics.DEFAULT_QUEUE_CACHE_SECONDS);
+  }
+
+  public QueueModule(ZKClient zkClient, ElementsTrackingType trackingType, long metricsRecountSeconds) {
     this.zkClient = zkClient;
+    this.trackingType = trackingType;
+    this.metricsRecountSeconds = metricsRecountSeconds;
   }
 
   @Override
   protected void configure() {
-    TrackingQueue balancerQueue = new LazyZKTrackingQueue(zkClient, QueueType.BALANCER.getPath());
+    TrackingQueue balancerQueue = new LazyZKTrackingQueue(zkClient, QueueType.BALANCER.getPath(), trackingType,
+                                                          metricsRecountSeconds);
     bind(TrackingQueue.class)
       .annotatedWith(Names.named(Constants.Queue.WORKER_BALANCE)).toInstance(balancerQueue);
+    bind(ElementsTrackingType.class).toInstance(trackingType);
+    bindConstant().annotatedWith(Names.named(Constants.Metrics.QUEUE_CACHE_SECONDS)).to(metricsRecountSeconds);
 
     bind(QueueService.class).to(ZKQueueService.class).in(Scopes.SINGLETON);
   }
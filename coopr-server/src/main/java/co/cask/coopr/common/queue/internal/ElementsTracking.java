@@ -84,9 +84,10 @@ public interface ElementsTracking {
    * Remove an element from the queue, regardless of who the consumer is.
    *
    * @param elementId Id of the element to remove.
-   * @return true if the element was removed or never existed to begin with, false if there was an exception removing.
+   * @return state the element was removed in, {@link RemoveStatus#NOT_FOUND} if it never existed to begin with, or
+   *         {@link RemoveStatus#FAILED} if there was an exception removing.
    */
-  boolean remove(String elementId);
+  RemoveStatus remove(String elementId);
 
   /**
    * Remove all items from the queue.
@@ -125,6 +126,16 @@ public interface ElementsTracking {
    */
   int size();
 
+  /**
+   * Outcome of removing an element from the queue.
+   */
+  static enum RemoveStatus {
+    QUEUED,
+    BEING_CONSUMED,
+    NOT_FOUND,
+    FAILED
+  }
+
   /**
    * Walker interface to process Queue Element.
    */
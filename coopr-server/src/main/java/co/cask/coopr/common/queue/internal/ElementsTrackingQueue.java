@@ -15,7 +15,9 @@
  */
 package co.cask.coopr.common.queue.internal;
 
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import com.google.common.base.Preconditions;
@@ -27,9 +29,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Tracks elements being consumed.
+ * Tracks elements being consumed. Keeps count of queued and being consumed elements as they go through this queue.
+ * The counts are reconciled with the elements tracking once per recount interval, to pick up changes made through
+ * other queues on the same elements tracking.
  */
 public class ElementsTrackingQueue implements TrackingQueue {
   private static final Logger LOG = LoggerFactory.getLogger(ElementsTrackingQueue.class);
@@ -37,9 +43,25 @@ public class ElementsTrackingQueue implements TrackingQueue {
 
   private final Map<String, SettableFuture<String>> consumingResults;
 
+  private final AtomicInteger numQueued;
+  private final AtomicInteger numBeingConsumed;
+  private final long recountMillis;
+  private final Object recountLock;
+  // time of the last recount. Starts at 0 so that the first read picks up elements already in the tracking.
+  private volatile long lastRecountTs;
+
   public ElementsTrackingQueue(ElementsTracking elementsTracking) {
+    this(elementsTracking, Constants.Metrics.DEFAULT_QUEUE_CACHE_SECONDS);
+  }
+
+  public ElementsTrackingQueue(ElementsTracking elementsTracking, long recountSeconds) {
     this.elementsTracking = elementsTracking;
     this.consumingResults = Maps.newHashMap();
+    this.numQueued = new AtomicInteger(0);
+    this.numBeingConsumed = new AtomicInteger(0);
+    this.recountMillis = TimeUnit.SECONDS.toMillis(recountSeconds);
+    this.recountLock = new Object();
+    this.lastRecountTs = 0;
   }
 
   @Override
@@ -49,6 +71,8 @@ public class ElementsTrackingQueue implements TrackingQueue {
     if (!elementsTracking.addToQueue(element)) {
       result.setException(new RuntimeException("failed to add element to a queue " + element.toString()));
       stopWaitingForConsumingResult(element.getId());
+    } else {
+      numQueued.incrementAndGet();
     }
 
     return result;
@@ -57,7 +81,12 @@ public class ElementsTrackingQueue implements TrackingQueue {
   @Override
   public Element take(String consumerId) {
     Preconditions.checkArgument(consumerId != null, "id of the consumer that takes element should not be null");
-    return elementsTracking.startConsuming(consumerId);
+    Element element = elementsTracking.startConsuming(consumerId);
+    if (element != null) {
+      numQueued.decrementAndGet();
+      numBeingConsumed.incrementAndGet();
+    }
+    return element;
   }
 
   @Override
@@ -77,6 +106,7 @@ public class ElementsTrackingQueue implements TrackingQueue {
 
     if (status == ConsumingStatus.FINISHED_SUCCESSFULLY) {
       if (elementsTracking.finishConsuming(elementId, consumerId)) {
+        numBeingConsumed.decrementAndGet();
         setConsumingResult(elementId, result);
         return PossessionState.POSSESSES;
       } else {
@@ -91,6 +121,8 @@ public class ElementsTrackingQueue implements TrackingQueue {
                  "elementId: " + elementId + ", reported status: " + status + ", reported by: " + consumerId);
 
       if (elementsTracking.stopConsumingAndAddBackToQueue(elementId, consumerId)) {
+        numBeingConsumed.decrementAndGet();
+        numQueued.incrementAndGet();
         return PossessionState.POSSESSES;
       } else {
         LOG.warn("Attempted to report consuming progress for element that doesn't belong to the consumer, " +
@@ -105,12 +137,25 @@ public class ElementsTrackingQueue implements TrackingQueue {
   @Override
   public boolean remove(String elementId) {
     Preconditions.checkArgument(elementId != null, "id of the element to remove should not be null");
-    return elementsTracking.remove(elementId);
+    ElementsTracking.RemoveStatus removed = elementsTracking.remove(elementId);
+    if (removed == ElementsTracking.RemoveStatus.QUEUED) {
+      numQueued.decrementAndGet();
+    } else if (removed == ElementsTracking.RemoveStatus.BEING_CONSUMED) {
+      numBeingConsumed.decrementAndGet();
+    }
+    return removed != ElementsTracking.RemoveStatus.FAILED;
   }
 
   @Override
   public boolean removeAll() {
-    return elementsTracking.removeAll();
+    boolean removed = elementsTracking.removeAll();
+    if (removed) {
+      synchronized (recountLock) {
+        numQueued.set(0);
+        numBeingConsumed.set(0);
+      }
+    }
+    return removed;
   }
 
   @Override
@@ -135,6 +180,28 @@ public class ElementsTrackingQueue implements TrackingQueue {
     return elementsTracking.size();
   }
 
+  @Override
+  public QueueMetrics getMetrics() {
+    if (System.currentTimeMillis() - lastRecountTs >= recountMillis) {
+      recount();
+    }
+    // counts can drop below zero if elements added through another queue were taken before the next recount
+    return new QueueMetrics(Math.max(0, numQueued.get()), Math.max(0, numBeingConsumed.get()));
+  }
+
+  private void recount() {
+    synchronized (recountLock) {
+      // another thread may have recounted while this one was waiting for the lock
+      long now = System.currentTimeMillis();
+      if (now - lastRecountTs < recountMillis) {
+        return;
+      }
+      numQueued.set(elementsTracking.getQueued().size());
+      numBeingConsumed.set(elementsTracking.getBeingConsumed().size());
+      lastRecountTs = now;
+    }
+  }
+
   private synchronized SettableFuture<String> addConsumingResultToWaitFor(String elementId) {
     SettableFuture<String> futureResult = SettableFuture.create();
     consumingResults.put(elementId, futureResult);
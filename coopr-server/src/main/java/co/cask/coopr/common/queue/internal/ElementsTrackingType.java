@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.queue.internal;
+
+import org.apache.twill.zookeeper.ZKClient;
+
+/**
+ * Types of zookeeper backed {@link ElementsTracking} that queues can be built on.
+ */
+public enum ElementsTrackingType {
+  // all elements in a single map guarded by a queue-wide lock
+  MAP {
+    @Override
+    public ElementsTracking create(ZKClient zkClient, String basePath) {
+      return new ZKElementsTracking(zkClient, basePath);
+    }
+  },
+  // same as MAP, but the map is a replica kept up to date by watches, so reads do not take the lock
+  WATCHED_MAP {
+    @Override
+    public ElementsTracking create(ZKClient zkClient, String basePath) {
+      return new ZKElementsTracking(zkClient, basePath, true);
+    }
+  },
+  // priority ordered index of pending elements, claimed without a queue-wide lock
+  INDEXED {
+    @Override
+    public ElementsTracking create(ZKClient zkClient, String basePath) {
+      return new IndexedZKElementsTracking(zkClient, basePath);
+    }
+  };
+
+  /**
+   * Create the elements tracking for a queue at the given path.
+   *
+   * @param zkClient Client to use for zookeeper operations.
+   * @param basePath Path of the queue in zookeeper.
+   * @return Elements tracking for the queue.
+   */
+  public abstract ElementsTracking create(ZKClient zkClient, String basePath);
+}
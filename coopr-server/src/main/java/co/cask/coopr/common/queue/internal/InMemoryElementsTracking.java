@@ -105,7 +105,7 @@ public class InMemoryElementsTracking implements ElementsTracking {
   }
 
   @Override
-  public synchronized boolean remove(String elementId) {
+  public synchronized RemoveStatus remove(String elementId) {
     PrioritizedElement toRemove = null;
     for (PrioritizedElement elem : notStarted) {
       if (elementId.equals(elem.element.getId())) {
@@ -115,9 +115,9 @@ public class InMemoryElementsTracking implements ElementsTracking {
     }
     if (toRemove != null) {
       notStarted.remove(toRemove);
+      return RemoveStatus.QUEUED;
     }
-    inProgress.remove(elementId);
-    return true;
+    return inProgress.remove(elementId) == null ? RemoveStatus.NOT_FOUND : RemoveStatus.BEING_CONSUMED;
   }
 
   @Override
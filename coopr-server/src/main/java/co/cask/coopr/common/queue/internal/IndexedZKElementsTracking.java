@@ -0,0 +1,675 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.queue.internal;
+
+import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueuedElement;
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gson.Gson;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of {@link ElementsTracking} that keeps an index of unconsumed elements in zookeeper so that
+ * consumers do not need a queue-wide lock or a scan over the data of every element.
+ * <p/>
+ * Layout under the base path:
+ * <ul>
+ *   <li>{@code elements/<id>}: the serialized element. The number of children of this node is the queue size.</li>
+ *   <li>{@code pending/<priority>-<id>-<seq>}: empty sequential node marking an element as waiting to be consumed.
+ *   Names sort by priority and then by insertion order, so the head of the queue is the first child.</li>
+ *   <li>{@code inprogress/<id>}: consumer id and last progress report of an element that is being consumed.
+ *   Creating this node is what claims an element, so only one consumer can win it.</li>
+ * </ul>
+ * Updates of an in progress node are done with versioned compare-and-set operations. Pending nodes that become
+ * stale, for example because their element was removed, are cleaned up lazily by the next consumer that sees them.
+ * <p/>
+ * The pending nodes are kept in a sorted in-memory index, so a consumer takes from its head instead of listing and
+ * sorting all pending nodes. The index is updated right away by changes made through this instance, and by a
+ * children watch for changes made by other processes. It may briefly contain nodes that are already gone, which is
+ * harmless since creating the in progress node is what claims an element.
+ */
+public class IndexedZKElementsTracking implements ElementsTracking {
+  private static final Logger LOG = LoggerFactory.getLogger(IndexedZKElementsTracking.class);
+  // see ZKElementsTracking for why it is safe to use 0 as the highest priority
+  private static final long HIGHEST_PRIORITY = 0L;
+  private static final String NO_CONSUMER_ASSIGNED = "";
+  private static final int PRIORITY_LENGTH = 19;
+  private static final int SEQUENCE_LENGTH = 10;
+  private static final Gson GSON = new Gson();
+
+  private final ZKClient zkClient;
+  private final String elementsPath;
+  private final String pendingPath;
+  private final String inProgressPath;
+  private final PendingIndex pendingIndex;
+  // only the latest watch set is acted on, others may be left over from an expired session
+  private final AtomicReference<PendingWatcher> pendingWatcher;
+
+  public IndexedZKElementsTracking(ZKClient zkClient, String basePath) {
+    this.zkClient = zkClient;
+    String queuePath = basePath + "/indexedqueue";
+    this.elementsPath = queuePath + "/elements";
+    this.pendingPath = queuePath + "/pending";
+    this.inProgressPath = queuePath + "/inprogress";
+    Futures.getUnchecked(Futures.allAsList(ZKClientExt.ensureExists(zkClient, elementsPath),
+                                           ZKClientExt.ensureExists(zkClient, pendingPath),
+                                           ZKClientExt.ensureExists(zkClient, inProgressPath)));
+    this.pendingIndex = new PendingIndex();
+    this.pendingWatcher = new AtomicReference<PendingWatcher>();
+    zkClient.addConnectionWatcher(new ConnectionWatcher());
+    // load the index before the first take, from there on it is kept up to date by the watch
+    Futures.getUnchecked(watchPending());
+  }
+
+  @Override
+  public boolean addToQueue(Element element) {
+    try {
+      Futures.getUnchecked(zkClient.create(getElementPath(element.getId()), serialize(element),
+                                           CreateMode.PERSISTENT));
+      addPending(element.getId(), getCurrentHighestPriority());
+      return true;
+    } catch (Exception e) {
+      LOG.error("error during adding to queue", e);
+      return false;
+    }
+  }
+
+  @Override
+  public Element startConsuming(String consumerId) {
+    try {
+      Set<String> attempted = Sets.newHashSet();
+      PendingNode pendingNode = null;
+      while ((pendingNode = pendingIndex.next(pendingNode)) != null) {
+        String elementId = pendingNode.elementId;
+        if (!attempted.add(elementId)) {
+          continue;
+        }
+        long now = System.currentTimeMillis();
+        // whoever creates the in progress node owns the element. If it already exists, the pending node is stale.
+        if (!create(getInProgressPath(elementId), serialize(new Claim(consumerId, now, now)))) {
+          continue;
+        }
+        deletePending(elementId);
+        Element element = getElement(elementId);
+        if (element == null) {
+          // element was removed while it was still pending
+          Futures.getUnchecked(ZKClientExt.delete(zkClient, getInProgressPath(elementId), true));
+          continue;
+        }
+        return element;
+      }
+      return null;
+    } catch (Exception e) {
+      LOG.error("error during start consuming", e);
+      return null;
+    }
+  }
+
+  @Override
+  public boolean stopConsumingAndAddBackToQueue(String elementId, String consumerId) {
+    try {
+      while (true) {
+        NodeData claimData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getInProgressPath(elementId)));
+        if (claimData == null) {
+          return false;
+        }
+        Claim claim = deserialize(claimData.getData(), Claim.class);
+        if (!consumerId.equals(claim.consumerId)) {
+          return false;
+        }
+        if (stopAndReschedule(elementId, claim, claimData.getStat())) {
+          return true;
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("error during stop & reschedule", e);
+      // it is OK to leave it now in "in-progress" list - we'll attempt to reschedule it by timeout
+    }
+    return true;
+  }
+
+  /**
+   * Puts an element being consumed back into the queue, keeping the priority it had when it was taken.
+   *
+   * @return false if the in progress node was changed since it was read, true otherwise.
+   */
+  private boolean stopAndReschedule(String elementId, Claim claim, Stat claimStat) throws Exception {
+    // add to pending first so that the element is always in at least one of the two states
+    PendingNode pendingNode = addPending(elementId, claim.priority);
+    if (!delete(getInProgressPath(elementId), claimStat.getVersion())) {
+      deletePending(ImmutableList.of(pendingNode));
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean finishConsuming(String elementId, String consumerId) {
+    try {
+      NodeData claimData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getInProgressPath(elementId)));
+      if (claimData == null) {
+        return false;
+      }
+      Claim claim = deserialize(claimData.getData(), Claim.class);
+      if (!consumerId.equals(claim.consumerId)) {
+        return false;
+      }
+      // the element is deleted before its claim, so that a stale pending node can never claim a finished element.
+      // If the claim can't be deleted afterwards, it is cleaned up when elements being consumed are walked through.
+      Futures.getUnchecked(ZKClientExt.delete(zkClient, getElementPath(elementId), true));
+      Futures.getUnchecked(ZKClientExt.delete(zkClient, getInProgressPath(elementId), true));
+      return true;
+    } catch (Exception e) {
+      LOG.error("error during marking finishConsuming", e);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean recordProgress(String elementId, String consumerId) {
+    try {
+      while (true) {
+        NodeData claimData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getInProgressPath(elementId)));
+        if (claimData == null) {
+          return false;
+        }
+        Claim claim = deserialize(claimData.getData(), Claim.class);
+        if (!consumerId.equals(claim.consumerId)) {
+          return false;
+        }
+        claim.lastProgressReportTs = System.currentTimeMillis();
+        if (setData(getInProgressPath(elementId), serialize(claim), claimData.getStat().getVersion())) {
+          return true;
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("error during checking state", e);
+      // should be OK not do anything: we are just reporting a progress...
+    }
+    return true;
+  }
+
+  @Override
+  public void walkThruElementsBeingConsumed(Walker walker) {
+    try {
+      for (String elementId : getChildren(inProgressPath)) {
+        NodeData claimData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getInProgressPath(elementId)));
+        if (claimData == null) {
+          continue;
+        }
+        Element element = getElement(elementId);
+        if (element == null) {
+          // claim of an element that was finished or removed without its claim being deleted
+          delete(getInProgressPath(elementId), claimData.getStat().getVersion());
+          continue;
+        }
+        Claim claim = deserialize(claimData.getData(), Claim.class);
+        if (walker.process(element, claim.consumerId, claim.lastProgressReportTs)) {
+          // if the claim changed in the meantime the consumer is alive, so it is fine to skip it until next time
+          stopAndReschedule(elementId, claim, claimData.getStat());
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("error during walking", e);
+      // should be OK not do anything: we'll walk thru next time :)
+    }
+  }
+
+  @Override
+  public RemoveStatus remove(String elementId) {
+    String removedElement;
+    String removedClaim;
+    try {
+      // pending nodes of the element are cleaned up by consumers once they see the element is gone
+      removedElement = Futures.getUnchecked(ZKClientExt.delete(zkClient, getElementPath(elementId), true));
+      removedClaim = Futures.getUnchecked(ZKClientExt.delete(zkClient, getInProgressPath(elementId), true));
+    } catch (Exception e) {
+      LOG.error("error during removing element", e);
+      return RemoveStatus.FAILED;
+    }
+    if (removedElement == null) {
+      // a claim without its element is a leftover of a finished element, it was not counted as being consumed
+      return RemoveStatus.NOT_FOUND;
+    }
+    return removedClaim == null ? RemoveStatus.QUEUED : RemoveStatus.BEING_CONSUMED;
+  }
+
+  @Override
+  public boolean removeAll() {
+    try {
+      List<ListenableFuture<String>> deleteFutures = Lists.newArrayList();
+      for (String path : new String[] { elementsPath, pendingPath, inProgressPath }) {
+        for (String child : getChildren(path)) {
+          deleteFutures.add(ZKClientExt.delete(zkClient, path + "/" + child, true));
+        }
+      }
+      Futures.getUnchecked(Futures.allAsList(deleteFutures));
+      pendingIndex.clear();
+    } catch (Exception e) {
+      LOG.error("error during cleanup of the queue", e);
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean toHighestPriority(String elementId) {
+    try {
+      if (Futures.getUnchecked(zkClient.exists(getInProgressPath(elementId))) != null ||
+        Futures.getUnchecked(zkClient.exists(getElementPath(elementId))) == null) {
+        return true;
+      }
+      List<PendingNode> pendingNodes = pendingIndex.getByElement(elementId);
+      addPending(elementId, HIGHEST_PRIORITY);
+      deletePending(pendingNodes);
+    } catch (Exception e) {
+      LOG.error("error during promoting element to highest priority", e);
+      // should be OK not do anything: we'll walk thru next time :)
+    }
+    return true;
+  }
+
+  @Override
+  public List<QueuedElement> getQueued() {
+    ImmutableList.Builder<QueuedElement> listBuilder = ImmutableList.builder();
+    try {
+      Set<String> seen = Sets.newHashSet();
+      for (PendingNode pendingNode : pendingIndex.getAll()) {
+        String elementId = pendingNode.elementId;
+        if (!seen.add(elementId) || Futures.getUnchecked(zkClient.exists(getInProgressPath(elementId))) != null) {
+          continue;
+        }
+        Element element = getElement(elementId);
+        if (element != null) {
+          listBuilder.add(new Entry(element, NO_CONSUMER_ASSIGNED, 0L));
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("error during getting queued elements", e);
+    }
+    return listBuilder.build();
+  }
+
+  @Override
+  public List<QueuedElement> getBeingConsumed() {
+    ImmutableList.Builder<QueuedElement> listBuilder = ImmutableList.builder();
+    try {
+      for (String elementId : getChildren(inProgressPath)) {
+        NodeData claimData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getInProgressPath(elementId)));
+        Element element = getElement(elementId);
+        if (claimData == null || element == null) {
+          continue;
+        }
+        Claim claim = deserialize(claimData.getData(), Claim.class);
+        listBuilder.add(new Entry(element, claim.consumerId, claim.lastProgressReportTs));
+      }
+    } catch (Exception e) {
+      LOG.error("error during getting queued elements", e);
+    }
+    return listBuilder.build();
+  }
+
+  @Override
+  public int size() {
+    Stat stat = Futures.getUnchecked(zkClient.exists(elementsPath));
+    return stat == null ? 0 : stat.getNumChildren();
+  }
+
+  /**
+   * @return the highest priority an element which is currently in the queue can have
+   */
+  private long getCurrentHighestPriority() {
+    // same as in ZKElementsTracking, the time of queueing or of the last consume attempt is used as priority
+    return System.currentTimeMillis();
+  }
+
+  private PendingNode addPending(String elementId, long priority) {
+    String prefix = String.format("%s/%0" + PRIORITY_LENGTH + "d-%s-", pendingPath, priority, elementId);
+    String path = Futures.getUnchecked(zkClient.create(prefix, null, CreateMode.PERSISTENT_SEQUENTIAL));
+    PendingNode pendingNode = new PendingNode(path.substring(path.lastIndexOf('/') + 1));
+    pendingIndex.add(pendingNode);
+    return pendingNode;
+  }
+
+  private void deletePending(String elementId) {
+    deletePending(pendingIndex.getByElement(elementId));
+  }
+
+  private void deletePending(List<PendingNode> pendingNodes) {
+    List<ListenableFuture<String>> deleteFutures = Lists.newArrayList();
+    for (PendingNode pendingNode : pendingNodes) {
+      deleteFutures.add(ZKClientExt.delete(zkClient, pendingPath + "/" + pendingNode.name, true));
+    }
+    Futures.getUnchecked(Futures.allAsList(deleteFutures));
+    for (PendingNode pendingNode : pendingNodes) {
+      pendingIndex.remove(pendingNode);
+    }
+  }
+
+  /**
+   * Lists the pending nodes into the index and leaves a watch that lists them again on the next change.
+   */
+  private ListenableFuture<NodeChildren> watchPending() {
+    PendingWatcher watcher = new PendingWatcher();
+    pendingWatcher.set(watcher);
+    ListenableFuture<NodeChildren> childrenFuture = zkClient.getChildren(pendingPath, watcher);
+    Futures.addCallback(childrenFuture, new FutureCallback<NodeChildren>() {
+      @Override
+      public void onSuccess(NodeChildren nodeChildren) {
+        pendingIndex.update(nodeChildren.getChildren(), nodeChildren.getStat().getCversion());
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOG.warn("Failed to watch pending nodes under {}.", pendingPath, t);
+      }
+    });
+    return childrenFuture;
+  }
+
+  private List<String> getChildren(String path) {
+    NodeChildren children = Futures.getUnchecked(ZKClientExt.getChildrenOrNull(zkClient, path));
+    return children == null ? Collections.<String>emptyList() : children.getChildren();
+  }
+
+  private Element getElement(String elementId) {
+    NodeData elementData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, getElementPath(elementId)));
+    return elementData == null ? null : deserialize(elementData.getData(), Element.class);
+  }
+
+  /**
+   * Creates a persistent node.
+   *
+   * @return true if the node was created, false if it already existed.
+   */
+  private boolean create(String path, byte[] data) throws InterruptedException, ExecutionException {
+    try {
+      zkClient.create(path, data, CreateMode.PERSISTENT).get();
+      return true;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof KeeperException.NodeExistsException) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Deletes a node if it is still at the given version.
+   *
+   * @return true if the node was deleted, false if the node was changed or deleted since it was read.
+   */
+  private boolean delete(String path, int version) throws InterruptedException, ExecutionException {
+    try {
+      zkClient.delete(path, version).get();
+      return true;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof KeeperException.BadVersionException ||
+        e.getCause() instanceof KeeperException.NoNodeException) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sets the data of a node if it is still at the given version.
+   *
+   * @return true if the data was set, false if the node was changed since it was read.
+   */
+  private boolean setData(String path, byte[] data, int version) throws InterruptedException, ExecutionException {
+    try {
+      zkClient.setData(path, data, version).get();
+      return true;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof KeeperException.BadVersionException) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private String getElementPath(String elementId) {
+    return elementsPath + "/" + elementId;
+  }
+
+  private String getInProgressPath(String elementId) {
+    return inProgressPath + "/" + elementId;
+  }
+
+  private static byte[] serialize(Object object) {
+    return GSON.toJson(object).getBytes(Charsets.UTF_8);
+  }
+
+  private static <T> T deserialize(byte[] bytes, Class<T> type) {
+    return GSON.fromJson(new String(bytes, Charsets.UTF_8), type);
+  }
+
+  /**
+   * Name of a pending node parsed into priority, element id and sequence number.
+   */
+  private static final class PendingNode implements Comparable<PendingNode> {
+    private final String name;
+    private final long priority;
+    private final String elementId;
+    private final long sequence;
+
+    private PendingNode(String name) {
+      this.name = name;
+      this.priority = Long.parseLong(name.substring(0, PRIORITY_LENGTH));
+      this.elementId = name.substring(PRIORITY_LENGTH + 1, name.length() - SEQUENCE_LENGTH - 1);
+      this.sequence = Long.parseLong(name.substring(name.length() - SEQUENCE_LENGTH));
+    }
+
+    @Override
+    public int compareTo(PendingNode o) {
+      if (priority != o.priority) {
+        return priority > o.priority ? 1 : -1;
+      }
+      if (sequence != o.sequence) {
+        return sequence > o.sequence ? 1 : -1;
+      }
+      return name.compareTo(o.name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PendingNode && name.equals(((PendingNode) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+
+  /**
+   * Pending nodes sorted by priority, along with the pending nodes of each element.
+   */
+  private static final class PendingIndex {
+    private final TreeSet<PendingNode> sorted = new TreeSet<PendingNode>();
+    private final Map<String, Set<PendingNode>> byElement = Maps.newHashMap();
+    // children version of the last listing applied, so that a listing overtaken by a newer one is ignored
+    private int listedVersion = -1;
+
+    /**
+     * @return the first pending node after the given one, or the first pending node if the given one is null.
+     */
+    private synchronized PendingNode next(PendingNode after) {
+      if (sorted.isEmpty()) {
+        return null;
+      }
+      return after == null ? sorted.first() : sorted.higher(after);
+    }
+
+    private synchronized List<PendingNode> getAll() {
+      return Lists.newArrayList(sorted);
+    }
+
+    private synchronized List<PendingNode> getByElement(String elementId) {
+      Set<PendingNode> pendingNodes = byElement.get(elementId);
+      return pendingNodes == null ? Collections.<PendingNode>emptyList() : Lists.newArrayList(pendingNodes);
+    }
+
+    private synchronized void add(PendingNode pendingNode) {
+      if (sorted.add(pendingNode)) {
+        Set<PendingNode> pendingNodes = byElement.get(pendingNode.elementId);
+        if (pendingNodes == null) {
+          pendingNodes = Sets.newHashSet();
+          byElement.put(pendingNode.elementId, pendingNodes);
+        }
+        pendingNodes.add(pendingNode);
+      }
+    }
+
+    private synchronized void remove(PendingNode pendingNode) {
+      if (sorted.remove(pendingNode)) {
+        Set<PendingNode> pendingNodes = byElement.get(pendingNode.elementId);
+        pendingNodes.remove(pendingNode);
+        if (pendingNodes.isEmpty()) {
+          byElement.remove(pendingNode.elementId);
+        }
+      }
+    }
+
+    private synchronized void clear() {
+      sorted.clear();
+      byElement.clear();
+    }
+
+    /**
+     * Replaces the content of the index with a listing of the pending nodes taken at the given children version.
+     */
+    private synchronized void update(List<String> names, int childrenVersion) {
+      if (childrenVersion < listedVersion) {
+        return;
+      }
+      listedVersion = childrenVersion;
+      Set<PendingNode> listed = Sets.newHashSet();
+      for (String name : names) {
+        listed.add(new PendingNode(name));
+      }
+      for (PendingNode pendingNode : Lists.newArrayList(sorted)) {
+        // zookeeper numbers sequential nodes with the children version of the parent, so a node with a sequence
+        // at or above the version of the listing was added through this instance after the listing was taken
+        if (pendingNode.sequence < childrenVersion && !listed.contains(pendingNode)) {
+          remove(pendingNode);
+        }
+      }
+      for (PendingNode pendingNode : listed) {
+        add(pendingNode);
+      }
+    }
+  }
+
+  /**
+   * Lists the pending nodes again whenever they change.
+   */
+  private final class PendingWatcher implements Watcher {
+    @Override
+    public void process(WatchedEvent event) {
+      if (event.getType() == Event.EventType.NodeChildrenChanged && pendingWatcher.compareAndSet(this, null)) {
+        watchPending();
+      }
+    }
+  }
+
+  /**
+   * Sets the watch on the pending nodes again once the session is re-established after it expired, since the
+   * watches of the expired session are gone unless the client sets them again itself.
+   */
+  private final class ConnectionWatcher implements Watcher {
+    private boolean expired;
+
+    @Override
+    public void process(WatchedEvent event) {
+      if (event.getState() == Event.KeeperState.Expired) {
+        expired = true;
+      } else if (event.getState() == Event.KeeperState.SyncConnected && expired) {
+        expired = false;
+        watchPending();
+      }
+    }
+  }
+
+  /**
+   * Data of an in progress node.
+   */
+  private static final class Claim {
+    private String consumerId;
+    private long lastProgressReportTs;
+    // priority to put the element back into the queue with if consuming fails
+    private long priority;
+
+    private Claim(String consumerId, long lastProgressReportTs, long priority) {
+      this.consumerId = consumerId;
+      this.lastProgressReportTs = lastProgressReportTs;
+      this.priority = priority;
+    }
+  }
+
+  private static final class Entry implements QueuedElement {
+    private final Element element;
+    private final String consumerId;
+    private final long statusTime;
+
+    private Entry(Element element, String consumerId, long statusTime) {
+      this.element = element;
+      this.consumerId = consumerId;
+      this.statusTime = statusTime;
+    }
+
+    @Override
+    public Element getElement() {
+      return element;
+    }
+
+    @Override
+    public long getStatusTime() {
+      return statusTime;
+    }
+
+    @Override
+    public String getConsumerId() {
+      return consumerId;
+    }
+  }
+}
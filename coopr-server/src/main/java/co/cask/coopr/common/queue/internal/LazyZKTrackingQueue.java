@@ -16,7 +16,9 @@
 
 package co.cask.coopr.common.queue.internal;
 
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -31,16 +33,29 @@ import java.util.Iterator;
 public class LazyZKTrackingQueue implements TrackingQueue {
   private final ZKClient zkClient;
   private final String zkQueuePath;
+  private final ElementsTrackingType trackingType;
+  private final long recountSeconds;
   private TrackingQueue queue;
 
   public LazyZKTrackingQueue(ZKClient zkClient, String zkQueuePath) {
+    this(zkClient, zkQueuePath, ElementsTrackingType.MAP);
+  }
+
+  public LazyZKTrackingQueue(ZKClient zkClient, String zkQueuePath, ElementsTrackingType trackingType) {
+    this(zkClient, zkQueuePath, trackingType, Constants.Metrics.DEFAULT_QUEUE_CACHE_SECONDS);
+  }
+
+  public LazyZKTrackingQueue(ZKClient zkClient, String zkQueuePath, ElementsTrackingType trackingType,
+                             long recountSeconds) {
     this.zkClient = zkClient;
     this.zkQueuePath = zkQueuePath;
+    this.trackingType = trackingType;
+    this.recountSeconds = recountSeconds;
   }
 
   private synchronized TrackingQueue getQueue() {
     if (queue == null) {
-      queue = new ElementsTrackingQueue(new ZKElementsTracking(zkClient, zkQueuePath));
+      queue = new ElementsTrackingQueue(trackingType.create(zkClient, zkQueuePath), recountSeconds);
     }
     return queue;
   }
@@ -90,4 +105,9 @@ public class LazyZKTrackingQueue implements TrackingQueue {
   public int size() {
     return getQueue().size();
   }
+
+  @Override
+  public QueueMetrics getMetrics() {
+    return getQueue().getMetrics();
+  }
 }
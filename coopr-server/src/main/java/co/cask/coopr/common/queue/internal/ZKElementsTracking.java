@@ -21,6 +21,8 @@ import co.cask.coopr.common.zookeeper.ZKClientExt;
 import co.cask.coopr.common.zookeeper.lib.ReentrantDistributedLock;
 import co.cask.coopr.common.zookeeper.lib.Serializer;
 import co.cask.coopr.common.zookeeper.lib.SynchronizedZKMap;
+import co.cask.coopr.common.zookeeper.lib.WatchedZKMap;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
@@ -32,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
@@ -43,6 +46,12 @@ import javax.annotation.Nullable;
  * use {@link Map} backed by ZK - underneath:
  * <p/>
  * Again, for simplicity we use *single* lock and wrap all methods with it.
+ * <p/>
+ * Optionally the map can be a {@link WatchedZKMap}, which keeps a local replica of the elements up to date through
+ * watches. Methods that only read the queue are then served from the replica, and the replica may lag behind
+ * changes made by other processes until their watches are delivered. Changes to an element are compare-and-set
+ * operations on the znode of its key, so a stale replica never overwrites a newer entry and the single lock is not
+ * taken at all in this mode.
  */
 public class ZKElementsTracking implements ElementsTracking {
   private static final Logger LOG = LoggerFactory.getLogger(ZKElementsTracking.class);
@@ -53,12 +62,22 @@ public class ZKElementsTracking implements ElementsTracking {
   private static final EntrySerializer ENTRY_SERIALIZER = new EntrySerializer();
 
   private final ThreadLocal<Lock> globalLock;
-  private final Map<String, Entry> queueElements;
+  private final ConcurrentMap<String, Entry> queueElements;
+  private final boolean lockFree;
 
   public ZKElementsTracking(final ZKClient zkClient, final String basePath)  {
+    this(zkClient, basePath, false);
+  }
+
+  public ZKElementsTracking(final ZKClient zkClient, final String basePath, boolean watchedMap)  {
     String queuePath = basePath + "/queue";
     Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, queuePath));
-    this.queueElements = new SynchronizedZKMap<Entry>(zkClient, queuePath + "/map", ENTRY_SERIALIZER);
+    if (watchedMap) {
+      this.queueElements = new WatchedZKMap<Entry>(zkClient, queuePath + "/map", ENTRY_SERIALIZER);
+    } else {
+      this.queueElements = new SynchronizedZKMap<Entry>(zkClient, queuePath + "/map", ENTRY_SERIALIZER);
+    }
+    this.lockFree = watchedMap;
 
     this.globalLock = new ThreadLocal<Lock>() {
       @Override
@@ -73,13 +92,13 @@ public class ZKElementsTracking implements ElementsTracking {
     try {
       // we actually may need no lock here: we just adding new element (it is assumed that test adds unique
       // elems into queue)
-      globalLock.get().lock();
+      lock();
       try {
         Entry entry = new Entry(element, getCurrentHighestPriority());
         queueElements.put(entry.element.getId(), entry);
         return true;
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during adding to queue", e);
@@ -90,19 +109,21 @@ public class ZKElementsTracking implements ElementsTracking {
   @Override
   public Element startConsuming(String consumerId) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
-        Entry entry = getNotStartedWithHighestPriority();
-        if (entry == null) {
-          return null;
+        while (true) {
+          Entry entry = getNotStartedWithHighestPriority();
+          if (entry == null) {
+            return null;
+          }
+          Entry started = new Entry(entry.element, getCurrentHighestPriority(), System.currentTimeMillis(), consumerId);
+          // only fails if the entry we read was stale, in which case it was refreshed and we look again
+          if (queueElements.replace(entry.element.getId(), entry, started)) {
+            return entry.element;
+          }
         }
-        entry.consumerId = consumerId;
-        entry.lastProgressReportTs = System.currentTimeMillis();
-        entry.priority = getCurrentHighestPriority();
-        queueElements.put(entry.element.getId(), entry);
-        return entry.element;
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during start consuming", e);
@@ -128,17 +149,18 @@ public class ZKElementsTracking implements ElementsTracking {
   @Override
   public boolean stopConsumingAndAddBackToQueue(String elementId, String consumerId) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
-        Entry entry = queueElements.get(elementId);
-
-        if (entry == null || !consumerId.equals(entry.consumerId)) {
-          return false;
-        }
-        stopAndReschedule(entry);
+        Entry entry;
+        do {
+          entry = queueElements.get(elementId);
+          if (entry == null || !consumerId.equals(entry.consumerId)) {
+            return false;
+          }
+        } while (!stopAndReschedule(entry));
 
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during stop & reschedule", e);
@@ -148,25 +170,25 @@ public class ZKElementsTracking implements ElementsTracking {
     return true;
   }
 
-  private void stopAndReschedule(Entry entry) throws Exception {
-    entry.consumerId = NO_CONSUMER_ASSIGNED;
-    entry.lastProgressReportTs = 0;
-    queueElements.put(entry.element.getId(), entry);
+  private boolean stopAndReschedule(Entry entry) throws Exception {
+    return queueElements.replace(entry.element.getId(), entry, new Entry(entry.element, entry.priority));
   }
 
   @Override
   public boolean finishConsuming(String elementId, String consumerId) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
-        Entry entry = queueElements.get(elementId);
-        if (entry == null || !consumerId.equals(entry.consumerId)) {
-          return false;
-        }
-        queueElements.remove(elementId);
+        Entry entry;
+        do {
+          entry = queueElements.get(elementId);
+          if (entry == null || !consumerId.equals(entry.consumerId)) {
+            return false;
+          }
+        } while (!queueElements.remove(elementId, entry));
 
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during marking finishConsuming", e);
@@ -179,17 +201,19 @@ public class ZKElementsTracking implements ElementsTracking {
   @Override
   public boolean recordProgress(String elementId, String consumerId) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
-        Entry entry = queueElements.get(elementId);
-        if (entry == null || !consumerId.equals(entry.consumerId)) {
-          return false;
-        }
-        entry.lastProgressReportTs = System.currentTimeMillis();
-        queueElements.put(entry.element.getId(), entry);
+        Entry entry;
+        do {
+          entry = queueElements.get(elementId);
+          if (entry == null || !consumerId.equals(entry.consumerId)) {
+            return false;
+          }
+        } while (!queueElements.replace(elementId, entry, new Entry(entry.element, entry.priority,
+                                                                    System.currentTimeMillis(), consumerId)));
 
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during checking state", e);
@@ -202,7 +226,7 @@ public class ZKElementsTracking implements ElementsTracking {
   @Override
   public void walkThruElementsBeingConsumed(Walker walker) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
         for (Entry entry : queueElements.values()) {
           // we are walking thru *all* element items, hence need to skip those not in progress
@@ -213,12 +237,13 @@ public class ZKElementsTracking implements ElementsTracking {
                                                      entry.consumerId,
                                                      entry.lastProgressReportTs);
           if (stopAndReschedule) {
+            // if the entry changed since we read it, the consumer is still making progress
             stopAndReschedule(entry);
           }
         }
 
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during walking", e);
@@ -227,29 +252,33 @@ public class ZKElementsTracking implements ElementsTracking {
   }
 
   @Override
-  public boolean remove(String elementId) {
+  public RemoveStatus remove(String elementId) {
+    Entry removed;
     try {
-      globalLock.get().lock();
+      lock();
       try {
-        queueElements.remove(elementId);
+        removed = queueElements.remove(elementId);
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during removing element", e);
-      return false;
+      return RemoveStatus.FAILED;
     }
-    return true;
+    if (removed == null) {
+      return RemoveStatus.NOT_FOUND;
+    }
+    return NO_CONSUMER_ASSIGNED.equals(removed.consumerId) ? RemoveStatus.QUEUED : RemoveStatus.BEING_CONSUMED;
   }
 
   @Override
   public boolean removeAll() {
     try {
-      globalLock.get().lock();
+      lock();
       try {
         queueElements.clear();
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during cleanup of the queue", e);
@@ -262,15 +291,14 @@ public class ZKElementsTracking implements ElementsTracking {
   @Override
   public boolean toHighestPriority(String elementId) {
     try {
-      globalLock.get().lock();
+      lock();
       try {
         Entry entry = queueElements.get(elementId);
-        if (NO_CONSUMER_ASSIGNED.equals(entry.consumerId)) {
-          entry.priority = HIGHEST_PRIORITY;
-          queueElements.put(entry.element.getId(), entry);
+        if (entry != null && NO_CONSUMER_ASSIGNED.equals(entry.consumerId)) {
+          queueElements.replace(elementId, entry, new Entry(entry.element, HIGHEST_PRIORITY));
         }
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during promoting element to highest priority", e);
@@ -284,7 +312,7 @@ public class ZKElementsTracking implements ElementsTracking {
   public List<QueuedElement> getQueued() {
     List<QueuedElement> list = Lists.newArrayList();
     try {
-      globalLock.get().lock();
+      lock();
       try {
         List<Entry> all = Lists.newArrayList(queueElements.values());
         // we want to return the list ordered by priority
@@ -295,7 +323,7 @@ public class ZKElementsTracking implements ElementsTracking {
           }
         }
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during getting queued elements", e);
@@ -308,7 +336,7 @@ public class ZKElementsTracking implements ElementsTracking {
   public List<QueuedElement> getBeingConsumed() {
     ImmutableList.Builder<QueuedElement> listBuilder = new ImmutableList.Builder<QueuedElement>();
     try {
-      globalLock.get().lock();
+      lock();
       try {
         for (Entry entry : queueElements.values()) {
           if (!NO_CONSUMER_ASSIGNED.equals(entry.consumerId)) {
@@ -316,7 +344,7 @@ public class ZKElementsTracking implements ElementsTracking {
           }
         }
       } finally {
-        globalLock.get().unlock();
+        unlock();
       }
     } catch (Exception e) {
       LOG.error("error during getting queued elements", e);
@@ -325,6 +353,18 @@ public class ZKElementsTracking implements ElementsTracking {
     return listBuilder.build();
   }
 
+  private void lock() {
+    if (!lockFree) {
+      globalLock.get().lock();
+    }
+  }
+
+  private void unlock() {
+    if (!lockFree) {
+      globalLock.get().unlock();
+    }
+  }
+
   /**
    * @return the highest priority an element which is currently in the queue can have
    */
@@ -380,6 +420,27 @@ public class ZKElementsTracking implements ElementsTracking {
         return priority > o.priority ? 1 : -1;
       }
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry other = (Entry) o;
+      return Objects.equal(element.getId(), other.element.getId()) &&
+        Objects.equal(element.getValue(), other.element.getValue()) &&
+        priority == other.priority &&
+        Objects.equal(consumerId, other.consumerId) &&
+        lastProgressReportTs == other.lastProgressReportTs;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(element.getId(), priority, consumerId, lastProgressReportTs);
+    }
   }
 
   private static final class EntrySerializer implements Serializer<Entry> {
@@ -16,9 +16,11 @@
 
 package co.cask.coopr.common.queue.internal;
 
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.GroupElement;
 import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
@@ -27,29 +29,51 @@ import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.twill.common.Cancellable;
 import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.NodeData;
 import org.apache.twill.zookeeper.ZKClient;
 import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of a {@link QueueGroup} that uses queues built on zookeeper. Whenever a queue name is referenced in a
  * method, the queue is cached and the physical zookeeper queue is created if it does not already exist. Watches
  * zookeeper to make sure queues added or deleted by another instance of the group are reflected in this group.
+ * Every add also writes to a notification node of the queue, kept next to the queues, and the notification nodes are
+ * watched by all instances of the group so that they can notify their element added callbacks.
  */
 public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
+  private static final Logger LOG = LoggerFactory.getLogger(ZKQueueGroup.class);
   private final ZKClient zkClient;
   private final QueueType queueType;
+  private final String notificationPath;
   private final LoadingCache<String, TrackingQueue> queueMap;
+  private final List<AddedCallback> addedCallbacks;
+  private final ConcurrentMap<String, List<AddedCallback>> queueAddedCallbacks;
+  // queue name -> watch on the notification node of the queue
+  private final ConcurrentMap<String, Cancellable> notificationWatches;
+  private Cancellable notificationsWatch;
 
   /**
    * Create a zookeeper queue group of the given type, using the given zookeeper client. Physical queues in the group
@@ -60,20 +84,70 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
    * @param queueType Type of queues in the group.
    */
   ZKQueueGroup(final ZKClient zkClient, final QueueType queueType) {
+    this(zkClient, queueType, ElementsTrackingType.MAP);
+  }
+
+  /**
+   * Create a zookeeper queue group of the given type, using the given zookeeper client and the given type of
+   * elements tracking for each queue in the group.
+   *
+   * @param zkClient Client to use for zookeeper operations.
+   * @param queueType Type of queues in the group.
+   * @param trackingType Type of elements tracking to build queues on.
+   */
+  ZKQueueGroup(final ZKClient zkClient, final QueueType queueType, final ElementsTrackingType trackingType) {
+    this(zkClient, queueType, trackingType, Constants.Metrics.DEFAULT_QUEUE_CACHE_SECONDS);
+  }
+
+  /**
+   * Create a zookeeper queue group of the given type, using the given zookeeper client and the given type of
+   * elements tracking for each queue in the group, recounting queue metrics at the given interval.
+   *
+   * @param zkClient Client to use for zookeeper operations.
+   * @param queueType Type of queues in the group.
+   * @param trackingType Type of elements tracking to build queues on.
+   * @param recountSeconds Seconds after which queue metrics are recounted from the elements in the queue.
+   */
+  ZKQueueGroup(final ZKClient zkClient, final QueueType queueType, final ElementsTrackingType trackingType,
+               final long recountSeconds) {
     this.zkClient = zkClient;
     this.queueType = queueType;
+    this.notificationPath = queueType.getPath() + "-notify";
+    this.addedCallbacks = Lists.newCopyOnWriteArrayList();
+    this.queueAddedCallbacks = Maps.newConcurrentMap();
+    this.notificationWatches = Maps.newConcurrentMap();
     this.queueMap = CacheBuilder.newBuilder().build(
       new CacheLoader<String, TrackingQueue>() {
         @Override
         public TrackingQueue load(String queueName) throws Exception {
-          return new LazyZKTrackingQueue(zkClient, getZKPathForQueue(queueName));
+          return new LazyZKTrackingQueue(zkClient, getZKPathForQueue(queueName), trackingType, recountSeconds);
         }
       });
   }
 
   @Override
   public ListenableFuture<String> add(String queueName, Element element) {
-    return queueMap.getUnchecked(queueName).add(element);
+    ListenableFuture<String> result = queueMap.getUnchecked(queueName).add(element);
+    notifyElementAdded(queueName);
+    return result;
+  }
+
+  @Override
+  public void addElementAddedCallback(Runnable callback, Executor executor) {
+    addedCallbacks.add(new AddedCallback(callback, executor));
+  }
+
+  @Override
+  public void addElementAddedCallback(String queueName, Runnable callback, Executor executor) {
+    List<AddedCallback> callbacks = queueAddedCallbacks.get(queueName);
+    if (callbacks == null) {
+      List<AddedCallback> newCallbacks = Lists.newCopyOnWriteArrayList();
+      callbacks = queueAddedCallbacks.putIfAbsent(queueName, newCallbacks);
+      if (callbacks == null) {
+        callbacks = newCallbacks;
+      }
+    }
+    callbacks.add(new AddedCallback(callback, executor));
   }
 
   /**
@@ -138,6 +212,11 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     return queueMap.getUnchecked(queueName).getQueued();
   }
 
+  @Override
+  public QueueMetrics getMetrics(String queueName) {
+    return queueMap.getUnchecked(queueName).getMetrics();
+  }
+
   @Override
   protected void startUp() throws Exception {
     Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, queueType.getPath()));
@@ -148,11 +227,94 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
         refreshQueues(nodeChildren);
       }
     });
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, notificationPath));
+    notificationsWatch = ZKOperations.watchChildren(zkClient, notificationPath, new ZKOperations.ChildrenCallback() {
+      @Override
+      public void updated(NodeChildren nodeChildren) {
+        for (String queueName : nodeChildren.getChildren()) {
+          watchNotifications(queueName);
+        }
+      }
+    });
+    // elements may have been added before the watches were set
+    for (AddedCallback callback : addedCallbacks) {
+      callback.run();
+    }
   }
 
   @Override
   protected void shutDown() throws Exception {
-    // no-op
+    if (notificationsWatch != null) {
+      notificationsWatch.cancel();
+    }
+    for (Cancellable notificationWatch : notificationWatches.values()) {
+      notificationWatch.cancel();
+    }
+    notificationWatches.clear();
+  }
+
+  // watches the notification node of a queue if it is not already watched. The watch is triggered once when it is
+  // set, which also covers the add that created the node.
+  private void watchNotifications(final String queueName) {
+    if (notificationWatches.containsKey(queueName)) {
+      return;
+    }
+    Cancellable watch = ZKOperations.watchData(zkClient, getNotificationPath(queueName),
+                                               new ZKOperations.DataCallback() {
+      @Override
+      public void updated(NodeData nodeData) {
+        for (AddedCallback callback : addedCallbacks) {
+          callback.run();
+        }
+        List<AddedCallback> callbacks = queueAddedCallbacks.get(queueName);
+        if (callbacks != null) {
+          for (AddedCallback callback : callbacks) {
+            callback.run();
+          }
+        }
+      }
+    });
+    if (notificationWatches.putIfAbsent(queueName, watch) != null) {
+      watch.cancel();
+    }
+  }
+
+  // changes the data of the notification node of the queue, which triggers the watch of every instance of the group.
+  // The node is created by the first add to the queue. If this fails, consumers will still see the element the next
+  // time they look at the queues.
+  private void notifyElementAdded(String queueName) {
+    final String path = getNotificationPath(queueName);
+    final byte[] data = Longs.toByteArray(System.currentTimeMillis());
+    Futures.addCallback(zkClient.setData(path, data), new FutureCallback<Stat>() {
+      @Override
+      public void onSuccess(Stat result) {
+        // no-op
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (t instanceof KeeperException.NoNodeException) {
+          Futures.addCallback(ZKClientExt.createOrSet(zkClient, path, data, CreateMode.PERSISTENT),
+                              new FutureCallback<ZKClientExt.SetResult>() {
+                                @Override
+                                public void onSuccess(ZKClientExt.SetResult result) {
+                                  // no-op
+                                }
+
+                                @Override
+                                public void onFailure(Throwable t) {
+                                  logNotifyFailure(t);
+                                }
+                              });
+        } else {
+          logNotifyFailure(t);
+        }
+      }
+    });
+  }
+
+  private void logNotifyFailure(Throwable t) {
+    LOG.debug("Unable to notify that an element was added to a {} queue.", queueType, t);
   }
 
   private void refreshQueues(NodeChildren nodeChildren) {
@@ -225,7 +387,30 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     }
   }
 
+  private static final class AddedCallback implements Runnable {
+    private final Runnable callback;
+    private final Executor executor;
+
+    private AddedCallback(Runnable callback, Executor executor) {
+      this.callback = callback;
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      try {
+        executor.execute(callback);
+      } catch (Throwable t) {
+        LOG.error("Exception while running element added callback.", t);
+      }
+    }
+  }
+
   private String getZKPathForQueue(String queueName) {
     return queueType.getPath() + "/" + queueName;
   }
+
+  private String getNotificationPath(String queueName) {
+    return notificationPath + "/" + queueName;
+  }
 }
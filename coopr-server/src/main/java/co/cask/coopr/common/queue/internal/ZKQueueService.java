@@ -16,12 +16,14 @@
 
 package co.cask.coopr.common.queue.internal;
 
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueType;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import org.apache.twill.zookeeper.ZKClient;
 
 import java.util.Map;
@@ -33,10 +35,11 @@ public class ZKQueueService extends AbstractIdleService implements QueueService
   private final Map<QueueType, QueueGroup> queueGroups;
 
   @Inject
-  private ZKQueueService(ZKClient zkClient) {
+  private ZKQueueService(ZKClient zkClient, ElementsTrackingType trackingType,
+                         @Named(Constants.Metrics.QUEUE_CACHE_SECONDS) long recountSeconds) {
     ImmutableMap.Builder<QueueType, QueueGroup> builder = ImmutableMap.builder();
     for (QueueType type : QueueType.GROUP_TYPES) {
-      builder.put(type, new ZKQueueGroup(zkClient, type));
+      builder.put(type, new ZKQueueGroup(zkClient, type, trackingType, recountSeconds));
     }
     this.queueGroups = builder.build();
   }
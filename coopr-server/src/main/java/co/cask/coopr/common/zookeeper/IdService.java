@@ -17,9 +17,11 @@ package co.cask.coopr.common.zookeeper;
 
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
-import co.cask.coopr.common.zookeeper.lib.ReentrantDistributedLock;
+import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Futures;
@@ -27,19 +29,24 @@ import com.google.inject.Inject;
 import org.apache.twill.zookeeper.NodeData;
 import org.apache.twill.zookeeper.ZKClient;
 import org.apache.zookeeper.CreateMode;
-import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.KeeperException;
 
-import java.util.concurrent.locks.Lock;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Uses Zookeeper for creating new unique ids.
+ * Uses Zookeeper for creating new unique ids. Ids are reserved from the counter in Zookeeper in blocks, using a
+ * versioned compare-and-set of the counter, and then handed out from memory until the block is used up. Every id is
+ * still the start id plus a multiple of the increment, so ids from different datacenters never overlap.
  */
 public final class IdService extends AbstractIdleService {
   private static final String IDS_BASEPATH = "/ids";
 
   private final long startId;
   private final long incrementBy;
-  private ThreadLocal<Lock> idLock;
+  private final int blockSize;
+  private final ServerStats serverStats;
+  private final Map<Type, IdBlock> idBlocks;
 
   private final ZKClient zkClient;
 
@@ -59,34 +66,33 @@ public final class IdService extends AbstractIdleService {
   }
 
   @Inject
-  private IdService(final ZKClient zkClient, Configuration conf)  {
-    this.zkClient = zkClient;
-    this.startId = conf.getInt(Constants.ID_START_NUM);
-    this.incrementBy = conf.getInt(Constants.ID_INCREMENT_BY);
+  private IdService(final ZKClient zkClient, Configuration conf, ServerStats serverStats)  {
+    this(zkClient, conf.getInt(Constants.ID_START_NUM), conf.getInt(Constants.ID_INCREMENT_BY),
+         conf.getInt(Constants.ID_BLOCK_SIZE, Constants.DEFAULT_ID_BLOCK_SIZE), serverStats);
   }
 
   // for unit testing
   IdService(final ZKClient zkClient, int startId, int incrementBy) {
+    this(zkClient, startId, incrementBy, Constants.DEFAULT_ID_BLOCK_SIZE, new ServerStats());
+  }
+
+  // for unit testing
+  IdService(final ZKClient zkClient, int startId, int incrementBy, int blockSize, ServerStats serverStats) {
     this.zkClient = zkClient;
     this.startId = startId;
     this.incrementBy = incrementBy;
+    this.blockSize = blockSize;
+    this.serverStats = serverStats;
+    this.idBlocks = Maps.newEnumMap(Type.class);
+    for (Type type : Type.values()) {
+      idBlocks.put(type, new IdBlock());
+    }
   }
 
   @Override
   protected void startUp() {
-    this.idLock = new ThreadLocal<Lock>() {
-      @Override
-      protected Lock initialValue() {
-        return new ReentrantDistributedLock(zkClient, IDS_BASEPATH + "/lock");
-      }
-    };
-    idLock.get().lock();
-    try {
-      for (Type type : Type.values()) {
-        initializeCounter(type);
-      }
-    } finally {
-      idLock.get().unlock();
+    for (Type type : Type.values()) {
+      initializeCounter(type);
     }
   }
 
@@ -124,24 +130,62 @@ public final class IdService extends AbstractIdleService {
     return new TaskId(jobId, generateId(Type.TASK));
   }
 
-  // This generally should not be a noticeable amount of time compared to the time it takes to perform tasks
-  // TODO: try optimistic locking before actual locking to improve performance.
   private long generateId(Type type) {
-    idLock.get().lock();
-    try {
+    IdBlock block = idBlocks.get(type);
+    synchronized (block) {
+      if (block.next >= block.end) {
+        reserveBlock(type, block);
+      }
+      long id = block.next;
+      block.next += incrementBy;
+      return id;
+    }
+  }
+
+  // reserves the next block of ids by moving the counter past it, retrying if another instance moved it first
+  private void reserveBlock(Type type, IdBlock block) {
+    while (true) {
       NodeData nodeData = Futures.getUnchecked(zkClient.getData(type.path));
       long counterVal = Longs.fromByteArray(nodeData.getData());
-      Futures.getUnchecked(zkClient.setData(type.path, Longs.toByteArray(counterVal + incrementBy)));
-      return counterVal;
-    } finally {
-      idLock.get().unlock();
+      long blockEnd = counterVal + blockSize * incrementBy;
+      try {
+        zkClient.setData(type.path, Longs.toByteArray(blockEnd), nodeData.getStat().getVersion()).get();
+        block.next = counterVal;
+        block.end = blockEnd;
+        serverStats.getIdBlockRefillStats().incrementStat(type);
+        return;
+      } catch (ExecutionException e) {
+        if (!(e.getCause() instanceof KeeperException.BadVersionException)) {
+          throw Throwables.propagate(e.getCause());
+        }
+        serverStats.getIdBlockConflictStats().incrementStat(type);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
     }
   }
 
   private void initializeCounter(Type type) {
-    Stat stat = Futures.getUnchecked(zkClient.exists(type.path));
-    if (stat == null) {
-      Futures.getUnchecked(zkClient.create(type.path, Longs.toByteArray(startId), CreateMode.PERSISTENT, true));
+    try {
+      zkClient.create(type.path, Longs.toByteArray(startId), CreateMode.PERSISTENT, true).get();
+    } catch (ExecutionException e) {
+      // the counter was already initialized, possibly by another instance
+      if (!(e.getCause() instanceof KeeperException.NodeExistsException)) {
+        throw Throwables.propagate(e.getCause());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
     }
   }
+
+  /**
+   * Range of ids reserved by this instance. Ids from next (inclusive) to end (exclusive) that are a multiple of the
+   * increment away from next have not been handed out yet.
+   */
+  private static final class IdBlock {
+    private long next;
+    private long end;
+  }
 }
@@ -47,7 +47,8 @@ public class LockService {
     return new ReentrantDistributedLock(zkClient, path);
   }
 
-  public Lock getTenantProvisionerLock() {
-    return new ReentrantDistributedLock(zkClient, Constants.Lock.TENANT_NAMESPACE);
+  public Lock getTenantLock(String tenantName) {
+    String path = Joiner.on('/').join(Constants.Lock.TENANT_NAMESPACE, "tenants", tenantName);
+    return new ReentrantDistributedLock(zkClient, path);
   }
 }
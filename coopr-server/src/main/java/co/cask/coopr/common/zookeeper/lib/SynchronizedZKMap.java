@@ -16,6 +16,7 @@
 package co.cask.coopr.common.zookeeper.lib;
 
 import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -33,17 +34,18 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 
 /**
- * Synchronized (across threads and different processes) implementation of {@link java.util.Map} backed
- * by Zookeeper.
+ * Synchronized (across threads and different processes) implementation of {@link java.util.concurrent.ConcurrentMap}
+ * backed by Zookeeper.
  * <p/>
  * Does not permit null keys or values.
  *
  * @param <T> Type of object to keep in map values.
  */
-public class SynchronizedZKMap<T> implements Map<String, T> {
+public class SynchronizedZKMap<T> implements ConcurrentMap<String, T> {
   private static final String ENTRIES_PATH = "/entries";
   private static final String LOCK_PATH = "/lock";
   private final ZKClient zkClient;
@@ -143,6 +145,59 @@ public class SynchronizedZKMap<T> implements Map<String, T> {
     }
   }
 
+  @Override
+  public synchronized T putIfAbsent(String key, T value) {
+    globalLock.lock();
+    try {
+      reloadCacheIfNeeded();
+      T current = currentView.get(key);
+      return current == null ? putInternal(key, value) : current;
+    } finally {
+      globalLock.unlock();
+    }
+  }
+
+  @Override
+  public synchronized boolean remove(Object key, Object value) {
+    globalLock.lock();
+    try {
+      reloadCacheIfNeeded();
+      if (!currentView.containsKey(key) || !Objects.equal(currentView.get(key), value)) {
+        return false;
+      }
+      removeInternal(key);
+      return true;
+    } finally {
+      globalLock.unlock();
+    }
+  }
+
+  @Override
+  public synchronized boolean replace(String key, T oldValue, T newValue) {
+    globalLock.lock();
+    try {
+      reloadCacheIfNeeded();
+      if (!currentView.containsKey(key) || !Objects.equal(currentView.get(key), oldValue)) {
+        return false;
+      }
+      putInternal(key, newValue);
+      return true;
+    } finally {
+      globalLock.unlock();
+    }
+  }
+
+  @Override
+  public synchronized T replace(String key, T value) {
+    globalLock.lock();
+    try {
+      reloadCacheIfNeeded();
+      return currentView.containsKey(key) ? putInternal(key, value) : null;
+    } finally {
+      globalLock.unlock();
+    }
+  }
+
   @Override
   public synchronized void putAll(Map<? extends String, ? extends T> m) {
     // todo: implement efficiently
@@ -0,0 +1,504 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.zookeeper.lib;
+
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKClients;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of {@link java.util.concurrent.ConcurrentMap} backed by Zookeeper that keeps a local replica of the
+ * entries, updated one key at a time from child and data watches.
+ * <p/>
+ * Reads are served from the replica without any lock or zookeeper round-trip. Changes made through this instance are
+ * visible to it immediately, while changes made by other processes become visible as soon as their watch is
+ * delivered. Writes are compare-and-set operations on the version of the single znode of the key, so there is no
+ * map-wide lock. A write based on a stale replica fails the version check, refreshes the key and is retried
+ * ({@link #put(String, Object)}, {@link #remove(Object)}) or reported as failed ({@link #replace(String, Object,
+ * Object)}, {@link #remove(Object, Object)}, {@link #putIfAbsent(String, Object)}).
+ * <p/>
+ * Watches are set again once a session that expired is re-established, and every key is refreshed at that point to
+ * pick up changes missed in between.
+ * <p/>
+ * Uses the same layout as {@link SynchronizedZKMap}, so both can be used on the same data. Does not permit null keys
+ * or values.
+ *
+ * @param <T> Type of object to keep in map values.
+ */
+public class WatchedZKMap<T> implements ConcurrentMap<String, T> {
+  private static final Logger LOG = LoggerFactory.getLogger(WatchedZKMap.class);
+  private static final String ENTRIES_PATH = "/entries";
+  private final ZKClient zkClient;
+  private final Serializer<T> serializer;
+  private final ConcurrentMap<String, Versioned<T>> replica;
+  // only the latest watch set for a key or for the keys is acted on, others may be left over from an expired session
+  private final ConcurrentMap<String, KeyWatcher> keyWatchers;
+  private final AtomicReference<ChildrenWatcher> childrenWatcher;
+
+  public WatchedZKMap(ZKClient zkClient, String namespace, Serializer<T> serializer) {
+    this(namespace == null ? zkClient : ZKClients.namespace(zkClient, namespace), serializer);
+  }
+
+  public WatchedZKMap(ZKClient zkClient, Serializer<T> serializer) {
+    this.zkClient = zkClient;
+    this.serializer = serializer;
+    this.replica = Maps.newConcurrentMap();
+    this.keyWatchers = Maps.newConcurrentMap();
+    this.childrenWatcher = new AtomicReference<ChildrenWatcher>();
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, ENTRIES_PATH));
+    // load everything once, from there on only changed keys are fetched
+    NodeChildren nodeChildren = Futures.getUnchecked(zkClient.getChildren(ENTRIES_PATH));
+    List<ListenableFuture<Void>> refreshFutures = Lists.newArrayList();
+    for (String key : nodeChildren.getChildren()) {
+      refreshFutures.add(refresh(key));
+    }
+    Futures.getUnchecked(Futures.successfulAsList(refreshFutures));
+    zkClient.addConnectionWatcher(new ConnectionWatcher());
+    watchChildren();
+  }
+
+  @Override
+  public int size() {
+    return replica.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return replica.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return replica.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    for (Versioned<T> versioned : replica.values()) {
+      if (versioned.value.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public T get(Object key) {
+    Versioned<T> versioned = replica.get(key);
+    return versioned == null ? null : versioned.value;
+  }
+
+  @Override
+  public T put(String key, T value) {
+    byte[] data = serializer.serialize(value);
+    while (true) {
+      Versioned<T> known = replica.get(key);
+      if (known == null) {
+        if (create(key, data)) {
+          return null;
+        }
+      } else if (setData(key, value, data, known.version)) {
+        return known.value;
+      }
+    }
+  }
+
+  @Override
+  public T putIfAbsent(String key, T value) {
+    Versioned<T> known = replica.get(key);
+    if (known != null) {
+      return known.value;
+    }
+    if (create(key, serializer.serialize(value))) {
+      return null;
+    }
+    return get(key);
+  }
+
+  @Override
+  public boolean replace(String key, T oldValue, T newValue) {
+    Versioned<T> known = replica.get(key);
+    if (known == null || !Objects.equal(known.value, oldValue)) {
+      return false;
+    }
+    return setData(key, newValue, serializer.serialize(newValue), known.version);
+  }
+
+  @Override
+  public T replace(String key, T value) {
+    byte[] data = serializer.serialize(value);
+    while (true) {
+      Versioned<T> known = replica.get(key);
+      if (known == null) {
+        return null;
+      }
+      if (setData(key, value, data, known.version)) {
+        return known.value;
+      }
+    }
+  }
+
+  // note: a key missing from the replica is fetched first, since it may have been created by another process
+  @Override
+  public T remove(Object key) {
+    String stringKey = checkKey(key);
+    if (!replica.containsKey(stringKey)) {
+      Futures.getUnchecked(refresh(stringKey));
+    }
+    while (true) {
+      Versioned<T> known = replica.get(stringKey);
+      if (known == null) {
+        return null;
+      }
+      if (delete(stringKey, known)) {
+        return known.value;
+      }
+    }
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    String stringKey = checkKey(key);
+    Versioned<T> known = replica.get(stringKey);
+    if (known == null || !Objects.equal(known.value, value)) {
+      return false;
+    }
+    return delete(stringKey, known);
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends T> m) {
+    for (Map.Entry<? extends String, ? extends T> entry : m.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public void clear() {
+    NodeChildren nodeChildren = Futures.getUnchecked(zkClient.getChildren(ENTRIES_PATH));
+    List<ListenableFuture<String>> deleteFutures = Lists.newArrayList();
+    for (String node : nodeChildren.getChildren()) {
+      deleteFutures.add(ZKClientExt.delete(zkClient, getItemNodePath(node), true));
+    }
+    Futures.getUnchecked(Futures.allAsList(deleteFutures));
+    replica.clear();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return ImmutableSet.copyOf(replica.keySet());
+  }
+
+  @Override
+  public Collection<T> values() {
+    ImmutableList.Builder<T> values = ImmutableList.builder();
+    for (Versioned<T> versioned : replica.values()) {
+      values.add(versioned.value);
+    }
+    return values.build();
+  }
+
+  @Override
+  public Set<Entry<String, T>> entrySet() {
+    ImmutableMap.Builder<String, T> entries = ImmutableMap.builder();
+    for (Map.Entry<String, Versioned<T>> entry : replica.entrySet()) {
+      entries.put(entry.getKey(), entry.getValue().value);
+    }
+    return entries.build().entrySet();
+  }
+
+  /**
+   * Creates the znode for a key.
+   *
+   * @return true if the znode was created, false if it already existed.
+   */
+  private boolean create(String key, byte[] data) {
+    try {
+      zkClient.create(getItemNodePath(key), data, CreateMode.PERSISTENT).get();
+      return true;
+    } catch (ExecutionException e) {
+      if (!(e.getCause() instanceof KeeperException.NodeExistsException)) {
+        throw new RuntimeException(e.getCause());
+      }
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      // create does not return the stat of the new node, so read it back to learn its version
+      Futures.getUnchecked(refresh(key));
+    }
+  }
+
+  /**
+   * Sets the value of a key if its znode is still at the given version.
+   *
+   * @return true if the value was set, false if the replica was stale, in which case the key is refreshed.
+   */
+  private boolean setData(String key, T value, byte[] data, int version) {
+    try {
+      Stat stat = zkClient.setData(getItemNodePath(key), data, version).get();
+      update(key, value, stat);
+      return true;
+    } catch (ExecutionException e) {
+      if (!(e.getCause() instanceof KeeperException.BadVersionException ||
+        e.getCause() instanceof KeeperException.NoNodeException)) {
+        throw new RuntimeException(e.getCause());
+      }
+      Futures.getUnchecked(refresh(key));
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Deletes a key if its znode is still at the known version.
+   *
+   * @return true if the key was deleted, false if the replica was stale, in which case the key is refreshed.
+   */
+  private boolean delete(String key, Versioned<T> known) {
+    try {
+      zkClient.delete(getItemNodePath(key), known.version).get();
+      replica.remove(key, known);
+      return true;
+    } catch (ExecutionException e) {
+      if (!(e.getCause() instanceof KeeperException.BadVersionException ||
+        e.getCause() instanceof KeeperException.NoNodeException)) {
+        throw new RuntimeException(e.getCause());
+      }
+      Futures.getUnchecked(refresh(key));
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Fetches the current value of a single key into the replica and leaves a watch on it, unless one is already set.
+   */
+  private ListenableFuture<Void> refresh(final String key) {
+    final SettableFuture<Void> result = SettableFuture.create();
+    // watches only fire once, and every registration fires separately, so keep at most one per key
+    KeyWatcher newWatcher = new KeyWatcher(key);
+    final KeyWatcher watcher = keyWatchers.putIfAbsent(key, newWatcher) == null ? newWatcher : null;
+    String path = getItemNodePath(key);
+    ListenableFuture<NodeData> dataFuture = watcher != null ? zkClient.getData(path, watcher)
+                                                            : zkClient.getData(path);
+    Futures.addCallback(dataFuture, new FutureCallback<NodeData>() {
+      @Override
+      public void onSuccess(NodeData nodeData) {
+        try {
+          update(key, serializer.deserialize(nodeData.getData()), nodeData.getStat());
+        } finally {
+          result.set(null);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (watcher != null) {
+          keyWatchers.remove(key, watcher);
+        }
+        if (t instanceof KeeperException.NoNodeException || t.getCause() instanceof KeeperException.NoNodeException) {
+          replica.remove(key);
+        } else {
+          LOG.warn("Failed to refresh key {} of map.", key, t);
+        }
+        result.set(null);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Puts a value in the replica unless the replica already has a value of the same or a later modification.
+   */
+  private void update(String key, T value, Stat stat) {
+    Versioned<T> newer = new Versioned<T>(value, stat.getVersion(), stat.getMzxid());
+    while (true) {
+      Versioned<T> existing = replica.putIfAbsent(key, newer);
+      if (existing == null || existing.mzxid >= newer.mzxid || replica.replace(key, existing, newer)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Lists the keys and leaves a watch that lists them again on the next change.
+   */
+  private void watchChildren() {
+    ChildrenWatcher watcher = new ChildrenWatcher();
+    childrenWatcher.set(watcher);
+    ListenableFuture<NodeChildren> childrenFuture = zkClient.getChildren(ENTRIES_PATH, watcher);
+    Futures.addCallback(childrenFuture, new FutureCallback<NodeChildren>() {
+      @Override
+      public void onSuccess(NodeChildren nodeChildren) {
+        childrenUpdated(nodeChildren);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOG.warn("Failed to watch keys of map.", t);
+      }
+    });
+  }
+
+  /**
+   * Sets all watches again after the session expired, since zookeeper drops the watches of an expired session unless
+   * the client sets them again itself.
+   */
+  private void rewatch() {
+    keyWatchers.clear();
+    watchChildren();
+    for (String key : replica.keySet()) {
+      refresh(key);
+    }
+  }
+
+  private void childrenUpdated(NodeChildren nodeChildren) {
+    Set<String> keys = Sets.newHashSet(nodeChildren.getChildren());
+    for (String key : keys) {
+      if (!replica.containsKey(key)) {
+        refresh(key);
+      }
+    }
+    // keys modified after this list of children was taken are newer than the list, so they are kept
+    long childrenZxid = nodeChildren.getStat().getPzxid();
+    for (Map.Entry<String, Versioned<T>> entry : replica.entrySet()) {
+      if (!keys.contains(entry.getKey()) && entry.getValue().mzxid <= childrenZxid) {
+        replica.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private String checkKey(Object key) {
+    if (!(key instanceof String)) {
+      throw new IllegalArgumentException("Expected key of type java.lang.String but was " +
+                                           (key == null ? null : key.getClass()));
+    }
+    return (String) key;
+  }
+
+  private String getItemNodePath(String key) {
+    return ENTRIES_PATH + "/" + key;
+  }
+
+  /**
+   * Watches the data of a key in the replica. A changed key is watched again by refreshing it. A deleted key is
+   * dropped, and is picked up again by the children watch if it is created again.
+   */
+  private final class KeyWatcher implements Watcher {
+    private final String key;
+
+    private KeyWatcher(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public void process(WatchedEvent event) {
+      if (event.getType() == Event.EventType.None) {
+        // connection state change, the watch is still registered
+        return;
+      }
+      if (!keyWatchers.remove(key, this)) {
+        return;
+      }
+      if (event.getType() == Event.EventType.NodeDeleted) {
+        replica.remove(key);
+      } else {
+        refresh(key);
+      }
+    }
+  }
+
+  /**
+   * Lists the keys again whenever they change.
+   */
+  private final class ChildrenWatcher implements Watcher {
+    @Override
+    public void process(WatchedEvent event) {
+      if (event.getType() == Event.EventType.NodeChildrenChanged && childrenWatcher.compareAndSet(this, null)) {
+        watchChildren();
+      }
+    }
+  }
+
+  /**
+   * Sets the watches again once a session is re-established after it expired.
+   */
+  private final class ConnectionWatcher implements Watcher {
+    private boolean expired;
+
+    @Override
+    public void process(WatchedEvent event) {
+      if (event.getState() == Event.KeeperState.Expired) {
+        LOG.info("Zookeeper session expired, watches of map are set again once connected.");
+        expired = true;
+      } else if (event.getState() == Event.KeeperState.SyncConnected && expired) {
+        expired = false;
+        rewatch();
+      }
+    }
+  }
+
+  /**
+   * Value of a key along with the version and modification zxid of its znode.
+   *
+   * @param <T> Type of the value.
+   */
+  private static final class Versioned<T> {
+    private final T value;
+    private final int version;
+    private final long mzxid;
+
+    private Versioned(T value, int version, long mzxid) {
+      this.value = value;
+      this.version = version;
+      this.mzxid = mzxid;
+    }
+  }
+}
@@ -18,6 +18,8 @@ package co.cask.coopr.http.handler;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.ClusterDetails;
+import co.cask.coopr.cluster.ClusterListingCursor;
+import co.cask.coopr.cluster.ClusterListingPage;
 import co.cask.coopr.cluster.ClusterService;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.MissingFieldsException;
@@ -104,6 +106,9 @@ public class ClusterHandler extends AbstractAuthHandler {
    * and the value is a comma separated list of statuses. Clusters returned must be in one of the statuses given. If
    * no status param is given, all clusters will be returned. Valid values to include in a status filter
    * are any one of {@link co.cask.coopr.cluster.Cluster.Status}.
+   * If a 'limit' param is given, a page of up to limit {@link co.cask.coopr.cluster.ClusterListing}s is returned
+   * instead, along with the cursor of the next page if there are more clusters. The next page is requested by
+   * passing that cursor as the 'cursor' param.
    *
    * @param request Request for clusters.
    * @param responder Responder for sending the response.
@@ -115,6 +120,12 @@ public class ClusterHandler extends AbstractAuthHandler {
       return;
     }
 
+    Map<String, List<String>> queryParams = new QueryStringDecoder(request.getUri()).getParameters();
+    if (queryParams.containsKey("limit")) {
+      getClusterListings(account, queryParams, request, responder);
+      return;
+    }
+
     try {
       Set<Cluster.Status> statusFilter = getStatusFilter(request);
       List<ClusterSummary> summaries = clusterService.getClusterSummaries(account, statusFilter);
@@ -127,6 +138,34 @@ public class ClusterHandler extends AbstractAuthHandler {
     }
   }
 
+  private void getClusterListings(Account account, Map<String, List<String>> queryParams,
+                                  HttpRequest request, HttpResponder responder) {
+    int limit;
+    ClusterListingCursor after = null;
+    try {
+      limit = Integer.parseInt(queryParams.get("limit").get(0));
+      List<String> cursorParams = queryParams.get("cursor");
+      if (cursorParams != null && !cursorParams.isEmpty()) {
+        after = ClusterListingCursor.fromString(cursorParams.get(0));
+      }
+    } catch (IllegalArgumentException e) {
+      responder.sendError(HttpResponseStatus.BAD_REQUEST, "Invalid limit or cursor.");
+      return;
+    }
+    if (limit < 1) {
+      responder.sendError(HttpResponseStatus.BAD_REQUEST, "Limit must be positive.");
+      return;
+    }
+
+    try {
+      ClusterListingPage page = clusterService.getClusterListings(account, getStatusFilter(request), after, limit);
+      responder.sendJson(HttpResponseStatus.OK, page, ClusterListingPage.class, gson);
+    } catch (IOException e) {
+      LOG.error("Exception getting cluster listings for account {}.", account, e);
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting clusters.");
+    }
+  }
+
   /**
    * Get a specific cluster visible to the user.
    *
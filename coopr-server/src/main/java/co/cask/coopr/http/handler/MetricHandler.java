@@ -17,12 +17,13 @@
 package co.cask.coopr.http.handler;
 
 import co.cask.coopr.account.Account;
+import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.metrics.MetricService;
 import co.cask.coopr.metrics.TimeSeries;
-import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import co.cask.coopr.store.metrics.NodeUsageStore;
 import co.cask.coopr.store.tenant.TenantStore;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.Maps;
@@ -50,16 +51,18 @@ public class MetricHandler extends AbstractAuthHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(MetricHandler.class);
 
-  private final ClusterStore clusterStore;
+  private final MetricService metricService;
   private final Gson gson;
 
   /**
    * Initializes a new instance of a MetricHandler.
    */
   @Inject
-  private MetricHandler(TenantStore tenantStore, ClusterStoreService clusterStoreService, Gson gson) {
+  private MetricHandler(TenantStore tenantStore, ClusterStoreService clusterStoreService,
+                        NodeUsageStore nodeUsageStore, Configuration conf, Gson gson) {
     super(tenantStore);
-    this.clusterStore = clusterStoreService.getSystemView();
+    this.metricService = new MetricService(clusterStoreService.getSystemView(), nodeUsageStore,
+                                           conf.getBoolean(Constants.Metrics.ROLLUPS_ENABLED, false));
     this.gson = gson;
   }
 
@@ -134,7 +137,7 @@ public class MetricHandler extends AbstractAuthHandler {
                                                      filters.get("clustertemplate"), startTime,
                                                      endTime, periodicity, timeUnit);
     try {
-      TimeSeries result = new MetricService(clusterStore).getNodesUsage(filter);
+      TimeSeries result = metricService.getNodesUsage(filter);
       responder.sendJson(HttpResponseStatus.OK, result, TimeSeries.class, gson);
     }  catch (IOException e) {
       responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Unable to read data from the database");
@@ -21,6 +21,7 @@ import co.cask.coopr.provisioner.Provisioner;
 import co.cask.coopr.provisioner.ProvisionerHeartbeat;
 import co.cask.coopr.provisioner.TenantProvisionerService;
 import co.cask.coopr.provisioner.plugin.PluginType;
+import co.cask.coopr.provisioner.plugin.ResourceMeta;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.scheduler.task.MissingEntityException;
@@ -32,20 +33,25 @@ import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -60,6 +66,8 @@ import javax.ws.rs.PathParam;
 @Path(Constants.API_BASE)
 public final class ProvisionerHandler extends AbstractAuthHandler {
   private static final Logger LOG = LoggerFactory.getLogger(ProvisionerHandler.class);
+  // resource files are memory mapped this many bytes at a time when they are sent
+  private static final long FILE_REGION_SIZE = 16L * 1024 * 1024;
 
   private final Gson gson;
   private final ResourceService resourceService;
@@ -208,7 +216,7 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     Account account = new Account(Constants.ADMIN_USER, tenantId);
 
     ResourceType resourceTypeObj = new ResourceType(PluginType.AUTOMATOR, automatortypeId, resourceType);
-    sendResourceInChunks(responder, account, resourceTypeObj, name, version);
+    sendResourceInChunks(request, responder, account, resourceTypeObj, name, version);
   }
 
   /**
@@ -233,7 +241,7 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     Account account = new Account(Constants.ADMIN_USER, tenantId);
 
     ResourceType resourceTypeObj = new ResourceType(PluginType.PROVIDER, providertypeId, resourceType);
-    sendResourceInChunks(responder, account, resourceTypeObj, name, version);
+    sendResourceInChunks(request, responder, account, resourceTypeObj, name, version);
   }
 
   /**
@@ -321,27 +329,35 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     return result;
   }
 
-  private void sendResourceInChunks(HttpResponder responder, Account account,
+  // resources are sent with their digest as an entity tag, so provisioners that already have the contents
+  // can make a conditional request and get back a 304 instead of the contents.
+  private void sendResourceInChunks(HttpRequest request, HttpResponder responder, Account account,
                                     ResourceType resourceType, String name, String versionStr) {
     try {
       int version = Integer.parseInt(versionStr);
-      InputStream inputStream =
-        resourceService.getResourceInputStream(account, resourceType, name, version);
+      ResourceMeta meta = resourceService.getResourceMeta(account, resourceType, name, version);
+      Multimap<String, String> headers = ImmutableMultimap.of();
+      if (meta.getDigest() != null) {
+        String etag = "\"" + meta.getDigest() + "\"";
+        headers = ImmutableMultimap.of(HttpHeaders.Names.ETAG, etag);
+        if (etagMatches(request.getHeader(HttpHeaders.Names.IF_NONE_MATCH), etag)) {
+          responder.sendStatus(HttpResponseStatus.NOT_MODIFIED, headers);
+          return;
+        }
+      }
+      InputStream inputStream = resourceService.getResourceInputStream(account, resourceType, meta);
       if (inputStream == null) {
         LOG.error("No input stream available, but metadata exists for version {} of resource {} for tenant {}.",
                   version, name, account.getTenantId());
         responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error getting resource.");
+        return;
       }
       try {
-        ChunkResponder chunkResponder = responder.sendChunkStart(
-          HttpResponseStatus.OK, ImmutableMultimap.<String, String>of());
-        while (true) {
-          byte[] chunkBytes = new byte[Constants.PLUGIN_RESOURCE_CHUNK_SIZE];
-          int bytesRead = inputStream.read(chunkBytes, 0, Constants.PLUGIN_RESOURCE_CHUNK_SIZE);
-          if (bytesRead == -1) {
-            break;
-          }
-          chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(chunkBytes, 0, bytesRead));
+        ChunkResponder chunkResponder = responder.sendChunkStart(HttpResponseStatus.OK, headers);
+        if (inputStream instanceof FileInputStream) {
+          sendFileChunks(((FileInputStream) inputStream).getChannel(), chunkResponder);
+        } else {
+          sendStreamChunks(inputStream, chunkResponder);
         }
         chunkResponder.close();
       } finally {
@@ -355,4 +371,43 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
       responder.sendError(HttpResponseStatus.NOT_FOUND, "Resource not found.");
     }
   }
+
+  private boolean etagMatches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.equals("*") || candidate.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // chunks are slices of memory mapped regions of the file, so the contents are never copied onto the heap
+  private void sendFileChunks(FileChannel channel, ChunkResponder chunkResponder) throws IOException {
+    long size = channel.size();
+    for (long regionStart = 0; regionStart < size; regionStart += FILE_REGION_SIZE) {
+      ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                                      Math.min(FILE_REGION_SIZE, size - regionStart));
+      while (region.hasRemaining()) {
+        ByteBuffer chunk = region.slice();
+        chunk.limit(Math.min(Constants.PLUGIN_RESOURCE_CHUNK_SIZE, chunk.remaining()));
+        region.position(region.position() + chunk.limit());
+        chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(chunk));
+      }
+    }
+  }
+
+  private void sendStreamChunks(InputStream inputStream, ChunkResponder chunkResponder) throws IOException {
+    while (true) {
+      byte[] chunkBytes = new byte[Constants.PLUGIN_RESOURCE_CHUNK_SIZE];
+      int bytesRead = inputStream.read(chunkBytes, 0, Constants.PLUGIN_RESOURCE_CHUNK_SIZE);
+      if (bytesRead == -1) {
+        break;
+      }
+      chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(chunkBytes, 0, bytesRead));
+    }
+  }
 }
@@ -23,6 +23,7 @@ import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.scheduler.task.TaskQueueService;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
+import com.google.common.base.Joiner;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -31,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 
@@ -54,6 +56,8 @@ public final class TaskHandler extends AbstractHttpHandler {
    * Take a task from the queue to execute. Post body must contain a workerId key, which must also be passed back
    * when finishing a task. Tasks are returned as a json object with taskId, jobId, clusterId, taskName and nodeId
    * as key value pairs, and with a config key whose value is a json object with all the configuration settings.
+   * If the post body contains a waitSeconds key and there is no task to take, the request waits up to that many
+   * seconds for a task before returning a 204.
    *
    * @param request The request to take a task.
    * @param responder Responder to send the response.
@@ -62,6 +66,9 @@ public final class TaskHandler extends AbstractHttpHandler {
   @Path("/take")
   public void handleTakeTask(HttpRequest request, HttpResponder responder) {
     TakeTaskRequest takeRequest = HttpHelper.decodeRequestBody(request, responder, TakeTaskRequest.class, gson);
+    if (takeRequest == null) {
+      return;
+    }
 
     try {
       String taskJson = taskQueueService.takeNextClusterTask(takeRequest);
@@ -79,6 +86,39 @@ public final class TaskHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Take multiple tasks from the queue to execute. Post body is the same as for taking a single task, with a maxTasks
+   * key for the maximum number of tasks to take. Tasks are returned as a json array of tasks in the same format as
+   * a single task, and can be executed in any order. If there are no tasks to take, a 204 is returned after waiting
+   * for waitSeconds if given.
+   *
+   * @param request The request to take tasks.
+   * @param responder Responder to send the response.
+   */
+  @POST
+  @Path("/take/batch")
+  public void handleTakeTasks(HttpRequest request, HttpResponder responder) {
+    TakeTaskRequest takeRequest = HttpHelper.decodeRequestBody(request, responder, TakeTaskRequest.class, gson);
+    if (takeRequest == null) {
+      return;
+    }
+
+    try {
+      List<String> tasksJson = taskQueueService.takeNextClusterTasks(takeRequest);
+      if (tasksJson.isEmpty()) {
+        responder.sendStatus(HttpResponseStatus.NO_CONTENT);
+        return;
+      }
+      responder.sendString(HttpResponseStatus.OK, "[" + Joiner.on(',').join(tasksJson) + "]");
+    } catch (IOException e) {
+      LOG.error("Exception while taking tasks.", e);
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error taking tasks.");
+    } catch (MissingEntityException e) {
+      responder.sendError(HttpResponseStatus.FORBIDDEN, "Provisioner " + takeRequest.getProvisionerId()
+        + " is not registered.");
+    }
+  }
+
   /**
    * Finish a previously taken task by reporting a status code for execution of the task. Post body must contain
    * "workerId", "taskId", and "status" keys or a 400 is returned. A non-zero status indicates task failure.
@@ -4,20 +4,32 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 /**
- * Request sent by provisioners for taking a task to perform.
+ * Request sent by provisioners for taking a task to perform. Optionally contains the maximum number of tasks to take
+ * at once, and the number of seconds to wait for a task if there are none to take right away.
  */
 public class TakeTaskRequest {
   private final String workerId;
   private final String provisionerId;
   private final String tenantId;
+  private final int maxTasks;
+  private final int waitSeconds;
 
   public TakeTaskRequest(String workerId, String provisionerId, String tenantId) {
+    this(workerId, provisionerId, tenantId, null, null);
+  }
+
+  public TakeTaskRequest(String workerId, String provisionerId, String tenantId,
+                         Integer maxTasks, Integer waitSeconds) {
     Preconditions.checkArgument(workerId != null && !workerId.isEmpty(), "workerId must be specified.");
     Preconditions.checkArgument(provisionerId != null && !provisionerId.isEmpty(), "provisionerId must be specified.");
     Preconditions.checkArgument(tenantId != null && !tenantId.isEmpty(), "tenantId must be specified.");
+    Preconditions.checkArgument(maxTasks == null || maxTasks > 0, "maxTasks must be positive.");
+    Preconditions.checkArgument(waitSeconds == null || waitSeconds >= 0, "waitSeconds must not be negative.");
     this.workerId = workerId;
     this.provisionerId = provisionerId;
     this.tenantId = tenantId;
+    this.maxTasks = maxTasks == null ? 1 : maxTasks;
+    this.waitSeconds = waitSeconds == null ? 0 : waitSeconds;
   }
 
   public String getWorkerId() {
@@ -32,6 +44,14 @@ public class TakeTaskRequest {
     return tenantId;
   }
 
+  public int getMaxTasks() {
+    return maxTasks;
+  }
+
+  public int getWaitSeconds() {
+    return waitSeconds;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -45,11 +65,13 @@ public class TakeTaskRequest {
 
     return Objects.equal(workerId, that.workerId) &&
       Objects.equal(provisionerId, that.provisionerId) &&
-      Objects.equal(tenantId, that.tenantId);
+      Objects.equal(tenantId, that.tenantId) &&
+      maxTasks == that.maxTasks &&
+      waitSeconds == that.waitSeconds;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(workerId, provisionerId, tenantId);
+    return Objects.hashCode(workerId, provisionerId, tenantId, maxTasks, waitSeconds);
   }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.ServiceConstraint;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds how many of each {@link NodeLayout} to use in a cluster, returning the same layout as
+ * {@link ClusterLayoutFinder} without walking through every combination of node counts. Counts are assigned one node
+ * layout at a time in preference order, trying the largest count first, and a partial assignment is dropped as soon
+ * as the remaining node layouts can no longer hold the remaining machines or bring every service up to its minimum
+ * count. The first complete assignment is therefore the most preferred valid one. The search gives up if it takes
+ * more than a maximum number of steps or a maximum amount of time.
+ */
+public class BranchAndBoundLayoutFinder {
+  private static final Logger LOG = LoggerFactory.getLogger(BranchAndBoundLayoutFinder.class);
+  // number of search steps between checks of the clock
+  private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+  private final int numMachines;
+  private final long maxIterations;
+  private final long maxMillis;
+  // indexes of the constrained services on each node layout
+  private final int[][] layoutServices;
+  // indexes of the node layouts each constrained service is on
+  private final int[][] serviceLayouts;
+  private final int[] serviceMins;
+  private final int[] serviceMaxes;
+  private final int[] serviceCounts;
+  private final int[] nodeCounts;
+  private long iterations;
+  private long deadline;
+  private boolean limitReached;
+
+  /**
+   * Create a finder for the given node layouts, template, services and cluster size.
+   *
+   * @param nodePreferences Node layouts ordered by preference.
+   * @param template Template containing the service constraints.
+   * @param services Services to place on the cluster.
+   * @param numMachines Number of machines in the cluster.
+   * @param maxIterations Maximum number of search steps to take, or 0 for no limit.
+   * @param maxMillis Maximum number of milliseconds to search for, or 0 for no limit.
+   */
+  public BranchAndBoundLayoutFinder(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
+                                    int numMachines, long maxIterations, long maxMillis) {
+    this.numMachines = numMachines;
+    this.maxIterations = maxIterations;
+    this.maxMillis = maxMillis;
+
+    // we only care about the constraints that apply to services that are on the cluster
+    Map<String, ServiceConstraint> allServiceConstraints = template.getConstraints().getServiceConstraints();
+    Map<String, Integer> serviceIndexes = Maps.newHashMap();
+    List<ServiceConstraint> constraints = Lists.newArrayList();
+    for (String service : services) {
+      ServiceConstraint constraint = allServiceConstraints.get(service);
+      if (constraint != null) {
+        serviceIndexes.put(service, constraints.size());
+        constraints.add(constraint);
+      }
+    }
+
+    this.serviceMins = new int[constraints.size()];
+    this.serviceMaxes = new int[constraints.size()];
+    this.serviceCounts = new int[constraints.size()];
+    for (int s = 0; s < constraints.size(); s++) {
+      serviceMins[s] = constraints.get(s).getMinCount();
+      // a service can never be on more nodes than there are in the cluster
+      serviceMaxes[s] = Math.min(constraints.get(s).getMaxCount(), numMachines);
+    }
+
+    this.nodeCounts = new int[nodePreferences.size()];
+    this.layoutServices = new int[nodePreferences.size()][];
+    List<List<Integer>> layoutsOfService = Lists.newArrayList();
+    for (int s = 0; s < constraints.size(); s++) {
+      layoutsOfService.add(Lists.<Integer>newArrayList());
+    }
+    for (int i = 0; i < nodePreferences.size(); i++) {
+      List<Integer> indexes = Lists.newArrayList();
+      for (String service : nodePreferences.get(i).getServiceNames()) {
+        Integer index = serviceIndexes.get(service);
+        if (index != null) {
+          indexes.add(index);
+          layoutsOfService.get(index).add(i);
+        }
+      }
+      layoutServices[i] = Ints.toArray(indexes);
+    }
+    this.serviceLayouts = new int[constraints.size()][];
+    for (int s = 0; s < constraints.size(); s++) {
+      serviceLayouts[s] = Ints.toArray(layoutsOfService.get(s));
+    }
+  }
+
+  /**
+   * Get how many of each node type to use in the cluster, or null if there is no possible cluster layout that
+   * satisfies all cluster constraints or if none was found within the search limits. The layout is returned in the
+   * same form as {@link ClusterLayoutFinder#findValidNodeCounts()}.
+   *
+   * @return Array containing how many of each node type to use.
+   */
+  public int[] findValidNodeCounts() {
+    Arrays.fill(nodeCounts, 0);
+    Arrays.fill(serviceCounts, 0);
+    iterations = 0;
+    limitReached = false;
+    deadline = maxMillis > 0 ? System.currentTimeMillis() + maxMillis : Long.MAX_VALUE;
+
+    if (numMachines > 0 && isFeasible(0, numMachines) && search(0, numMachines)) {
+      return Arrays.copyOf(nodeCounts, nodeCounts.length);
+    }
+    if (limitReached) {
+      LOG.warn("Gave up searching for a layout of {} machines after {} steps.", numMachines, iterations);
+    }
+    return null;
+  }
+
+  /**
+   * Whether the last search gave up because it reached its step or time limit.
+   *
+   * @return True if the last search reached its limit, false if not.
+   */
+  boolean isLimitReached() {
+    return limitReached;
+  }
+
+  // assign counts to the given layout and all layouts after it, most preferred first. Returns whether a valid
+  // assignment was found, in which case it is left in nodeCounts.
+  private boolean search(int layout, int remaining) {
+    if (layout == nodeCounts.length) {
+      return remaining == 0;
+    }
+    if (isOverLimit()) {
+      return false;
+    }
+    for (int count = getCapacity(layout, remaining); count >= 0; count--) {
+      place(layout, count);
+      int left = remaining - count;
+      if (isFeasible(layout + 1, left) && search(layout + 1, left)) {
+        return true;
+      }
+      place(layout, -count);
+      if (limitReached) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  // whether the layouts starting at the given one can still hold the remaining machines and satisfy the minimum
+  // count of every service. Layout capacities are computed independently of each other, so this never rules out an
+  // assignment that could be completed.
+  private boolean isFeasible(int firstLayout, int remaining) {
+    if (remaining > 0) {
+      long total = 0;
+      for (int i = firstLayout; i < nodeCounts.length && total < remaining; i++) {
+        total += getCapacity(i, remaining);
+      }
+      if (total < remaining) {
+        return false;
+      }
+    }
+    for (int s = 0; s < serviceMins.length; s++) {
+      int needed = serviceMins[s] - serviceCounts[s];
+      if (needed <= 0) {
+        continue;
+      }
+      if (needed > remaining) {
+        return false;
+      }
+      long reachable = 0;
+      for (int i : serviceLayouts[s]) {
+        if (i >= firstLayout) {
+          reachable += getCapacity(i, remaining);
+          if (reachable >= needed) {
+            break;
+          }
+        }
+      }
+      if (reachable < needed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // max number of nodes of the given layout that can be added without going over a service max.
+  private int getCapacity(int layout, int remaining) {
+    int capacity = remaining;
+    for (int s : layoutServices[layout]) {
+      capacity = Math.min(capacity, serviceMaxes[s] - serviceCounts[s]);
+    }
+    return Math.max(capacity, 0);
+  }
+
+  private void place(int layout, int count) {
+    nodeCounts[layout] += count;
+    for (int s : layoutServices[layout]) {
+      serviceCounts[s] += count;
+    }
+  }
+
+  private boolean isOverLimit() {
+    iterations++;
+    if (maxIterations > 0 && iterations > maxIterations) {
+      limitReached = true;
+    } else if (iterations % CLOCK_CHECK_INTERVAL == 0 && System.currentTimeMillis() > deadline) {
+      limitReached = true;
+    }
+    return limitReached;
+  }
+}
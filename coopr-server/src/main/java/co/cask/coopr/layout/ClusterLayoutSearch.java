@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.spec.template.ClusterTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How the {@link Solver} searches for the number of each {@link NodeLayout} to use in a cluster. Both types of search
+ * return the same layout for the same node layout preferences, but the branch and bound search skips combinations
+ * of node counts that can not satisfy the template constraints, and gives up after a configurable number of steps or
+ * amount of time.
+ */
+public final class ClusterLayoutSearch {
+  public static final ClusterLayoutSearch ITERATIVE = new ClusterLayoutSearch(Type.ITERATIVE, 0, 0);
+
+  /**
+   * Type of search.
+   */
+  public enum Type {
+    ITERATIVE,
+    BRANCH_AND_BOUND
+  }
+
+  private final Type type;
+  private final long maxIterations;
+  private final long maxMillis;
+
+  /**
+   * Create a search of the given type.
+   *
+   * @param type Type of search.
+   * @param maxIterations Maximum number of steps the branch and bound search can take, or 0 for no limit.
+   * @param maxMillis Maximum number of milliseconds the branch and bound search can take, or 0 for no limit.
+   */
+  public ClusterLayoutSearch(Type type, long maxIterations, long maxMillis) {
+    this.type = type;
+    this.maxIterations = maxIterations;
+    this.maxMillis = maxMillis;
+  }
+
+  /**
+   * Create the search set in the given configuration.
+   *
+   * @param conf Configuration containing the search settings.
+   * @return Search set in the configuration.
+   */
+  public static ClusterLayoutSearch fromConf(Configuration conf) {
+    Type type = Type.valueOf(
+      conf.get(Constants.SOLVER_LAYOUT_SEARCH, Constants.DEFAULT_SOLVER_LAYOUT_SEARCH).toUpperCase());
+    long maxIterations = conf.getLong(Constants.SOLVER_LAYOUT_SEARCH_MAX_ITERATIONS,
+                                      Constants.DEFAULT_SOLVER_LAYOUT_SEARCH_MAX_ITERATIONS);
+    long maxMillis = conf.getLong(Constants.SOLVER_LAYOUT_SEARCH_MAX_MILLIS,
+                                  Constants.DEFAULT_SOLVER_LAYOUT_SEARCH_MAX_MILLIS);
+    return new ClusterLayoutSearch(type, maxIterations, maxMillis);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Get how many of each node layout to use in the cluster, or null if no valid layout was found. See
+   * {@link ClusterLayoutFinder#findValidNodeCounts()} for the format of the result.
+   *
+   * @param nodePreferences Node layouts ordered by preference.
+   * @param template Template containing the service constraints.
+   * @param services Services to place on the cluster.
+   * @param numMachines Number of machines in the cluster.
+   * @return Array containing how many of each node layout to use.
+   */
+  public int[] findValidNodeCounts(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
+                                   int numMachines) {
+    switch (type) {
+      case BRANCH_AND_BOUND:
+        return new BranchAndBoundLayoutFinder(nodePreferences, template, services, numMachines,
+                                              maxIterations, maxMillis).findValidNodeCounts();
+      default:
+        return new ClusterLayoutFinder(nodePreferences, template, services, numMachines).findValidNodeCounts();
+    }
+  }
+}
@@ -18,6 +18,7 @@ package co.cask.coopr.layout;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.cluster.NodeProperties;
+import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.http.request.ClusterCreateRequest;
 import co.cask.coopr.layout.change.ClusterLayoutChange;
 import co.cask.coopr.layout.change.ClusterLayoutTracker;
@@ -56,11 +57,13 @@ public class Solver {
   private static final Logger LOG  = LoggerFactory.getLogger(Solver.class);
   private final EntityStoreService entityStoreService;
   private final ClusterLayoutUpdater updater;
+  private final ClusterLayoutSearch layoutSearch;
 
   @Inject
-  private Solver(EntityStoreService entityStoreService, ClusterLayoutUpdater updater) {
+  private Solver(EntityStoreService entityStoreService, ClusterLayoutUpdater updater, Configuration conf) {
     this.entityStoreService = entityStoreService;
     this.updater = updater;
+    this.layoutSearch = ClusterLayoutSearch.fromConf(conf);
   }
 
   /**
@@ -179,7 +182,7 @@ public class Solver {
 
     Map<String, Node> nodes =
       solveConstraints(cluster.getId(), template, request.getName(), request.getNumMachines(), hardwareTypeFlavors,
-                       imageTypeMap, serviceNames, serviceMap, dnsSuffix);
+                       imageTypeMap, serviceNames, serviceMap, dnsSuffix, layoutSearch);
 
     // Update cluster object
     // TODO: this should happen outside Solver.
@@ -351,6 +354,18 @@ public class Solver {
                                             Set<String> serviceNames,
                                             Map<String, Service> serviceMap,
                                             String dnsSuffix) {
+    return solveConstraints(clusterId, clusterTemplate, clusterName, numMachines, hardwareTypeMap, imageTypeMap,
+                            serviceNames, serviceMap, dnsSuffix, ClusterLayoutSearch.ITERATIVE);
+  }
+
+  static Map<String, Node> solveConstraints(String clusterId, ClusterTemplate clusterTemplate, String clusterName,
+                                            int numMachines,
+                                            Map<String, String> hardwareTypeMap,
+                                            Map<String, Map<String, String>> imageTypeMap,
+                                            Set<String> serviceNames,
+                                            Map<String, Service> serviceMap,
+                                            String dnsSuffix,
+                                            ClusterLayoutSearch layoutSearch) {
     NodeLayoutGenerator nodeLayoutGenerator =
       new NodeLayoutGenerator(clusterTemplate, serviceNames, hardwareTypeMap.keySet(), imageTypeMap.keySet());
 
@@ -359,11 +374,9 @@ public class Solver {
     List<NodeLayout> traversalOrder = nodeLayoutGenerator.generateNodeLayoutPreferences();
 
     long start = System.nanoTime();
-    ClusterLayoutFinder layoutFinder =
-      new ClusterLayoutFinder(traversalOrder, clusterTemplate, serviceNames, numMachines);
-    int[] clusterlayout = layoutFinder.findValidNodeCounts();
+    int[] clusterlayout = layoutSearch.findValidNodeCounts(traversalOrder, clusterTemplate, serviceNames, numMachines);
     long dur = (System.nanoTime() - start) / 1000000;
-    LOG.debug("took {} ms to find cluster layout", dur);
+    LOG.debug("took {} ms to find cluster layout using {} search", dur, layoutSearch.getType());
 
     if (clusterlayout == null) {
       return null;
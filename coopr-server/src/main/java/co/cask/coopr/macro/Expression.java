@@ -18,6 +18,7 @@ package co.cask.coopr.macro;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.macro.eval.Evaluator;
+import co.cask.coopr.macro.eval.SelfEvaluator;
 import com.google.common.base.Objects;
 
 import java.util.List;
@@ -80,6 +81,15 @@ public class Expression {
     return builder.toString();
   }
 
+  /**
+   * Whether the expression evaluates differently for different nodes of the same cluster.
+   *
+   * @return true if the result depends on the node the expression is evaluated for, false if not.
+   */
+  public boolean isNodeSpecific() {
+    return evaluator instanceof SelfEvaluator;
+  }
+
   /**
    * Apply the format string to a substitute string and append it to a string builder.
    *
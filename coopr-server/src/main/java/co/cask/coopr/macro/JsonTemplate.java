@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.macro;
+
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JSON tree with all macros parsed ahead of time, so that it can be expanded for many nodes without parsing the
+ * macros or walking the parts of the tree without macros again. Expanding a template for a node gives the same result
+ * as {@link Expander#expand(JsonElement, java.util.List, Cluster, Set, Node)} without a path.
+ *
+ * <pre>
+ *   JsonTemplate.ClusterExpansion expansion = JsonTemplate.compile(config).forCluster(cluster, clusterNodes);
+ *   for (Node node : nodes) {
+ *     JsonElement expanded = expansion.expand(node);
+ *   }
+ * </pre>
+ */
+public final class JsonTemplate {
+  private final JsonElement json;
+  // null if there are no macros in the json
+  private final Slot root;
+
+  private JsonTemplate(JsonElement json, Slot root) {
+    this.json = json;
+    this.root = root;
+  }
+
+  /**
+   * Parse all macros in the given JSON tree.
+   *
+   * @param json JSON tree to compile.
+   * @return Compiled template for the JSON tree.
+   * @throws SyntaxException if a macro is not wellformed.
+   */
+  public static JsonTemplate compile(JsonElement json) throws SyntaxException {
+    return new JsonTemplate(json, compileSlot(json));
+  }
+
+  /**
+   * Get an expansion of the template for the given cluster. Macros that do not depend on the node they are expanded
+   * for are only evaluated once per expansion.
+   *
+   * @param cluster Cluster to expand macros for.
+   * @param clusterNodes Nodes of the cluster to expand macros for.
+   * @return Expansion of the template for the cluster.
+   */
+  public ClusterExpansion forCluster(Cluster cluster, Set<Node> clusterNodes) {
+    return new ClusterExpansion(cluster, clusterNodes);
+  }
+
+  /**
+   * Expansion of a template for a specific cluster. Results of macros that are the same for every node of the cluster
+   * are remembered, so an expansion should not be used after the cluster or its nodes change. Not thread safe.
+   */
+  public final class ClusterExpansion {
+    private final Cluster cluster;
+    private final Set<Node> clusterNodes;
+    private final Map<Expression, String> clusterResults;
+
+    private ClusterExpansion(Cluster cluster, Set<Node> clusterNodes) {
+      this.cluster = cluster;
+      this.clusterNodes = clusterNodes;
+      this.clusterResults = Maps.newHashMap();
+    }
+
+    /**
+     * Expand all macros in the template for the given node. If a macro cannot be expanded due to the cluster object
+     * missing certain data, that macro will be left unexpanded.
+     *
+     * @param node Node to expand macros for.
+     * @return a new JSON tree if any expansion took place, and the original JSON tree otherwise.
+     * @throws IncompleteClusterException if the cluster does not have the meta data to expand all macros.
+     */
+    public JsonElement expand(Node node) throws IncompleteClusterException {
+      return root == null ? json : root.expand(this, node);
+    }
+
+    private String evaluate(Expression expression, Node node) throws IncompleteClusterException {
+      if (expression.isNodeSpecific()) {
+        return expression.evaluate(cluster, clusterNodes, node);
+      }
+      if (clusterResults.containsKey(expression)) {
+        return clusterResults.get(expression);
+      }
+      String result = expression.evaluate(cluster, clusterNodes, node);
+      clusterResults.put(expression, result);
+      return result;
+    }
+  }
+
+  // returns null if there are no macros in the element
+  private static Slot compileSlot(JsonElement json) throws SyntaxException {
+    if (json.isJsonPrimitive()) {
+      JsonPrimitive primitive = json.getAsJsonPrimitive();
+      return primitive.isString() ? compileString(primitive) : null;
+    }
+    if (json.isJsonArray()) {
+      JsonArray array = json.getAsJsonArray();
+      Slot[] children = new Slot[array.size()];
+      boolean hasMacros = false;
+      for (int i = 0; i < children.length; i++) {
+        children[i] = compileSlot(array.get(i));
+        hasMacros = hasMacros || children[i] != null;
+      }
+      return hasMacros ? new ArraySlot(array, children) : null;
+    }
+    if (json.isJsonObject()) {
+      JsonObject object = json.getAsJsonObject();
+      Map<String, Slot> children = Maps.newHashMap();
+      for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        Slot child = compileSlot(entry.getValue());
+        if (child != null) {
+          children.put(entry.getKey(), child);
+        }
+      }
+      return children.isEmpty() ? null : new ObjectSlot(object, children);
+    }
+    return null;
+  }
+
+  // same scanning as Expander#expand(String, Cluster, Set, Node)
+  private static Slot compileString(JsonPrimitive primitive) throws SyntaxException {
+    String text = primitive.getAsString();
+    List<String> texts = Lists.newArrayList();
+    List<Expression> expressions = Lists.newArrayList();
+    int pos = 0;
+    while (pos < text.length()) {
+      int pos1 = Expander.findNextPercent(text, pos);
+      if (pos1 < 0) {
+        break;
+      }
+      int pos2 = Expander.findNextPercent(text, pos1 + 1);
+      if (pos2 < 0) {
+        break;
+      }
+      texts.add(text.substring(pos, pos1));
+      expressions.add(new Parser(text.substring(pos1 + 1, pos2)).parse());
+      pos = pos2 + 1;
+    }
+    if (expressions.isEmpty()) {
+      return null;
+    }
+    texts.add(pos < text.length() ? text.substring(pos) : "");
+    return new StringSlot(primitive, texts, expressions);
+  }
+
+  /**
+   * Part of the JSON tree that contains macros.
+   */
+  private interface Slot {
+    // returns the original element if no expansion happened
+    JsonElement expand(JsonTemplate.ClusterExpansion expansion, Node node) throws IncompleteClusterException;
+  }
+
+  /**
+   * String with macros, stored as the text between macros and the parsed macros.
+   */
+  private static final class StringSlot implements Slot {
+    private final JsonPrimitive original;
+    // one more text than there are expressions
+    private final List<String> texts;
+    private final List<Expression> expressions;
+
+    private StringSlot(JsonPrimitive original, List<String> texts, List<Expression> expressions) {
+      this.original = original;
+      this.texts = ImmutableList.copyOf(texts);
+      this.expressions = ImmutableList.copyOf(expressions);
+    }
+
+    @Override
+    public JsonElement expand(JsonTemplate.ClusterExpansion expansion, Node node) throws IncompleteClusterException {
+      StringBuilder builder = new StringBuilder();
+      boolean expansionHappened = false;
+      for (int i = 0; i < expressions.size(); i++) {
+        builder.append(texts.get(i));
+        String result = expansion.evaluate(expressions.get(i), node);
+        if (result != null) {
+          builder.append(result);
+          expansionHappened = true;
+        }
+      }
+      if (!expansionHappened) {
+        return original;
+      }
+      builder.append(texts.get(expressions.size()));
+      return new JsonPrimitive(builder.toString());
+    }
+  }
+
+  /**
+   * Array with macros in some of its elements.
+   */
+  private static final class ArraySlot implements Slot {
+    private final JsonArray original;
+    // null for elements without macros
+    private final Slot[] children;
+
+    private ArraySlot(JsonArray original, Slot[] children) {
+      this.original = original;
+      this.children = children;
+    }
+
+    @Override
+    public JsonElement expand(JsonTemplate.ClusterExpansion expansion, Node node) throws IncompleteClusterException {
+      JsonArray array = new JsonArray();
+      boolean expansionHappened = false;
+      for (int i = 0; i < children.length; i++) {
+        JsonElement element = original.get(i);
+        if (children[i] != null) {
+          JsonElement expanded = children[i].expand(expansion, node);
+          expansionHappened = expansionHappened || expanded != element;
+          element = expanded;
+        }
+        array.add(element);
+      }
+      return expansionHappened ? array : original;
+    }
+  }
+
+  /**
+   * Object with macros in some of its values.
+   */
+  private static final class ObjectSlot implements Slot {
+    private final JsonObject original;
+    // only contains the keys with macros in their values
+    private final Map<String, Slot> children;
+
+    private ObjectSlot(JsonObject original, Map<String, Slot> children) {
+      this.original = original;
+      this.children = children;
+    }
+
+    @Override
+    public JsonElement expand(JsonTemplate.ClusterExpansion expansion, Node node) throws IncompleteClusterException {
+      Map<String, JsonElement> expandedValues = null;
+      for (Map.Entry<String, Slot> child : children.entrySet()) {
+        JsonElement value = original.get(child.getKey());
+        JsonElement expanded = child.getValue().expand(expansion, node);
+        if (expanded != value) {
+          if (expandedValues == null) {
+            expandedValues = Maps.newHashMap();
+          }
+          expandedValues.put(child.getKey(), expanded);
+        }
+      }
+      if (expandedValues == null) {
+        return original;
+      }
+      // keep the order of the original entries
+      JsonObject object = new JsonObject();
+      for (Map.Entry<String, JsonElement> entry : original.entrySet()) {
+        JsonElement expanded = expandedValues.get(entry.getKey());
+        object.add(entry.getKey(), expanded == null ? entry.getValue() : expanded);
+      }
+      return object;
+    }
+  }
+}
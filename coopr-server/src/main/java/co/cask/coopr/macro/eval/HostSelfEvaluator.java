@@ -26,7 +26,7 @@ import java.util.Set;
 /**
  * Evaluates a macro that expands to the hostname of the specified node.
  */
-public class HostSelfEvaluator implements Evaluator {
+public class HostSelfEvaluator implements SelfEvaluator {
 
   @Override
   public List<String> evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException {
@@ -73,11 +73,12 @@ public class HostServiceEvaluator extends ServiceEvaluator {
 
     HostServiceEvaluator that = (HostServiceEvaluator) o;
 
-    return Objects.equal(instanceNum, that.instanceNum);
+    return super.equals(o) &&
+      Objects.equal(instanceNum, that.instanceNum);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(instanceNum);
+    return Objects.hashCode(super.hashCode(), instanceNum);
   }
 }
@@ -27,7 +27,7 @@ import java.util.Set;
 /**
  * Evaluates a macro that expands to an ip address on the specified node.
  */
-public class IPSelfEvaluator implements Evaluator {
+public class IPSelfEvaluator implements SelfEvaluator {
   private final String ipType;
 
   public IPSelfEvaluator(String ipType) {
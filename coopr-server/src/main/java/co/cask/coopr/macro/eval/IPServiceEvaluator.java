@@ -74,12 +74,13 @@ public class IPServiceEvaluator extends ServiceEvaluator {
 
     IPServiceEvaluator that = (IPServiceEvaluator) o;
 
-    return Objects.equal(ipType, that.ipType) &&
+    return super.equals(o) &&
+      Objects.equal(ipType, that.ipType) &&
       Objects.equal(instanceNum, that.instanceNum);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(ipType, instanceNum);
+    return Objects.hashCode(super.hashCode(), ipType, instanceNum);
   }
 }
@@ -28,7 +28,7 @@ import java.util.Set;
  * example, if there are 3 zookeeper nodes in the cluster, %instance.self.service.zookeeper% will evaluate to 1
  * for the first node with zookeeper, 2 for the second node with zookeeper, and 3 for the last node with zookeeper.
  */
-public class ServiceInstanceEvaluator extends ServiceEvaluator {
+public class ServiceInstanceEvaluator extends ServiceEvaluator implements SelfEvaluator {
 
   public ServiceInstanceEvaluator(String serviceName) {
     super(serviceName);
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+/**
+ * Counters for the entity cache used for JMX.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class EntityCacheStats extends StatCounter<EntityCacheStats.Event> {
+
+  /**
+   * Things that happen in the entity cache.
+   */
+  public enum Event {
+    HIT,
+    MISS,
+    INVALIDATION
+  }
+
+  public long getHits() {
+    return getValue(Event.HIT);
+  }
+
+  public long getMisses() {
+    return getValue(Event.MISS);
+  }
+
+  public long getInvalidations() {
+    return getValue(Event.INVALIDATION);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import co.cask.coopr.common.zookeeper.IdService;
+
+/**
+ * Counters for different types of ids used for JMX.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class IdStats extends StatCounter<IdService.Type> {
+  public long getCluster() {
+    return getValue(IdService.Type.CLUSTER);
+  }
+
+  public long getJob() {
+    return getValue(IdService.Type.JOB);
+  }
+
+  public long getTask() {
+    return getValue(IdService.Type.TASK);
+  }
+
+  public long getPluginResource() {
+    return getValue(IdService.Type.PLUGIN_RESOURCE);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stats for a single job scheduler worker used for JMX. Latency is measured from the time a job element is handed
+ * to the worker until the worker is done with it, so it includes the time spent waiting in the worker's backlog.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class JobWorkerStats {
+  private final AtomicLong backlog;
+  private final AtomicLong processed;
+  private final AtomicLong totalLatencyMillis;
+  private final AtomicLong maxLatencyMillis;
+
+  public JobWorkerStats() {
+    this.backlog = new AtomicLong(0);
+    this.processed = new AtomicLong(0);
+    this.totalLatencyMillis = new AtomicLong(0);
+    this.maxLatencyMillis = new AtomicLong(0);
+  }
+
+  public void elementDispatched() {
+    backlog.incrementAndGet();
+  }
+
+  public void elementReleased() {
+    backlog.decrementAndGet();
+  }
+
+  public void elementProcessed(long latencyMillis) {
+    backlog.decrementAndGet();
+    processed.incrementAndGet();
+    totalLatencyMillis.addAndGet(latencyMillis);
+    long max = maxLatencyMillis.get();
+    while (latencyMillis > max && !maxLatencyMillis.compareAndSet(max, latencyMillis)) {
+      max = maxLatencyMillis.get();
+    }
+  }
+
+  public long getBacklog() {
+    return backlog.get();
+  }
+
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  public long getAverageLatencyMillis() {
+    long count = processed.get();
+    return count == 0 ? 0 : totalLatencyMillis.get() / count;
+  }
+
+  public long getMaxLatencyMillis() {
+    return maxLatencyMillis.get();
+  }
+}
@@ -15,13 +15,21 @@
  */
 package co.cask.coopr.management;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import co.cask.coopr.common.queue.QueueMetrics;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Collects Server stats for JMX.
  */
 public class ServerStats implements ServerStatsMXBean {
-  private final AtomicInteger queueLength;
+  // last known task queue metrics by tenant id
+  private final ConcurrentMap<String, QueueMetrics> taskQueueMetrics;
 
   private final ProvisionerStats provisionerStats;
   private final ProvisionerStats failedProvisionerStats;
@@ -32,8 +40,15 @@ public class ServerStats implements ServerStatsMXBean {
   private final ClusterStats failedClusterStats;
   private final ClusterStats successfulClusterStats;
 
+  private final IdStats idBlockRefillStats;
+  private final IdStats idBlockConflictStats;
+
+  private final EntityCacheStats entityCacheStats;
+
+  private volatile List<JobWorkerStats> jobWorkerStats;
+
   public ServerStats() {
-    this.queueLength = new AtomicInteger(0);
+    this.taskQueueMetrics = Maps.newConcurrentMap();
 
     this.provisionerStats = new ProvisionerStats();
     this.failedProvisionerStats = new ProvisionerStats();
@@ -43,11 +58,27 @@ public class ServerStats implements ServerStatsMXBean {
     this.clusterStats = new ClusterStats();
     this.failedClusterStats = new ClusterStats();
     this.successfulClusterStats = new ClusterStats();
+
+    this.idBlockRefillStats = new IdStats();
+    this.idBlockConflictStats = new IdStats();
+
+    this.entityCacheStats = new EntityCacheStats();
+
+    this.jobWorkerStats = ImmutableList.of();
   }
 
   @Override
   public long getQueueLength() {
-    return queueLength.get();
+    long queueLength = 0;
+    for (QueueMetrics metrics : taskQueueMetrics.values()) {
+      queueLength += metrics.getTotal();
+    }
+    return queueLength;
+  }
+
+  @Override
+  public Map<String, QueueMetrics> getTaskQueueMetrics() {
+    return ImmutableMap.copyOf(taskQueueMetrics);
   }
 
   @Override
@@ -85,7 +116,35 @@ public class ServerStats implements ServerStatsMXBean {
     return successfulClusterStats;
   }
 
-  public void setQueueLength(int queueLength) {
-    this.queueLength.set(queueLength);
+  @Override
+  public IdStats getIdBlockRefillStats() {
+    return idBlockRefillStats;
+  }
+
+  @Override
+  public IdStats getIdBlockConflictStats() {
+    return idBlockConflictStats;
+  }
+
+  @Override
+  public EntityCacheStats getEntityCacheStats() {
+    return entityCacheStats;
+  }
+
+  @Override
+  public List<JobWorkerStats> getJobWorkerStats() {
+    return jobWorkerStats;
+  }
+
+  public void setJobWorkerStats(List<JobWorkerStats> jobWorkerStats) {
+    this.jobWorkerStats = ImmutableList.copyOf(jobWorkerStats);
+  }
+
+  public void setTaskQueueMetrics(String tenantId, QueueMetrics metrics) {
+    taskQueueMetrics.put(tenantId, metrics);
+  }
+
+  public void removeTaskQueueMetrics(String tenantId) {
+    taskQueueMetrics.remove(tenantId);
   }
 }
@@ -15,12 +15,19 @@
  */
 package co.cask.coopr.management;
 
+import co.cask.coopr.common.queue.QueueMetrics;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * MXBean for Server Stats.
  */
 public interface ServerStatsMXBean {
   long getQueueLength();
 
+  Map<String, QueueMetrics> getTaskQueueMetrics();
+
   ProvisionerStats getProvisionerStats();
 
   ProvisionerStats getFailedProvisionerStats();
@@ -34,5 +41,13 @@ public interface ServerStatsMXBean {
   ClusterStats getFailedClusterStats();
 
   ClusterStats getSuccessfulClusterStats();
+
+  IdStats getIdBlockRefillStats();
+
+  IdStats getIdBlockConflictStats();
+
+  EntityCacheStats getEntityCacheStats();
+
+  List<JobWorkerStats> getJobWorkerStats();
 }
 
@@ -16,15 +16,17 @@
 
 package co.cask.coopr.metrics;
 
-import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.spec.ProvisionerAction;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import co.cask.coopr.store.metrics.NodeUsageRollup;
+import co.cask.coopr.store.metrics.NodeUsageStore;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
 import org.apache.commons.lang3.time.DateUtils;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -46,135 +48,81 @@ public class MetricService {
   private static final long YEAR = MONTH * 12;
 
   private final ClusterStore clusterStore;
+  private final NodeUsageStore nodeUsageStore;
+  private final boolean useRollups;
 
   public MetricService(ClusterStore clusterStore) {
+    this(clusterStore, null, false);
+  }
+
+  public MetricService(ClusterStore clusterStore, NodeUsageStore nodeUsageStore, boolean useRollups) {
     this.clusterStore = clusterStore;
+    this.nodeUsageStore = nodeUsageStore;
+    this.useRollups = useRollups;
   }
 
   /**
    * Calculate statistics of nodes usage for given {@link ClusterTaskFilter}.
    * The start and end times are inclusive.
-   * Loads all tasks with CREATE or DELETE {@link ProvisionerAction}. Then, for each node, calculates node live time:
-   * finished time of CREATE task to finished time of DELETE task or finished time of CREATE task to current time.
-   * If required, then overlays {@code filter}'s start and end date.
+   * Reads tasks with CREATE or DELETE {@link ProvisionerAction} in order of status time. Then, for each node,
+   * calculates node live time: finished time of CREATE task to finished time of DELETE task or finished time of CREATE
+   * task to current time. If required, then overlays {@code filter}'s start and end date.
+   * Tasks are not kept in memory, so memory used depends on the number of nodes alive at once and the number of
+   * intervals in the time range.
+   * If rollups are used, usage grouped by periodicity and not filtered by cluster is instead computed from the hourly
+   * or daily rollups of the {@link NodeUsageStore}, which takes a few queries regardless of the number of tasks.
    *
    * @param filter the filter
    * @return {@link TimeSeries} that presents node live time usage
    */
   public TimeSeries getNodesUsage(ClusterTaskFilter filter) throws IOException {
-    //TODO: implement this functionality without keeping all tasks in memory.
-    List<ClusterTask> tasks = clusterStore.getClusterTasks(filter);
-    Long start = filter.getStart();
-    Long end = filter.getEnd();
-    TimeUnit timeUnit = filter.getTimeUnit();
-    if (tasks.isEmpty()) {
-      long startTime = start != null ? start : 0;
-      return new TimeSeries(startTime, end != null ? end : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
-                            Arrays.asList(new Interval(startTime)));
-    }
-    List<ClusterTask> createTasks = getTasksByName(tasks, ProvisionerAction.CREATE);
-    List<ClusterTask> deleteTasks = getTasksByName(tasks, ProvisionerAction.DELETE);
-    long startDate = start != null ? TimeUnit.SECONDS.toMillis(start) : createTasks.isEmpty() ?
-      0 : createTasks.get(0).getStatusTime();
-    long endDate = end != null ? TimeUnit.SECONDS.toMillis(end) : deleteTasks.isEmpty() ?
-      System.currentTimeMillis() : deleteTasks.get(deleteTasks.size() - 1).getStatusTime();
+    Long start = filter.getStart() != null ? TimeUnit.SECONDS.toMillis(filter.getStart()) : null;
+    Long end = filter.getEnd() != null ? TimeUnit.SECONDS.toMillis(filter.getEnd()) : null;
     Periodicity periodicity = filter.getPeriodicity();
-    long period;
-    if (periodicity == null) {
-      period = endDate;
-    } else {
-      period = getTimeStamp(periodicity);
-    }
-    final List<Interval> intervals = getIntervalList(startDate, endDate, period);
-    for (ClusterTask createTask : createTasks) {
-      long deleteTaskTime = getDeleteTaskTime(deleteTasks, createTask);
-      long localStart = Math.max(createTask.getStatusTime(), startDate);
-      long localEnd = Math.min(deleteTaskTime, endDate);
-      int currentIndex = getNearestIndex(intervals, localStart);
-      Interval current = intervals.get(currentIndex);
-      long currentTimeInMillis = TimeUnit.SECONDS.toMillis(current.getTime());
-      while (currentTimeInMillis + period < localEnd) {
-        long increaseTime = localStart < currentTimeInMillis ? period : period + currentTimeInMillis - localStart;
-        current.increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
-        current = intervals.get(++currentIndex);
-        currentTimeInMillis = TimeUnit.SECONDS.toMillis(current.getTime());
-      }
-      long increaseTime = localStart < currentTimeInMillis ? localEnd - currentTimeInMillis : localEnd - localStart;
-      if (increaseTime > 0) {
-        current.increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
+    Long period = periodicity == null ? null : getTimeStamp(periodicity);
+    if (useRollups && period != null && filter.getClusterId() == null) {
+      TimeSeries timeSeries = getNodesUsageFromRollups(filter, start, end, period, System.currentTimeMillis());
+      if (timeSeries != null) {
+        return timeSeries;
       }
     }
-    return new TimeSeries(TimeUnit.MILLISECONDS.toSeconds(startDate),
-                          TimeUnit.MILLISECONDS.toSeconds(endDate), intervals);
+    NodeUsageCollector collector = new NodeUsageCollector(start, end, period, filter.getTimeUnit());
+    clusterStore.visitClusterTasks(filter, collector);
+    return collector.getTimeSeries(System.currentTimeMillis());
   }
 
-  private long getDeleteTaskTime(List<ClusterTask> deleteTasks, ClusterTask createTask) {
-    ClusterTask result = null;
-    for (ClusterTask deleteTask : deleteTasks) {
-      if (createTask.getClusterId().equals(deleteTask.getClusterId()) &&
-        createTask.getNodeId().equals(deleteTask.getNodeId())) {
-        if (result == null) {
-          result = deleteTask;
-        } else if (deleteTask.getStatusTime() < result.getStatusTime()) {
-          result = deleteTask;
-        }
-      }
+  // returns null if there are no nodes, in which case there are no tasks to read through either
+  private TimeSeries getNodesUsageFromRollups(ClusterTaskFilter filter, Long start, Long end, long period, long now)
+    throws IOException {
+    Long firstCreateTime = nodeUsageStore.getFirstCreateTime(filter);
+    if (firstCreateTime == null) {
+      return null;
     }
-    if (result == null) {
-      return System.currentTimeMillis();
-    }
-    return result.getStatusTime();
-  }
+    long startDate = start != null ? start : firstCreateTime;
+    Long lastDeleteTime = nodeUsageStore.getLastDeleteTime(filter);
+    long endDate = end != null ? end : lastDeleteTime != null ? lastDeleteTime : now;
 
-  private List<ClusterTask> getTasksByName(List<ClusterTask> tasks, ProvisionerAction name) {
-    List<ClusterTask> result = new ArrayList<ClusterTask>();
-    for (ClusterTask task : tasks) {
-      if (task.getTaskName().equals(name)) {
-        result.add(task);
-      }
+    List<Long> boundaries = Lists.newArrayList(startDate);
+    for (long boundary = startDate - startDate % period + period; boundary < endDate; boundary += period) {
+      boundaries.add(boundary);
     }
-    return result;
-  }
+    boundaries.add(endDate);
 
-  /**
-   * Retrieves nearest smaller {@link Interval} from {@code intervals} for {@code key}.
-   *
-   * @param intervals the list of {@link Interval}s
-   * @param key the key
-   * @return nearest smaller {@link Interval}
-   */
-  private int getNearestIndex(List<Interval> intervals, long key) {
-    int index = -1;
-    for (Interval value : intervals) {
-      if (TimeUnit.SECONDS.toMillis(value.getTime()) <= key) {
-        index++;
-      } else {
-        break;
-      }
+    // all periods are multiples of a day, except for an hour
+    long rollupPeriod = period % NodeUsageStore.DAILY == 0 ? NodeUsageStore.DAILY : NodeUsageStore.HOURLY;
+    long usageEnd = Math.max(startDate, Math.min(endDate, now));
+    RollupWalker walker = new RollupWalker(filter, rollupPeriod, startDate - startDate % rollupPeriod, usageEnd);
+    List<Interval> intervals = Lists.newArrayListWithCapacity(boundaries.size() - 1);
+    long previousUsage = walker.getUsageBefore(startDate);
+    for (int i = 1; i < boundaries.size(); i++) {
+      long usage = walker.getUsageBefore(Math.max(startDate, Math.min(boundaries.get(i), usageEnd)));
+      Interval interval = new Interval(TimeUnit.MILLISECONDS.toSeconds(boundaries.get(i - 1)));
+      interval.increaseValue(filter.getTimeUnit().convert(Math.max(0, usage - previousUsage), TimeUnit.MILLISECONDS));
+      intervals.add(interval);
+      previousUsage = usage;
     }
-    return index;
-  }
-
-  /**
-   * Creates {@link List} of {@code Interval}s.
-   *
-   * @param start start of date period
-   * @param end end of date period
-   * @param period date period length in milliseconds
-   * @return {@link List} of {@code Interval}s
-   */
-  private List<Interval> getIntervalList(long start, long end, long period) {
-    List<Interval> intervals = new ArrayList<Interval>();
-    long currentStart = start;
-    long nextStart = start - start%period + period;
-    nextStart = nextStart < end ? nextStart : end;
-    while (nextStart < end) {
-      intervals.add(new Interval(TimeUnit.MILLISECONDS.toSeconds(currentStart)));
-      currentStart = nextStart;
-      nextStart = currentStart + period < end ? currentStart + period : end;
-    }
-    intervals.add(new Interval(TimeUnit.MILLISECONDS.toSeconds(currentStart)));
-    return intervals;
+    return new TimeSeries(TimeUnit.MILLISECONDS.toSeconds(startDate), TimeUnit.MILLISECONDS.toSeconds(endDate),
+                          intervals);
   }
 
   private long getTimeStamp(Periodicity periodicity) {
@@ -191,4 +139,41 @@ public class MetricService {
         return YEAR;
     }
   }
+
+  /**
+   * Computes all node usage before increasing points in time, by walking forward through rollups from the sum of all
+   * rollups before the first point. Parts of rollup periods are read from node lifetimes.
+   */
+  private final class RollupWalker {
+    private final ClusterTaskFilter filter;
+    private final long rollupPeriod;
+    private final PeekingIterator<NodeUsageRollup> rollups;
+    // start of the next rollup period to walk through, and the nodes alive and usage before it
+    private long time;
+    private long liveNodes;
+    private long usage;
+
+    private RollupWalker(ClusterTaskFilter filter, long rollupPeriod, long start, long end) throws IOException {
+      this.filter = filter;
+      this.rollupPeriod = rollupPeriod;
+      this.rollups = Iterators.peekingIterator(nodeUsageStore.getRollups(filter, rollupPeriod, start, end).iterator());
+      NodeUsageRollup total = nodeUsageStore.getRollupTotal(filter, rollupPeriod, start);
+      this.time = start;
+      this.liveNodes = total.getNodeDelta();
+      this.usage = total.getNodeMillis();
+    }
+
+    private long getUsageBefore(long point) throws IOException {
+      long periodStart = point - point % rollupPeriod;
+      while (rollups.hasNext() && rollups.peek().getPeriodStart() < periodStart) {
+        NodeUsageRollup rollup = rollups.next();
+        usage += liveNodes * (rollup.getPeriodStart() + rollupPeriod - time) + rollup.getNodeMillis();
+        liveNodes += rollup.getNodeDelta();
+        time = rollup.getPeriodStart() + rollupPeriod;
+      }
+      usage += liveNodes * (periodStart - time);
+      time = periodStart;
+      return point == periodStart ? usage : usage + nodeUsageStore.getUsage(filter, periodStart, point);
+    }
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.metrics;
+
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.cluster.ClusterTaskVisitor;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates node live time into {@link Interval}s from completed CREATE and DELETE tasks, visited in order of
+ * status time. Creates are held until the first delete of the same node is seen, so memory used is bounded by the
+ * number of nodes alive at once and the number of intervals in the time range, not by the number of tasks.
+ */
+final class NodeUsageCollector implements ClusterTaskVisitor {
+  private final Long start;
+  private final Long end;
+  // null if all usage goes into a single interval
+  private final Long period;
+  private final TimeUnit timeUnit;
+  // status times of completed creates whose node has not been deleted yet, keyed by cluster and node id
+  private final ListMultimap<String, Long> liveNodes;
+  private final List<Interval> intervals;
+  private boolean hasTasks;
+  private boolean started;
+  private long startDate;
+  private long firstBoundary;
+  private Long lastDeleteTime;
+
+  /**
+   * Create a collector for the given time range.
+   *
+   * @param start start of the range in milliseconds, or null to start at the first create
+   * @param end end of the range in milliseconds, or null to end at the last delete
+   * @param period length of each interval in milliseconds, or null for a single interval
+   * @param timeUnit unit of the values of the intervals
+   */
+  NodeUsageCollector(Long start, Long end, Long period, TimeUnit timeUnit) {
+    this.start = start;
+    this.end = end;
+    this.period = period;
+    this.timeUnit = timeUnit;
+    this.liveNodes = ArrayListMultimap.create();
+    this.intervals = Lists.newArrayList();
+    if (start != null) {
+      startAt(start);
+    }
+  }
+
+  @Override
+  public void visit(ClusterTask task) {
+    hasTasks = true;
+    String nodeKey = task.getClusterId() + "/" + task.getNodeId();
+    if (task.getTaskName() == ProvisionerAction.CREATE) {
+      if (!started) {
+        startAt(task.getStatusTime());
+      }
+      liveNodes.put(nodeKey, task.getStatusTime());
+    } else if (task.getTaskName() == ProvisionerAction.DELETE) {
+      lastDeleteTime = task.getStatusTime();
+      for (long createTime : liveNodes.removeAll(nodeKey)) {
+        addUsage(createTime, task.getStatusTime());
+      }
+    }
+  }
+
+  /**
+   * Get the usage of all tasks visited. Nodes that have not been deleted are counted as alive until the given time.
+   *
+   * @param now current time in milliseconds
+   * @return {@link TimeSeries} that presents node live time usage
+   */
+  TimeSeries getTimeSeries(long now) {
+    if (!hasTasks) {
+      long startTime = start != null ? TimeUnit.MILLISECONDS.toSeconds(start) : 0;
+      return new TimeSeries(startTime, end != null ? TimeUnit.MILLISECONDS.toSeconds(end) :
+        TimeUnit.MILLISECONDS.toSeconds(now), Arrays.asList(new Interval(startTime)));
+    }
+    if (!started) {
+      startAt(0);
+    }
+    long endDate = end != null ? end : lastDeleteTime != null ? lastDeleteTime : now;
+    for (long createTime : liveNodes.values()) {
+      addUsage(createTime, Math.min(now, endDate));
+    }
+    liveNodes.clear();
+    getInterval(0);
+    while (period != null && getIntervalStart(intervals.size()) < endDate) {
+      getInterval(intervals.size());
+    }
+    return new TimeSeries(TimeUnit.MILLISECONDS.toSeconds(startDate), TimeUnit.MILLISECONDS.toSeconds(endDate),
+                          Lists.newArrayList(intervals));
+  }
+
+  private void startAt(long startDate) {
+    this.started = true;
+    this.startDate = startDate;
+    if (period != null) {
+      this.firstBoundary = startDate - startDate % period + period;
+    }
+  }
+
+  private void addUsage(long createTime, long deleteTime) {
+    long localStart = Math.max(createTime, startDate);
+    long localEnd = end == null ? deleteTime : Math.min(deleteTime, end);
+    if (localStart >= localEnd) {
+      return;
+    }
+    if (period == null) {
+      getInterval(0).increaseValue(timeUnit.convert(localEnd - localStart, TimeUnit.MILLISECONDS));
+      return;
+    }
+    int currentIndex = localStart < firstBoundary ? 0 : 1 + (int) ((localStart - firstBoundary) / period);
+    long currentStart = getIntervalStart(currentIndex);
+    // the first interval is shorter than a period unless the start is on a period boundary
+    long currentEnd = getIntervalStart(currentIndex + 1);
+    while (currentEnd < localEnd) {
+      long increaseTime = currentEnd - Math.max(localStart, currentStart);
+      getInterval(currentIndex).increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
+      currentIndex++;
+      currentStart = currentEnd;
+      currentEnd = getIntervalStart(currentIndex + 1);
+    }
+    long increaseTime = localEnd - Math.max(localStart, currentStart);
+    getInterval(currentIndex).increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
+  }
+
+  // intervals are created as usage reaches them, since the end of the range may not be known yet
+  private Interval getInterval(int index) {
+    while (intervals.size() <= index) {
+      intervals.add(new Interval(TimeUnit.MILLISECONDS.toSeconds(getIntervalStart(intervals.size()))));
+    }
+    return intervals.get(index);
+  }
+
+  private long getIntervalStart(int index) {
+    return index == 0 ? startDate : firstBoundary + (index - 1) * period;
+  }
+}
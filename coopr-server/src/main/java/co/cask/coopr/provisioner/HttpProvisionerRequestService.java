@@ -5,6 +5,11 @@ import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.apache.http.client.config.RequestConfig;
@@ -14,27 +19,34 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Service that makes http calls with retries to provisioners for different provisioner operations, such as
- * deleting a tenant or putting tenant information.
+ * deleting a tenant or putting tenant information. Asynchronous requests are made by a bounded pool of threads
+ * that share a pool of keep-alive connections. Stopping the service waits for requests in progress to finish, then
+ * closes the threads and connections.
  */
-public class HttpProvisionerRequestService implements ProvisionerRequestService {
+public class HttpProvisionerRequestService extends AbstractIdleService implements ProvisionerRequestService {
   private static final Logger LOG  = LoggerFactory.getLogger(HttpProvisionerRequestService.class);
   private static final String BASE_TENANT_PATH = Constants.API_BASE + "/tenants/";
   private final int maxRetries;
   private final long msBetweenRetries;
+  private final long requestTimeoutMs;
   private final CloseableHttpClient httpClient;
+  private final ListeningExecutorService executor;
   private final Gson gson;
 
   @Inject
@@ -43,16 +55,49 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
     this.msBetweenRetries = conf.getLong(Constants.PROVISIONER_REQUEST_MS_BETWEEN_RETRIES);
     int socketTimeout = conf.getInt(Constants.PROVISIONER_REQUEST_SOCKET_TIMEOUT_MS);
     int connectTimeout = conf.getInt(Constants.PROVISIONER_REQUEST_CONNECT_TIMEOUT_MS);
+    int numThreads = conf.getInt(Constants.PROVISIONER_REQUEST_THREADS);
+    this.requestTimeoutMs = socketTimeout + connectTimeout;
 
+    // connections are kept alive and reused, with one connection for each thread that can be making requests
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(numThreads);
+    connectionManager.setDefaultMaxPerRoute(numThreads);
+    connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build());
     this.httpClient = HttpClients.custom()
-      .setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE)
-      .setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build())
+      .setConnectionManager(connectionManager)
       .setDefaultRequestConfig(
-        RequestConfig.custom().setSocketTimeout(socketTimeout).setConnectTimeout(connectTimeout).build())
+        RequestConfig.custom()
+          .setSocketTimeout(socketTimeout)
+          .setConnectTimeout(connectTimeout)
+          // provisioners may have closed an idle connection, for example if they were restarted
+          .setStaleConnectionCheckEnabled(true)
+          .build())
       .build();
+    this.executor = MoreExecutors.listeningDecorator(
+      Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder()
+        .setNameFormat("provisioner-request-%d")
+        .setDaemon(true)
+        .build()));
     this.gson = gson;
   }
 
+  @Override
+  protected void startUp() throws Exception {
+    // the client and threads are ready to use once constructed
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    executor.shutdown();
+    // requests still in progress are given as long as one attempt can take before they are interrupted
+    if (!executor.awaitTermination(requestTimeoutMs, TimeUnit.MILLISECONDS)) {
+      LOG.warn("Provisioner requests still in progress after {} ms, interrupting them.", requestTimeoutMs);
+      executor.shutdownNow();
+    }
+    // also closes the connection manager and its connections
+    httpClient.close();
+  }
+
   @Override
   public boolean deleteTenant(Provisioner provisioner, String tenantId) {
     HttpDelete delete = new HttpDelete(getTenantURL(provisioner, tenantId));
@@ -105,6 +150,38 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
     return makeRequestWithRetries(put);
   }
 
+  @Override
+  public ListenableFuture<Boolean> putTenantAsync(final Provisioner provisioner, final String tenantId,
+                                                  final ResourceCollection resourceCollection) {
+    return executor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return putTenant(provisioner, tenantId, resourceCollection);
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<Boolean> putTenantWorkersAsync(final Provisioner provisioner, final String tenantId) {
+    return executor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return putTenantWorkers(provisioner, tenantId);
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<Boolean> putTenantResourcesAsync(final Provisioner provisioner, final String tenantId,
+                                                           final ResourceCollection resourceCollection) {
+    return executor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return putTenantResources(provisioner, tenantId, resourceCollection);
+      }
+    });
+  }
+
   private boolean makeRequestWithRetries(HttpRequestBase request) {
     int numRetried = 0;
     while (numRetried < maxRetries) {
@@ -136,6 +213,8 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
   private int makeRequest(HttpRequestBase request) throws IOException {
     CloseableHttpResponse response = httpClient.execute(request);
     try {
+      // the response has to be fully read for the connection to be reused
+      EntityUtils.consume(response.getEntity());
       return response.getStatusLine().getStatusCode();
     } finally {
       response.close();
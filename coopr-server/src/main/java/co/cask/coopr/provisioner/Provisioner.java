@@ -21,6 +21,8 @@ public class Provisioner {
   private final Map<String, Integer> assignments;
   private Map<String, Integer> usage;
   private int capacityFree;
+  // version of the stored provisioner this object was read from. Not part of the provisioner state.
+  private transient long version;
 
   public Provisioner(String id, String host, Integer port, Integer capacityTotal, Map<String, Integer> usage,
                      Map<String, Integer> assignments) {
@@ -91,6 +93,25 @@ public class Provisioner {
     return capacityFree;
   }
 
+  /**
+   * Get the version of the stored provisioner this object was read from, used to detect concurrent modifications
+   * when writing it back.
+   *
+   * @return Version of the stored provisioner this object was read from.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Set the version of the stored provisioner this object was read from.
+   *
+   * @param version Version of the stored provisioner this object was read from.
+   */
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /**
    * Get an immutable mapping of tenants to number of live workers for that tenant.
    *
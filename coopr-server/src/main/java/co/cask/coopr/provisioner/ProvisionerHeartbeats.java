@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.store.provisioner.ProvisionerStore;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory table of the provisioner heartbeats received by this server. Heartbeats are not written to the
+ * {@link ProvisionerStore} as they come in, but are flushed to it in a single batch at a fixed interval, so that the
+ * write load caused by heartbeats stays the same no matter how many provisioners there are. Usage that differs from
+ * the stored usage is written during the flush as well, at most once per provisioner. Heartbeats can be received by
+ * any server, so the stored heartbeat time of a provisioner can lag behind by up to the flush interval of the server
+ * that received its last heartbeat.
+ */
+public class ProvisionerHeartbeats extends AbstractScheduledService {
+  private static final Logger LOG = LoggerFactory.getLogger(ProvisionerHeartbeats.class);
+  private final ProvisionerStore provisionerStore;
+  private final ProvisionerRegistry provisionerRegistry;
+  private final long flushIntervalSecs;
+  // last heartbeat time received by this server for each provisioner
+  private final ConcurrentMap<String, Long> lastHeartbeats;
+  // heartbeat times and usage that have not been written to the store yet
+  private final ConcurrentMap<String, Long> unflushedHeartbeats;
+  private final ConcurrentMap<String, Map<String, Integer>> unflushedUsage;
+
+  @Inject
+  ProvisionerHeartbeats(ProvisionerStore provisionerStore, ProvisionerRegistry provisionerRegistry,
+                        Configuration conf) {
+    this.provisionerStore = provisionerStore;
+    this.provisionerRegistry = provisionerRegistry;
+    this.flushIntervalSecs = conf.getLong(Constants.PROVISIONER_HEARTBEAT_FLUSH_INTERVAL_SECS);
+    this.lastHeartbeats = Maps.newConcurrentMap();
+    this.unflushedHeartbeats = Maps.newConcurrentMap();
+    this.unflushedUsage = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Record a heartbeat from the given provisioner. The heartbeat is written to the store on the next flush.
+   *
+   * @param provisioner Provisioner that sent the heartbeat, as it was last read from the store
+   * @param usage Live workers for each tenant on the provisioner
+   * @param ts Timestamp in milliseconds of the heartbeat
+   */
+  public void recordHeartbeat(Provisioner provisioner, Map<String, Integer> usage, long ts) {
+    String provisionerId = provisioner.getId();
+    lastHeartbeats.put(provisionerId, ts);
+    unflushedHeartbeats.put(provisionerId, ts);
+    // if usage is already waiting to be written, it has to be replaced even if the new usage matches the stored one
+    if (unflushedUsage.containsKey(provisionerId) || !provisioner.getUsage().equals(usage)) {
+      unflushedUsage.put(provisionerId, ImmutableMap.copyOf(usage));
+    }
+  }
+
+  /**
+   * Get the time of the last heartbeat that this server received from the given provisioner.
+   *
+   * @param provisionerId Id of the provisioner to get the last heartbeat time of
+   * @return Timestamp in milliseconds of the last heartbeat, or null if this server has not received one
+   */
+  public Long getLastHeartbeat(String provisionerId) {
+    return lastHeartbeats.get(provisionerId);
+  }
+
+  /**
+   * Get the latest usage of the given provisioner, which is the usage from a heartbeat that has not been written to the
+   * store yet if there is one, and the usage of the given provisioner otherwise.
+   *
+   * @param provisioner Provisioner to get the usage of
+   * @return Live workers for each tenant on the provisioner
+   */
+  public Map<String, Integer> getUsage(Provisioner provisioner) {
+    Map<String, Integer> usage = unflushedUsage.get(provisioner.getId());
+    return usage == null ? provisioner.getUsage() : usage;
+  }
+
+  /**
+   * Remove everything recorded for the given provisioner, because it was registered again or deleted.
+   *
+   * @param provisionerId Id of the provisioner to remove
+   */
+  public void remove(String provisionerId) {
+    lastHeartbeats.remove(provisionerId);
+    unflushedHeartbeats.remove(provisionerId);
+    unflushedUsage.remove(provisionerId);
+  }
+
+  /**
+   * Write all heartbeat times and usage that were recorded since the last flush to the store.
+   *
+   * @throws IOException if there was an exception writing to the store
+   */
+  public void flush() throws IOException {
+    Map<String, Long> heartbeats = ImmutableMap.copyOf(unflushedHeartbeats);
+    if (!heartbeats.isEmpty()) {
+      provisionerStore.setHeartbeats(heartbeats);
+      // heartbeats that came in during the write stay in the table for the next flush
+      for (Map.Entry<String, Long> heartbeat : heartbeats.entrySet()) {
+        unflushedHeartbeats.remove(heartbeat.getKey(), heartbeat.getValue());
+      }
+    }
+
+    boolean usageWritten = false;
+    for (Map.Entry<String, Map<String, Integer>> usage : ImmutableMap.copyOf(unflushedUsage).entrySet()) {
+      usageWritten |= writeUsage(usage.getKey(), usage.getValue());
+      unflushedUsage.remove(usage.getKey(), usage.getValue());
+    }
+    if (usageWritten) {
+      provisionerRegistry.provisionersChanged();
+    }
+  }
+
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      flush();
+    } catch (Throwable t) {
+      // everything stays in the table, and is written on the next flush
+      LOG.error("Exception flushing provisioner heartbeats.", t);
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    flush();
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(flushIntervalSecs, flushIntervalSecs, TimeUnit.SECONDS);
+  }
+
+  // tenant rebalances may be changing assignments on the provisioner at the same time, so the usage is written as a
+  // versioned update on top of the latest stored state, and re-applied if the provisioner changed in between.
+  private boolean writeUsage(String provisionerId, Map<String, Integer> usage) throws IOException {
+    while (true) {
+      Provisioner provisioner = provisionerStore.getProvisioner(provisionerId);
+      if (provisioner == null || provisioner.getUsage().equals(usage)) {
+        return false;
+      }
+      provisioner.setUsage(usage);
+      if (provisionerStore.tryWriteProvisioner(provisioner)) {
+        return true;
+      }
+    }
+  }
+}
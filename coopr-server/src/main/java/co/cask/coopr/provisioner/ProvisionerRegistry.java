@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner;
+
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import co.cask.coopr.store.provisioner.ProvisionerStore;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.Inject;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * In memory view of all provisioners, used to check whether a provisioner exists and how much free worker capacity
+ * there is without reading the {@link ProvisionerStore}. A version node in zookeeper is updated whenever provisioners
+ * are written or deleted. Every server watches the version node and drops its view when the version changes, loading
+ * it again from the store the next time it is needed. Since the view of a server can lag behind a provisioner that
+ * was just registered through another server, provisioners that are not in the view are still looked up in the store.
+ */
+public class ProvisionerRegistry {
+  private static final String VERSION_PATH = "/provisioners/version";
+  private final ProvisionerStore provisionerStore;
+  private final ZKClient zkClient;
+  // null when it has to be loaded from the store
+  private volatile Map<String, Provisioner> provisioners;
+  // incremented whenever the view is dropped, so that a load that started before cannot put back a stale view
+  private long generation;
+  private int lastSeenVersion;
+  private boolean watching;
+
+  @Inject
+  ProvisionerRegistry(ProvisionerStore provisionerStore, ZKClient zkClient) {
+    this.provisionerStore = provisionerStore;
+    this.zkClient = zkClient;
+    this.lastSeenVersion = -1;
+  }
+
+  /**
+   * Get whether the provisioner with the given id exists.
+   *
+   * @param provisionerId Id of the provisioner to check
+   * @return Whether the provisioner exists
+   * @throws IOException if there was an error reading provisioners from the store
+   */
+  public boolean contains(String provisionerId) throws IOException {
+    return getProvisioner(provisionerId) != null;
+  }
+
+  /**
+   * Get the provisioner with the given id. The provisioner is shared by all users of the registry and must not be
+   * modified.
+   *
+   * @param provisionerId Id of the provisioner to get
+   * @return Provisioner with the given id, or null if none exists
+   * @throws IOException if there was an error reading provisioners from the store
+   */
+  public Provisioner getProvisioner(String provisionerId) throws IOException {
+    Provisioner provisioner = getProvisioners().get(provisionerId);
+    if (provisioner == null) {
+      provisioner = provisionerStore.getProvisioner(provisionerId);
+      if (provisioner != null) {
+        // registered through another server, and the version change has not reached this server yet
+        drop();
+      }
+    }
+    return provisioner;
+  }
+
+  /**
+   * Get the number of workers that can still be assigned across all provisioners.
+   *
+   * @return Number of workers that can still be assigned across all provisioners
+   * @throws IOException if there was an error reading provisioners from the store
+   */
+  public int getFreeCapacity() throws IOException {
+    int freeCapacity = 0;
+    for (Provisioner provisioner : getProvisioners().values()) {
+      freeCapacity += provisioner.getCapacityFree();
+    }
+    return freeCapacity;
+  }
+
+  /**
+   * Drop the view of every server after provisioners were written or deleted.
+   *
+   * @throws IOException if there was an error updating the version node
+   */
+  public void provisionersChanged() throws IOException {
+    ensureWatching();
+    try {
+      Stat stat = zkClient.setData(VERSION_PATH, Longs.toByteArray(System.currentTimeMillis())).get();
+      invalidate(stat.getVersion());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while updating provisioner version", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Exception updating provisioner version", e.getCause());
+    }
+  }
+
+  private Map<String, Provisioner> getProvisioners() throws IOException {
+    Map<String, Provisioner> current = provisioners;
+    if (current != null) {
+      return current;
+    }
+    ensureWatching();
+    long loadGeneration;
+    synchronized (this) {
+      loadGeneration = generation;
+    }
+    ImmutableMap.Builder<String, Provisioner> builder = ImmutableMap.builder();
+    for (Provisioner provisioner : provisionerStore.getAllProvisioners()) {
+      builder.put(provisioner.getId(), provisioner);
+    }
+    Map<String, Provisioner> loaded = builder.build();
+    synchronized (this) {
+      if (loadGeneration == generation) {
+        provisioners = loaded;
+      }
+    }
+    return loaded;
+  }
+
+  private synchronized void ensureWatching() {
+    if (watching) {
+      return;
+    }
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, VERSION_PATH));
+    ZKOperations.watchData(zkClient, VERSION_PATH, new ZKOperations.DataCallback() {
+      @Override
+      public void updated(NodeData nodeData) {
+        if (nodeData != null && nodeData.getStat() != null) {
+          invalidate(nodeData.getStat().getVersion());
+        }
+      }
+    });
+    watching = true;
+  }
+
+  // versions only go up, so anything at or below the last seen version has already been handled
+  private synchronized void invalidate(int version) {
+    if (version <= lastSeenVersion) {
+      return;
+    }
+    lastSeenVersion = version;
+    drop();
+  }
+
+  private synchronized void drop() {
+    generation++;
+    provisioners = null;
+  }
+}
@@ -1,11 +1,15 @@
 package co.cask.coopr.provisioner;
 
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Service;
 
 /**
- * Service for making requests to provisioners.
+ * Service for making requests to provisioners. Requests can be made one at a time, or asynchronously so that
+ * requests to several provisioners can be made at once. Resources used to make requests are released when the
+ * service is stopped.
  */
-public interface ProvisionerRequestService {
+public interface ProvisionerRequestService extends Service {
 
   /**
    * Make a request to the provisioner to delete the given tenant.
@@ -45,4 +49,35 @@ public interface ProvisionerRequestService {
    * @return True if the request was successful, false if not.
    */
   boolean putTenantResources(Provisioner provisioner, String tenantId, ResourceCollection resourceCollection);
+
+  /**
+   * Asynchronously make a request to the provisioner to set the tenant information.
+   *
+   * @param provisioner Provisioner to send the request to.
+   * @param tenantId Id of the tenant on the provisioner to write to.
+   * @param resourceCollection Metadata for all resources that can be used by the tenant workers for the provisioner.
+   * @return Future that is true if the request was successful, false if not.
+   */
+  ListenableFuture<Boolean> putTenantAsync(Provisioner provisioner, String tenantId,
+                                           ResourceCollection resourceCollection);
+
+  /**
+   * Asynchronously make a request to the provisioner to set the number of workers for the given tenant.
+   *
+   * @param provisioner Provisioner to send the request to.
+   * @param tenantId Id of the tenant on the provisioner to write to.
+   * @return Future that is true if the request was successful, false if not.
+   */
+  ListenableFuture<Boolean> putTenantWorkersAsync(Provisioner provisioner, String tenantId);
+
+  /**
+   * Asynchronously make a request to the provisioner to set the plugin resources it should be using.
+   *
+   * @param provisioner Provisioner to send the request to.
+   * @param tenantId Id of the tenant on the provisioner to write to.
+   * @param resourceCollection Metadata for all resources that can be used by the tenant workers for the provisioner.
+   * @return Future that is true if the request was successful, false if not.
+   */
+  ListenableFuture<Boolean> putTenantResourcesAsync(Provisioner provisioner, String tenantId,
+                                                    ResourceCollection resourceCollection);
 }
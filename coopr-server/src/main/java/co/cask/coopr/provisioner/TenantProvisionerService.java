@@ -8,7 +8,12 @@ import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.TrackingQueue;
+import co.cask.coopr.common.utils.ImmutablePair;
 import co.cask.coopr.common.zookeeper.LockService;
+import co.cask.coopr.management.ServerStats;
+import co.cask.coopr.provisioner.placement.ProvisionerUsageHistory;
+import co.cask.coopr.provisioner.placement.WorkerPlacementPolicies;
+import co.cask.coopr.provisioner.placement.WorkerPlacementPolicy;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.scheduler.task.MissingEntityException;
@@ -21,7 +26,9 @@ import co.cask.coopr.store.provisioner.ProvisionerStore;
 import co.cask.coopr.store.tenant.TenantStore;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.slf4j.Logger;
@@ -31,7 +38,6 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 
@@ -41,8 +47,10 @@ import java.util.concurrent.locks.Lock;
 public class TenantProvisionerService {
   private static final Logger LOG  = LoggerFactory.getLogger(TenantProvisionerService.class);
   private final ProvisionerStore provisionerStore;
+  private final ProvisionerRegistry provisionerRegistry;
+  private final ProvisionerHeartbeats heartbeats;
   private final TenantStore tenantStore;
-  private final Lock tenantLock;
+  private final LockService lockService;
   private final long provisionerTimeoutSecs;
   private final TrackingQueue balanceQueue;
   private final ProvisionerRequestService provisionerRequestService;
@@ -50,9 +58,14 @@ public class TenantProvisionerService {
   private final ResourceService resourceService;
   private final EntityStoreService entityStoreService;
   private final QueueService queueService;
+  private final ServerStats serverStats;
+  private final WorkerPlacementPolicies placementPolicies;
+  private final ProvisionerUsageHistory usageHistory;
 
   @Inject
   private TenantProvisionerService(ProvisionerStore provisionerStore,
+                                   ProvisionerRegistry provisionerRegistry,
+                                   ProvisionerHeartbeats heartbeats,
                                    final TenantStore tenantStore,
                                    LockService lockService,
                                    @Named(Constants.Queue.WORKER_BALANCE) TrackingQueue balanceQueue,
@@ -61,22 +74,28 @@ public class TenantProvisionerService {
                                    ResourceService resourceService,
                                    EntityStoreService entityStoreService,
                                    QueueService queueService,
+                                   ServerStats serverStats,
+                                   WorkerPlacementPolicies placementPolicies,
+                                   ProvisionerUsageHistory usageHistory,
                                    Configuration conf) {
     this.provisionerStore = provisionerStore;
+    this.provisionerRegistry = provisionerRegistry;
+    this.heartbeats = heartbeats;
     this.tenantStore = tenantStore;
     this.provisionerRequestService = provisionerRequestService;
     this.clusterStoreService = clusterStoreService;
     this.resourceService = resourceService;
     this.entityStoreService = entityStoreService;
-    // a single lock is used across all tenants and provisioners. This is so that a request modifies worker assignments
-    // across multiple provisioners does not conflict with requests that modify worker capacity. For example, if a
-    // tenant is added the same time a tenant is deleted, we don't want to be modifying the same provisioner at the
-    // same time and cause conflicts. Similarly, if we're moving workers from one provisioner to another at the same
-    // time as we're adding a tenant, we don't want to both add workers to the same provisioner at the same time.
-    this.tenantLock = lockService.getTenantProvisionerLock();
+    // tenant operations only lock their own tenant. Different tenants can still be assigning workers on the same
+    // provisioner at the same time, so every change to a provisioner is a versioned write that fails if the
+    // provisioner was changed since it was read, in which case the change is retried against its latest state.
+    this.lockService = lockService;
     this.provisionerTimeoutSecs = conf.getLong(Constants.PROVISIONER_TIMEOUT_SECS);
     this.balanceQueue = balanceQueue;
     this.queueService = queueService;
+    this.serverStats = serverStats;
+    this.placementPolicies = placementPolicies;
+    this.usageHistory = usageHistory;
   }
 
   /**
@@ -128,6 +147,18 @@ public class TenantProvisionerService {
     return createExternalProvisioner(provisionerStore.getProvisioner(provisionerId));
   }
 
+  /**
+   * Get whether the provisioner with the given id exists. Served from the in memory provisioner registry, so this is
+   * cheap enough to call on every task request.
+   *
+   * @param provisionerId Id of the provisioner to check
+   * @return Whether the provisioner exists
+   * @throws IOException
+   */
+  public boolean provisionerExists(String provisionerId) throws IOException {
+    return provisionerRegistry.contains(provisionerId);
+  }
+
   /**
    * Write the tenant to the store and balance the tenant workers across provisioners. Returns the id of the tenant
    * that was written.
@@ -140,6 +171,7 @@ public class TenantProvisionerService {
    */
   public String writeTenantSpecification(TenantSpecification tenantSpecification)
     throws IOException, CapacityException, QuotaException {
+    Lock tenantLock = lockService.getTenantLock(tenantSpecification.getName());
     tenantLock.lock();
     try {
       Tenant prevTenant = tenantStore.getTenantByName(tenantSpecification.getName());
@@ -223,6 +255,7 @@ public class TenantProvisionerService {
    * @throws IOException if there was an exception persisting the deletion
    */
   public void deleteTenantByName(String name) throws IllegalStateException, IOException {
+    Lock tenantLock = lockService.getTenantLock(name);
     tenantLock.lock();
     try {
       Tenant tenant = tenantStore.getTenantByName(name);
@@ -238,6 +271,7 @@ public class TenantProvisionerService {
       for (QueueGroup queueGroup : queueService.getAllQueueGroups().values()) {
         queueGroup.removeAll(tenant.getId());
       }
+      serverStats.removeTaskQueueMetrics(tenant.getId());
     } finally {
       tenantLock.unlock();
     }
@@ -250,17 +284,12 @@ public class TenantProvisionerService {
    * @throws IOException
    */
   public void deleteProvisioner(String provisionerId) throws IOException {
-    tenantLock.lock();
-    try {
-      Provisioner provisioner = provisionerStore.getProvisioner(provisionerId);
-      if (provisioner == null) {
-        return;
-      }
-
-      deleteProvisioner(provisioner);
-    } finally {
-      tenantLock.unlock();
+    Provisioner provisioner = provisionerStore.getProvisioner(provisionerId);
+    if (provisioner == null) {
+      return;
     }
+
+    deleteProvisioner(provisioner);
   }
 
   /**
@@ -269,23 +298,19 @@ public class TenantProvisionerService {
    *
    * @param provisionerId Id of the provisioner that sent the heartbeat
    * @param heartbeat The heartbeat containing live worker information
-   * @throws IOException if there was an exception persisting the data
+   * @throws IOException if there was an exception looking up the provisioner
    * @throws MissingEntityException if there is no provisioner for the given id
    */
   public void handleHeartbeat(String provisionerId, ProvisionerHeartbeat heartbeat)
     throws IOException, MissingEntityException {
-    // no lock required here.  Simply getting a provisioner and writing worker usage. Would only expect one provisioner
-    // to be calling this at a time, and even if it is calling it concurrently for some reason, only the usage can
-    // change and for that its ok for one of them to win.
-    Provisioner provisioner = provisionerStore.getProvisioner(provisionerId);
+    // no lock or store access required here. The heartbeat time and usage are recorded in memory, and written to the
+    // store together with the heartbeats of all other provisioners the next time the heartbeats are flushed.
+    Provisioner provisioner = provisionerRegistry.getProvisioner(provisionerId);
     if (provisioner == null) {
       throw new MissingEntityException("Provisioner " + provisionerId + " not found.");
     }
-    if (!provisioner.getUsage().equals(heartbeat.getUsage())) {
-      provisioner.setUsage(heartbeat.getUsage());
-      provisionerStore.writeProvisioner(provisioner);
-    }
-    provisionerStore.setHeartbeat(provisionerId, System.currentTimeMillis());
+    usageHistory.recordUsage(provisionerId, heartbeat.getUsage());
+    heartbeats.recordHeartbeat(provisioner, heartbeat.getUsage(), System.currentTimeMillis());
   }
 
   /**
@@ -295,15 +320,15 @@ public class TenantProvisionerService {
    * @throws IOException
    */
   public void writeProvisioner(Provisioner provisioner) throws IOException {
-    tenantLock.lock();
-    try {
-      provisionerStore.writeProvisioner(provisioner);
-      // rebalance tenants every time a provisioner registers itself
-      for (Tenant tenant : tenantStore.getAllTenants()) {
-        balanceQueue.add(new Element(tenant.getId()));
-      }
-    } finally {
-      tenantLock.unlock();
+    // no lock required here. The write changes the provisioner version, so any tenant rebalance that read the
+    // provisioner before it was written will retry against the new state.
+    provisionerStore.writeProvisioner(provisioner);
+    // the provisioner reports its full state when it registers, so anything recorded from earlier heartbeats is stale
+    heartbeats.remove(provisioner.getId());
+    provisionerRegistry.provisionersChanged();
+    // rebalance tenants every time a provisioner registers itself
+    for (Tenant tenant : tenantStore.getAllTenants()) {
+      balanceQueue.add(new Element(tenant.getId()));
     }
   }
 
@@ -315,8 +340,9 @@ public class TenantProvisionerService {
    * @throws IOException if there was an exception persisting the worker rebalance
    */
   public void rebalanceTenantWorkers(String tenantId) throws IOException, CapacityException {
-    // lock across all tenants to protect against conflicts in setting worker counts for different tenants across
-    // different provisioners
+    // only the tenant is locked. Conflicts with other tenants setting worker counts on the same provisioners are
+    // handled by the versioned provisioner writes in addWorkers and removeWorkers.
+    Lock tenantLock = getTenantLock(tenantId);
     tenantLock.lock();
     try {
       Tenant tenant = tenantStore.getTenantByID(tenantId);
@@ -324,20 +350,20 @@ public class TenantProvisionerService {
         return;
       }
 
+      WorkerPlacementPolicy placementPolicy =
+        placementPolicies.getPolicy(tenant.getSpecification().getPlacementPolicy());
       int diff = tenant.getSpecification().getWorkers() - provisionerStore.getNumAssignedWorkers(tenantId);
       if (diff < 0) {
-        Account tenantAdmin = new Account(Constants.ADMIN_USER, tenantId);
-        ResourceCollection liveResources = resourceService.getLiveResources(tenantAdmin);
         // too many workers assigned, remove some.
         int toRemove = 0 - diff;
         LOG.debug("Removing {} workers from tenant {}", toRemove, tenantId);
-        removeWorkers(tenantId, toRemove, liveResources);
+        removeWorkers(tenantId, toRemove, placementPolicy);
       } else if (diff > 0) {
         Account tenantAdmin = new Account(Constants.ADMIN_USER, tenantId);
         ResourceCollection liveResources = resourceService.getLiveResources(tenantAdmin);
         // not enough workers assigned, assign some more.
         LOG.debug("Adding {} workers to tenant {}", diff, tenantId);
-        addWorkers(tenantId, diff, liveResources);
+        addWorkers(tenantId, diff, liveResources, placementPolicy);
       }
     } finally {
       tenantLock.unlock();
@@ -352,14 +378,20 @@ public class TenantProvisionerService {
    * @throws IOException
    */
   public void syncResources(Account account) throws IOException {
-    // this will mean that a sync from one tenant will block a sync from another, but we need this because when
-    // workers are being re-balanced, the live resource collection is sent to the provisioners. We don't want a
-    // scenario where the live collection is read for rebalancing, a sync is called, and the sync and rebalance
-    // fight over what resource versions should be live on the provisioners, resulting in inconsistent state.
-    // Since syncs are uncommon, this should be ok...
+    // lock the tenant because when its workers are being re-balanced, the live resource collection is sent to the
+    // provisioners. We don't want a scenario where the live collection is read for rebalancing, a sync is called,
+    // and the sync and rebalance fight over what resource versions should be live on the provisioners, resulting
+    // in inconsistent state. Syncs and rebalances of other tenants are not blocked.
+    Lock tenantLock = getTenantLock(account.getTenantId());
     tenantLock.lock();
     try {
       ResourceCollection resources = resourceService.getResourcesToSync(account);
+      // live resources are the ones every tenant provisioner last accepted, so if nothing has been staged or
+      // recalled since then, there is nothing to push.
+      if (resources.equals(resourceService.getLiveResources(account))) {
+        LOG.debug("Resources for tenant {} are unchanged since the last sync.", account.getTenantId());
+        return;
+      }
 
       // TODO: failures will cause inconsistencies between metadata state and provisioner state.
       // We can add an ability to block tasks for a given tenant from going out here, then make the calls to the
@@ -379,13 +411,16 @@ public class TenantProvisionerService {
   }
 
   private void syncProvisionerResources(String tenantId, ResourceCollection resourceCollection) throws IOException {
+    List<ImmutablePair<Provisioner, ListenableFuture<Boolean>>> requests = Lists.newArrayList();
     for (Provisioner provisioner : provisionerStore.getTenantProvisioners(tenantId)) {
-      if (!provisionerRequestService.putTenant(provisioner, tenantId, resourceCollection)) {
-        LOG.error("Could not write resource metadata for tenant {} to provisioner {}. " +
-                    "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                  tenantId, provisioner.getId());
-        deleteProvisioner(provisioner);
-      }
+      requests.add(ImmutablePair.of(
+        provisioner, provisionerRequestService.putTenantResourcesAsync(provisioner, tenantId, resourceCollection)));
+    }
+    for (Provisioner provisioner : getFailedProvisioners(requests)) {
+      LOG.error("Could not write resource metadata for tenant {} to provisioner {}. " +
+                  "The provisioner appears broken, deleting it and rebalancing its tenant workers",
+                tenantId, provisioner.getId());
+      deleteProvisioner(provisioner);
     }
   }
 
@@ -397,21 +432,16 @@ public class TenantProvisionerService {
    * @throws IOException
    */
   public void timeoutProvisioners(long timeoutTs) throws IOException {
-    tenantLock.lock();
-    try {
-      Set<String> affectedTenants = Sets.newHashSet();
-      for (Provisioner provisioner : provisionerStore.getTimedOutProvisioners(timeoutTs)) {
-        String provisionerId = provisioner.getId();
-        LOG.error("provisioner {} has not sent a heartbeat in over {} seconds, deleting it...",
-                  provisionerId, provisionerTimeoutSecs);
-        provisionerStore.deleteProvisioner(provisioner.getId());
-        affectedTenants.addAll(provisioner.getAssignedTenants());
-      }
-      for (String affectedTenant : affectedTenants) {
-        balanceQueue.add(new Element(affectedTenant));
+    // stored heartbeat times can lag behind by up to the heartbeat flush interval, so provisioners whose heartbeat
+    // this server received recently are not timed out even if the stored time is too old.
+    for (Provisioner provisioner : provisionerStore.getTimedOutProvisioners(timeoutTs)) {
+      Long lastHeartbeat = heartbeats.getLastHeartbeat(provisioner.getId());
+      if (lastHeartbeat != null && lastHeartbeat >= timeoutTs) {
+        continue;
       }
-    } finally {
-      tenantLock.unlock();
+      LOG.error("provisioner {} has not sent a heartbeat in over {} seconds, deleting it...",
+                provisioner.getId(), provisionerTimeoutSecs);
+      deleteProvisioner(provisioner);
     }
   }
 
@@ -427,57 +457,106 @@ public class TenantProvisionerService {
     syncResources(account);
   }
 
-  // TODO: abstract out to support different types of balancing policies
-  // Currently a greedy approach, just remove from first available.
-  private void removeWorkers(String tenantId, int numToRemove, ResourceCollection resources) throws IOException {
-    // go through each provisioner, removing workers for the tenant until we've removed enough.
+  private void removeWorkers(String tenantId, int numToRemove, WorkerPlacementPolicy placementPolicy)
+    throws IOException {
+    Map<String, Provisioner> tenantProvisioners = Maps.newHashMap();
     for (Provisioner provisioner : provisionerStore.getTenantProvisioners(tenantId)) {
-      int numRemoved = provisioner.tryRemoveTenantAssignments(tenantId, numToRemove);
-      if (numRemoved > 0) {
-        provisionerStore.writeProvisioner(provisioner);
-        LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (removing {})",
-                  provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numRemoved);
-        if (provisionerRequestService.putTenant(provisioner, tenantId, resources)) {
-          numToRemove -= numRemoved;
-        } else {
-          // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers
-          // TODO: what if this fails?
-          LOG.error("Could not set workers for tenant {} to provisioner {}. " +
-                      "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                    tenantId, provisioner.getId());
-          deleteProvisioner(provisioner);
+      tenantProvisioners.put(provisioner.getId(), provisioner);
+    }
+    Map<String, Integer> removals =
+      placementPolicy.removeWorkers(tenantId, numToRemove, tenantProvisioners.values());
+
+    List<ImmutablePair<Provisioner, ListenableFuture<Boolean>>> requests = Lists.newArrayList();
+    for (Map.Entry<String, Integer> removal : removals.entrySet()) {
+      Provisioner current = tenantProvisioners.get(removal.getKey());
+      while (current != null) {
+        int numRemoved = current.tryRemoveTenantAssignments(tenantId, removal.getValue());
+        if (numRemoved == 0) {
+          break;
         }
+        if (provisionerStore.tryWriteProvisioner(current)) {
+          LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (removing {})",
+                    current.getId(), current.getAssignedWorkers(tenantId), tenantId, numRemoved);
+          // the provisioner already has the tenant resources, so only the worker count needs to be sent
+          ListenableFuture<Boolean> request = provisionerRequestService.putTenantWorkersAsync(current, tenantId);
+          requests.add(ImmutablePair.of(current, request));
+          break;
+        }
+        // the provisioner was changed since it was read, try again against its latest state
+        current = provisionerStore.getProvisioner(current.getId());
       }
     }
+    if (!requests.isEmpty()) {
+      provisionerRegistry.provisionersChanged();
+    }
+    for (Provisioner provisioner : getFailedProvisioners(requests)) {
+      // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers
+      // TODO: what if this fails?
+      LOG.error("Could not set workers for tenant {} to provisioner {}. " +
+                  "The provisioner appears broken, deleting it and rebalancing its tenant workers",
+                tenantId, provisioner.getId());
+      deleteProvisioner(provisioner);
+    }
   }
 
-  // TODO: abstract out to support different types of balancing policies
-  // Currently a greedy approach, just add to first available.
-  private void addWorkers(String tenantId, int numToAdd, ResourceCollection resources)
-    throws CapacityException, IOException {
-    for (Provisioner provisioner : provisionerStore.getProvisionersWithFreeCapacity()) {
-      if (numToAdd <= 0) {
+  private void addWorkers(String tenantId, int numToAdd, ResourceCollection resources,
+                          WorkerPlacementPolicy placementPolicy) throws CapacityException, IOException {
+    // requests are made to all chosen provisioners at once. Workers that could not be placed as planned, because
+    // provisioners changed in the meantime or because requests to them failed, are placed again in the next round.
+    while (numToAdd > 0) {
+      Map<String, Provisioner> candidates = Maps.newHashMap();
+      for (Provisioner provisioner : provisionerStore.getProvisionersWithFreeCapacity()) {
+        candidates.put(provisioner.getId(), provisioner);
+      }
+      Map<String, Integer> placements = placementPolicy.placeWorkers(tenantId, numToAdd, candidates.values());
+      if (placements.isEmpty()) {
         break;
       }
-      int numAdded = provisioner.tryAddTenantAssignments(tenantId, numToAdd);
-      if (numAdded > 0) {
-        provisionerStore.writeProvisioner(provisioner);
-        LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (adding {})",
-                  provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numAdded);
-        if (provisionerRequestService.putTenant(provisioner, tenantId, resources)) {
-          numToAdd -= numAdded;
-        } else {
-          // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers.
-          // Rebalancing will be queued, but will not be triggered until after this method finishes due to the
-          // lock that is held.
-          // TODO: what if this fails due to db failure or something of that sort?
-          // should be ok as long as the tenant balance task is in the queue and retried.
-          LOG.error("Could not set workers for tenant {} to provisioner {}. " +
-                      "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                    tenantId, provisioner.getId());
-          deleteProvisioner(provisioner);
+
+      List<ImmutablePair<Provisioner, ListenableFuture<Boolean>>> requests = Lists.newArrayList();
+      Map<String, Integer> numAddedByProvisioner = Maps.newHashMap();
+      for (Map.Entry<String, Integer> placement : placements.entrySet()) {
+        // other tenants may be assigning workers to the same provisioner. The versioned write only succeeds if the
+        // free capacity the assignment was based on is still current, so capacity can never be exceeded.
+        Provisioner current = candidates.get(placement.getKey());
+        while (current != null) {
+          boolean hasTenant = current.getAssignedWorkers(tenantId) > 0;
+          int numAdded = current.tryAddTenantAssignments(tenantId, placement.getValue());
+          if (numAdded == 0) {
+            break;
+          }
+          if (provisionerStore.tryWriteProvisioner(current)) {
+            numToAdd -= numAdded;
+            numAddedByProvisioner.put(current.getId(), numAdded);
+            LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (adding {})",
+                      current.getId(), current.getAssignedWorkers(tenantId), tenantId, numAdded);
+            // only provisioners that are new to the tenant need the tenant resources
+            ListenableFuture<Boolean> request = hasTenant ?
+              provisionerRequestService.putTenantWorkersAsync(current, tenantId) :
+              provisionerRequestService.putTenantAsync(current, tenantId, resources);
+            requests.add(ImmutablePair.of(current, request));
+            break;
+          }
+          // the provisioner was changed since it was read, try again against its latest state
+          current = provisionerStore.getProvisioner(current.getId());
         }
       }
+      if (requests.isEmpty()) {
+        continue;
+      }
+      provisionerRegistry.provisionersChanged();
+      for (Provisioner provisioner : getFailedProvisioners(requests)) {
+        // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers.
+        // Rebalancing will be queued, and for this tenant will not be triggered until after this method finishes
+        // due to the tenant lock that is held.
+        // TODO: what if this fails due to db failure or something of that sort?
+        // should be ok as long as the tenant balance task is in the queue and retried.
+        LOG.error("Could not set workers for tenant {} to provisioner {}. " +
+                    "The provisioner appears broken, deleting it and rebalancing its tenant workers",
+                  tenantId, provisioner.getId());
+        deleteProvisioner(provisioner);
+        numToAdd += numAddedByProvisioner.get(provisioner.getId());
+      }
     }
     if (numToAdd > 0) {
       throw new CapacityException("Unable to add all " + numToAdd + " workers to tenant "
@@ -485,6 +564,24 @@ public class TenantProvisionerService {
     }
   }
 
+  // wait for requests made to provisioners, returning the provisioners whose requests failed.
+  private List<Provisioner> getFailedProvisioners(
+    List<ImmutablePair<Provisioner, ListenableFuture<Boolean>>> requests) {
+    List<Provisioner> failed = Lists.newArrayList();
+    for (ImmutablePair<Provisioner, ListenableFuture<Boolean>> request : requests) {
+      Provisioner provisioner = request.getFirst();
+      try {
+        if (!Futures.getUnchecked(request.getSecond())) {
+          failed.add(provisioner);
+        }
+      } catch (UncheckedExecutionException e) {
+        LOG.error("Exception making request to provisioner {}.", provisioner.getId(), e.getCause());
+        failed.add(provisioner);
+      }
+    }
+    return failed;
+  }
+
   /**
    * Create a new Provisioner object where the tenant ids have been replaced with tenant names for external
    * consumption.
@@ -498,7 +595,7 @@ public class TenantProvisionerService {
       return null;
     }
     Map<String, Integer> nameUsage = Maps.newHashMap();
-    for (Map.Entry<String, Integer> entry : provisioner.getUsage().entrySet()) {
+    for (Map.Entry<String, Integer> entry : heartbeats.getUsage(provisioner).entrySet()) {
       nameUsage.put(tenantIdToName(entry.getKey()), entry.getValue());
     }
     Map<String, Integer> nameAssignments = Maps.newHashMap();
@@ -520,14 +617,36 @@ public class TenantProvisionerService {
   }
 
   private void deleteProvisioner(Provisioner provisioner) throws IOException {
-    for (String tenant : provisioner.getAssignedTenants()) {
+    // workers may be assigned to the provisioner after it was read. Only the version that was read is deleted, so
+    // that every tenant with workers on the deleted provisioner gets rebalanced.
+    Provisioner current = provisioner;
+    while (!provisionerStore.tryDeleteProvisioner(current)) {
+      current = provisionerStore.getProvisioner(current.getId());
+      if (current == null) {
+        // already deleted, and whoever deleted it queued the rebalancing
+        return;
+      }
+    }
+    for (String tenant : current.getAssignedTenants()) {
       balanceQueue.add(new Element(tenant));
     }
-    provisionerStore.deleteProvisioner(provisioner.getId());
+    usageHistory.remove(current.getId());
+    heartbeats.remove(current.getId());
+    provisionerRegistry.provisionersChanged();
+  }
+
+  // tenant operations lock on the tenant name, since a tenant that is being created does not have an id yet.
+  private Lock getTenantLock(String tenantId) throws IOException {
+    String tenantName = tenantStore.getNameForId(tenantId);
+    return lockService.getTenantLock(tenantName == null ? tenantId : tenantName);
   }
 
+  // this is only a check against the capacity that is free right now. Tenants written concurrently, or whose workers
+  // have not been rebalanced yet, can both pass it. Assignments themselves never exceed capacity, since they are
+  // versioned writes against each provisioner, and a rebalance that cannot place all its workers fails with a
+  // CapacityException until more capacity comes online.
   private void checkCapacity(int diff) throws IOException, CapacityException {
-    if (diff > provisionerStore.getFreeCapacity()) {
+    if (diff > provisionerRegistry.getFreeCapacity()) {
       throw new CapacityException("Not enough capacity.");
     }
   }
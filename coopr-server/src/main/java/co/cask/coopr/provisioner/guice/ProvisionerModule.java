@@ -1,7 +1,11 @@
 package co.cask.coopr.provisioner.guice;
 
 import co.cask.coopr.provisioner.HttpProvisionerRequestService;
+import co.cask.coopr.provisioner.ProvisionerHeartbeats;
+import co.cask.coopr.provisioner.ProvisionerRegistry;
 import co.cask.coopr.provisioner.ProvisionerRequestService;
+import co.cask.coopr.provisioner.placement.ProvisionerUsageHistory;
+import co.cask.coopr.provisioner.placement.WorkerPlacementPolicies;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 
@@ -13,5 +17,9 @@ public class ProvisionerModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(ProvisionerRequestService.class).to(HttpProvisionerRequestService.class).in(Scopes.SINGLETON);
+    bind(ProvisionerRegistry.class).in(Scopes.SINGLETON);
+    bind(ProvisionerHeartbeats.class).in(Scopes.SINGLETON);
+    bind(ProvisionerUsageHistory.class).in(Scopes.SINGLETON);
+    bind(WorkerPlacementPolicies.class).in(Scopes.SINGLETON);
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link WorkerPlacementPolicy} that places workers one at a time based on the load of each provisioner. Workers
+ * are either spread out by adding them to the least loaded provisioner and removing them from the most loaded one, or
+ * packed by adding them to the most loaded provisioner that still has room and removing them from the least loaded
+ * one. Load defaults to the fraction of the provisioner capacity that is assigned.
+ */
+public abstract class LoadBasedPlacementPolicy implements WorkerPlacementPolicy {
+  private final boolean pack;
+
+  protected LoadBasedPlacementPolicy(boolean pack) {
+    this.pack = pack;
+  }
+
+  /**
+   * Get the load of a provisioner after the given change in the number of workers assigned to it.
+   *
+   * @param provisioner Provisioner to get the load of
+   * @param change Number of workers that would be added to the provisioner, or removed if negative
+   * @return Load of the provisioner after the change
+   */
+  protected double getLoad(Provisioner provisioner, int change) {
+    int assigned = provisioner.getCapacityTotal() - provisioner.getCapacityFree();
+    return (assigned + change) / (double) provisioner.getCapacityTotal();
+  }
+
+  @Override
+  public Map<String, Integer> placeWorkers(String tenantId, int numToAdd, Collection<Provisioner> provisioners) {
+    PriorityQueue<Candidate> candidates = createQueue(provisioners.size(), 1, !pack);
+    for (Provisioner provisioner : provisioners) {
+      if (provisioner.getCapacityFree() > 0) {
+        candidates.add(new Candidate(provisioner, provisioner.getCapacityFree()));
+      }
+    }
+    return plan(candidates, numToAdd);
+  }
+
+  @Override
+  public Map<String, Integer> removeWorkers(String tenantId, int numToRemove, Collection<Provisioner> provisioners) {
+    PriorityQueue<Candidate> candidates = createQueue(provisioners.size(), -1, pack);
+    for (Provisioner provisioner : provisioners) {
+      if (provisioner.getAssignedWorkers(tenantId) > 0) {
+        candidates.add(new Candidate(provisioner, provisioner.getAssignedWorkers(tenantId)));
+      }
+    }
+    return plan(candidates, numToRemove);
+  }
+
+  private Map<String, Integer> plan(PriorityQueue<Candidate> candidates, int num) {
+    Map<String, Integer> changes = Maps.newLinkedHashMap();
+    int remaining = num;
+    while (remaining > 0 && !candidates.isEmpty()) {
+      Candidate candidate = candidates.poll();
+      candidate.num++;
+      remaining--;
+      changes.put(candidate.provisioner.getId(), candidate.num);
+      // re-queue with its new load if it can take more changes
+      if (candidate.num < candidate.limit) {
+        candidates.add(candidate);
+      }
+    }
+    return changes;
+  }
+
+  // step is the change in workers for each worker planned, which is 1 when adding and -1 when removing.
+  private PriorityQueue<Candidate> createQueue(int size, final int step, final boolean leastLoadedFirst) {
+    return new PriorityQueue<Candidate>(Math.max(1, size), new Comparator<Candidate>() {
+      @Override
+      public int compare(Candidate c1, Candidate c2) {
+        int cmp = Double.compare(getLoad(c1.provisioner, c1.num * step), getLoad(c2.provisioner, c2.num * step));
+        if (cmp == 0) {
+          // break ties by id so that plans are deterministic
+          return c1.provisioner.getId().compareTo(c2.provisioner.getId());
+        }
+        return leastLoadedFirst ? cmp : -cmp;
+      }
+    });
+  }
+
+  /**
+   * A provisioner along with the number of workers planned for it so far, and how many can be planned at most.
+   */
+  private static final class Candidate {
+    private final Provisioner provisioner;
+    private final int limit;
+    private int num;
+
+    private Candidate(Provisioner provisioner, int limit) {
+      this.provisioner = provisioner;
+      this.limit = limit;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+/**
+ * Types of {@link WorkerPlacementPolicy}, selectable per tenant.
+ */
+public enum PlacementPolicyType {
+  /**
+   * Place workers on the provisioners with the lowest fraction of their capacity assigned.
+   */
+  SPREAD,
+  /**
+   * Fill up the provisioners with the highest fraction of their capacity assigned before using others.
+   */
+  BINPACK,
+  /**
+   * Like spread, but using the live workers provisioners reported in their recent heartbeats.
+   */
+  USAGE_WEIGHTED
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In memory history of the number of live workers provisioners reported in their most recent heartbeats. Only
+ * heartbeats received by this server are recorded.
+ */
+public class ProvisionerUsageHistory {
+  private static final int DEFAULT_HISTORY_SIZE = 10;
+  private final int historySize;
+  private final ConcurrentMap<String, UsageSamples> samples;
+
+  @Inject
+  private ProvisionerUsageHistory() {
+    this(DEFAULT_HISTORY_SIZE);
+  }
+
+  public ProvisionerUsageHistory(int historySize) {
+    this.historySize = historySize;
+    this.samples = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Record the usage a provisioner reported in a heartbeat, replacing the oldest recorded usage if the history is full.
+   *
+   * @param provisionerId Id of the provisioner that sent the heartbeat
+   * @param usage Mapping of tenant id to number of live workers for that tenant
+   */
+  public void recordUsage(String provisionerId, Map<String, Integer> usage) {
+    int liveWorkers = 0;
+    for (Integer tenantWorkers : usage.values()) {
+      liveWorkers += tenantWorkers;
+    }
+    UsageSamples provisionerSamples = samples.get(provisionerId);
+    if (provisionerSamples == null) {
+      UsageSamples newSamples = new UsageSamples(historySize);
+      provisionerSamples = samples.putIfAbsent(provisionerId, newSamples);
+      if (provisionerSamples == null) {
+        provisionerSamples = newSamples;
+      }
+    }
+    provisionerSamples.add(liveWorkers);
+  }
+
+  /**
+   * Get the average number of live workers the given provisioner reported in its recent heartbeats. If no heartbeats
+   * were recorded, the usage currently stored with the provisioner is used.
+   *
+   * @param provisioner Provisioner to get the average number of live workers for
+   * @return Average number of live workers of the provisioner
+   */
+  public double getAverageLiveWorkers(Provisioner provisioner) {
+    UsageSamples provisionerSamples = samples.get(provisioner.getId());
+    if (provisionerSamples != null) {
+      return provisionerSamples.getAverage();
+    }
+    int liveWorkers = 0;
+    for (Integer tenantWorkers : provisioner.getUsage().values()) {
+      liveWorkers += tenantWorkers;
+    }
+    return liveWorkers;
+  }
+
+  /**
+   * Remove the history of the given provisioner.
+   *
+   * @param provisionerId Id of the provisioner to remove the history of
+   */
+  public void remove(String provisionerId) {
+    samples.remove(provisionerId);
+  }
+
+  /**
+   * Fixed size ring of live worker counts.
+   */
+  private static final class UsageSamples {
+    private final int[] liveWorkers;
+    private int next;
+    private int size;
+    private long sum;
+
+    private UsageSamples(int capacity) {
+      this.liveWorkers = new int[capacity];
+    }
+
+    private synchronized void add(int sample) {
+      if (size == liveWorkers.length) {
+        sum -= liveWorkers[next];
+      } else {
+        size++;
+      }
+      liveWorkers[next] = sample;
+      sum += sample;
+      next = (next + 1) % liveWorkers.length;
+    }
+
+    private synchronized double getAverage() {
+      return size == 0 ? 0 : sum / (double) size;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.codec.json.guice.CodecModules;
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.inject.Guice;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simulates rebalancing tenant workers offline against recorded provisioner states, so that placement policies can be
+ * compared before one is selected for a tenant. Recorded states are read from a json file of the form:
+ *
+ * <pre>
+ *   { "provisioners": [ ... ], "tenants": { "tenant1": 30, "tenant2": 10 } }
+ * </pre>
+ *
+ * where provisioners are in the same format as returned by the provisioners api, and tenants map each tenant, as it
+ * appears in the provisioner assignments, to the number of workers it should have. Usage in the recorded provisioners
+ * is taken as their usage history.
+ */
+public class RebalanceSimulator {
+  private static final String ARG_OPT_FILE = "file";
+  private static final String ARG_OPT_POLICY = "policy";
+
+  private final WorkerPlacementPolicies placementPolicies;
+
+  public RebalanceSimulator(WorkerPlacementPolicies placementPolicies) {
+    this.placementPolicies = placementPolicies;
+  }
+
+  /**
+   * Rebalance the workers of the given tenants, one tenant at a time, in the same way the server would.
+   *
+   * @param policyType Placement policy to use
+   * @param provisioners Recorded provisioner states. These are not modified
+   * @param tenantWorkers Mapping of tenant to number of workers it should have
+   * @return Provisioner states after rebalancing
+   */
+  public List<Provisioner> simulate(PlacementPolicyType policyType, Collection<Provisioner> provisioners,
+                                    Map<String, Integer> tenantWorkers) {
+    WorkerPlacementPolicy placementPolicy = placementPolicies.getPolicy(policyType);
+    Map<String, Provisioner> states = Maps.newLinkedHashMap();
+    for (Provisioner provisioner : provisioners) {
+      states.put(provisioner.getId(), copy(provisioner));
+    }
+
+    for (Map.Entry<String, Integer> entry : tenantWorkers.entrySet()) {
+      String tenant = entry.getKey();
+      int assigned = 0;
+      List<Provisioner> tenantProvisioners = Lists.newArrayList();
+      List<Provisioner> freeProvisioners = Lists.newArrayList();
+      for (Provisioner provisioner : states.values()) {
+        assigned += provisioner.getAssignedWorkers(tenant);
+        if (provisioner.getAssignedWorkers(tenant) > 0) {
+          tenantProvisioners.add(provisioner);
+        }
+        if (provisioner.getCapacityFree() > 0) {
+          freeProvisioners.add(provisioner);
+        }
+      }
+
+      int diff = entry.getValue() - assigned;
+      if (diff < 0) {
+        for (Map.Entry<String, Integer> removal :
+          placementPolicy.removeWorkers(tenant, -diff, tenantProvisioners).entrySet()) {
+          states.get(removal.getKey()).tryRemoveTenantAssignments(tenant, removal.getValue());
+        }
+      } else if (diff > 0) {
+        for (Map.Entry<String, Integer> placement :
+          placementPolicy.placeWorkers(tenant, diff, freeProvisioners).entrySet()) {
+          states.get(placement.getKey()).tryAddTenantAssignments(tenant, placement.getValue());
+        }
+      }
+    }
+    return ImmutableList.copyOf(states.values());
+  }
+
+  private Provisioner copy(Provisioner provisioner) {
+    Map<String, Integer> assignments = Maps.newHashMap();
+    for (String tenant : provisioner.getAssignedTenants()) {
+      assignments.put(tenant, provisioner.getAssignedWorkers(tenant));
+    }
+    return new Provisioner(provisioner.getId(), provisioner.getHost(), provisioner.getPort(),
+                           provisioner.getCapacityTotal(), provisioner.getUsage(), assignments);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new Options();
+    options.addOption("f", ARG_OPT_FILE, true, "Json file of recorded provisioner states and tenant workers.");
+    options.addOption("p", ARG_OPT_POLICY, true, "Placement policy to simulate. Defaults to all policies.");
+
+    CommandLine commandLine;
+    try {
+      commandLine = new GnuParser().parse(options, args);
+    } catch (ParseException e) {
+      printHelp();
+      return;
+    }
+    if (!commandLine.hasOption(ARG_OPT_FILE)) {
+      printHelp();
+      return;
+    }
+
+    List<PlacementPolicyType> policyTypes = commandLine.hasOption(ARG_OPT_POLICY) ?
+      ImmutableList.of(PlacementPolicyType.valueOf(commandLine.getOptionValue(ARG_OPT_POLICY).toUpperCase())) :
+      ImmutableList.copyOf(PlacementPolicyType.values());
+    RecordedState recordedState = readRecordedState(commandLine.getOptionValue(ARG_OPT_FILE));
+
+    RebalanceSimulator simulator = new RebalanceSimulator(
+      new WorkerPlacementPolicies(new ProvisionerUsageHistory(1), PlacementPolicyType.SPREAD));
+    PrintStream out = System.out;
+    for (PlacementPolicyType policyType : policyTypes) {
+      out.println(policyType.name().toLowerCase() + ":");
+      double minLoad = Double.MAX_VALUE;
+      double maxLoad = 0;
+      int numUsed = 0;
+      for (Provisioner provisioner : simulator.simulate(policyType, recordedState.provisioners,
+                                                        recordedState.tenants)) {
+        int assigned = provisioner.getCapacityTotal() - provisioner.getCapacityFree();
+        double load = assigned / (double) provisioner.getCapacityTotal();
+        minLoad = Math.min(minLoad, load);
+        maxLoad = Math.max(maxLoad, load);
+        if (assigned > 0) {
+          numUsed++;
+        }
+        out.println("  " + provisioner.getId() + " " + assigned + "/" + provisioner.getCapacityTotal() + " " +
+                      toAssignments(provisioner));
+      }
+      out.println(String.format("  provisioners used: %d, min load: %.2f, max load: %.2f",
+                                numUsed, minLoad == Double.MAX_VALUE ? 0 : minLoad, maxLoad));
+    }
+  }
+
+  private static Map<String, Integer> toAssignments(Provisioner provisioner) {
+    Map<String, Integer> assignments = Maps.newTreeMap();
+    for (String tenant : provisioner.getAssignedTenants()) {
+      assignments.put(tenant, provisioner.getAssignedWorkers(tenant));
+    }
+    return assignments;
+  }
+
+  private static RecordedState readRecordedState(String file) throws IOException {
+    Gson gson = Guice.createInjector(new CodecModules().getModule()).getInstance(Gson.class);
+    Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+    try {
+      return gson.fromJson(reader, new TypeToken<RecordedState>() { }.getType());
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void printHelp() {
+    PrintStream out = System.out;
+    out.println("Usage: ");
+    out.println("  RebalanceSimulator --file <recorded_state_file> [--policy <spread|binpack|usage_weighted>]");
+  }
+
+  /**
+   * Recorded provisioner states and tenant workers to simulate against.
+   */
+  private static final class RecordedState {
+    private List<Provisioner> provisioners;
+    private Map<String, Integer> tenants;
+  }
+}
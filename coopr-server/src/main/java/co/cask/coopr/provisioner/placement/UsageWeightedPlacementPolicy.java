@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+
+/**
+ * Spreads workers across provisioners based on the number of live workers each provisioner reported in its recent
+ * heartbeats, so that provisioners that have been running more workers than they are assigned, for example while
+ * workers of removed tenants are still finishing up, get fewer new workers. Load is never taken as lower than the
+ * assigned workers, since newly assigned workers take a few heartbeats to show up as live.
+ */
+public class UsageWeightedPlacementPolicy extends LoadBasedPlacementPolicy {
+  private final ProvisionerUsageHistory usageHistory;
+
+  public UsageWeightedPlacementPolicy(ProvisionerUsageHistory usageHistory) {
+    super(false);
+    this.usageHistory = usageHistory;
+  }
+
+  @Override
+  protected double getLoad(Provisioner provisioner, int change) {
+    int assigned = provisioner.getCapacityTotal() - provisioner.getCapacityFree();
+    double live = usageHistory.getAverageLiveWorkers(provisioner);
+    return (Math.max(assigned, live) + change) / provisioner.getCapacityTotal();
+  }
+}
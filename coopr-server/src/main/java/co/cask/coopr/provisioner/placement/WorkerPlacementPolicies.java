@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * The available {@link WorkerPlacementPolicy} instances, along with the policy used for tenants that do not
+ * specify one.
+ */
+public class WorkerPlacementPolicies {
+  private final Map<PlacementPolicyType, WorkerPlacementPolicy> policies;
+  private final PlacementPolicyType defaultType;
+
+  @Inject
+  private WorkerPlacementPolicies(ProvisionerUsageHistory usageHistory, Configuration conf) {
+    this(usageHistory, PlacementPolicyType.valueOf(
+      conf.get(Constants.PROVISIONER_PLACEMENT_POLICY, Constants.DEFAULT_PROVISIONER_PLACEMENT_POLICY).toUpperCase()));
+  }
+
+  public WorkerPlacementPolicies(ProvisionerUsageHistory usageHistory, PlacementPolicyType defaultType) {
+    this.policies = Maps.newEnumMap(PlacementPolicyType.class);
+    this.policies.put(PlacementPolicyType.SPREAD, new SpreadPlacementPolicy());
+    this.policies.put(PlacementPolicyType.BINPACK, new BinPackPlacementPolicy());
+    this.policies.put(PlacementPolicyType.USAGE_WEIGHTED, new UsageWeightedPlacementPolicy(usageHistory));
+    this.defaultType = defaultType;
+  }
+
+  /**
+   * Get the policy of the given type.
+   *
+   * @param type Type of policy to get, or null for the default policy
+   * @return Policy of the given type
+   */
+  public WorkerPlacementPolicy getPolicy(PlacementPolicyType type) {
+    return policies.get(type == null ? defaultType : type);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Decides which provisioners tenant workers should be added to or removed from. Policies only plan the change, they
+ * must not modify the given provisioners. The plan is applied by the caller, which may end up changing fewer workers
+ * than planned if provisioners change concurrently, in which case the policy is asked again for the remainder.
+ */
+public interface WorkerPlacementPolicy {
+
+  /**
+   * Plan where to add workers for a tenant.
+   *
+   * @param tenantId Id of the tenant to add workers for
+   * @param numToAdd Number of workers to add
+   * @param provisioners Provisioners that have free capacity
+   * @return Mapping of provisioner id to the number of workers to add to that provisioner. May add up to fewer workers
+   *         than requested if there is not enough capacity.
+   */
+  Map<String, Integer> placeWorkers(String tenantId, int numToAdd, Collection<Provisioner> provisioners);
+
+  /**
+   * Plan where to remove workers for a tenant from.
+   *
+   * @param tenantId Id of the tenant to remove workers for
+   * @param numToRemove Number of workers to remove
+   * @param provisioners Provisioners that have workers assigned to the tenant
+   * @return Mapping of provisioner id to the number of workers to remove from that provisioner
+   */
+  Map<String, Integer> removeWorkers(String tenantId, int numToRemove, Collection<Provisioner> provisioners);
+}
@@ -17,6 +17,7 @@ package co.cask.coopr.provisioner.plugin;
 
 import co.cask.coopr.common.utils.ImmutablePair;
 import co.cask.coopr.spec.plugin.ResourceTypeSpecification;
+import com.google.common.base.Objects;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
@@ -47,4 +48,23 @@ public class ResourceCollection {
   public void addResources(ResourceType type, ResourceTypeSpecification spec, Collection<ResourceMeta> metas) {
     resources.putAll(ImmutablePair.of(type, spec), metas);
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ResourceCollection)) {
+      return false;
+    }
+
+    ResourceCollection that = (ResourceCollection) o;
+
+    return Objects.equal(resources, that.resources);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(resources);
+  }
 }
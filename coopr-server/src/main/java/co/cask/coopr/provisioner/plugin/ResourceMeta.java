@@ -20,21 +20,27 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 /**
- * Metadata about a plugin resource, including a name, version, and status.
+ * Metadata about a plugin resource, including a name, version, status, and digest of the resource contents.
  */
 public class ResourceMeta extends NamedEntity {
   private final int version;
   private final ResourceStatus status;
+  private final String digest;
 
   public ResourceMeta(String name, int version) {
     this(name, version, ResourceStatus.INACTIVE);
   }
 
   public ResourceMeta(String name, Integer version, ResourceStatus status) {
+    this(name, version, status, null);
+  }
+
+  public ResourceMeta(String name, Integer version, ResourceStatus status, String digest) {
     super(name);
     Preconditions.checkArgument(version != null && version >= 0, "Version must be non-null and positive.");
     this.version = version;
     this.status = status;
+    this.digest = digest;
   }
 
   /**
@@ -55,6 +61,17 @@ public class ResourceMeta extends NamedEntity {
     return status;
   }
 
+  /**
+   * Get the hex encoded SHA-1 digest of the resource contents, or null if the upload has not finished.
+   * Resource versions are never modified, so two resources with the same digest have the same contents.
+   *
+   * @return Digest of the resource contents
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  // the digest is determined by the name and version, so it is not used for equality
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -82,6 +99,7 @@ public class ResourceMeta extends NamedEntity {
       .add("name", name)
       .add("version", version)
       .add("status", status)
+      .add("digest", digest)
       .toString();
   }
 }
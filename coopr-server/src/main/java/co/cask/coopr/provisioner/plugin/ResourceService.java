@@ -31,7 +31,8 @@ import co.cask.coopr.store.provisioner.PluginStore;
 import co.cask.http.BodyConsumer;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.Sets;
-import com.google.common.io.ByteStreams;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
@@ -105,11 +106,17 @@ public class ResourceService extends AbstractIdleService {
       // upload of the same name is started while this one is still going. It is deleted if the upload fails.
       metaStoreService.getResourceTypeView(account, resourceType).add(resourceMeta);
 
+      // digest is computed as the contents stream through so the resource never has to be read back
+      final Hasher hasher = Hashing.sha1().newHasher();
+
       return new BodyConsumer() {
         @Override
         public void chunk(ChannelBuffer request, HttpResponder responder) {
           try {
-            request.readBytes(os, request.readableBytes());
+            byte[] bytes = new byte[request.readableBytes()];
+            request.readBytes(bytes);
+            hasher.putBytes(bytes);
+            os.write(bytes);
           } catch (IOException e) {
             LOG.error("Error during upload of version {} of resource {} for account {}.",
                       version, name, account, e);
@@ -121,7 +128,10 @@ public class ResourceService extends AbstractIdleService {
         public void finished(HttpResponder responder) {
           try {
             os.close();
-            responder.sendJson(HttpResponseStatus.OK, resourceMeta, ResourceMeta.class, gson);
+            String digest = hasher.hash().toString();
+            metaStoreService.getResourceTypeView(account, resourceType).setDigest(name, version, digest);
+            ResourceMeta uploadedMeta = new ResourceMeta(name, version, resourceMeta.getStatus(), digest);
+            responder.sendJson(HttpResponseStatus.OK, uploadedMeta, ResourceMeta.class, gson);
             LOG.debug("finished uploading resource.");
           } catch (Exception e) {
             LOG.error("Error finishing upload of resource {} of type {} for account {}.",
@@ -187,36 +197,14 @@ public class ResourceService extends AbstractIdleService {
     int version = meta.getVersion();
     Lock lock = getResourceLock(account, type, name);
     lock.lock();
-    InputStream inStream = null;
-    OutputStream outStream = null;
     try {
-      inStream = pluginStore.getResourceInputStream(Account.SUPERADMIN, type, name, version);
-      outStream = pluginStore.getResourceOutputStream(account, type, name, version);
-      if (inStream == null) {
-        LOG.error("Could not get input stream for version {} of resource {} of type {} for account {}.",
-                  version, name, type, account);
-        throw new IOException("Unable to get plugin data.");
-      }
-      ByteStreams.copy(inStream, outStream);
+      // the plugin store can share the data with the superadmin instead of copying it
+      pluginStore.copyResource(Account.SUPERADMIN, account, type, name, version);
       PluginResourceTypeView metaView = metaStoreService.getResourceTypeView(account, type);
       if (!metaView.exists(name, version)) {
         metaView.add(meta);
       }
     } finally {
-      if (outStream != null) {
-        try {
-          outStream.close();
-        } catch (IOException e) {
-          LOG.error("Exception closing output stream while copying superadmin resource.", e);
-        }
-      }
-      if (inStream != null) {
-        try {
-          inStream.close();
-        } catch (IOException e) {
-          LOG.error("Exception closing input stream while copying superadmin resource.", e);
-        }
-      }
       lock.unlock();
     }
   }
@@ -234,14 +222,44 @@ public class ResourceService extends AbstractIdleService {
    */
   public InputStream getResourceInputStream(final Account account, ResourceType resourceType, String name, int version)
     throws MissingEntityException, IOException {
+    return getResourceInputStream(account, resourceType, getResourceMeta(account, resourceType, name, version));
+  }
+
+  /**
+   * Get an input stream for reading the plugin resource described by the given metadata.
+   *
+   * @param account Account the resource belongs to
+   * @param resourceType Type of resource
+   * @param meta Metadata of the resource to get an input stream for
+   * @return Input stream for reading the given plugin resource
+   * @throws IOException if there was an error getting the input stream for the resource
+   */
+  public InputStream getResourceInputStream(Account account, ResourceType resourceType, ResourceMeta meta)
+    throws IOException {
     // no lock needed since each resource uploaded gets its own id.
+    LOG.debug("getting input stream for version {} of resource {} of type {} for account {}.",
+              meta.getVersion(), meta.getName(), resourceType, account);
+    return pluginStore.getResourceInputStream(account, resourceType, meta.getName(), meta.getVersion());
+  }
+
+  /**
+   * Get the metadata of the plugin resource.
+   *
+   * @param account Account the resource belongs to
+   * @param resourceType Type of resource
+   * @param name Name of resource to get metadata for
+   * @param version Version of resource to get metadata for
+   * @return Metadata of the given plugin resource
+   * @throws MissingEntityException if there is no such resource version
+   * @throws IOException if there was an error getting the metadata
+   */
+  public ResourceMeta getResourceMeta(Account account, ResourceType resourceType, String name, int version)
+    throws MissingEntityException, IOException {
     ResourceMeta meta = metaStoreService.getResourceTypeView(account, resourceType).get(name, version);
     if (meta == null) {
       throw new MissingEntityException("Resource not found.");
     }
-    LOG.debug("getting input stream for version {} of resource {} of type {} for account {}.",
-              version, name, resourceType, account);
-    return pluginStore.getResourceInputStream(account, resourceType, meta.getName(), meta.getVersion());
+    return meta;
   }
 
   /**
@@ -36,6 +36,8 @@ import co.cask.coopr.http.InternalHandlerServer;
 import co.cask.coopr.http.guice.HttpModule;
 import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.management.guice.ManagementModule;
+import co.cask.coopr.provisioner.ProvisionerHeartbeats;
+import co.cask.coopr.provisioner.ProvisionerRequestService;
 import co.cask.coopr.provisioner.guice.ProvisionerModule;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.scheduler.Scheduler;
@@ -44,6 +46,7 @@ import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.credential.CredentialStore;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.guice.StoreModule;
+import co.cask.coopr.store.metrics.NodeUsageStore;
 import co.cask.coopr.store.provisioner.ProvisionerStore;
 import co.cask.coopr.store.tenant.TenantStore;
 import co.cask.coopr.store.user.UserStore;
@@ -89,10 +92,13 @@ public final class ServerMain extends DaemonMain {
   private EntityStoreService entityStoreService;
   private ResourceService resourceService;
   private ProvisionerStore provisionerStore;
+  private ProvisionerRequestService provisionerRequestService;
+  private ProvisionerHeartbeats provisionerHeartbeats;
   private IdService idService;
   private TenantStore tenantStore;
   private UserStore userStore;
   private CredentialStore credentialStore;
+  private NodeUsageStore nodeUsageStore;
   private QueueService queueService;
   // Authentication
   private boolean securityEnabled;
@@ -164,7 +170,7 @@ public final class ServerMain extends DaemonMain {
         new ConfigurationModule(conf),
         new ZookeeperModule(zkClientService),
         new StoreModule(conf),
-        new QueueModule(zkClientService),
+        new QueueModule(zkClientService, conf),
         new SchedulerModule(conf, callbackExecutorService, solverExecutorService),
         new HttpModule(),
         new ManagementModule(),
@@ -186,12 +192,18 @@ public final class ServerMain extends DaemonMain {
       entityStoreService.startAndWait();
       provisionerStore = injector.getInstance(ProvisionerStore.class);
       provisionerStore.startAndWait();
+      provisionerRequestService = injector.getInstance(ProvisionerRequestService.class);
+      provisionerRequestService.startAndWait();
+      provisionerHeartbeats = injector.getInstance(ProvisionerHeartbeats.class);
+      provisionerHeartbeats.startAndWait();
       resourceService = injector.getInstance(ResourceService.class);
       resourceService.startAndWait();
       userStore = injector.getInstance(UserStore.class);
       userStore.startAndWait();
       credentialStore = injector.getInstance(CredentialStore.class);
       credentialStore.startAndWait();
+      nodeUsageStore = injector.getInstance(NodeUsageStore.class);
+      nodeUsageStore.startAndWait();
       queueService = injector.getInstance(QueueService.class);
       queueService.startAndWait();
       if (securityEnabled) {
@@ -247,8 +259,8 @@ public final class ServerMain extends DaemonMain {
       }
     }
 
-    stopAll(internalHandlerServer, externalHandlerServer, queueService,
-            userStore, resourceService, provisionerStore, tenantStore,
+    stopAll(internalHandlerServer, externalHandlerServer, queueService, provisionerRequestService,
+            nodeUsageStore, userStore, resourceService, provisionerHeartbeats, provisionerStore, tenantStore,
             clusterStoreService, entityStoreService, idService, zkClientService, inMemoryZKServer,
             externalAuthenticationServer);
   }
@@ -168,13 +168,18 @@ public class JobPlanner {
     List<Map<String, ClusterTask>> deDupTasks = Lists.newArrayList();
 
     for (Set<ClusterTask> stage : tasks) {
+      // the nth task of a host in a stage goes into the nth new stage, which is always the first new stage that
+      // does not have a task for the host yet, since every earlier one already has one.
       List<Map<String, ClusterTask>> newStages = Lists.newArrayList();
+      Map<String, Integer> hostTaskCounts = Maps.newHashMap();
       for (ClusterTask task : stage) {
-        if (!addToExistingStage(task, newStages)) {
-          Map<String, ClusterTask> newStage = Maps.newHashMap();
-          newStage.put(task.getNodeId(), task);
-          newStages.add(newStage);
+        Integer count = hostTaskCounts.get(task.getNodeId());
+        int newStageIndex = count == null ? 0 : count;
+        if (newStageIndex == newStages.size()) {
+          newStages.add(Maps.<String, ClusterTask>newHashMap());
         }
+        newStages.get(newStageIndex).put(task.getNodeId(), task);
+        hostTaskCounts.put(task.getNodeId(), newStageIndex + 1);
       }
       deDupTasks.addAll(newStages);
     }
@@ -182,16 +187,6 @@ public class JobPlanner {
     return Lists.newArrayList(Iterables.transform(deDupTasks, MAP_CLUSTER_TASK_FUNCTION));
   }
 
-  static boolean addToExistingStage(ClusterTask task, List<Map<String, ClusterTask>> stages) {
-    for (Map<String, ClusterTask> newStage : stages) {
-      if (!newStage.containsKey(task.getNodeId())) {
-        newStage.put(task.getNodeId(), task);
-        return true;
-      }
-    }
-    return false;
-  }
-
   private static final Function<Map<String, ClusterTask>, Set<ClusterTask>> MAP_CLUSTER_TASK_FUNCTION =
     new Function<Map<String, ClusterTask>, Set<ClusterTask>>() {
       @Override
@@ -26,7 +26,9 @@ import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.common.zookeeper.LockService;
-import co.cask.coopr.macro.Expander;
+import co.cask.coopr.macro.JsonTemplate;
+import co.cask.coopr.management.JobWorkerStats;
+import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.scheduler.task.JobId;
@@ -35,13 +37,16 @@ import co.cask.coopr.scheduler.task.TaskConfig;
 import co.cask.coopr.scheduler.task.TaskId;
 import co.cask.coopr.scheduler.task.TaskService;
 import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.store.UnitOfWork;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.inject.Inject;
@@ -49,10 +54,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -61,7 +72,13 @@ import java.util.concurrent.locks.Lock;
  * stage successfully completed, the job will be moved to the next stage and all tasks in the stage will be scheduled.
  * If some task was failed, the appropriate retry and rollback actions are taken for the task. If the job itself fails,
  * unneeded tasks are dropped and cluster and job state is managed. If all tasks for the job have completed, status
- * is updated across the job and cluster.
+ * is updated across the job and cluster. Jobs are scheduled by the thread running the job scheduler, unless it is
+ * configured to use multiple worker threads. In that case, each job is handed to the worker assigned to its cluster,
+ * so that jobs of the same cluster are still handled in order while jobs of different clusters are handled in parallel.
+ * Worker threads only run between {@link #startWorkers()} and {@link #stopWorkers()}, and jobs that were taken but not
+ * yet handled by a worker when it stops are put back into the job queue.
+ * All cluster, job, task, and node writes made while scheduling a job are written together in one transaction before
+ * the job lock is released, and tasks are only given to provisioners once their status has been written.
  */
 public class JobScheduler implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(JobScheduler.class);
@@ -74,14 +91,17 @@ public class JobScheduler implements Runnable {
   private final Gson gson;
   private final QueueGroup jobQueues;
   private final QueueGroup provisionerQueues;
+  // null if jobs are scheduled by the thread that runs the job scheduler
+  private final List<JobWorker> workers;
 
   @Inject
-  private JobScheduler(ClusterStoreService clusterStoreService,
-                       QueueService queueService,
-                       LockService lockService,
-                       TaskService taskService,
-                       Configuration conf,
-                       Gson gson) {
+  JobScheduler(ClusterStoreService clusterStoreService,
+               QueueService queueService,
+               LockService lockService,
+               TaskService taskService,
+               Configuration conf,
+               ServerStats serverStats,
+               Gson gson) {
     this.clusterStore = clusterStoreService.getSystemView();
     this.lockService = lockService;
     this.taskService = taskService;
@@ -89,6 +109,50 @@ public class JobScheduler implements Runnable {
     this.gson = gson;
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
     this.provisionerQueues = queueService.getQueueGroup(QueueType.PROVISIONER);
+
+    int numWorkers = conf.getInt(Constants.JOB_SCHEDULER_NUM_THREADS, Constants.DEFAULT_JOB_SCHEDULER_NUM_THREADS);
+    if (numWorkers > 1) {
+      ThreadFactory threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat("job-scheduler-worker-%d")
+        .setDaemon(true)
+        .build();
+      List<JobWorker> workerList = Lists.newArrayListWithCapacity(numWorkers);
+      List<JobWorkerStats> workerStats = Lists.newArrayListWithCapacity(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+        JobWorker worker = new JobWorker(threadFactory);
+        workerList.add(worker);
+        workerStats.add(worker.stats);
+      }
+      this.workers = ImmutableList.copyOf(workerList);
+      serverStats.setJobWorkerStats(workerStats);
+    } else {
+      this.workers = null;
+    }
+  }
+
+  /**
+   * Starts the worker threads, if jobs are scheduled by workers.
+   */
+  public void startWorkers() {
+    if (workers != null) {
+      for (JobWorker worker : workers) {
+        worker.start();
+      }
+    }
+  }
+
+  /**
+   * Stops the worker threads, if jobs are scheduled by workers. Jobs being scheduled are finished, while jobs that were
+   * dispatched to a worker but not started yet are put back into the job queue.
+   */
+  public void stopWorkers() {
+    if (workers != null) {
+      for (JobWorker worker : workers) {
+        for (Runnable undispatched : worker.stop()) {
+          ((DispatchedJob) undispatched).release();
+        }
+      }
+    }
   }
 
   @Override
@@ -97,136 +161,191 @@ public class JobScheduler implements Runnable {
       Iterator<GroupElement> jobIter = jobQueues.takeIterator(consumerId);
       while (jobIter.hasNext()) {
         GroupElement gElement = jobIter.next();
-        String queueName = gElement.getQueueName();
-        Element element = gElement.getElement();
-        String jobIdStr = element.getValue();
-
-        LOG.debug("Got job {} to schedule", jobIdStr);
-        JobId jobId = JobId.fromString(jobIdStr);
-        Lock lock = lockService.getJobLock(queueName, jobId.getClusterId());
-        lock.lock();
-        try {
-          ClusterJob job = clusterStore.getClusterJob(jobId);
-          Cluster cluster = clusterStore.getCluster(job.getClusterId());
-          // this can happen if 2 tasks complete around the same time and the first one places the job in the queue,
-          // sees 0 in progress tasks, and sets the cluster status. The job is still in the queue as another element
-          // from the 2nd task and gets here.  In that case, no need to go further.
-          if (cluster.getStatus() != Cluster.Status.PENDING) {
-            continue;
-          }
-          if (job.getJobStatus() == ClusterJob.Status.PAUSED) {
-            continue;
+        if (workers == null) {
+          schedule(gElement);
+        } else if (!dispatch(gElement)) {
+          // workers are stopped, leave the remaining jobs to whoever schedules jobs next
+          break;
+        }
+      }
+    } catch (Throwable e) {
+      LOG.error("Got exception: ", e);
+    }
+  }
+
+  // hands the element to a worker picked by cluster id, so that jobs of a cluster are scheduled in the order they
+  // were taken while jobs of different clusters are scheduled in parallel. Returns false if workers are stopped, in
+  // which case the element is put back into the queue.
+  private boolean dispatch(GroupElement gElement) {
+    String clusterId = JobId.fromString(gElement.getElement().getValue()).getClusterId();
+    JobWorker worker = workers.get((clusterId.hashCode() & Integer.MAX_VALUE) % workers.size());
+    DispatchedJob dispatchedJob = new DispatchedJob(gElement, worker);
+    worker.stats.elementDispatched();
+    if (!worker.execute(dispatchedJob)) {
+      dispatchedJob.release();
+      return false;
+    }
+    return true;
+  }
+
+  private void schedule(GroupElement gElement) throws Exception {
+    String queueName = gElement.getQueueName();
+    Element element = gElement.getElement();
+    String jobIdStr = element.getValue();
+
+    LOG.debug("Got job {} to schedule", jobIdStr);
+    JobId jobId = JobId.fromString(jobIdStr);
+    Lock lock = lockService.getJobLock(queueName, jobId.getClusterId());
+    lock.lock();
+    UnitOfWork unitOfWork = clusterStore.startUnitOfWork();
+    TrackingQueue.ConsumingStatus consumingStatus = TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY;
+    try {
+      ClusterJob job = clusterStore.getClusterJob(jobId);
+      Cluster cluster = clusterStore.getCluster(job.getClusterId());
+      // this can happen if 2 tasks complete around the same time and the first one places the job in the queue,
+      // sees 0 in progress tasks, and sets the cluster status. The job is still in the queue as another element
+      // from the 2nd task and gets here.  In that case, no need to go further.
+      if (cluster.getStatus() != Cluster.Status.PENDING) {
+        return;
+      }
+      if (job.getJobStatus() == ClusterJob.Status.PAUSED) {
+        return;
+      }
+      LOG.trace("Scheduling job {}", job);
+      Set<String> currentStage = job.getCurrentStage();
+
+      // Check how many tasks are completed/not-submitted
+      boolean jobFailed = job.getJobStatus() == ClusterJob.Status.FAILED;
+      int completedTasks = 0;
+      int inProgressTasks = 0;
+      Set<ClusterTask> notSubmittedTasks = Sets.newHashSet();
+      Set<ClusterTask> retryTasks = Sets.newHashSet();
+      LOG.debug("Verifying task statuses for stage {} for job {}", job.getCurrentStageNumber(), jobIdStr);
+      Map<String, ClusterTask> stageTasks = clusterStore.getClusterTasks(toTaskIds(currentStage));
+      for (String taskId : currentStage) {
+        ClusterTask task = stageTasks.get(taskId);
+        job.setTaskStatus(task.getTaskId(), task.getStatus());
+        LOG.debug("Status of task {} is {}", taskId, task.getStatus());
+        if (task.getStatus() == ClusterTask.Status.COMPLETE) {
+          ++completedTasks;
+        } else if (task.getStatus() == ClusterTask.Status.NOT_SUBMITTED) {
+          notSubmittedTasks.add(task);
+        } else if (task.getStatus() == ClusterTask.Status.FAILED) {
+          // If max retries has not reached, retry task. Else, fail job.
+          if (task.getNumAttempts() < maxTaskRetries) {
+            retryTasks.add(task);
+          } else {
+            jobFailed = true;
           }
-          LOG.trace("Scheduling job {}", job);
-          Set<String> currentStage = job.getCurrentStage();
-
-          // Check how many tasks are completed/not-submitted
-          boolean jobFailed = job.getJobStatus() == ClusterJob.Status.FAILED;
-          int completedTasks = 0;
-          int inProgressTasks = 0;
-          Set<ClusterTask> notSubmittedTasks = Sets.newHashSet();
-          Set<ClusterTask> retryTasks = Sets.newHashSet();
-          // TODO: avoid looking up every single task every time, or at least do a batch lookup
-          LOG.debug("Verifying task statuses for stage {} for job {}", job.getCurrentStageNumber(), jobIdStr);
-          for (String taskId : currentStage) {
-            ClusterTask task = clusterStore.getClusterTask(TaskId.fromString(taskId));
-            job.setTaskStatus(task.getTaskId(), task.getStatus());
-            LOG.debug("Status of task {} is {}", taskId, task.getStatus());
-            if (task.getStatus() == ClusterTask.Status.COMPLETE) {
-              ++completedTasks;
-            } else if (task.getStatus() == ClusterTask.Status.NOT_SUBMITTED) {
-              notSubmittedTasks.add(task);
-            } else if (task.getStatus() == ClusterTask.Status.FAILED) {
-              // If max retries has not reached, retry task. Else, fail job.
-              if (task.getNumAttempts() < maxTaskRetries) {
-                retryTasks.add(task);
-              } else {
-                jobFailed = true;
-              }
-            } else if (task.getStatus() == ClusterTask.Status.IN_PROGRESS) {
-              ++inProgressTasks;
-            }
+        } else if (task.getStatus() == ClusterTask.Status.IN_PROGRESS) {
+          ++inProgressTasks;
+        }
+      }
+
+      // If the job has not failed continue with scheduling other tasks.
+      if (!jobFailed) {
+
+        Set<Node> clusterNodes = clusterStore.getClusterNodes(job.getClusterId());
+        Map<String, Node> nodeMap = Maps.newHashMap();
+        for (Node node : clusterNodes) {
+          nodeMap.put(node.getId(), node);
+        }
+
+        // Handle retry tasks if any
+        if (!retryTasks.isEmpty()) {
+          for (ClusterTask task : retryTasks) {
+            notSubmittedTasks.add(scheduleRetry(job, task));
           }
+        }
 
-          // If the job has not failed continue with scheduling other tasks.
-          if (!jobFailed) {
-
-            Set<Node> clusterNodes = clusterStore.getClusterNodes(job.getClusterId());
-            Map<String, Node> nodeMap = Maps.newHashMap();
-            for (Node node : clusterNodes) {
-              nodeMap.put(node.getId(), node);
-            }
-
-            // Handle retry tasks if any
-            if (!retryTasks.isEmpty()) {
-              for (ClusterTask task : retryTasks) {
-                notSubmittedTasks.add(scheduleRetry(job, task));
-              }
-            }
-
-            // Submit any tasks not yet submitted
-            if (!notSubmittedTasks.isEmpty()) {
-              submitTasks(notSubmittedTasks, cluster, nodeMap, clusterNodes, job, queueName);
-            }
-
-            // Note: before moving cluster out of pending state, make sure that all in progress tasks are done.
-            // If all tasks are completed then move to next stage
-            if (completedTasks == currentStage.size()) {
-              if (job.hasNextStage()) {
-                LOG.debug("Advancing to next stage {} for job {}", job.getCurrentStageNumber(), job.getJobId());
-                job.advanceStage();
-                jobQueues.add(queueName, new Element(jobIdStr));
-              } else {
-                taskService.completeJob(job, cluster);
-              }
-            }
-            clusterStore.writeClusterJob(job);
-          } else if (inProgressTasks == 0) {
-            // special case: if all tasks were create tasks and all of them failed before they created anything,
-            // set the cluster state to 'terminated' instead of letting it go to 'incomplete'.
-            if (job.getClusterAction() == ClusterAction.CLUSTER_CREATE && allCreateTasksFailed(job)) {
-              String message = job.getStatusMessage();
-              // job could have been aborted before any tasks were taken. Keep abort message if that was the case.
-              if (message == null || message.isEmpty()) {
-                message = "Unable to create nodes, please check your provider settings";
-              }
-              taskService.failJobAndTerminateCluster(job, cluster, message);
-            } else {
-              // Job failed and no in progress tasks remaining, update cluster status
-              taskService.failJobAndSetClusterStatus(job, cluster);
-            }
+        // Submit any tasks not yet submitted
+        if (!notSubmittedTasks.isEmpty()) {
+          submitTasks(notSubmittedTasks, cluster, nodeMap, clusterNodes, job, queueName);
+        }
+
+        // Note: before moving cluster out of pending state, make sure that all in progress tasks are done.
+        // If all tasks are completed then move to next stage
+        if (completedTasks == currentStage.size()) {
+          if (job.hasNextStage()) {
+            LOG.debug("Advancing to next stage {} for job {}", job.getCurrentStageNumber(), job.getJobId());
+            job.advanceStage();
+            addJobAfterCommit(queueName, jobIdStr);
           } else {
-            // Job failed but tasks are still in progress, wait for them to finish before setting cluster status
-            taskService.failJob(job);
+            taskService.completeJob(job, cluster);
           }
-        } finally {
-          lock.unlock();
-          jobQueues.recordProgress(consumerId, queueName, element.getId(),
-                                  TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "");
         }
+        clusterStore.writeClusterJob(job);
+      } else if (inProgressTasks == 0) {
+        // special case: if all tasks were create tasks and all of them failed before they created anything,
+        // set the cluster state to 'terminated' instead of letting it go to 'incomplete'.
+        if (job.getClusterAction() == ClusterAction.CLUSTER_CREATE && allCreateTasksFailed(job)) {
+          String message = job.getStatusMessage();
+          // job could have been aborted before any tasks were taken. Keep abort message if that was the case.
+          if (message == null || message.isEmpty()) {
+            message = "Unable to create nodes, please check your provider settings";
+          }
+          taskService.failJobAndTerminateCluster(job, cluster, message);
+        } else {
+          // Job failed and no in progress tasks remaining, update cluster status
+          taskService.failJobAndSetClusterStatus(job, cluster);
+        }
+      } else {
+        // Job failed but tasks are still in progress, wait for them to finish before setting cluster status
+        taskService.failJob(job);
       }
-    } catch (Throwable e) {
-      LOG.error("Got exception: ", e);
+      unitOfWork.commit();
+    } catch (Exception e) {
+      // the job is put back into the queue so that it is scheduled again, since nothing of this step was written
+      consumingStatus = TrackingQueue.ConsumingStatus.FAILED;
+      throw e;
+    } finally {
+      unitOfWork.close();
+      lock.unlock();
+      jobQueues.recordProgress(consumerId, queueName, element.getId(), consumingStatus, "");
     }
   }
 
+  // tasks are given to provisioners only after they are written as in progress, otherwise a provisioner could
+  // finish a task before its in progress status is written, which would then overwrite the finished status.
+  private void addTaskAfterCommit(final String queueName, final Element task) {
+    UnitOfWork.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        provisionerQueues.add(queueName, task);
+      }
+    });
+  }
+
+  // the job is put back in the queue only once it is written, otherwise it could be scheduled again from its old state.
+  private void addJobAfterCommit(final String queueName, final String jobId) {
+    UnitOfWork.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        jobQueues.add(queueName, new Element(jobId));
+      }
+    });
+  }
+
   // check that every task that ran failed, and that every failure was a cluster create, and that every failure
   // failed in a way where no resources were actually created (for ex, if provider settings are wrong).
   private boolean allCreateTasksFailed(ClusterJob job) throws IOException {
+    List<String> failedTaskIds = Lists.newArrayList();
     for (Map.Entry<String, ClusterTask.Status> entry : job.getTaskStatus().entrySet()) {
-      String taskId = entry.getKey();
       ClusterTask.Status taskStatus = entry.getValue();
       // no task can succeed or be in progress
       if (taskStatus == ClusterTask.Status.COMPLETE || taskStatus == ClusterTask.Status.IN_PROGRESS) {
         return false;
       }
       if (taskStatus == ClusterTask.Status.FAILED) {
-        // looks up every failed task... not so great.  But it should be roughly equal to the # of nodes in the cluster.
-        ClusterTask task = clusterStore.getClusterTask(TaskId.fromString(taskId));
-        // check it is a create task
-        if (!task.failedBeforeCreate()) {
-          return false;
-        }
+        failedTaskIds.add(entry.getKey());
+      }
+    }
+    // looks up every failed task in one batch. It should be roughly equal to the # of nodes in the cluster.
+    Map<String, ClusterTask> failedTasks = clusterStore.getClusterTasks(toTaskIds(failedTaskIds));
+    for (String taskId : failedTaskIds) {
+      // check it is a create task
+      if (!failedTasks.get(taskId).failedBeforeCreate()) {
+        return false;
       }
     }
     // if we get here, we only have failed, dropped, or not submitted tasks, and all the failed tasks failed before
@@ -234,25 +353,38 @@ public class JobScheduler implements Runnable {
     return true;
   }
 
+  private static List<TaskId> toTaskIds(Collection<String> taskIds) {
+    List<TaskId> ids = Lists.newArrayListWithCapacity(taskIds.size());
+    for (String taskId : taskIds) {
+      ids.add(TaskId.fromString(taskId));
+    }
+    return ids;
+  }
+
   private void submitTasks(Set<ClusterTask> notSubmittedTasks, Cluster cluster, Map<String, Node> nodeMap,
                            Set<Node> clusterNodes, ClusterJob job, String queueName) throws Exception {
     JsonObject unexpandedClusterConfig = cluster.getConfig();
+    // macros are parsed once for all tasks, and macros that are the same for every node are only evaluated once
+    JsonTemplate.ClusterExpansion configExpansion = null;
 
     for (final ClusterTask task : notSubmittedTasks) {
       Node taskNode = nodeMap.get(task.getNodeId());
       JsonObject clusterConfig = unexpandedClusterConfig;
 
-      // TODO: do this only once and save it
       if (!task.getTaskName().isHardwareAction()) {
         try {
-          // expansion does not modify the original input, but creates a new object
-          clusterConfig = Expander.expand(clusterConfig, null, cluster, clusterNodes, taskNode).getAsJsonObject();
+          if (configExpansion == null) {
+            configExpansion = JsonTemplate.compile(unexpandedClusterConfig).forCluster(cluster, clusterNodes);
+          }
+          // the expanded config shares unexpanded parts with the cluster config, and is the cluster config itself if
+          // there is nothing to expand, so it is only ever read from here on
+          clusterConfig = configExpansion.expand(taskNode).getAsJsonObject();
         } catch (Throwable e) {
           LOG.error("Exception while expanding macros for task {}", task.getTaskId(), e);
           taskService.failTask(task, -1);
           job.setStatusMessage("Exception while expanding macros: " + e.getMessage());
           // no need to schedule more tasks since the job is considered failed even if one task fails.
-          jobQueues.add(queueName, new Element(job.getJobId()));
+          addJobAfterCommit(queueName, job.getJobId());
           break;
         }
       }
@@ -273,8 +405,7 @@ public class JobScheduler implements Runnable {
 
       // Submit task
       // Note: the job has to be scheduled for processing when the task is complete.
-      provisionerQueues.add(
-        queueName, new Element(task.getTaskId(), gson.toJson(schedulableTask)));
+      addTaskAfterCommit(queueName, new Element(task.getTaskId(), gson.toJson(schedulableTask)));
 
       job.setTaskStatus(task.getTaskId(), ClusterTask.Status.IN_PROGRESS);
       taskService.startTask(task);
@@ -291,9 +422,7 @@ public class JobScheduler implements Runnable {
     }
 
     // store all retry tasks
-    for (ClusterTask t : retryTasks) {
-      clusterStore.writeClusterTask(t);
-    }
+    clusterStore.writeClusterTasks(retryTasks);
 
     // Remove self from current stage
     job.getCurrentStage().remove(task.getTaskId());
@@ -307,6 +436,93 @@ public class JobScheduler implements Runnable {
     return retryTasks.get(0);
   }
 
+  /**
+   * Single threaded executor that schedules jobs of the clusters assigned to it, with stats about its work. The
+   * executor is created when the worker starts and shut down when it stops.
+   */
+  private static final class JobWorker {
+    private final ThreadFactory threadFactory;
+    private final JobWorkerStats stats;
+    private ThreadPoolExecutor executor;
+
+    private JobWorker(ThreadFactory threadFactory) {
+      this.threadFactory = threadFactory;
+      this.stats = new JobWorkerStats();
+    }
+
+    private synchronized void start() {
+      if (executor == null) {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                                          threadFactory);
+      }
+    }
+
+    /**
+     * @return false if the worker is stopped, true if the job was handed to the worker.
+     */
+    private synchronized boolean execute(DispatchedJob dispatchedJob) {
+      if (executor == null) {
+        return false;
+      }
+      try {
+        executor.execute(dispatchedJob);
+        return true;
+      } catch (RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    /**
+     * @return jobs that were handed to the worker but not started.
+     */
+    private synchronized List<Runnable> stop() {
+      if (executor == null) {
+        return ImmutableList.of();
+      }
+      executor.shutdown();
+      List<Runnable> undispatched = Lists.newArrayList();
+      executor.getQueue().drainTo(undispatched);
+      executor = null;
+      return undispatched;
+    }
+  }
+
+  /**
+   * Job taken from the job queue and handed to a worker.
+   */
+  private final class DispatchedJob implements Runnable {
+    private final GroupElement gElement;
+    private final JobWorker worker;
+    private final long dispatchTime;
+
+    private DispatchedJob(GroupElement gElement, JobWorker worker) {
+      this.gElement = gElement;
+      this.worker = worker;
+      this.dispatchTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void run() {
+      try {
+        schedule(gElement);
+      } catch (Throwable e) {
+        LOG.error("Got exception: ", e);
+      } finally {
+        worker.stats.elementProcessed(System.currentTimeMillis() - dispatchTime);
+      }
+    }
+
+    /**
+     * Puts the job back into the job queue without scheduling it.
+     */
+    private void release() {
+      worker.stats.elementReleased();
+      LOG.debug("Putting job {} back into the queue", gElement.getElement().getValue());
+      jobQueues.recordProgress(consumerId, gElement.getQueueName(), gElement.getElement().getId(),
+                               TrackingQueue.ConsumingStatus.FAILED, "");
+    }
+  }
+
   private static final Function<ClusterTask, String> CLUSTER_TASK_STRING_FUNCTION =
     new Function<ClusterTask, String>() {
       @Override
@@ -17,10 +17,13 @@ package co.cask.coopr.scheduler;
 
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.queue.QueueService;
+import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.zookeeper.ElectionHandler;
 import co.cask.coopr.common.zookeeper.LeaderElection;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.apache.twill.common.Threads;
@@ -31,14 +34,18 @@ import org.slf4j.LoggerFactory;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Runs the different schedulers for solving cluster layouts and planning and coordinating cluster jobs. Leader election
  * is run so that only a single server in a server cluster will be running these schedulers at any given time,
- * where a server cluster is defined as all servers using the same zookeeper quorum.
+ * where a server cluster is defined as all servers using the same zookeeper quorum. Schedulers that consume from a
+ * queue group are woken up as soon as an element is added to their group, and are also run at a fixed interval in case
+ * a notification is missed.
  */
 public class Scheduler extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(Scheduler.class);
@@ -47,10 +54,11 @@ public class Scheduler extends AbstractIdleService {
   private final int schedulerRunInterval;
   private final int clusterCleanupRunInterval;
   private final int provisionerCleanupRunInterval;
-  private final JobScheduler jobScheduler;
-  private final ClusterScheduler clusterScheduler;
-  private final SolverScheduler solverScheduler;
-  private final CallbackScheduler callbackScheduler;
+  private final WakeableScheduler jobScheduler;
+  private final JobScheduler jobSchedulerWorkers;
+  private final WakeableScheduler clusterScheduler;
+  private final WakeableScheduler solverScheduler;
+  private final WakeableScheduler callbackScheduler;
   private final ClusterCleanup clusterCleanup;
   private final WorkerBalanceScheduler workerBalanceScheduler;
   private final TenantProvisionerCleanup tenantProvisionerCleanup;
@@ -66,6 +74,7 @@ public class Scheduler extends AbstractIdleService {
                     WorkerBalanceScheduler workerBalanceScheduler,
                     TenantProvisionerCleanup tenantProvisionerCleanup,
                     ClusterCleanup clusterCleanup,
+                    QueueService queueService,
                     ZKClient zkClient) {
     this.schedulerRunInterval = conf.getInt(Constants.SCHEDULER_INTERVAL_SECS);
     this.clusterCleanupRunInterval = conf.getInt(Constants.CLUSTER_CLEANUP_SECS);
@@ -74,10 +83,11 @@ public class Scheduler extends AbstractIdleService {
                                                             new ThreadFactoryBuilder()
                                                               .setNameFormat("scheduler-%d")
                                                               .build());
-    this.jobScheduler = jobScheduler;
-    this.clusterScheduler = clusterScheduler;
-    this.solverScheduler = solverScheduler;
-    this.callbackScheduler = callbackScheduler;
+    this.jobScheduler = new WakeableScheduler(jobScheduler, queueService, QueueType.JOB);
+    this.jobSchedulerWorkers = jobScheduler;
+    this.clusterScheduler = new WakeableScheduler(clusterScheduler, queueService, QueueType.CLUSTER);
+    this.solverScheduler = new WakeableScheduler(solverScheduler, queueService, QueueType.SOLVER);
+    this.callbackScheduler = new WakeableScheduler(callbackScheduler, queueService, QueueType.CALLBACK);
     this.workerBalanceScheduler = workerBalanceScheduler;
     this.clusterCleanup = clusterCleanup;
     this.scheduledFutures = Sets.newHashSet();
@@ -122,9 +132,15 @@ public class Scheduler extends AbstractIdleService {
     leaderElection.cancel();
     executorService.shutdown();
     executorService.awaitTermination(100, TimeUnit.SECONDS);
+    jobSchedulerWorkers.stopWorkers();
   }
 
   private void schedule() {
+    jobSchedulerWorkers.startWorkers();
+    clusterScheduler.setActive(true);
+    jobScheduler.setActive(true);
+    solverScheduler.setActive(true);
+    callbackScheduler.setActive(true);
 
     LOG.info("Scheduling cluster scheduler every {} secs...", schedulerRunInterval);
     scheduledFutures.add(
@@ -166,6 +182,10 @@ public class Scheduler extends AbstractIdleService {
   }
 
   private void unschedule() {
+    clusterScheduler.setActive(false);
+    jobScheduler.setActive(false);
+    solverScheduler.setActive(false);
+    callbackScheduler.setActive(false);
     for (ScheduledFuture<?> future : scheduledFutures) {
       try {
         future.cancel(false);
@@ -174,5 +194,65 @@ public class Scheduler extends AbstractIdleService {
       }
     }
     scheduledFutures.clear();
+    // jobs taken by the job scheduler but not yet scheduled by its workers are left to the next leader
+    jobSchedulerWorkers.stopWorkers();
+  }
+
+  /**
+   * Runs a scheduler both at a fixed interval and whenever an element is added to the queue group it consumes from.
+   * Runs never overlap, and wakeups that arrive while a run is pending are coalesced into that run. A run that starts
+   * while another one is in progress does not wait for it, but has the running thread run the scheduler once more.
+   */
+  private final class WakeableScheduler implements Runnable {
+    private final Runnable scheduler;
+    private final AtomicBoolean wakeupPending;
+    private final AtomicBoolean running;
+    private final AtomicBoolean rerun;
+    private volatile boolean active;
+
+    private WakeableScheduler(Runnable scheduler, QueueService queueService, QueueType queueType) {
+      this.scheduler = scheduler;
+      this.wakeupPending = new AtomicBoolean(false);
+      this.running = new AtomicBoolean(false);
+      this.rerun = new AtomicBoolean(false);
+      queueService.getQueueGroup(queueType).addElementAddedCallback(new Runnable() {
+        @Override
+        public void run() {
+          wakeup();
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+
+    private void setActive(boolean active) {
+      this.active = active;
+    }
+
+    private void wakeup() {
+      if (active && wakeupPending.compareAndSet(false, true)) {
+        try {
+          executorService.execute(this);
+        } catch (RejectedExecutionException e) {
+          // scheduler is shutting down
+          wakeupPending.set(false);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      // clear before running so that elements added during the run trigger another run
+      wakeupPending.set(false);
+      // request a run before trying to become the running thread, so that a thread that is just finishing a run
+      // either sees the request and runs again, or has already let go and this thread runs instead
+      rerun.set(true);
+      while (rerun.get() && running.compareAndSet(false, true)) {
+        try {
+          rerun.set(false);
+          scheduler.run();
+        } finally {
+          running.set(false);
+        }
+      }
+    }
   }
 }
@@ -16,35 +16,44 @@
 package co.cask.coopr.scheduler.dag;
 
 import com.google.common.base.Objects;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.TreeMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 /**
- * A DAG (directed acyclic graph) to linearize a set of dependent tasks.
+ * A DAG (directed acyclic graph) to linearize a set of dependent tasks. Each task node is given an int id when it is
+ * first added, and edges are kept as pairs of ids, so that linearizing the DAG does not need to hash any task nodes.
  */
 public class TaskDag {
   private static final Logger LOG = LoggerFactory.getLogger(TaskDag.class);
 
-  // Nodes in the DAG
-  private final Set<TaskNode> nodes;
-  // Edges of the DAG
-  private final SetMultimap<TaskNode, TaskNode> edges;
+  // Nodes in the DAG, where the id of a node is its index in the list
+  private final Map<TaskNode, Integer> nodeIds;
+  private final List<TaskNode> nodes;
+  // Edges of the DAG, with the ids of both ends packed into a long so that duplicate edges are only added once
+  private final Set<Long> edges;
+  private int[] edgeFromIds;
+  private int[] edgeToIds;
+  private int numEdges;
 
   public TaskDag() {
-    this.nodes = Sets.newHashSet();
-    this.edges = HashMultimap.create(100, 3);
+    this.nodeIds = Maps.newHashMap();
+    this.nodes = Lists.newArrayList();
+    this.edges = Sets.newHashSet();
+    this.edgeFromIds = new int[100];
+    this.edgeToIds = new int[100];
   }
 
   /**
@@ -54,9 +63,18 @@ public class TaskDag {
    * @param toNode task that depends on the fromNode.
    */
   public void addDependency(TaskNode fromNode, TaskNode toNode) {
-    nodes.add(fromNode);
-    nodes.add(toNode);
-    edges.put(fromNode, toNode);
+    int fromId = getNodeId(fromNode);
+    int toId = getNodeId(toNode);
+    if (!edges.add(((long) fromId << 32) | toId)) {
+      return;
+    }
+    if (numEdges == edgeFromIds.length) {
+      edgeFromIds = Arrays.copyOf(edgeFromIds, numEdges * 2);
+      edgeToIds = Arrays.copyOf(edgeToIds, numEdges * 2);
+    }
+    edgeFromIds[numEdges] = fromId;
+    edgeToIds[numEdges] = toId;
+    numEdges++;
   }
 
   /**
@@ -65,7 +83,7 @@ public class TaskDag {
    * @param node task to add to the DAG.
    */
   public void addTaskNode(TaskNode node) {
-    nodes.add(node);
+    getNodeId(node);
   }
 
   /**
@@ -77,51 +95,67 @@ public class TaskDag {
    * The actions in each set can be run in parallel.
    */
   public List<Set<TaskNode>> linearize() {
-    LOG.trace("Initial graph - {}", edges);
+    LOG.trace("Initial graph - {}", this);
+
+    int numNodes = nodes.size();
+    // the targets of node i are in targetIds from targetOffsets[i] up to targetOffsets[i + 1]
+    int[] targetOffsets = new int[numNodes + 1];
+    int[] inDegrees = new int[numNodes];
+    for (int i = 0; i < numEdges; i++) {
+      targetOffsets[edgeFromIds[i] + 1]++;
+      inDegrees[edgeToIds[i]]++;
+    }
+    for (int i = 0; i < numNodes; i++) {
+      targetOffsets[i + 1] += targetOffsets[i];
+    }
+    int[] targetIds = new int[numEdges];
+    int[] nextTargetIndex = Arrays.copyOf(targetOffsets, numNodes);
+    for (int i = 0; i < numEdges; i++) {
+      targetIds[nextTargetIndex[edgeFromIds[i]]++] = edgeToIds[i];
+    }
 
-    List<Set<TaskNode>> linearizedNodes = Lists.newArrayList();
-    ArrayListMultimap<TaskNode, TaskNode> copyEdges = ArrayListMultimap.create(edges);
-
-    // nodes that have no edges are sources.  The initial set is actual nodes - edges.values(), but removal of
-    // edges.values() happens right away in the loop so just setting it to nodes right here.
-    Set<TaskNode> sources = Sets.newHashSet(nodes);
-    Set<TaskNode> sinkNodes = Sets.newHashSet();
-    do {
-      sources.addAll(copyEdges.keySet());
-      sources.removeAll(copyEdges.values());
-
-      LOG.trace("SinkNodes - {}", sinkNodes);
-      LOG.trace("Sources - {}", sources);
-      if (sources.isEmpty()) {
-        throw new IllegalStateException("No source nodes found, DAG not serializable");
+    // nodes without incoming edges are sources, and form the first stage. Every following stage is made up of the
+    // nodes whose last incoming edge came from a node in the stage before.
+    int[] stageIds = new int[numNodes];
+    int stageSize = 0;
+    for (int i = 0; i < numNodes; i++) {
+      if (inDegrees[i] == 0) {
+        stageIds[stageSize++] = i;
       }
+    }
+    if (stageSize == 0) {
+      throw new IllegalStateException("No source nodes found, DAG not serializable");
+    }
 
-      Set<TaskNode> stageNodes = Sets.newHashSet(Iterables.concat(sinkNodes, sources));
+    List<Set<TaskNode>> linearizedNodes = Lists.newArrayList();
+    int[] nextStageIds = new int[numNodes];
+    int numLinearized = 0;
+    while (stageSize > 0) {
+      Set<TaskNode> stageNodes = Sets.newHashSetWithExpectedSize(stageSize);
+      int nextStageSize = 0;
+      for (int i = 0; i < stageSize; i++) {
+        int nodeId = stageIds[i];
+        stageNodes.add(nodes.get(nodeId));
+        for (int j = targetOffsets[nodeId]; j < targetOffsets[nodeId + 1]; j++) {
+          if (--inDegrees[targetIds[j]] == 0) {
+            nextStageIds[nextStageSize++] = targetIds[j];
+          }
+        }
+      }
       LOG.trace("Stage Nodes - {}", stageNodes);
       linearizedNodes.add(stageNodes);
+      numLinearized += stageSize;
 
-      // Determine sink nodes if any
-      sinkNodes.clear();
-      Set<TaskNode> toNodes = Sets.newHashSet();
-      for (TaskNode fromNode : sources) {
-        toNodes.addAll(copyEdges.removeAll(fromNode));
-      }
-
-      // If the node is not a source, or a destination of any other source then they are sink nodes.
-      toNodes.removeAll(copyEdges.keySet());
-      toNodes.removeAll(copyEdges.values());
-      if (!toNodes.isEmpty()) {
-        sinkNodes.addAll(toNodes);
-      }
-      sources.clear();
-    } while (!copyEdges.isEmpty());
-
-    // Add final nodes
-    LOG.trace("Final nodes - {}", sinkNodes);
-    if (!sinkNodes.isEmpty()) {
-      linearizedNodes.add(sinkNodes);
+      int[] swap = stageIds;
+      stageIds = nextStageIds;
+      nextStageIds = swap;
+      stageSize = nextStageSize;
     }
 
+    // nodes on a cycle never run out of incoming edges
+    if (numLinearized < numNodes) {
+      throw new IllegalStateException("No source nodes found, DAG not serializable");
+    }
     return linearizedNodes;
   }
 
@@ -135,12 +169,12 @@ public class TaskDag {
     }
 
     TaskDag other = (TaskDag) o;
-    return Objects.equal(nodes, other.nodes) && Objects.equal(edges, other.edges);
+    return Objects.equal(nodeIds.keySet(), other.nodeIds.keySet()) && Objects.equal(getEdges(), other.getEdges());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(nodes, edges);
+    return Objects.hashCode(nodeIds.keySet(), getEdges());
   }
 
   @Override
@@ -150,7 +184,7 @@ public class TaskDag {
     TreeSet<TaskNode> nodes = Sets.newTreeSet(comparator);
     nodes.addAll(this.nodes);
     SetMultimap<TaskNode, TaskNode> edges = TreeMultimap.create(comparator, comparator);
-    edges.putAll(this.edges);
+    edges.putAll(getEdges());
     output.append("services:\n");
     for (TaskNode node : nodes) {
       output.append(node);
@@ -170,6 +204,24 @@ public class TaskDag {
     return output.toString();
   }
 
+  private int getNodeId(TaskNode node) {
+    Integer nodeId = nodeIds.get(node);
+    if (nodeId == null) {
+      nodeId = nodes.size();
+      nodeIds.put(node, nodeId);
+      nodes.add(node);
+    }
+    return nodeId;
+  }
+
+  private SetMultimap<TaskNode, TaskNode> getEdges() {
+    SetMultimap<TaskNode, TaskNode> edgeMap = HashMultimap.create(100, 3);
+    for (int i = 0; i < numEdges; i++) {
+      edgeMap.put(nodes.get(edgeFromIds[i]), nodes.get(edgeToIds[i]));
+    }
+    return edgeMap;
+  }
+
   private class TaskNodeComparator implements Comparator<TaskNode> {
     @Override
     public int compare(TaskNode taskNode, TaskNode taskNode2) {
@@ -10,6 +10,7 @@ import co.cask.coopr.scheduler.Scheduler;
 import co.cask.coopr.scheduler.SolverScheduler;
 import co.cask.coopr.scheduler.WorkerBalanceScheduler;
 import co.cask.coopr.scheduler.callback.ClusterCallback;
+import co.cask.coopr.scheduler.task.TaskQueueService;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
@@ -52,5 +53,6 @@ public class SchedulerModule extends AbstractModule {
     bind(WorkerBalanceScheduler.class).in(Scopes.SINGLETON);
     bind(ClusterCleanup.class).in(Scopes.SINGLETON);
     bind(TenantProvisionerCleanup.class).in(Scopes.SINGLETON);
+    bind(TaskQueueService.class).in(Scopes.SINGLETON);
   }
 }
@@ -29,26 +29,32 @@ import co.cask.coopr.http.request.TakeTaskRequest;
 import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.provisioner.TenantProvisionerService;
 import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.store.UnitOfWork;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.credential.CredentialStore;
 import co.cask.coopr.store.tenant.TenantStore;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Iterators;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Manages handing out tasks from task queue, and recording status after the task is done.
+ * Manages handing out tasks from task queue, and recording status after the task is done. Takes can wait for tasks to
+ * be added if there are none to take right away, in which case they are woken up whenever a task is added to the task
+ * queue of their tenant by any server. Since a waiting take holds on to an exec thread of the http server, only a
+ * configured fraction of the exec threads can be held by waiting takes at the same time.
  */
 public class TaskQueueService {
   private static final Logger LOG = LoggerFactory.getLogger(TaskQueueService.class);
@@ -63,7 +69,11 @@ public class TaskQueueService {
   private final QueueGroup taskQueues;
   private final QueueGroup jobQueues;
   private final Gson gson;
-  private final LoadingCache<String, QueueMetrics> queueMetricsCache;
+  private final int maxTakeWaitSeconds;
+  private final int maxWaitingTakes;
+  private final int maxTakeBatchSize;
+  private final AtomicInteger waitingTakes;
+  private final ConcurrentMap<String, TaskAddedSignal> taskAddedSignals;
 
   @Inject
   private TaskQueueService(QueueService queueService,
@@ -86,18 +96,15 @@ public class TaskQueueService {
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
     this.tenantStore = tenantStore;
     this.gson = gson;
-    final int queueCacheSeconds = conf.getInt(Constants.Metrics.QUEUE_CACHE_SECONDS);
-    // queue metrics can be expensive to fetch
-    this.queueMetricsCache = CacheBuilder.newBuilder()
-      .expireAfterWrite(queueCacheSeconds, TimeUnit.SECONDS)
-      .build(new CacheLoader<String, QueueMetrics>() {
-        @Override
-        public QueueMetrics load(String tenantId) {
-          int numQueued = Iterators.size(taskQueues.getQueued(tenantId));
-          int numInProgress = Iterators.size(taskQueues.getBeingConsumed(tenantId));
-          return new QueueMetrics(numQueued, numInProgress);
-        }
-      });
+    this.maxTakeWaitSeconds = conf.getInt(Constants.TASK_TAKE_MAX_WAIT_SECS,
+                                          Constants.DEFAULT_TASK_TAKE_MAX_WAIT_SECS);
+    this.maxWaitingTakes = (int) (conf.getFloat(Constants.TASK_TAKE_MAX_WAITING_FRACTION,
+                                                Constants.DEFAULT_TASK_TAKE_MAX_WAITING_FRACTION) *
+      conf.getInt(Constants.NETTY_EXEC_NUM_THREADS));
+    this.maxTakeBatchSize = conf.getInt(Constants.TASK_TAKE_MAX_BATCH_SIZE,
+                                        Constants.DEFAULT_TASK_TAKE_MAX_BATCH_SIZE);
+    this.waitingTakes = new AtomicInteger(0);
+    this.taskAddedSignals = Maps.newConcurrentMap();
   }
 
   /**
@@ -110,7 +117,7 @@ public class TaskQueueService {
     // in the queue group and not derived from zookeeper, so we might not get all the queues.
     Map<String, QueueMetrics> queueMetrics = Maps.newHashMap();
     for (Tenant tenant : tenantStore.getAllTenants()) {
-      queueMetrics.put(tenant.getSpecification().getName(), queueMetricsCache.getUnchecked(tenant.getId()));
+      queueMetrics.put(tenant.getSpecification().getName(), taskQueues.getMetrics(tenant.getId()));
     }
     return queueMetrics;
   }
@@ -123,75 +130,164 @@ public class TaskQueueService {
    * @throws IOException
    */
   public QueueMetrics getTaskQueueMetricsSnapshot(String tenantId) throws IOException {
-    return queueMetricsCache.getUnchecked(tenantId);
+    return taskQueues.getMetrics(tenantId);
   }
 
   /**
    * Returns the next task from task queue that can be handed out for provisioning.
    * When it goes through the task queue, if it gets a task whose job is already marked as FAILED then
-   * the task gets marked as DROPPED, and is skipped.
+   * the task gets marked as DROPPED, and is skipped. If there is no task to take and the request has a wait time,
+   * waits up to that many seconds for a task to be added before giving up.
    *
    * @param takeRequest Request to take a task.
-   * @return Task JSON to be handed over to the provisioner.
+   * @return Task JSON to be handed over to the provisioner, or null if there was no task to take.
    * @throws MissingEntityException if there is no provisioner for the provisioner id in the request.
    * @throws IOException if there was an error persisting task information.
    */
   public String takeNextClusterTask(TakeTaskRequest takeRequest) throws IOException, MissingEntityException {
-    String tenantId = takeRequest.getTenantId();
-    String provisionerId = takeRequest.getProvisionerId();
-    String workerId = takeRequest.getWorkerId();
-    String consumerId = provisionerId + "." + workerId;
+    List<String> tasks = takeNextClusterTasks(takeRequest, 1);
+    return tasks.isEmpty() ? null : tasks.get(0);
+  }
+
+  /**
+   * Returns up to the maximum number of tasks in the request that can be handed out for provisioning, capped by the
+   * configured maximum batch size. Tasks in the queue belong to the current stage of their job, so they do not depend
+   * on each other and can be performed in any order. Tasks are skipped the same way as in
+   * {@link #takeNextClusterTask(TakeTaskRequest)}, and the same waiting is done if there is no task to take.
+   *
+   * @param takeRequest Request to take tasks.
+   * @return List of task JSON to be handed over to the provisioner. Empty if there was no task to take.
+   * @throws MissingEntityException if there is no provisioner for the provisioner id in the request.
+   * @throws IOException if there was an error persisting task information.
+   */
+  public List<String> takeNextClusterTasks(TakeTaskRequest takeRequest) throws IOException, MissingEntityException {
+    return takeNextClusterTasks(takeRequest, Math.min(takeRequest.getMaxTasks(), maxTakeBatchSize));
+  }
 
-    if (tenantProvisionerService.getProvisioner(provisionerId) == null) {
+  private List<String> takeNextClusterTasks(TakeTaskRequest takeRequest, int maxTasks)
+    throws IOException, MissingEntityException {
+    String provisionerId = takeRequest.getProvisionerId();
+    if (!tenantProvisionerService.provisionerExists(provisionerId)) {
       throw new MissingEntityException("provisioner " + provisionerId + " not found.");
     }
 
-    ClusterTask clusterTask = null;
-    String taskJson = null;
+    long waitMillis = TimeUnit.SECONDS.toMillis(Math.min(takeRequest.getWaitSeconds(), maxTakeWaitSeconds));
+    long deadline = System.currentTimeMillis() + waitMillis;
+    TaskAddedSignal taskAdded = getTaskAddedSignal(takeRequest.getTenantId());
+    while (true) {
+      long addedBeforeTake = taskAdded.getCount();
+      List<String> tasks = takeTasks(takeRequest, maxTasks);
+      if (!tasks.isEmpty() || !waitForTaskAdded(taskAdded, addedBeforeTake, deadline)) {
+        return tasks;
+      }
+    }
+  }
+
+  // the signal of a tenant is registered with the task queues before its count is first read, so no add is missed
+  private TaskAddedSignal getTaskAddedSignal(String tenantId) {
+    TaskAddedSignal signal = taskAddedSignals.get(tenantId);
+    if (signal == null) {
+      TaskAddedSignal newSignal = new TaskAddedSignal();
+      signal = taskAddedSignals.putIfAbsent(tenantId, newSignal);
+      if (signal == null) {
+        signal = newSignal;
+        taskQueues.addElementAddedCallback(tenantId, newSignal, MoreExecutors.sameThreadExecutor());
+      }
+    }
+    return signal;
+  }
+
+  // waits until a task was added after the given count or until the deadline passes. Returns whether a task was
+  // added, or false right away if too many takes are already waiting.
+  private boolean waitForTaskAdded(TaskAddedSignal taskAdded, long addedBeforeTake, long deadline) {
+    if (deadline <= System.currentTimeMillis()) {
+      return false;
+    }
+    if (waitingTakes.incrementAndGet() > maxWaitingTakes) {
+      waitingTakes.decrementAndGet();
+      return false;
+    }
+    try {
+      return taskAdded.await(addedBeforeTake, deadline);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      waitingTakes.decrementAndGet();
+    }
+  }
+
+  private List<String> takeTasks(TakeTaskRequest takeRequest, int maxTasks) throws IOException {
+    String tenantId = takeRequest.getTenantId();
+    String workerId = takeRequest.getWorkerId();
+    String consumerId = takeRequest.getProvisionerId() + "." + workerId;
 
-    while (clusterTask == null) {
+    List<String> tasks = Lists.newArrayList();
+    while (tasks.size() < maxTasks) {
       Element task = taskQueues.take(tenantId, consumerId);
       if (task == null) {
         break;
       }
 
-      clusterTask = clusterStore.getClusterTask(TaskId.fromString(task.getId()));
-      if (clusterTask != null) {
-        String jobId = clusterTask.getJobId();
-        ClusterJob clusterJob = clusterStore.getClusterJob(JobId.fromString(jobId));
-
-        if (clusterJob == null || clusterJob.getJobStatus() == ClusterJob.Status.FAILED) {
-          // we don't want to give out tasks for failed jobs.  Remove from the queue and move on.
-          taskQueues.recordProgress(consumerId, tenantId, clusterTask.getTaskId(),
-                                    TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY,
-                                    "Skipped due to job failure.");
-          taskService.dropTask(clusterTask);
-          jobQueues.add(tenantId, new Element(clusterTask.getJobId()));
-          clusterTask = null;
-        } else {
-          SchedulableTask taskObject = gson.fromJson(task.getValue(), SchedulableTask.class);
-          TaskConfig taskConfig = taskObject.getConfig();
-          // fetch any sensitive fields and add them to the provider
-          String clusterId = clusterJob.getClusterId();
-          Map<String, Object> sensitiveFields = credentialStore.get(tenantId, clusterId);
-          taskConfig.getProvider().addFields(sensitiveFields);
-          taskJson = gson.toJson(taskObject);
-          startNodeAction(clusterTask);
+      try {
+        String taskJson = prepareTask(task, tenantId, consumerId);
+        if (taskJson != null) {
+          tasks.add(taskJson);
         }
-      } else {
-        LOG.error("Got empty task JSON for {}, skipping it.", task.getId());
-        taskQueues.recordProgress(consumerId, tenantId, task.getId(),
-                                  TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY,
-                                  "Skipped due to empty task JSON.");
+      } catch (Exception e) {
+        // give the task back, since it would otherwise be held by a worker that never got it
+        taskQueues.recordProgress(consumerId, tenantId, task.getId(), TrackingQueue.ConsumingStatus.FAILED, "");
+        if (tasks.isEmpty()) {
+          Throwables.propagateIfPossible(e, IOException.class);
+          throw Throwables.propagate(e);
+        }
+        // the tasks already taken are started, so they must be handed out
+        LOG.error("Exception preparing task {}, handing out the {} tasks already taken.",
+                  task.getId(), tasks.size(), e);
+        break;
       }
     }
 
-    LOG.trace("task {} given to worker {}", clusterTask, workerId);
-    if (clusterTask != null) {
+    if (!tasks.isEmpty()) {
       // no point in updating stats if no task was taken
-      serverStats.setQueueLength(getTotalQueueSize());
+      serverStats.setTaskQueueMetrics(tenantId, taskQueues.getMetrics(tenantId));
+    }
+    return tasks;
+  }
+
+  // returns the JSON of the task to hand out, or null if it should be skipped. The task is started only once nothing
+  // else can fail, so that a task that is given back was never started.
+  private String prepareTask(Element task, String tenantId, String consumerId) throws IOException {
+    ClusterTask clusterTask = clusterStore.getClusterTask(TaskId.fromString(task.getId()));
+    if (clusterTask == null) {
+      LOG.error("Got empty task JSON for {}, skipping it.", task.getId());
+      taskQueues.recordProgress(consumerId, tenantId, task.getId(),
+                                TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY,
+                                "Skipped due to empty task JSON.");
+      return null;
     }
 
+    String jobId = clusterTask.getJobId();
+    ClusterJob clusterJob = clusterStore.getClusterJob(JobId.fromString(jobId));
+    if (clusterJob == null || clusterJob.getJobStatus() == ClusterJob.Status.FAILED) {
+      // we don't want to give out tasks for failed jobs.  Remove from the queue and move on.
+      taskQueues.recordProgress(consumerId, tenantId, clusterTask.getTaskId(),
+                                TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY,
+                                "Skipped due to job failure.");
+      taskService.dropTask(clusterTask);
+      jobQueues.add(tenantId, new Element(clusterTask.getJobId()));
+      return null;
+    }
+
+    SchedulableTask taskObject = gson.fromJson(task.getValue(), SchedulableTask.class);
+    TaskConfig taskConfig = taskObject.getConfig();
+    // fetch any sensitive fields and add them to the provider
+    String clusterId = clusterJob.getClusterId();
+    Map<String, Object> sensitiveFields = credentialStore.get(tenantId, clusterId);
+    taskConfig.getProvider().addFields(sensitiveFields);
+    String taskJson = gson.toJson(taskObject);
+    startNodeAction(clusterTask);
+    LOG.trace("task {} given to consumer {}", clusterTask, consumerId);
     return taskJson;
   }
 
@@ -210,7 +306,7 @@ public class TaskQueueService {
     String provisionerId = finishRequest.getProvisionerId();
     String consumerId = provisionerId + "." + workerId;
 
-    if (tenantProvisionerService.getProvisioner(provisionerId) == null) {
+    if (!tenantProvisionerService.provisionerExists(provisionerId)) {
       throw new MissingEntityException("provisioner " + provisionerId + " not found.");
     }
 
@@ -225,17 +321,24 @@ public class TaskQueueService {
     // Queue update was successful, now update the task object
     ClusterTask clusterTask = clusterStore.getClusterTask(TaskId.fromString(taskId));
 
-    int status = finishRequest.getStatus();
-    if (status == 0) {
-      LOG.debug("Successful finish of the task reported. Task {} by worker {}", taskId, workerId);
-      taskService.completeTask(clusterTask, status);
-    } else {
-      LOG.debug("Failure to finish task reported. Task {} by worker {}", taskId, workerId);
-      taskService.failTask(clusterTask, status);
-    }
+    // the task and its node are written together, and before the job is scheduled so that it sees the task status
+    UnitOfWork unitOfWork = clusterStore.startUnitOfWork();
+    try {
+      int status = finishRequest.getStatus();
+      if (status == 0) {
+        LOG.debug("Successful finish of the task reported. Task {} by worker {}", taskId, workerId);
+        taskService.completeTask(clusterTask, status);
+      } else {
+        LOG.debug("Failure to finish task reported. Task {} by worker {}", taskId, workerId);
+        taskService.failTask(clusterTask, status);
+      }
 
-    finishNodeAction(clusterTask, finishRequest);
-    serverStats.setQueueLength(getTotalQueueSize());
+      finishNodeAction(clusterTask, finishRequest);
+      unitOfWork.commit();
+    } finally {
+      unitOfWork.close();
+    }
+    serverStats.setTaskQueueMetrics(queueName, taskQueues.getMetrics(queueName));
 
     // Schedule the job for processing
     jobQueues.add(queueName, new Element(clusterTask.getJobId()));
@@ -292,13 +395,30 @@ public class TaskQueueService {
     }
   }
 
-  // should rethink whether this is even a useful jmx stat.
-  private int getTotalQueueSize() throws IOException {
-    int totalSize = 0;
-    for (Tenant tenant : tenantStore.getAllTenants()) {
-      totalSize += taskQueues.size(tenant.getId());
+  /**
+   * Counts the tasks added to the task queue of a tenant, and lets takes wait for the count to change.
+   */
+  private static final class TaskAddedSignal implements Runnable {
+    private long count;
+
+    @Override
+    public synchronized void run() {
+      count++;
+      notifyAll();
+    }
+
+    private synchronized long getCount() {
+      return count;
     }
-    return totalSize;
-  }
 
+    // waits until the count changes from the given count or the deadline passes, returning whether it changed
+    private synchronized boolean await(long countBefore, long deadline) throws InterruptedException {
+      long remaining = deadline - System.currentTimeMillis();
+      while (count == countBefore && remaining > 0) {
+        wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+      return count != countBefore;
+    }
+  }
 }
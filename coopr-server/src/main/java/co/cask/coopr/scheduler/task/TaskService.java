@@ -26,9 +26,11 @@ import co.cask.coopr.scheduler.Actions;
 import co.cask.coopr.scheduler.ClusterAction;
 import co.cask.coopr.scheduler.callback.CallbackData;
 import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.UnitOfWork;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.credential.CredentialStore;
+import co.cask.coopr.store.metrics.NodeUsageStore;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
@@ -52,6 +54,7 @@ public class TaskService {
   private final IdService idService;
   private final Gson gson;
   private final QueueGroup callbackQueues;
+  private final NodeUsageStore nodeUsageStore;
 
   @Inject
   private TaskService(ClusterStoreService clusterStoreService,
@@ -59,9 +62,11 @@ public class TaskService {
                       ServerStats serverStats,
                       QueueService queueService,
                       IdService idService,
+                      NodeUsageStore nodeUsageStore,
                       Gson gson) {
     this.clusterStore = clusterStoreService.getSystemView();
     this.credentialStore = credentialStore;
+    this.nodeUsageStore = nodeUsageStore;
     this.serverStats = serverStats;
     this.idService = idService;
     this.gson = gson;
@@ -152,8 +157,7 @@ public class TaskService {
     clusterStore.writeClusterJob(job);
 
     serverStats.getFailedClusterStats().incrementStat(job.getClusterAction());
-    callbackQueues.add(cluster.getAccount().getTenantId(),
-                       new Element(gson.toJson(new CallbackData(CallbackData.Type.FAILURE, cluster, job))));
+    addCallback(cluster, new CallbackData(CallbackData.Type.FAILURE, cluster, job));
   }
 
   /**
@@ -207,8 +211,7 @@ public class TaskService {
     // Note: writing job status as RUNNING, will allow other operations on the job
     // (like cancel, etc.) to happen in parallel.
     clusterStore.writeClusterJob(job);
-    callbackQueues.add(cluster.getAccount().getTenantId(),
-                       new Element(gson.toJson(new CallbackData(CallbackData.Type.START, cluster, job))));
+    addCallback(cluster, new CallbackData(CallbackData.Type.START, cluster, job));
   }
 
   /**
@@ -236,8 +239,20 @@ public class TaskService {
     if (job.getClusterAction() == ClusterAction.CLUSTER_DELETE) {
       wipeSensitiveFields(cluster);
     }
-    callbackQueues.add(cluster.getAccount().getTenantId(),
-                       new Element(gson.toJson(new CallbackData(CallbackData.Type.SUCCESS, cluster, job))));
+    addCallback(cluster, new CallbackData(CallbackData.Type.SUCCESS, cluster, job));
+  }
+
+  // callbacks are queued only once the job is written, otherwise a callback could see the job before its new status,
+  // or be run for a job whose status was never written. The data is serialized now, before it can change.
+  private void addCallback(Cluster cluster, CallbackData callbackData) {
+    final String tenantId = cluster.getAccount().getTenantId();
+    final Element element = new Element(gson.toJson(callbackData));
+    UnitOfWork.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        callbackQueues.add(tenantId, element);
+      }
+    });
   }
 
   /**
@@ -294,7 +309,8 @@ public class TaskService {
 
   /**
    * Complete a task by setting the status of the task to {@link ClusterTask.Status#COMPLETE} and the status time to
-   * the current timestamp and the status code to the given code.
+   * the current timestamp and the status code to the given code. Completed CREATE and DELETE tasks are also recorded
+   * in node usage rollups, once the task is written if it is written as part of a {@link UnitOfWork}.
    *
    * @param clusterTask Task to complete.
    * @param status Status code of the completed task.
@@ -305,11 +321,35 @@ public class TaskService {
     clusterTask.setStatusCode(status);
     clusterTask.setStatusTime(System.currentTimeMillis());
     clusterStore.writeClusterTask(clusterTask);
+    recordNodeUsage(clusterTask);
 
     // update stats
     serverStats.getSuccessfulProvisionerStats().incrementStat(clusterTask.getTaskName());
   }
 
+  // failing to update rollups should not fail the task, they can be rebuilt from the tasks table with the backfill.
+  // rollups are only updated once the task is written, so that a task that is not written is not counted.
+  private void recordNodeUsage(final ClusterTask clusterTask) {
+    final ProvisionerAction taskName = clusterTask.getTaskName();
+    if (taskName != ProvisionerAction.CREATE && taskName != ProvisionerAction.DELETE) {
+      return;
+    }
+    UnitOfWork.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (taskName == ProvisionerAction.CREATE) {
+            nodeUsageStore.nodeCreated(clusterTask);
+          } else {
+            nodeUsageStore.nodeDeleted(clusterTask);
+          }
+        } catch (IOException e) {
+          LOG.error("Unable to record node usage of task {}", clusterTask.getTaskId(), e);
+        }
+      }
+    });
+  }
+
   private void wipeSensitiveFields(Cluster cluster) throws IOException {
     String tenantId = cluster.getAccount().getTenantId();
     String clusterId = cluster.getId();
@@ -16,6 +16,7 @@
 
 package co.cask.coopr.spec;
 
+import co.cask.coopr.provisioner.placement.PlacementPolicyType;
 import com.google.common.base.Objects;
 
 /**
@@ -26,13 +27,20 @@ public final class TenantSpecification extends NamedEntity {
   private final int workers;
   private final int maxClusters;
   private final int maxNodes;
+  private final PlacementPolicyType placementPolicy;
 
-  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes) {
+  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes,
+                             PlacementPolicyType placementPolicy) {
     super(name);
     this.description = description;
     this.workers = workers == null ? 0 : workers;
     this.maxClusters = maxClusters == null ? Integer.MAX_VALUE : maxClusters;
     this.maxNodes = maxNodes == null ? Integer.MAX_VALUE : maxNodes;
+    this.placementPolicy = placementPolicy;
+  }
+
+  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes) {
+    this(name, description, workers, maxClusters, maxNodes, null);
   }
 
   // TODO: add builder so optional fields are easier to handle
@@ -56,6 +64,15 @@ public final class TenantSpecification extends NamedEntity {
     return maxNodes;
   }
 
+  /**
+   * Get the policy for placing the tenant workers on provisioners, or null if the server default should be used.
+   *
+   * @return Policy for placing the tenant workers on provisioners, or null if the server default should be used
+   */
+  public PlacementPolicyType getPlacementPolicy() {
+    return placementPolicy;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof TenantSpecification)) {
@@ -66,12 +83,13 @@ public final class TenantSpecification extends NamedEntity {
       Objects.equal(description, other.description) &&
       Objects.equal(workers, other.workers) &&
       Objects.equal(maxClusters, other.maxClusters) &&
-      Objects.equal(maxNodes, other.maxNodes);
+      Objects.equal(maxNodes, other.maxNodes) &&
+      Objects.equal(placementPolicy, other.placementPolicy);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(name, description, workers, maxClusters, maxNodes);
+    return Objects.hashCode(name, description, workers, maxClusters, maxNodes, placementPolicy);
   }
 
   @Override
@@ -82,6 +100,7 @@ public final class TenantSpecification extends NamedEntity {
       .add("workers", workers)
       .add("maxClusters", maxClusters)
       .add("maxNodes", maxNodes)
+      .add("placementPolicy", placementPolicy)
       .toString();
   }
 }
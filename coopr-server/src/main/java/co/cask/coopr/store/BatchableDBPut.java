@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DBPut} whose update and insert statements are the same for every put of its kind, with only the parameters
+ * differing, so that many puts can be executed as one batch of updates followed by one batch of inserts.
+ */
+public abstract class BatchableDBPut extends DBPut {
+
+  /**
+   * Execute the given puts using the given connection. Puts with the same update sql are executed as one batch of
+   * updates, followed by one batch of inserts for the puts whose update did not affect any rows. Puts with the same
+   * update sql must also have the same insert sql.
+   *
+   * @param conn Connection to use to execute the puts
+   * @param puts Puts to execute
+   * @throws SQLException
+   */
+  public static void executePuts(Connection conn, Collection<? extends BatchableDBPut> puts) throws SQLException {
+    Map<String, List<BatchableDBPut>> putsBySql = Maps.newLinkedHashMap();
+    for (BatchableDBPut put : puts) {
+      List<BatchableDBPut> sqlPuts = putsBySql.get(put.getUpdateSql());
+      if (sqlPuts == null) {
+        sqlPuts = Lists.newArrayList();
+        putsBySql.put(put.getUpdateSql(), sqlPuts);
+      }
+      sqlPuts.add(put);
+    }
+    for (List<BatchableDBPut> sqlPuts : putsBySql.values()) {
+      executeBatch(conn, sqlPuts);
+    }
+  }
+
+  private static void executeBatch(Connection conn, List<BatchableDBPut> puts) throws SQLException {
+    if (puts.size() == 1) {
+      puts.get(0).executePut(conn);
+      return;
+    }
+
+    int[] rowsUpdated;
+    PreparedStatement updateStatement = conn.prepareStatement(puts.get(0).getUpdateSql());
+    try {
+      for (BatchableDBPut put : puts) {
+        put.setUpdateParameters(updateStatement);
+        updateStatement.addBatch();
+      }
+      rowsUpdated = updateStatement.executeBatch();
+    } finally {
+      updateStatement.close();
+    }
+
+    PreparedStatement insertStatement = null;
+    try {
+      for (int i = 0; i < puts.size(); i++) {
+        // drivers may report that an update succeeded without saying how many rows it affected. Updates set the
+        // same values when run again, so run it again on its own to find out whether the insert is needed.
+        if (rowsUpdated[i] < 0) {
+          rowsUpdated[i] = puts.get(i).executeUpdate(conn);
+        }
+        // if no rows are updated, perform the insert
+        if (rowsUpdated[i] == 0) {
+          if (insertStatement == null) {
+            insertStatement = conn.prepareStatement(puts.get(i).getInsertSql());
+          }
+          puts.get(i).setInsertParameters(insertStatement);
+          insertStatement.addBatch();
+        }
+      }
+      if (insertStatement != null) {
+        insertStatement.executeBatch();
+      }
+    } finally {
+      if (insertStatement != null) {
+        insertStatement.close();
+      }
+    }
+  }
+
+  private int executeUpdate(Connection conn) throws SQLException {
+    PreparedStatement statement = createUpdateStatement(conn);
+    try {
+      return statement.executeUpdate();
+    } finally {
+      statement.close();
+    }
+  }
+
+  @Override
+  protected final PreparedStatement createUpdateStatement(Connection conn) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(getUpdateSql());
+    setUpdateParameters(statement);
+    return statement;
+  }
+
+  @Override
+  protected final PreparedStatement createInsertStatement(Connection conn) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(getInsertSql());
+    setInsertParameters(statement);
+    return statement;
+  }
+
+  protected abstract String getUpdateSql();
+
+  protected abstract void setUpdateParameters(PreparedStatement statement) throws SQLException;
+
+  protected abstract String getInsertSql();
+
+  protected abstract void setInsertParameters(PreparedStatement statement) throws SQLException;
+}
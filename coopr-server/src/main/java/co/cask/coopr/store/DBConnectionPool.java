@@ -34,6 +34,7 @@ public class DBConnectionPool {
   private static final Logger LOG  = LoggerFactory.getLogger(DBConnectionPool.class);
   private final DataSource datasource;
   private final boolean isEmbeddedDerbyDB;
+  private final boolean isMySQLDB;
 
   @Inject
   private DBConnectionPool(Configuration conf) throws SQLException {
@@ -97,6 +98,7 @@ public class DBConnectionPool {
     this.datasource = new DataSource();
     datasource.setPoolProperties(poolProperties);
     this.isEmbeddedDerbyDB = driverClass.equals(Constants.EMBEDDED_DERBY_DRIVER);
+    this.isMySQLDB = connectionString.startsWith("jdbc:mysql:");
   }
 
   /**
@@ -108,6 +110,28 @@ public class DBConnectionPool {
     return isEmbeddedDerbyDB;
   }
 
+  /**
+   * Returns whether or not the connection pool is connected to a MySQL db.
+   *
+   * @return true if connected to a MySQL db, false if not.
+   */
+  public boolean isMySQLDB() {
+    return isMySQLDB;
+  }
+
+  /**
+   * Get the fetch size to set on a forward only, read only statement so that its results are streamed instead of
+   * read into memory all at once. MySQL Connector/J ignores positive fetch sizes unless useCursorFetch=true is set on
+   * the connection, and instead streams rows one at a time if the fetch size is {@link Integer#MIN_VALUE}. In that
+   * case no other statement can be run on the same connection until the results are closed.
+   *
+   * @param fetchSize Number of rows to fetch at a time on dbs that support it.
+   * @return Fetch size to set on the statement.
+   */
+  public int getStreamingFetchSize(int fetchSize) {
+    return isMySQLDB ? Integer.MIN_VALUE : fetchSize;
+  }
+
   /**
    * Get a {@link Connection} from the pool with auto commit on.
    *
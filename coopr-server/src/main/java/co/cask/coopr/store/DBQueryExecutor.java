@@ -15,18 +15,17 @@
  */
 package co.cask.coopr.store;
 
-import com.google.common.base.Charsets;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.store.blob.BlobFormat;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.lang.reflect.Type;
 import java.sql.Blob;
 import java.sql.PreparedStatement;
@@ -37,13 +36,17 @@ import java.util.Set;
 
 /**
  * Executes prepared statements against databases while taking care of serialization/deserialization of blobs.
+ * Blobs are written in the {@link BlobFormat} given by the configuration, and blobs of any format can be read.
  */
 public final class DBQueryExecutor {
   private final Gson gson;
+  private final BlobFormat blobFormat;
 
   @Inject
-  private DBQueryExecutor(Gson gson) {
+  private DBQueryExecutor(Gson gson, Configuration conf) {
     this.gson = gson;
+    this.blobFormat = BlobFormat.valueOf(
+      conf.get(Constants.BLOB_FORMAT, Constants.DEFAULT_BLOB_FORMAT).toUpperCase());
   }
 
   /**
@@ -245,7 +248,7 @@ public final class DBQueryExecutor {
   }
 
   /**
-   * Deserialize a blob into an object. Assumes blob was serialized json.
+   * Deserialize a blob into an object. The blob can be of any {@link BlobFormat}.
    *
    * @param blob Blob to deserialize.
    * @param clazz Class of the object to deserialize the blob into.
@@ -257,18 +260,11 @@ public final class DBQueryExecutor {
     if (blob == null) {
       return null;
     }
-    Reader reader = new InputStreamReader(blob.getBinaryStream(), Charsets.UTF_8);
-    T object;
-    try {
-      object = gson.fromJson(reader, clazz);
-    } finally {
-      Closeables.closeQuietly(reader);
-    }
-    return object;
+    return BlobFormat.decodeAny(gson, blob.getBytes(1, (int) blob.length()), clazz);
   }
 
   /**
-   * Serialize the given object into json, then into bytes of that json.
+   * Serialize the given object into bytes of the configured {@link BlobFormat}.
    *
    * @param object Object to serialize.
    * @param type Type of the object to serialize.
@@ -276,6 +272,6 @@ public final class DBQueryExecutor {
    * @return Object as bytes.
    */
   public <T> byte[] toBytes(T object, Type type) {
-    return gson.toJson(object, type).getBytes(Charsets.UTF_8);
+    return blobFormat.encode(gson, object, type);
   }
 }
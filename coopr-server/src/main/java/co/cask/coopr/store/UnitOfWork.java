@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers the puts made by a thread so that they are written to the database in a single transaction. While a unit
+ * of work is started on a thread, stores that support it give their puts to the unit of work instead of executing
+ * them. Only the last put for each key of a table is kept, so an object that is written several times is only written
+ * once, and puts of the same kind are executed in batches. Tables are written in the order they were first put to, so
+ * that rows are inserted before rows that reference them. Reads are not affected, which means a unit of work should
+ * not span code that reads objects it has written. Puts that were not committed when the unit of work is closed are
+ * discarded. Side effects that should only happen once the puts are written, like writes to other stores or handing
+ * work to other threads, can be registered to run after the commit.
+ */
+public final class UnitOfWork {
+  private static final Logger LOG = LoggerFactory.getLogger(UnitOfWork.class);
+  private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<UnitOfWork>();
+
+  private final DBConnectionPool dbConnectionPool;
+  // table -> key -> last put for the key
+  private final Map<String, Map<Object, DBPut>> puts;
+  private final List<Runnable> afterCommitActions;
+
+  private UnitOfWork(DBConnectionPool dbConnectionPool) {
+    this.dbConnectionPool = dbConnectionPool;
+    this.puts = Maps.newLinkedHashMap();
+    this.afterCommitActions = Lists.newArrayList();
+  }
+
+  /**
+   * Start a unit of work on the calling thread. It must be closed by the same thread once it is no longer needed.
+   *
+   * @param dbConnectionPool Pool to get the connection from when committing the unit of work
+   * @return Unit of work started on the calling thread
+   * @throws IllegalStateException if the calling thread already has a unit of work
+   */
+  public static UnitOfWork start(DBConnectionPool dbConnectionPool) {
+    if (CURRENT.get() != null) {
+      throw new IllegalStateException("A unit of work is already started on thread " + Thread.currentThread());
+    }
+    UnitOfWork unitOfWork = new UnitOfWork(dbConnectionPool);
+    CURRENT.set(unitOfWork);
+    return unitOfWork;
+  }
+
+  /**
+   * Get the unit of work of the calling thread.
+   *
+   * @return Unit of work of the calling thread, or null if it has none
+   */
+  public static UnitOfWork current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Run an action after the next commit of the unit of work of the calling thread, or right away if the calling thread
+   * has no unit of work.
+   *
+   * @param action Action to run
+   */
+  public static void runAfterCommit(Runnable action) {
+    UnitOfWork unitOfWork = CURRENT.get();
+    if (unitOfWork == null) {
+      action.run();
+    } else {
+      unitOfWork.afterCommit(action);
+    }
+  }
+
+  /**
+   * Register an action to run once the puts buffered so far are committed. Actions run on the committing thread in
+   * the order they were registered, and are discarded if the commit fails or the unit of work is closed first.
+   *
+   * @param action Action to run after the next commit
+   */
+  public void afterCommit(Runnable action) {
+    afterCommitActions.add(action);
+  }
+
+  /**
+   * Buffer a put, replacing any put that was buffered for the same key of the same table.
+   *
+   * @param table Table the put writes to
+   * @param key Key of the row the put writes to
+   * @param put Put to buffer
+   */
+  public void put(String table, Object key, DBPut put) {
+    Map<Object, DBPut> tablePuts = puts.get(table);
+    if (tablePuts == null) {
+      tablePuts = Maps.newLinkedHashMap();
+      puts.put(table, tablePuts);
+    }
+    tablePuts.put(key, put);
+  }
+
+  /**
+   * Get the number of puts that are buffered and not yet committed.
+   *
+   * @return Number of buffered puts
+   */
+  public int size() {
+    int size = 0;
+    for (Map<Object, DBPut> tablePuts : puts.values()) {
+      size += tablePuts.size();
+    }
+    return size;
+  }
+
+  /**
+   * Execute all buffered puts in a single transaction, then run the actions registered to run after the commit. Either
+   * all of the puts are written or none of them are. Every action is run even if others fail, and since the puts are
+   * already written by then, failed actions are logged instead of failing the commit. The unit of work can keep
+   * buffering puts after it is committed.
+   *
+   * @throws IOException if there was a problem writing the puts
+   */
+  public void commit() throws IOException {
+    if (!puts.isEmpty()) {
+      executePuts();
+    }
+    List<Runnable> actions = Lists.newArrayList(afterCommitActions);
+    afterCommitActions.clear();
+    for (Runnable action : actions) {
+      try {
+        action.run();
+      } catch (RuntimeException e) {
+        LOG.error("Exception running action after commit", e);
+      }
+    }
+  }
+
+  private void executePuts() throws IOException {
+    int numPuts = size();
+    try {
+      Connection conn = dbConnectionPool.getConnection(false);
+      try {
+        for (Map<Object, DBPut> tablePuts : puts.values()) {
+          List<BatchableDBPut> batchablePuts = Lists.newArrayList();
+          for (DBPut put : tablePuts.values()) {
+            if (put instanceof BatchableDBPut) {
+              batchablePuts.add((BatchableDBPut) put);
+            } else {
+              put.executePut(conn);
+            }
+          }
+          BatchableDBPut.executePuts(conn, batchablePuts);
+        }
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      afterCommitActions.clear();
+      throw new IOException("Exception committing " + numPuts + " puts", e);
+    } finally {
+      puts.clear();
+    }
+    LOG.trace("Committed {} puts", numPuts);
+  }
+
+  /**
+   * Close the unit of work, discarding any puts that were not committed. After this, puts made by the calling thread
+   * are executed right away again.
+   */
+  public void close() {
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+    puts.clear();
+    afterCommitActions.clear();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.blob;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+
+import java.util.List;
+
+/**
+ * Reads json written by a {@link BinaryJsonWriter} into a tree of {@link JsonElement}, which Gson can then read objects
+ * from with the same type adapters as json.
+ */
+final class BinaryJsonReader {
+  private final byte[] bytes;
+  private final List<String> strings;
+  private int position;
+
+  BinaryJsonReader(byte[] bytes, int offset) {
+    this.bytes = bytes;
+    this.strings = Lists.newArrayList();
+    this.position = offset;
+  }
+
+  /**
+   * Read the next json element.
+   *
+   * @return Next json element.
+   * @throws JsonParseException if the bytes are not valid binary json.
+   */
+  JsonElement read() {
+    return read(readByte());
+  }
+
+  private JsonElement read(int tag) {
+    switch (tag) {
+      case BinaryJsonWriter.NULL:
+        return JsonNull.INSTANCE;
+      case BinaryJsonWriter.TRUE:
+        return new JsonPrimitive(true);
+      case BinaryJsonWriter.FALSE:
+        return new JsonPrimitive(false);
+      case BinaryJsonWriter.BEGIN_OBJECT:
+        JsonObject object = new JsonObject();
+        for (int next = readByte(); next != BinaryJsonWriter.END_OBJECT; next = readByte()) {
+          String name = readString(next);
+          object.add(name, read());
+        }
+        return object;
+      case BinaryJsonWriter.BEGIN_ARRAY:
+        JsonArray array = new JsonArray();
+        for (int next = readByte(); next != BinaryJsonWriter.END_ARRAY; next = readByte()) {
+          array.add(read(next));
+        }
+        return array;
+      case BinaryJsonWriter.STRING:
+      case BinaryJsonWriter.STRING_REF:
+        return new JsonPrimitive(readString(tag));
+      case BinaryJsonWriter.LONG:
+        long zigzag = readVarLong();
+        return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+      case BinaryJsonWriter.DOUBLE:
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+          bits = (bits << 8) | readByte();
+        }
+        return new JsonPrimitive(Double.longBitsToDouble(bits));
+      case BinaryJsonWriter.NUMBER:
+        return new JsonPrimitive(new LazilyParsedNumber(readUTF8()));
+      default:
+        throw new JsonParseException("Unexpected tag " + tag + " in binary json.");
+    }
+  }
+
+  private String readString(int tag) {
+    if (tag == BinaryJsonWriter.STRING) {
+      String value = readUTF8();
+      strings.add(value);
+      return value;
+    }
+    if (tag == BinaryJsonWriter.STRING_REF) {
+      long ref = readVarLong();
+      if (ref >= strings.size()) {
+        throw new JsonParseException("Unknown string reference " + ref + " in binary json.");
+      }
+      return strings.get((int) ref);
+    }
+    throw new JsonParseException("Expected a string in binary json but found tag " + tag + ".");
+  }
+
+  private String readUTF8() {
+    long length = readVarLong();
+    if (length > bytes.length - position) {
+      throw new JsonParseException("Invalid string length " + length + " in binary json.");
+    }
+    String value = new String(bytes, position, (int) length, Charsets.UTF_8);
+    position += (int) length;
+    return value;
+  }
+
+  private long readVarLong() {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new JsonParseException("Invalid variable length integer in binary json.");
+  }
+
+  private int readByte() {
+    if (position >= bytes.length) {
+      throw new JsonParseException("Unexpected end of binary json.");
+    }
+    return bytes[position++] & 0xFF;
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.blob;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * {@link JsonWriter} that writes a compact binary encoding of json instead of json text, so that objects can be
+ * written with the same Gson type adapters as json. Every token is a tag byte, followed by its value if it has one.
+ * Lengths and longs are written as variable length integers, and a string that was already written, which is usually
+ * the name of a field, is written as its index in the order strings were first written.
+ */
+final class BinaryJsonWriter extends JsonWriter {
+  static final int NULL = 0;
+  static final int TRUE = 1;
+  static final int FALSE = 2;
+  static final int BEGIN_OBJECT = 3;
+  static final int END_OBJECT = 4;
+  static final int BEGIN_ARRAY = 5;
+  static final int END_ARRAY = 6;
+  static final int STRING = 7;
+  static final int STRING_REF = 8;
+  static final int LONG = 9;
+  static final int DOUBLE = 10;
+  static final int NUMBER = 11;
+
+  private static final Writer UNWRITABLE_WRITER = new Writer() {
+    @Override
+    public void write(char[] buffer, int offset, int counter) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void flush() {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void close() {
+      throw new AssertionError();
+    }
+  };
+
+  private final OutputStream out;
+  private final Map<String, Integer> stringRefs;
+  private String deferredName;
+
+  BinaryJsonWriter(OutputStream out) {
+    super(UNWRITABLE_WRITER);
+    this.out = out;
+    this.stringRefs = Maps.newHashMap();
+  }
+
+  @Override
+  public JsonWriter beginArray() throws IOException {
+    writeDeferredName();
+    out.write(BEGIN_ARRAY);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endArray() throws IOException {
+    out.write(END_ARRAY);
+    return this;
+  }
+
+  @Override
+  public JsonWriter beginObject() throws IOException {
+    writeDeferredName();
+    out.write(BEGIN_OBJECT);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endObject() throws IOException {
+    if (deferredName != null) {
+      throw new IllegalStateException("Name " + deferredName + " has no value.");
+    }
+    out.write(END_OBJECT);
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException("Name " + deferredName + " has no value.");
+    }
+    // like json, names are only written once there is a value, so that fields with null values can be left out
+    deferredName = name;
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    writeString(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter nullValue() throws IOException {
+    if (deferredName != null) {
+      if (!getSerializeNulls()) {
+        deferredName = null;
+        return this;
+      }
+      writeDeferredName();
+    }
+    out.write(NULL);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(boolean value) throws IOException {
+    writeDeferredName();
+    out.write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(double value) throws IOException {
+    writeDeferredName();
+    out.write(DOUBLE);
+    long bits = Double.doubleToRawLongBits(value);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      out.write((int) (bits >>> shift));
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) throws IOException {
+    writeDeferredName();
+    out.write(LONG);
+    // zigzag encoding, so that small negative numbers are short as well
+    writeVarLong((value << 1) ^ (value >> 63));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(Number value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return value(value.longValue());
+    }
+    if (value instanceof Double) {
+      return value(value.doubleValue());
+    }
+    // keep the exact text of any other number, like json does
+    writeDeferredName();
+    out.write(NUMBER);
+    writeUTF8(value.toString());
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeDeferredName() throws IOException {
+    if (deferredName != null) {
+      writeString(deferredName);
+      deferredName = null;
+    }
+  }
+
+  private void writeString(String value) throws IOException {
+    Integer ref = stringRefs.get(value);
+    if (ref != null) {
+      out.write(STRING_REF);
+      writeVarLong(ref);
+    } else {
+      stringRefs.put(value, stringRefs.size());
+      out.write(STRING);
+      writeUTF8(value);
+    }
+  }
+
+  private void writeUTF8(String value) throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    writeVarLong(bytes.length);
+    out.write(bytes);
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
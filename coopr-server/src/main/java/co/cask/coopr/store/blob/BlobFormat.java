@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.blob;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Format of objects serialized into blob columns. Every format writes objects with the same Gson type adapters, so
+ * objects read back the same regardless of the format they were written in. Formats other than json start with a
+ * header byte that identifies the format, which json never starts with, so blobs of any format can be read no matter
+ * which format is being written.
+ */
+public enum BlobFormat {
+  /**
+   * Json text, as written by all earlier versions. Has no header.
+   */
+  JSON(-1) {
+    @Override
+    public byte[] encode(Gson gson, Object object, Type type) {
+      return gson.toJson(object, type).getBytes(Charsets.UTF_8);
+    }
+
+    @Override
+    <T> T decode(Gson gson, byte[] blob, Type type) {
+      return gson.fromJson(new String(blob, Charsets.UTF_8), type);
+    }
+
+    @Override
+    JsonElement decodeTree(byte[] blob) {
+      return new JsonParser().parse(new String(blob, Charsets.UTF_8));
+    }
+  },
+
+  /**
+   * Binary encoding of the json, written by a {@link BinaryJsonWriter}.
+   */
+  BINARY(1) {
+    @Override
+    public byte[] encode(Gson gson, Object object, Type type) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write(header);
+      writeBinary(gson, object, type, out);
+      return out.toByteArray();
+    }
+
+    @Override
+    JsonElement decodeTree(byte[] blob) {
+      return new BinaryJsonReader(blob, 1).read();
+    }
+  },
+
+  /**
+   * Binary encoding of the json, compressed with deflate. The header is followed by the uncompressed length as 4 bytes.
+   */
+  COMPRESSED_BINARY(2) {
+    @Override
+    public byte[] encode(Gson gson, Object object, Type type) {
+      ByteArrayOutputStream binary = new ByteArrayOutputStream();
+      writeBinary(gson, object, type, binary);
+      byte[] uncompressed = binary.toByteArray();
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(uncompressed.length / 4 + 16);
+      out.write(header);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        out.write(uncompressed.length >>> shift);
+      }
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(uncompressed);
+        deflater.finish();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+          out.write(buffer, 0, deflater.deflate(buffer));
+        }
+      } finally {
+        deflater.end();
+      }
+      return out.toByteArray();
+    }
+
+    @Override
+    JsonElement decodeTree(byte[] blob) {
+      if (blob.length < 5) {
+        throw new JsonParseException("Compressed binary blob is missing its length.");
+      }
+      int length = ((blob[1] & 0xFF) << 24) | ((blob[2] & 0xFF) << 16) | ((blob[3] & 0xFF) << 8) | (blob[4] & 0xFF);
+      byte[] uncompressed = new byte[length];
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(blob, 5, blob.length - 5);
+        if (inflater.inflate(uncompressed) != length) {
+          throw new JsonParseException("Compressed binary blob is shorter than its length.");
+        }
+      } catch (DataFormatException e) {
+        throw new JsonParseException("Invalid compressed binary blob.", e);
+      } finally {
+        inflater.end();
+      }
+      return new BinaryJsonReader(uncompressed, 0).read();
+    }
+  };
+
+  final int header;
+
+  BlobFormat(int header) {
+    this.header = header;
+  }
+
+  /**
+   * Serialize the given object into bytes of this format.
+   *
+   * @param gson Gson to serialize the object with.
+   * @param object Object to serialize.
+   * @param type Type of the object to serialize.
+   * @return Object as bytes.
+   */
+  public abstract byte[] encode(Gson gson, Object object, Type type);
+
+  /**
+   * Deserialize a blob of this format into an object.
+   */
+  <T> T decode(Gson gson, byte[] blob, Type type) {
+    return gson.fromJson(decodeTree(blob), type);
+  }
+
+  /**
+   * Deserialize a blob of this format into json, without knowing the type of object it contains.
+   */
+  abstract JsonElement decodeTree(byte[] blob);
+
+  /**
+   * Deserialize a blob of any format into an object.
+   *
+   * @param gson Gson to deserialize the object with.
+   * @param blob Blob to deserialize.
+   * @param type Type of the object to deserialize.
+   * @param <T> Type of the object to deserialize.
+   * @return Deserialized object, or null if the blob is empty.
+   */
+  public static <T> T decodeAny(Gson gson, byte[] blob, Type type) {
+    if (blob.length == 0) {
+      return null;
+    }
+    return of(blob).<T>decode(gson, blob, type);
+  }
+
+  /**
+   * Convert a blob of any format into a blob of this format, without knowing the type of object it contains.
+   *
+   * @param gson Gson to write the blob with.
+   * @param blob Blob to convert.
+   * @return Blob of this format, with the same contents as the given blob.
+   */
+  public byte[] convert(Gson gson, byte[] blob) {
+    return encode(gson, of(blob).decodeTree(blob), JsonElement.class);
+  }
+
+  /**
+   * Get the format of the given blob.
+   *
+   * @param blob Blob to get the format of.
+   * @return Format of the blob.
+   */
+  public static BlobFormat of(byte[] blob) {
+    if (blob.length > 0) {
+      for (BlobFormat format : values()) {
+        if (format.header == blob[0]) {
+          return format;
+        }
+      }
+    }
+    return JSON;
+  }
+
+  private static void writeBinary(Gson gson, Object object, Type type, ByteArrayOutputStream out) {
+    BinaryJsonWriter writer = new BinaryJsonWriter(out);
+    gson.toJson(object, type, writer);
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      // cannot happen when writing to a byte array
+      throw new JsonIOException(e);
+    }
+  }
+}
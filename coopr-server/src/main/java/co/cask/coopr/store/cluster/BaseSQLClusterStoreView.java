@@ -16,6 +16,9 @@
 package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterJobProgress;
+import co.cask.coopr.cluster.ClusterListing;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.scheduler.task.ClusterJob;
@@ -24,6 +27,7 @@ import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.DBPut;
 import co.cask.coopr.store.DBQueryExecutor;
+import co.cask.coopr.store.UnitOfWork;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
@@ -32,6 +36,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Set;
 
@@ -40,6 +45,9 @@ import java.util.Set;
  * TODO: find a way to consolidate common code in subclasses.
  */
 public abstract class BaseSQLClusterStoreView implements ClusterStoreView {
+  static final String SELECT_CLUSTER_LISTINGS =
+    "SELECT C.id, C.name, C.owner_id, C.create_time, C.expire_time, C.status, C.latest_job_num, J.progress " +
+      "FROM clusters C, jobs J WHERE C.latest_job_num=J.job_num AND C.id=J.cluster_id";
   private final DBConnectionPool dbConnectionPool;
   private final DBQueryExecutor dbQueryExecutor;
 
@@ -72,6 +80,9 @@ public abstract class BaseSQLClusterStoreView implements ClusterStoreView {
 
   abstract PreparedStatement getSelectClusterNodesStatement(Connection conn, long id) throws SQLException;
 
+  abstract PreparedStatement getSelectClusterListingsStatement(
+    Connection conn, Set<Cluster.Status> states, ClusterListingCursor after) throws SQLException;
+
   @Override
   public List<Cluster> getAllClusters() throws IOException {
     try {
@@ -132,6 +143,27 @@ public abstract class BaseSQLClusterStoreView implements ClusterStoreView {
     }
   }
 
+  @Override
+  public List<ClusterListing> getClusterListings(Set<Cluster.Status> states, ClusterListingCursor after, int limit)
+    throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = getSelectClusterListingsStatement(conn, states, after);
+        try {
+          statement.setMaxRows(limit);
+          return getListings(conn, statement);
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      throw new IOException("Exception getting cluster listings", e);
+    }
+  }
+
   @Override
   public List<Cluster> getNonTerminatedClusters() throws IOException {
     try {
@@ -197,11 +229,16 @@ public abstract class BaseSQLClusterStoreView implements ClusterStoreView {
       throw new IllegalAccessException("Not allowed to write cluster " + cluster.getId());
     }
     long clusterNum = Long.parseLong(cluster.getId());
+    byte[] clusterBytes = dbQueryExecutor.toBytes(cluster, Cluster.class);
+    DBPut clusterPut = new ClusterDBPut(clusterNum, cluster, clusterBytes);
+    UnitOfWork unitOfWork = UnitOfWork.current();
+    if (unitOfWork != null) {
+      unitOfWork.put("clusters", cluster.getId(), clusterPut);
+      return;
+    }
     try {
       Connection conn = dbConnectionPool.getConnection();
       try {
-        byte[] clusterBytes = dbQueryExecutor.toBytes(cluster, Cluster.class);
-        DBPut clusterPut = new ClusterDBPut(clusterNum, cluster, clusterBytes);
         clusterPut.executePut(conn);
       } finally {
         conn.close();
@@ -306,6 +343,96 @@ public abstract class BaseSQLClusterStoreView implements ClusterStoreView {
     }
   }
 
+  /**
+   * Get the conditions and ordering to append to {@link #SELECT_CLUSTER_LISTINGS} after the conditions of the view.
+   */
+  String getClusterListingsConditions(Set<Cluster.Status> states, ClusterListingCursor after) {
+    StringBuilder builder = new StringBuilder();
+    if (states != null && !states.isEmpty()) {
+      builder.append(" AND C.status IN ").append(DBHelper.createInString(states.size()));
+    }
+    if (after != null) {
+      builder.append(" AND (C.create_time<? OR (C.create_time=? AND C.id<?))");
+    }
+    return builder.append(" ORDER BY C.create_time DESC, C.id DESC").toString();
+  }
+
+  /**
+   * Set the parameters of the conditions returned by {@link #getClusterListingsConditions(Set, ClusterListingCursor)}.
+   */
+  void setClusterListingsConditions(PreparedStatement statement, Set<Cluster.Status> states,
+                                    ClusterListingCursor after, int startIndex) throws SQLException {
+    int index = startIndex;
+    if (states != null && !states.isEmpty()) {
+      setInClause(statement, states, index);
+      index += states.size();
+    }
+    if (after != null) {
+      Timestamp createTime = new Timestamp(after.getCreateTime());
+      statement.setTimestamp(index++, createTime);
+      statement.setTimestamp(index++, createTime);
+      statement.setLong(index, after.getId());
+    }
+  }
+
+  private List<ClusterListing> getListings(Connection conn, PreparedStatement statement) throws SQLException {
+    ResultSet rs = statement.executeQuery();
+    try {
+      List<ClusterListing> listings = Lists.newArrayList();
+      while (rs.next()) {
+        long clusterId = rs.getLong(1);
+        long jobNum = rs.getLong(7);
+        String progressColumn = rs.getString(8);
+        ClusterJobProgress progress = progressColumn == null ?
+          getLegacyProgress(conn, clusterId, jobNum) : JobProgressColumn.fromColumn(progressColumn);
+        // ids are stored as numbers, but handed out by the IdService zero padded
+        String id = String.format("%08d", clusterId);
+        listings.add(new ClusterListing(id, rs.getString(2), rs.getString(3),
+                                        getTime(rs.getTimestamp(4)), getTime(rs.getTimestamp(5)),
+                                        Cluster.Status.valueOf(rs.getString(6)),
+                                        new JobId(id, jobNum).getId(), progress));
+      }
+      return ImmutableList.copyOf(listings);
+    } finally {
+      rs.close();
+    }
+  }
+
+  // jobs written before the progress column was added are read once, and their progress column is filled in
+  private ClusterJobProgress getLegacyProgress(Connection conn, long clusterId, long jobNum) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement("SELECT job FROM jobs WHERE job_num=? AND cluster_id=?");
+    ClusterJob job;
+    try {
+      statement.setLong(1, jobNum);
+      statement.setLong(2, clusterId);
+      job = dbQueryExecutor.getQueryItem(statement, ClusterJob.class);
+    } finally {
+      statement.close();
+    }
+    if (job == null) {
+      return null;
+    }
+    ClusterJobProgress progress = new ClusterJobProgress(job);
+    String progressColumn = JobProgressColumn.toColumn(progress);
+    if (progressColumn != null) {
+      statement = conn.prepareStatement(
+        "UPDATE jobs SET progress=? WHERE job_num=? AND cluster_id=? AND progress IS NULL");
+      try {
+        statement.setString(1, progressColumn);
+        statement.setLong(2, jobNum);
+        statement.setLong(3, clusterId);
+        statement.executeUpdate();
+      } finally {
+        statement.close();
+      }
+    }
+    return progress;
+  }
+
+  private long getTime(Timestamp timestamp) {
+    return timestamp == null ? 0 : timestamp.getTime();
+  }
+
   private class ClusterDBPut extends DBPut {
     private final long clusterId;
     private final Cluster cluster;
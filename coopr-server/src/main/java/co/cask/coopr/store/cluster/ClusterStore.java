@@ -6,9 +6,12 @@ import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.store.UnitOfWork;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -16,6 +19,15 @@ import java.util.Set;
  * for operating on clusters.
  */
 public interface ClusterStore extends ClusterStoreView {
+  /**
+   * Start a unit of work on the calling thread. Until it is closed, clusters, jobs, tasks, and nodes written by the
+   * thread are buffered instead of written, keeping only the last write of each object, and are written in a single
+   * transaction when the unit of work is committed.
+   * @return The unit of work started on the calling thread.
+   * @throws IllegalStateException if the calling thread already has a unit of work.
+   */
+  UnitOfWork startUnitOfWork();
+
   /**
    * Get a cluster job by its id.
    * @param jobId Id of the cluster job to get.
@@ -46,6 +58,14 @@ public interface ClusterStore extends ClusterStoreView {
    */
   ClusterTask getClusterTask(TaskId taskId) throws IOException;
 
+  /**
+   * Get all cluster tasks with the given ids using a single lookup, instead of looking them up one at a time.
+   * @param taskIds Ids of the cluster tasks to get.
+   * @return Map of task id to cluster task. Ids that do not have a task are not in the map.
+   * @throws IOException if there was a problem getting the cluster tasks.
+   */
+  Map<String, ClusterTask> getClusterTasks(Collection<TaskId> taskIds) throws IOException;
+
   /**
    * Retrieves tasks according to the {@code filter} filters.
    *
@@ -55,6 +75,16 @@ public interface ClusterStore extends ClusterStoreView {
    */
   List<ClusterTask> getClusterTasks(ClusterTaskFilter filter) throws IOException;
 
+  /**
+   * Reads tasks according to the {@code filter} filters in order of status time, passing each one to the visitor
+   * as it is read instead of keeping all of them in memory.
+   *
+   * @param filter the object wrapper around filters
+   * @param visitor visitor to pass each task to
+   * @throws IOException if there was a problem reading the cluster tasks, or the visitor threw one.
+   */
+  void visitClusterTasks(ClusterTaskFilter filter, ClusterTaskVisitor visitor) throws IOException;
+
   /**
    * Write a cluster task to the store using its id.
    * @param clusterTask The cluster task to write.
@@ -62,6 +92,13 @@ public interface ClusterStore extends ClusterStoreView {
    */
   void writeClusterTask(ClusterTask clusterTask) throws IOException;
 
+  /**
+   * Write multiple cluster tasks to the store in one batch. Either all tasks are written or none of them are.
+   * @param clusterTasks The cluster tasks to write.
+   * @throws IOException if there was a problem writing the cluster tasks.
+   */
+  void writeClusterTasks(Collection<ClusterTask> clusterTasks) throws IOException;
+
   /**
    * Deletes the cluster task that has the given id.
    * @param taskId Id of the cluster task to delete.
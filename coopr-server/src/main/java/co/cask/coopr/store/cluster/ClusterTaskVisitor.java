@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.cluster;
+
+import co.cask.coopr.scheduler.task.ClusterTask;
+
+import java.io.IOException;
+
+/**
+ * Receives cluster tasks one at a time as they are read from a {@link ClusterStore}.
+ */
+public interface ClusterTaskVisitor {
+
+  /**
+   * Visit a cluster task.
+   *
+   * @param task Task read from the store
+   * @throws IOException if there was a problem handling the task, which stops the read
+   */
+  void visit(ClusterTask task) throws IOException;
+}
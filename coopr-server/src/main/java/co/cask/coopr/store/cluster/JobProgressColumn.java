@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.cluster;
+
+import co.cask.coopr.cluster.ClusterJobProgress;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+import java.util.Iterator;
+
+/**
+ * Converts {@link ClusterJobProgress} to and from the progress column of the jobs table, which is denormalized from
+ * the job so that clusters can be listed without reading jobs. The column holds the action, status, total steps and
+ * completed steps separated by commas.
+ */
+final class JobProgressColumn {
+  private static final Joiner JOINER = Joiner.on(',');
+  private static final Splitter SPLITTER = Splitter.on(',');
+
+  private JobProgressColumn() {
+  }
+
+  // null if the job has no action or status yet, in which case it is read from the job when listing
+  static String toColumn(ClusterJobProgress progress) {
+    if (progress.getAction() == null || progress.getActionstatus() == null) {
+      return null;
+    }
+    return JOINER.join(progress.getAction(), progress.getActionstatus(),
+                       progress.getStepstotal(), progress.getStepscompleted());
+  }
+
+  static ClusterJobProgress fromColumn(String column) {
+    Iterator<String> parts = SPLITTER.split(column).iterator();
+    ClusterAction action = ClusterAction.valueOf(parts.next());
+    ClusterJob.Status status = ClusterJob.Status.valueOf(parts.next());
+    int stepsTotal = Integer.parseInt(parts.next());
+    int stepsCompleted = Integer.parseInt(parts.next());
+    return new ClusterJobProgress(action, status, stepsTotal, stepsCompleted);
+  }
+}
@@ -17,6 +17,8 @@
 package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterListing;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.scheduler.task.ClusterJob;
@@ -55,6 +57,21 @@ public interface ReadOnlyClusterStoreView {
    */
   List<ClusterSummary> getAllClusterSummaries(Set<Cluster.Status> states) throws IOException;
 
+  /**
+   * Get an immutable list of listings of clusters in the store that are in one of the given cluster states, from newest
+   * to oldest, starting after the given cursor. Listings are read from indexed cluster columns and the progress column
+   * of the latest job, without reading full clusters or jobs.
+   *
+   * @param states returned clusters must be in one of these states. If null or empty, clusters in any state
+   *               are returned.
+   * @param after cursor to start listing after, or null to start with the newest cluster.
+   * @param limit max number of listings to return.
+   * @return Immutable list of up to limit listings of clusters after the cursor.
+   * @throws IOException if there was a problem getting the cluster listings.
+   */
+  List<ClusterListing> getClusterListings(Set<Cluster.Status> states, ClusterListingCursor after, int limit)
+    throws IOException;
+
   /**
    * Get an immutable list of all clusters in the store that are not in the terminated state.
    *
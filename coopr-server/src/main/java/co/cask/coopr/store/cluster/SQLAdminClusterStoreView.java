@@ -2,6 +2,7 @@ package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.DBQueryExecutor;
@@ -127,4 +128,14 @@ public class SQLAdminClusterStoreView extends BaseSQLClusterStoreView {
     statement.setString(2, tenantId);
     return statement;
   }
+
+  @Override
+  PreparedStatement getSelectClusterListingsStatement(Connection conn, Set<Cluster.Status> states,
+                                                      ClusterListingCursor after) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(
+      SELECT_CLUSTER_LISTINGS + " AND C.tenant_id=?" + getClusterListingsConditions(states, after));
+    statement.setString(1, tenantId);
+    setClusterListingsConditions(statement, states, after, 2);
+    return statement;
+  }
 }
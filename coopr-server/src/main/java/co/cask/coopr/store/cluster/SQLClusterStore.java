@@ -1,6 +1,9 @@
 package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterJobProgress;
+import co.cask.coopr.cluster.ClusterListing;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.scheduler.task.ClusterJob;
@@ -8,18 +11,28 @@ import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
 import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.BatchableDBPut;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.DBPut;
 import co.cask.coopr.store.DBQueryExecutor;
+import co.cask.coopr.store.UnitOfWork;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -27,6 +40,24 @@ import java.util.Set;
  */
 public class SQLClusterStore implements ClusterStore {
   private static final Logger LOG  = LoggerFactory.getLogger(SQLClusterStore.class);
+  // max number of task nums to put in a single IN clause when looking up multiple tasks
+  private static final int MAX_TASKS_PER_LOOKUP = 500;
+  // number of rows to fetch at a time when reading through tasks without keeping them in memory
+  private static final int TASK_SCAN_FETCH_SIZE = 1000;
+  private static final String UPDATE_TASK_SQL =
+    "UPDATE tasks SET task=?, status=?, submit_time=?, status_time=?, type=?, " +
+      "cluster_template_name=?, user_id=?, tenant_id=?" +
+      " WHERE task_num=? AND job_num=? AND cluster_id=?";
+  private static final String INSERT_TASK_SQL =
+    "INSERT INTO tasks (task_num, job_num, cluster_id, status, submit_time, task, type, " +
+      "cluster_template_name, user_id, tenant_id)" +
+      " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_JOB_SQL =
+    "UPDATE jobs SET job=?, status=?, progress=? WHERE job_num=? AND cluster_id=?";
+  private static final String INSERT_JOB_SQL =
+    "INSERT INTO jobs (job_num, cluster_id, status, create_time, job, progress) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_NODE_SQL = "UPDATE nodes SET node=? WHERE id=?";
+  private static final String INSERT_NODE_SQL = "INSERT INTO nodes (id, cluster_id, node) VALUES (?, ?, ?)";
   private final DBQueryExecutor dbQueryExecutor;
   private final DBConnectionPool dbConnectionPool;
   private final ClusterStoreView systemView;
@@ -37,6 +68,11 @@ public class SQLClusterStore implements ClusterStore {
     this.systemView = new SQLSystemClusterStoreView(dbConnectionPool, dbQueryExecutor);
   }
 
+  @Override
+  public UnitOfWork startUnitOfWork() {
+    return UnitOfWork.start(dbConnectionPool);
+  }
+
   @Override
   public ClusterJob getClusterJob(JobId jobId) throws IOException {
     try {
@@ -64,14 +100,8 @@ public class SQLClusterStore implements ClusterStore {
     JobId jobId = JobId.fromString(clusterJob.getJobId());
     long clusterId = Long.parseLong(jobId.getClusterId());
     try {
-      Connection conn = dbConnectionPool.getConnection();
-      try {
-        byte[] jobBytes = dbQueryExecutor.toBytes(clusterJob, ClusterJob.class);
-        DBPut jobPut = new ClusterJobDBPut(clusterJob, jobBytes, jobId, clusterId);
-        jobPut.executePut(conn);
-      } finally {
-        conn.close();
-      }
+      byte[] jobBytes = dbQueryExecutor.toBytes(clusterJob, ClusterJob.class);
+      put("jobs", clusterJob.getJobId(), new ClusterJobDBPut(clusterJob, jobBytes, jobId, clusterId));
     } catch (SQLException e) {
       throw new IOException(e);
     }
@@ -123,27 +153,66 @@ public class SQLClusterStore implements ClusterStore {
   }
 
   @Override
-  public List<ClusterTask> getClusterTasks(ClusterTaskFilter filter) throws IOException {
+  public Map<String, ClusterTask> getClusterTasks(Collection<TaskId> taskIds) throws IOException {
+    Map<String, ClusterTask> tasks = Maps.newHashMapWithExpectedSize(taskIds.size());
+    if (taskIds.isEmpty()) {
+      return tasks;
+    }
+    // tasks in a job stage almost always belong to the same job, so group the lookup by job and use the task nums
+    Multimap<String, TaskId> idsByJob = ArrayListMultimap.create();
+    for (TaskId taskId : taskIds) {
+      idsByJob.put(taskId.getJobId().getId(), taskId);
+    }
     try {
       Connection conn = dbConnectionPool.getConnection();
       try {
-        StringBuilder builder = new StringBuilder("SELECT task FROM tasks WHERE status = ? AND type IN (?,?)")
-          .append(addFilter("tenant_id = ", filter.getTenantId()))
-          .append(addFilter("user_id = ", filter.getUserId()))
-          .append(addFilter("cluster_id = ", filter.getClusterId()))
-          .append(addFilter("cluster_template_name = ", filter.getClusterTemplate()))
-          .append(" ORDER BY status_time ASC");
+        for (Collection<TaskId> jobTaskIds : idsByJob.asMap().values()) {
+          for (List<TaskId> batch : Iterables.partition(jobTaskIds, MAX_TASKS_PER_LOOKUP)) {
+            for (ClusterTask task : getClusterTasks(conn, batch)) {
+              tasks.put(task.getTaskId(), task);
+            }
+          }
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception getting cluster tasks {}", taskIds, e);
+      throw new IOException("Exception getting cluster tasks " + taskIds, e);
+    }
+    return tasks;
+  }
 
-        PreparedStatement statement =
-          conn.prepareStatement(builder.toString());
+  // all task ids given must belong to the same job
+  private List<ClusterTask> getClusterTasks(Connection conn, List<TaskId> taskIds) throws SQLException {
+    StringBuilder builder =
+      new StringBuilder("SELECT task FROM tasks WHERE cluster_id=? AND job_num=? AND task_num IN (");
+    for (int i = 0; i < taskIds.size(); i++) {
+      builder.append(i == 0 ? "?" : ",?");
+    }
+    builder.append(")");
+    TaskId first = taskIds.get(0);
+    PreparedStatement statement = conn.prepareStatement(builder.toString());
+    try {
+      statement.setLong(1, Long.parseLong(first.getClusterId()));
+      statement.setLong(2, first.getJobNum());
+      int index = 3;
+      for (TaskId taskId : taskIds) {
+        statement.setLong(index++, taskId.getTaskNum());
+      }
+      return dbQueryExecutor.getQueryList(statement, ClusterTask.class);
+    } finally {
+      statement.close();
+    }
+  }
+
+  @Override
+  public List<ClusterTask> getClusterTasks(ClusterTaskFilter filter) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = prepareFilterStatement(conn, filter);
         try {
-          int index = initializeFilter(statement, ClusterTask.Status.COMPLETE.name(), 1);
-          index = initializeFilter(statement, ProvisionerAction.CREATE.name(), index);
-          index = initializeFilter(statement, ProvisionerAction.DELETE.name(), index);
-          index = initializeFilter(statement, filter.getTenantId(), index);
-          index = initializeFilter(statement, filter.getUserId(), index);
-          index = initializeFilter(statement, filter.getClusterId(), index);
-          initializeFilter(statement, filter.getClusterTemplate(), index);
           return dbQueryExecutor.getQueryList(statement, ClusterTask.class);
         } finally {
           statement.close();
@@ -157,6 +226,61 @@ public class SQLClusterStore implements ClusterStore {
     }
   }
 
+  @Override
+  public void visitClusterTasks(ClusterTaskFilter filter, ClusterTaskVisitor visitor) throws IOException {
+    try {
+      // some drivers only use the fetch size to stream results if auto commit is off
+      Connection conn = dbConnectionPool.getConnection(false);
+      try {
+        PreparedStatement statement = prepareFilterStatement(conn, filter);
+        try {
+          statement.setFetchSize(dbConnectionPool.getStreamingFetchSize(TASK_SCAN_FETCH_SIZE));
+          ResultSet rs = statement.executeQuery();
+          try {
+            while (rs.next()) {
+              visitor.visit(dbQueryExecutor.deserializeBlob(rs.getBlob(1), ClusterTask.class));
+            }
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+        conn.commit();
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception reading cluster tasks by filters {}", filter, e);
+      throw new IOException("Exception reading cluster tasks by filters " + filter, e);
+    }
+  }
+
+  private PreparedStatement prepareFilterStatement(Connection conn, ClusterTaskFilter filter) throws SQLException {
+    StringBuilder builder = new StringBuilder("SELECT task FROM tasks WHERE status = ? AND type IN (?,?)")
+      .append(addFilter("tenant_id = ", filter.getTenantId()))
+      .append(addFilter("user_id = ", filter.getUserId()))
+      .append(addFilter("cluster_id = ", filter.getClusterId()))
+      .append(addFilter("cluster_template_name = ", filter.getClusterTemplate()))
+      .append(" ORDER BY status_time ASC");
+
+    PreparedStatement statement =
+      conn.prepareStatement(builder.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    try {
+      int index = initializeFilter(statement, ClusterTask.Status.COMPLETE.name(), 1);
+      index = initializeFilter(statement, ProvisionerAction.CREATE.name(), index);
+      index = initializeFilter(statement, ProvisionerAction.DELETE.name(), index);
+      index = initializeFilter(statement, filter.getTenantId(), index);
+      index = initializeFilter(statement, filter.getUserId(), index);
+      index = initializeFilter(statement, filter.getClusterId(), index);
+      initializeFilter(statement, filter.getClusterTemplate(), index);
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+    return statement;
+  }
+
   private String addFilter(String key, Object value) {
     if (value == null) {
       return "";
@@ -174,19 +298,46 @@ public class SQLClusterStore implements ClusterStore {
 
   @Override
   public void writeClusterTask(ClusterTask clusterTask) throws IOException {
-    TaskId taskId = TaskId.fromString(clusterTask.getTaskId());
-    long clusterId = Long.parseLong(taskId.getClusterId());
     try {
-      Connection conn = dbConnectionPool.getConnection();
+      byte[] taskBytes = dbQueryExecutor.toBytes(clusterTask, ClusterTask.class);
+      put("tasks", clusterTask.getTaskId(), new ClusterTaskDBPut(clusterTask, taskBytes));
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void writeClusterTasks(Collection<ClusterTask> clusterTasks) throws IOException {
+    if (clusterTasks.isEmpty()) {
+      return;
+    }
+    List<ClusterTaskDBPut> taskPuts = Lists.newArrayListWithCapacity(clusterTasks.size());
+    for (ClusterTask task : clusterTasks) {
+      taskPuts.add(new ClusterTaskDBPut(task, dbQueryExecutor.toBytes(task, ClusterTask.class)));
+    }
+    UnitOfWork unitOfWork = UnitOfWork.current();
+    if (unitOfWork != null) {
+      for (ClusterTaskDBPut taskPut : taskPuts) {
+        unitOfWork.put("tasks", taskPut.clusterTask.getTaskId(), taskPut);
+      }
+      return;
+    }
+    try {
+      Connection conn = dbConnectionPool.getConnection(false);
       try {
-        byte[] taskBytes = dbQueryExecutor.toBytes(clusterTask, ClusterTask.class);
-        DBPut taskPut = new ClusterTaskDBPut(clusterTask, taskBytes, taskId, clusterId);
-        taskPut.executePut(conn);
+        // same as a DBPut for each task, except all updates are sent in one batch, followed by one batch of inserts
+        // for the tasks that did not exist yet.
+        BatchableDBPut.executePuts(conn, taskPuts);
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
       } finally {
         conn.close();
       }
     } catch (SQLException e) {
-      throw new IOException(e);
+      LOG.error("Exception writing {} cluster tasks", taskPuts.size(), e);
+      throw new IOException("Exception writing cluster tasks", e);
     }
   }
 
@@ -236,14 +387,8 @@ public class SQLClusterStore implements ClusterStore {
   @Override
   public void writeNode(Node node) throws IOException {
     try {
-      Connection conn = dbConnectionPool.getConnection();
-      try {
-        byte[] nodeBytes = dbQueryExecutor.toBytes(node, Node.class);
-        DBPut nodePut = new NodeDBPut(node, nodeBytes);
-        nodePut.executePut(conn);
-      } finally {
-        conn.close();
-      }
+      byte[] nodeBytes = dbQueryExecutor.toBytes(node, Node.class);
+      put("nodes", node.getId(), new NodeDBPut(node, nodeBytes));
     } catch (SQLException e) {
       throw new IOException(e);
     }
@@ -329,6 +474,12 @@ public class SQLClusterStore implements ClusterStore {
     return systemView.getAllClusterSummaries(states);
   }
 
+  @Override
+  public List<ClusterListing> getClusterListings(Set<Cluster.Status> states, ClusterListingCursor after, int limit)
+    throws IOException {
+    return systemView.getClusterListings(states, after, limit);
+  }
+
   @Override
   public List<Cluster> getNonTerminatedClusters() throws IOException {
     return systemView.getNonTerminatedClusters();
@@ -364,7 +515,22 @@ public class SQLClusterStore implements ClusterStore {
     return systemView.getClusterNodes(clusterId);
   }
 
-  private class ClusterJobDBPut extends DBPut {
+  // gives the put to the unit of work of the calling thread if it has one, or executes it right away if not
+  private void put(String table, String key, DBPut put) throws SQLException {
+    UnitOfWork unitOfWork = UnitOfWork.current();
+    if (unitOfWork != null) {
+      unitOfWork.put(table, key, put);
+      return;
+    }
+    Connection conn = dbConnectionPool.getConnection();
+    try {
+      put.executePut(conn);
+    } finally {
+      conn.close();
+    }
+  }
+
+  private class ClusterJobDBPut extends BatchableDBPut {
     private final ClusterJob clusterJob;
     private final byte[] jobBytes;
     private final JobId jobId;
@@ -378,49 +544,53 @@ public class SQLClusterStore implements ClusterStore {
     }
 
     @Override
-    public PreparedStatement createUpdateStatement(Connection conn) throws SQLException {
-      PreparedStatement updateStatement =
-        conn.prepareStatement("UPDATE jobs SET job=?, status=? WHERE job_num=? AND cluster_id=?");
-      updateStatement.setBytes(1, jobBytes);
-      updateStatement.setString(2, clusterJob.getJobStatus().name());
-      updateStatement.setLong(3, jobId.getJobNum());
-      updateStatement.setLong(4, clusterId);
-      return updateStatement;
+    protected String getUpdateSql() {
+      return UPDATE_JOB_SQL;
+    }
+
+    @Override
+    protected void setUpdateParameters(PreparedStatement statement) throws SQLException {
+      statement.setBytes(1, jobBytes);
+      statement.setString(2, clusterJob.getJobStatus().name());
+      statement.setString(3, JobProgressColumn.toColumn(new ClusterJobProgress(clusterJob)));
+      statement.setLong(4, jobId.getJobNum());
+      statement.setLong(5, clusterId);
+    }
+
+    @Override
+    protected String getInsertSql() {
+      return INSERT_JOB_SQL;
     }
 
     @Override
-    public PreparedStatement createInsertStatement(Connection conn) throws SQLException {
-      PreparedStatement statement = conn.prepareStatement(
-        "INSERT INTO jobs (job_num, cluster_id, status, create_time, job) VALUES (?, ?, ?, ?, ?)");
+    protected void setInsertParameters(PreparedStatement statement) throws SQLException {
       statement.setLong(1, jobId.getJobNum());
       statement.setLong(2, clusterId);
       statement.setString(3, clusterJob.getJobStatus().name());
       statement.setTimestamp(4, DBHelper.getTimestamp(System.currentTimeMillis()));
       statement.setBytes(5, jobBytes);
-      return statement;
+      statement.setString(6, JobProgressColumn.toColumn(new ClusterJobProgress(clusterJob)));
     }
   }
 
-  private class ClusterTaskDBPut extends DBPut {
+  private class ClusterTaskDBPut extends BatchableDBPut {
     private final ClusterTask clusterTask;
     private final byte[] taskBytes;
-    private final TaskId taskId;
-    private final long clusterId;
 
-    private ClusterTaskDBPut(ClusterTask clusterTask, byte[] taskBytes, TaskId taskId, long clusterId) {
+    private ClusterTaskDBPut(ClusterTask clusterTask, byte[] taskBytes) {
       this.clusterTask = clusterTask;
       this.taskBytes = taskBytes;
-      this.taskId = taskId;
-      this.clusterId = clusterId;
     }
 
     @Override
-    public PreparedStatement createUpdateStatement(Connection conn) throws SQLException {
-      PreparedStatement statement = conn.prepareStatement(
-        "UPDATE tasks SET task=?, status=?, submit_time=?, status_time=?, type=?, " +
-          "cluster_template_name=?, user_id=?, tenant_id=?" +
-          " WHERE task_num=? AND job_num=? AND cluster_id=?");
-      statement.setBytes(1, dbQueryExecutor.toBytes(clusterTask, ClusterTask.class));
+    protected String getUpdateSql() {
+      return UPDATE_TASK_SQL;
+    }
+
+    @Override
+    protected void setUpdateParameters(PreparedStatement statement) throws SQLException {
+      TaskId taskId = TaskId.fromString(clusterTask.getTaskId());
+      statement.setBytes(1, taskBytes);
       statement.setString(2, clusterTask.getStatus().name());
       statement.setTimestamp(3, DBHelper.getTimestamp(clusterTask.getSubmitTime()));
       statement.setTimestamp(4, DBHelper.getTimestamp(clusterTask.getStatusTime()));
@@ -430,19 +600,20 @@ public class SQLClusterStore implements ClusterStore {
       statement.setString(8, clusterTask.getAccount().getTenantId());
       statement.setLong(9, taskId.getTaskNum());
       statement.setLong(10, taskId.getJobNum());
-      statement.setLong(11, clusterId);
-      return statement;
+      statement.setLong(11, Long.parseLong(taskId.getClusterId()));
+    }
+
+    @Override
+    protected String getInsertSql() {
+      return INSERT_TASK_SQL;
     }
 
     @Override
-    public PreparedStatement createInsertStatement(Connection conn) throws SQLException {
-      PreparedStatement statement = conn.prepareStatement(
-        "INSERT INTO tasks (task_num, job_num, cluster_id, status, submit_time, task, type, " +
-          "cluster_template_name, user_id, tenant_id)" +
-          " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    protected void setInsertParameters(PreparedStatement statement) throws SQLException {
+      TaskId taskId = TaskId.fromString(clusterTask.getTaskId());
       statement.setLong(1, taskId.getTaskNum());
       statement.setLong(2, taskId.getJobNum());
-      statement.setLong(3, clusterId);
+      statement.setLong(3, Long.parseLong(taskId.getClusterId()));
       statement.setString(4, clusterTask.getStatus().name());
       statement.setTimestamp(5, DBHelper.getTimestamp(clusterTask.getSubmitTime()));
       statement.setBytes(6, taskBytes);
@@ -450,11 +621,10 @@ public class SQLClusterStore implements ClusterStore {
       statement.setString(8, clusterTask.getClusterTemplateName());
       statement.setString(9, clusterTask.getAccount().getUserId());
       statement.setString(10, clusterTask.getAccount().getTenantId());
-      return statement;
     }
   }
 
-  private class NodeDBPut extends DBPut {
+  private class NodeDBPut extends BatchableDBPut {
     private final Node node;
     private final byte[] nodeBytes;
 
@@ -464,21 +634,26 @@ public class SQLClusterStore implements ClusterStore {
     }
 
     @Override
-    public PreparedStatement createUpdateStatement(Connection conn) throws SQLException {
-      PreparedStatement statement = conn.prepareStatement("UPDATE nodes SET node=? WHERE id=?");
+    protected String getUpdateSql() {
+      return UPDATE_NODE_SQL;
+    }
+
+    @Override
+    protected void setUpdateParameters(PreparedStatement statement) throws SQLException {
       statement.setBytes(1, nodeBytes);
       statement.setString(2, node.getId());
-      return statement;
     }
 
     @Override
-    public PreparedStatement createInsertStatement(Connection conn) throws SQLException {
-      PreparedStatement statement = conn.prepareStatement(
-        "INSERT INTO nodes (id, cluster_id, node) VALUES (?, ?, ?)");
+    protected String getInsertSql() {
+      return INSERT_NODE_SQL;
+    }
+
+    @Override
+    protected void setInsertParameters(PreparedStatement statement) throws SQLException {
       statement.setString(1, node.getId());
       statement.setLong(2, Long.parseLong(node.getClusterId()));
       statement.setBytes(3, nodeBytes);
-      return statement;
     }
   }
 }
@@ -72,6 +72,8 @@ public class SQLClusterStoreService extends AbstractIdleService implements Clust
                                   "clusters_account_index", "clusters", "tenant_id", "owner_id", "id");
         DBHelper.createDerbyIndex(dbConnectionPool, "clusters_ctime_index", "clusters", "create_time");
         DBHelper.createDerbyIndex(dbConnectionPool, "clusters_status_index", "clusters", "status");
+        DBHelper.createDerbyIndex(dbConnectionPool,
+                                  "clusters_tenant_ctime_index", "clusters", "tenant_id", "create_time", "id");
       }
 
       created = DBHelper.createDerbyTableIfNotExists("CREATE TABLE jobs ( " +
@@ -80,6 +82,7 @@ public class SQLClusterStoreService extends AbstractIdleService implements Clust
                                                        "status VARCHAR(32), " +
                                                        "create_time TIMESTAMP, " +
                                                        "job BLOB, " +
+                                                       "progress VARCHAR(255), " +
                                                        "PRIMARY KEY (job_num, cluster_id) )",
                                                      dbConnectionPool);
       if (created) {
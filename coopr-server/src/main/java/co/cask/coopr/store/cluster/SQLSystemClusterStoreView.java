@@ -1,6 +1,7 @@
 package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
@@ -110,4 +111,13 @@ public class SQLSystemClusterStoreView extends BaseSQLClusterStoreView {
     statement.setLong(1, id);
     return statement;
   }
+
+  @Override
+  PreparedStatement getSelectClusterListingsStatement(Connection conn, Set<Cluster.Status> states,
+                                                      ClusterListingCursor after) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(
+      SELECT_CLUSTER_LISTINGS + getClusterListingsConditions(states, after));
+    setClusterListingsConditions(statement, states, after, 1);
+    return statement;
+  }
 }
@@ -2,6 +2,7 @@ package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.DBQueryExecutor;
@@ -144,4 +145,15 @@ public class SQLUserClusterStoreView extends BaseSQLClusterStoreView {
     statement.setString(3, userId);
     return statement;
   }
+
+  @Override
+  PreparedStatement getSelectClusterListingsStatement(Connection conn, Set<Cluster.Status> states,
+                                                      ClusterListingCursor after) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(
+      SELECT_CLUSTER_LISTINGS + " AND C.tenant_id=? AND C.owner_id=?" + getClusterListingsConditions(states, after));
+    statement.setString(1, tenantId);
+    statement.setString(2, userId);
+    setClusterListingsConditions(statement, states, after, 3);
+    return statement;
+  }
 }
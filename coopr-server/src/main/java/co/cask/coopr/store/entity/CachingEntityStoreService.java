@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.entity;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import co.cask.coopr.management.EntityCacheStats;
+import co.cask.coopr.management.ServerStats;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Futures;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link EntityStoreService} that caches the entities read through its views in memory, and reads and writes them
+ * through a {@link SQLEntityStoreService}. Each tenant has a version node in zookeeper that is updated whenever an
+ * entity of the tenant is written or deleted. Every server watches the version nodes of the tenants it has cached
+ * entities for, and drops the cached entities of a tenant when its version changes.
+ */
+public class CachingEntityStoreService extends AbstractIdleService implements EntityStoreService {
+  private static final String VERSIONS_PATH = "/entities/versions";
+  private final SQLEntityStoreService delegate;
+  private final ZKClient zkClient;
+  private final EntityCacheStats stats;
+  private final ConcurrentMap<String, TenantCache> tenantCaches;
+  private final Gson gson;
+
+  @Inject
+  CachingEntityStoreService(SQLEntityStoreService delegate, ZKClient zkClient, ServerStats serverStats, Gson gson) {
+    this.delegate = delegate;
+    this.gson = gson;
+    this.zkClient = zkClient;
+    this.stats = serverStats.getEntityCacheStats();
+    this.tenantCaches = Maps.newConcurrentMap();
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    delegate.startAndWait();
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, VERSIONS_PATH));
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    for (TenantCache tenantCache : tenantCaches.values()) {
+      tenantCache.stopWatching();
+    }
+    tenantCaches.clear();
+    delegate.stopAndWait();
+  }
+
+  @Override
+  public EntityStoreView getView(Account account) {
+    return new CachingEntityStoreView(delegate.getView(account), getTenantCache(account.getTenantId()),
+                                      getTenantCache(Constants.SUPERADMIN_TENANT), gson);
+  }
+
+  @Override
+  public void copyEntities(Account from, Account to) throws IOException, IllegalAccessException {
+    delegate.copyEntities(from, to);
+    getTenantCache(to.getTenantId()).entitiesChanged();
+  }
+
+  private TenantCache getTenantCache(String tenantId) {
+    TenantCache tenantCache = tenantCaches.get(tenantId);
+    if (tenantCache != null) {
+      return tenantCache;
+    }
+    synchronized (tenantCaches) {
+      tenantCache = tenantCaches.get(tenantId);
+      if (tenantCache == null) {
+        tenantCache = new TenantCache(VERSIONS_PATH + "/" + tenantId);
+        tenantCache.startWatching();
+        tenantCaches.put(tenantId, tenantCache);
+      }
+      return tenantCache;
+    }
+  }
+
+  /**
+   * Cached entities of a tenant, along with the zookeeper version node of the tenant.
+   */
+  final class TenantCache {
+    private final String versionPath;
+    // replaced instead of cleared on invalidation, so that a read that started before the invalidation cannot put
+    // a stale entity into the new map
+    private volatile ConcurrentMap<Object, Object> entries;
+    private int lastSeenVersion;
+    private Cancellable watch;
+
+    private TenantCache(String versionPath) {
+      this.versionPath = versionPath;
+      this.entries = Maps.newConcurrentMap();
+      this.lastSeenVersion = -1;
+    }
+
+    /**
+     * Get the current cached entries. Entities read from the store should be put into the map returned, so that they
+     * are dropped if the cache is invalidated while they are being read.
+     *
+     * @return Current cached entries.
+     */
+    ConcurrentMap<Object, Object> getEntries() {
+      return entries;
+    }
+
+    void hit() {
+      stats.incrementStat(EntityCacheStats.Event.HIT);
+    }
+
+    void miss() {
+      stats.incrementStat(EntityCacheStats.Event.MISS);
+    }
+
+    /**
+     * Drop all cached entities of the tenant, and update the version node so that other servers do the same.
+     *
+     * @throws IOException if there was a problem updating the version node.
+     */
+    void entitiesChanged() throws IOException {
+      try {
+        Stat stat = zkClient.setData(versionPath, Longs.toByteArray(System.currentTimeMillis())).get();
+        invalidate(stat.getVersion());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while updating entity version of " + versionPath, e);
+      } catch (ExecutionException e) {
+        throw new IOException("Exception updating entity version of " + versionPath, e.getCause());
+      }
+    }
+
+    private void startWatching() {
+      Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, versionPath));
+      watch = ZKOperations.watchData(zkClient, versionPath, new ZKOperations.DataCallback() {
+        @Override
+        public void updated(NodeData nodeData) {
+          if (nodeData != null && nodeData.getStat() != null) {
+            invalidate(nodeData.getStat().getVersion());
+          }
+        }
+      });
+    }
+
+    private void stopWatching() {
+      if (watch != null) {
+        watch.cancel();
+      }
+    }
+
+    // versions only go up, so anything at or below the last seen version has already been handled
+    private synchronized void invalidate(int version) {
+      if (version <= lastSeenVersion) {
+        return;
+      }
+      lastSeenVersion = version;
+      entries = Maps.newConcurrentMap();
+      stats.incrementStat(EntityCacheStats.Event.INVALIDATION);
+    }
+  }
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.entity;
+
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.spec.HardwareType;
+import co.cask.coopr.spec.ImageType;
+import co.cask.coopr.spec.Provider;
+import co.cask.coopr.spec.plugin.AutomatorType;
+import co.cask.coopr.spec.plugin.ProviderType;
+import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.PartialTemplate;
+import co.cask.coopr.store.entity.BaseEntityStoreView.EntityType;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link EntityStoreView} that serves reads from the entities cached for the tenant, and reads entities that are not
+ * cached through another view. Writes and deletes go to the other view, and invalidate the cached entities of the
+ * tenant on success. Entities are cached as JSON trees and every read returns new entity objects built from the tree,
+ * so callers are free to modify what they get without changing the cache or what other readers see.
+ */
+public class CachingEntityStoreView implements EntityStoreView {
+  // version used in the key of collections of all entities of a type
+  private static final int ALL = Integer.MIN_VALUE;
+  private final EntityStoreView delegate;
+  private final CachingEntityStoreService.TenantCache cache;
+  private final CachingEntityStoreService.TenantCache pluginTypeCache;
+  private final Gson gson;
+
+  /**
+   * Create a view that caches entities of the tenant in the given cache. Provider and automator types are defined only
+   * in the superadmin tenant, so they are cached in the cache of the superadmin tenant.
+   *
+   * @param delegate View to read entities that are not cached, and to write entities through
+   * @param cache Cache of the tenant of the view
+   * @param pluginTypeCache Cache of the superadmin tenant
+   * @param gson Gson to convert entities to and from the JSON trees that are cached
+   */
+  CachingEntityStoreView(EntityStoreView delegate, CachingEntityStoreService.TenantCache cache,
+                         CachingEntityStoreService.TenantCache pluginTypeCache, Gson gson) {
+    this.delegate = delegate;
+    this.cache = cache;
+    this.pluginTypeCache = pluginTypeCache;
+    this.gson = gson;
+  }
+
+  @Override
+  public Provider getProvider(String providerName) throws IOException {
+    return get(EntityType.PROVIDER, providerName, Constants.FIND_MAX_VERSION, Provider.class);
+  }
+
+  @Override
+  public Provider getProvider(String providerName, int version) throws IOException {
+    return get(EntityType.PROVIDER, providerName, version, Provider.class);
+  }
+
+  @Override
+  public Collection<Provider> getAllProviders() throws IOException {
+    return getAll(EntityType.PROVIDER, Provider.class);
+  }
+
+  @Override
+  public void writeProvider(Provider provider) throws IOException, IllegalAccessException {
+    delegate.writeProvider(provider);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteProvider(String providerName) throws IOException, IllegalAccessException {
+    delegate.deleteProvider(providerName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteProvider(String providerName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteProvider(providerName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public HardwareType getHardwareType(String hardwareTypeName) throws IOException {
+    return get(EntityType.HARDWARE_TYPE, hardwareTypeName, Constants.FIND_MAX_VERSION, HardwareType.class);
+  }
+
+  @Override
+  public HardwareType getHardwareType(String hardwareTypeName, int version) throws IOException {
+    return get(EntityType.HARDWARE_TYPE, hardwareTypeName, version, HardwareType.class);
+  }
+
+  @Override
+  public Collection<HardwareType> getAllHardwareTypes() throws IOException {
+    return getAll(EntityType.HARDWARE_TYPE, HardwareType.class);
+  }
+
+  @Override
+  public void writeHardwareType(HardwareType hardwareType) throws IOException, IllegalAccessException {
+    delegate.writeHardwareType(hardwareType);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteHardwareType(String hardwareTypeName) throws IOException, IllegalAccessException {
+    delegate.deleteHardwareType(hardwareTypeName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteHardwareType(String hardwareTypeName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteHardwareType(hardwareTypeName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public ImageType getImageType(String imageTypeName) throws IOException {
+    return get(EntityType.IMAGE_TYPE, imageTypeName, Constants.FIND_MAX_VERSION, ImageType.class);
+  }
+
+  @Override
+  public ImageType getImageType(String imageTypeName, int version) throws IOException {
+    return get(EntityType.IMAGE_TYPE, imageTypeName, version, ImageType.class);
+  }
+
+  @Override
+  public Collection<ImageType> getAllImageTypes() throws IOException {
+    return getAll(EntityType.IMAGE_TYPE, ImageType.class);
+  }
+
+  @Override
+  public void writeImageType(ImageType imageType) throws IOException, IllegalAccessException {
+    delegate.writeImageType(imageType);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteImageType(String imageTypeName) throws IOException, IllegalAccessException {
+    delegate.deleteImageType(imageTypeName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteImageType(String imageTypeName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteImageType(imageTypeName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public Service getService(String serviceName) throws IOException {
+    return get(EntityType.SERVICE, serviceName, Constants.FIND_MAX_VERSION, Service.class);
+  }
+
+  @Override
+  public Service getService(String serviceName, int version) throws IOException {
+    return get(EntityType.SERVICE, serviceName, version, Service.class);
+  }
+
+  @Override
+  public Collection<Service> getAllServices() throws IOException {
+    return getAll(EntityType.SERVICE, Service.class);
+  }
+
+  @Override
+  public void writeService(Service service) throws IOException, IllegalAccessException {
+    delegate.writeService(service);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteService(String serviceName) throws IOException, IllegalAccessException {
+    delegate.deleteService(serviceName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteService(String serviceName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteService(serviceName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public ClusterTemplate getClusterTemplate(String clusterTemplateName) throws IOException {
+    return get(EntityType.CLUSTER_TEMPLATE, clusterTemplateName, Constants.FIND_MAX_VERSION, ClusterTemplate.class);
+  }
+
+  @Override
+  public ClusterTemplate getClusterTemplate(String clusterTemplateName, int version) throws IOException {
+    return get(EntityType.CLUSTER_TEMPLATE, clusterTemplateName, version, ClusterTemplate.class);
+  }
+
+  @Override
+  public Collection<ClusterTemplate> getAllClusterTemplates() throws IOException {
+    return getAll(EntityType.CLUSTER_TEMPLATE, ClusterTemplate.class);
+  }
+
+  @Override
+  public void writeClusterTemplate(ClusterTemplate clusterTemplate) throws IOException, IllegalAccessException {
+    delegate.writeClusterTemplate(clusterTemplate);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteClusterTemplate(String clusterTemplateName) throws IOException, IllegalAccessException {
+    delegate.deleteClusterTemplate(clusterTemplateName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteClusterTemplate(String clusterTemplateName, int version)
+    throws IOException, IllegalAccessException {
+    delegate.deleteClusterTemplate(clusterTemplateName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public PartialTemplate getPartialTemplate(String partialTemplateName) throws IOException {
+    return get(EntityType.PARTIAL_TEMPLATE, partialTemplateName, Constants.FIND_MAX_VERSION, PartialTemplate.class);
+  }
+
+  @Override
+  public PartialTemplate getPartialTemplate(String partialTemplateName, int version) throws IOException {
+    return get(EntityType.PARTIAL_TEMPLATE, partialTemplateName, version, PartialTemplate.class);
+  }
+
+  @Override
+  public Collection<PartialTemplate> getAllPartialTemplates() throws IOException {
+    return getAll(EntityType.PARTIAL_TEMPLATE, PartialTemplate.class);
+  }
+
+  @Override
+  public void writePartialTemplate(PartialTemplate partialTemplate) throws IOException, IllegalAccessException {
+    delegate.writePartialTemplate(partialTemplate);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deletePartialTemplate(String partialTemplateName) throws IOException, IllegalAccessException {
+    delegate.deletePartialTemplate(partialTemplateName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deletePartialTemplate(String partialTemplateName, int version)
+    throws IOException, IllegalAccessException {
+    delegate.deletePartialTemplate(partialTemplateName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public ProviderType getProviderType(String providerTypeName) throws IOException {
+    return get(EntityType.PROVIDER_TYPE, providerTypeName, Constants.FIND_MAX_VERSION, ProviderType.class);
+  }
+
+  @Override
+  public ProviderType getProviderType(String providerTypeName, int version) throws IOException {
+    return get(EntityType.PROVIDER_TYPE, providerTypeName, version, ProviderType.class);
+  }
+
+  @Override
+  public Collection<ProviderType> getAllProviderTypes() throws IOException {
+    return getAll(EntityType.PROVIDER_TYPE, ProviderType.class);
+  }
+
+  @Override
+  public void writeProviderType(ProviderType providerType) throws IOException, IllegalAccessException {
+    delegate.writeProviderType(providerType);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteProviderType(String providerTypeName) throws IOException, IllegalAccessException {
+    delegate.deleteProviderType(providerTypeName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteProviderType(String providerTypeName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteProviderType(providerTypeName, version);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public AutomatorType getAutomatorType(String automatorTypeName) throws IOException {
+    return get(EntityType.AUTOMATOR_TYPE, automatorTypeName, Constants.FIND_MAX_VERSION, AutomatorType.class);
+  }
+
+  @Override
+  public AutomatorType getAutomatorType(String automatorTypeName, int version) throws IOException {
+    return get(EntityType.AUTOMATOR_TYPE, automatorTypeName, version, AutomatorType.class);
+  }
+
+  @Override
+  public Collection<AutomatorType> getAllAutomatorTypes() throws IOException {
+    return getAll(EntityType.AUTOMATOR_TYPE, AutomatorType.class);
+  }
+
+  @Override
+  public void writeAutomatorType(AutomatorType automatorType) throws IOException, IllegalAccessException {
+    delegate.writeAutomatorType(automatorType);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteAutomatorType(String automatorTypeName) throws IOException, IllegalAccessException {
+    delegate.deleteAutomatorType(automatorTypeName);
+    cache.entitiesChanged();
+  }
+
+  @Override
+  public void deleteAutomatorType(String automatorTypeName, int version) throws IOException, IllegalAccessException {
+    delegate.deleteAutomatorType(automatorTypeName, version);
+    cache.entitiesChanged();
+  }
+
+  private <T> T get(EntityType type, String name, int version, Class<T> clazz) throws IOException {
+    CachingEntityStoreService.TenantCache cache = getCache(type);
+    CacheKey key = new CacheKey(type, name, version);
+    ConcurrentMap<Object, Object> entries = cache.getEntries();
+    JsonElement cached = (JsonElement) entries.get(key);
+    if (cached != null) {
+      cache.hit();
+      return gson.fromJson(cached, clazz);
+    }
+    cache.miss();
+    T entity = clazz.cast(load(type, name, version));
+    // entities that do not exist are not cached, since they are usually about to be written
+    if (entity != null) {
+      entries.put(key, gson.toJsonTree(entity, clazz));
+    }
+    return entity;
+  }
+
+  private <T> Collection<T> getAll(EntityType type, Class<T> clazz) throws IOException {
+    CachingEntityStoreService.TenantCache cache = getCache(type);
+    CacheKey key = new CacheKey(type, null, ALL);
+    ConcurrentMap<Object, Object> entries = cache.getEntries();
+    @SuppressWarnings("unchecked")
+    List<JsonElement> cached = (List<JsonElement>) entries.get(key);
+    if (cached != null) {
+      cache.hit();
+      // callers are free to modify the collection returned
+      List<T> entities = Lists.newArrayListWithCapacity(cached.size());
+      for (JsonElement entity : cached) {
+        entities.add(gson.fromJson(entity, clazz));
+      }
+      return entities;
+    }
+    cache.miss();
+    List<T> entities = Lists.newArrayList();
+    ImmutableList.Builder<JsonElement> trees = ImmutableList.builder();
+    for (Object entity : loadAll(type)) {
+      entities.add(clazz.cast(entity));
+      trees.add(gson.toJsonTree(entity, clazz));
+    }
+    entries.put(key, trees.build());
+    return entities;
+  }
+
+  private CachingEntityStoreService.TenantCache getCache(EntityType type) {
+    return (type == EntityType.PROVIDER_TYPE || type == EntityType.AUTOMATOR_TYPE) ? pluginTypeCache : cache;
+  }
+
+  private Object load(EntityType type, String name, int version) throws IOException {
+    switch (type) {
+      case PROVIDER:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getProvider(name) : delegate.getProvider(name, version);
+      case HARDWARE_TYPE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getHardwareType(name) : delegate.getHardwareType(name, version);
+      case IMAGE_TYPE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getImageType(name) : delegate.getImageType(name, version);
+      case SERVICE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getService(name) : delegate.getService(name, version);
+      case CLUSTER_TEMPLATE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getClusterTemplate(name) : delegate.getClusterTemplate(name, version);
+      case PARTIAL_TEMPLATE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getPartialTemplate(name) : delegate.getPartialTemplate(name, version);
+      case PROVIDER_TYPE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getProviderType(name) : delegate.getProviderType(name, version);
+      case AUTOMATOR_TYPE:
+        return version == Constants.FIND_MAX_VERSION ?
+          delegate.getAutomatorType(name) : delegate.getAutomatorType(name, version);
+      default:
+        throw new IllegalArgumentException("Unknown entity type " + type);
+    }
+  }
+
+  private Collection<?> loadAll(EntityType type) throws IOException {
+    switch (type) {
+      case PROVIDER:
+        return delegate.getAllProviders();
+      case HARDWARE_TYPE:
+        return delegate.getAllHardwareTypes();
+      case IMAGE_TYPE:
+        return delegate.getAllImageTypes();
+      case SERVICE:
+        return delegate.getAllServices();
+      case CLUSTER_TEMPLATE:
+        return delegate.getAllClusterTemplates();
+      case PARTIAL_TEMPLATE:
+        return delegate.getAllPartialTemplates();
+      case PROVIDER_TYPE:
+        return delegate.getAllProviderTypes();
+      case AUTOMATOR_TYPE:
+        return delegate.getAllAutomatorTypes();
+      default:
+        throw new IllegalArgumentException("Unknown entity type " + type);
+    }
+  }
+
+  /**
+   * Key of a cached entity, or of all entities of a type if the version is {@link #ALL}.
+   */
+  private static final class CacheKey {
+    private final EntityType type;
+    private final String name;
+    private final int version;
+
+    private CacheKey(EntityType type, String name, int version) {
+      this.type = type;
+      this.name = name;
+      this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return type == other.type && version == other.version && Objects.equal(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(type, name, version);
+    }
+  }
+}
@@ -5,6 +5,8 @@ import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.cluster.SQLClusterStoreService;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.entity.SQLEntityStoreService;
+import co.cask.coopr.store.metrics.NodeUsageStore;
+import co.cask.coopr.store.metrics.SQLNodeUsageStore;
 import co.cask.coopr.store.node.NodeStoreService;
 import co.cask.coopr.store.node.SQLNodeStoreService;
 import co.cask.coopr.store.provisioner.PluginMetaStoreService;
@@ -25,20 +27,25 @@ public abstract class AbstractStoreModule extends AbstractModule {
 
   abstract void bindPluginStore();
 
+  void bindEntityStore() {
+    bind(EntityStoreService.class).to(SQLEntityStoreService.class).in(Scopes.SINGLETON);
+  }
+
   @Override
   protected void configure() {
     bindCommon();
+    bindEntityStore();
     bindPluginStore();
   }
 
   protected void bindCommon() {
-    bind(EntityStoreService.class).to(SQLEntityStoreService.class).in(Scopes.SINGLETON);
     bind(ClusterStoreService.class).to(SQLClusterStoreService.class).in(Scopes.SINGLETON);
     bind(NodeStoreService.class).to(SQLNodeStoreService.class).in(Scopes.SINGLETON);
     bind(TenantStore.class).to(SQLTenantStore.class).in(Scopes.SINGLETON);
     bind(ProvisionerStore.class).to(SQLProvisionerStore.class).in(Scopes.SINGLETON);
     bind(PluginMetaStoreService.class).to(SQLPluginMetaStoreService.class).in(Scopes.SINGLETON);
     bind(UserStore.class).to(SQLUserStore.class).in(Scopes.SINGLETON);
+    bind(NodeUsageStore.class).to(SQLNodeUsageStore.class).in(Scopes.SINGLETON);
     bind(DBConnectionPool.class).in(Scopes.SINGLETON);
     bind(SQLClusterStoreService.class).in(Scopes.SINGLETON);
     bind(SQLEntityStoreService.class).in(Scopes.SINGLETON);
@@ -46,5 +53,6 @@ public abstract class AbstractStoreModule extends AbstractModule {
     bind(SQLProvisionerStore.class).in(Scopes.SINGLETON);
     bind(SQLPluginMetaStoreService.class).in(Scopes.SINGLETON);
     bind(SQLUserStore.class).in(Scopes.SINGLETON);
+    bind(SQLNodeUsageStore.class).in(Scopes.SINGLETON);
   }
 }
@@ -18,6 +18,8 @@ package co.cask.coopr.store.guice;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.store.credential.CredentialStore;
+import co.cask.coopr.store.entity.CachingEntityStoreService;
+import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.provisioner.PluginStore;
 import com.google.inject.Scopes;
 
@@ -27,10 +29,21 @@ import com.google.inject.Scopes;
 public class StoreModule extends AbstractStoreModule {
   private final Class pluginStoreClass;
   private final Class credentialStoreClass;
+  private final boolean entityCacheEnabled;
 
   public StoreModule(Configuration conf) throws ClassNotFoundException {
     this.pluginStoreClass = Class.forName(conf.get(Constants.PLUGIN_STORE_CLASS));
     this.credentialStoreClass = Class.forName(conf.get(Constants.CREDENTIAL_STORE_CLASS));
+    this.entityCacheEnabled = conf.getBoolean(Constants.ENTITY_CACHE_ENABLED, true);
+  }
+
+  @Override
+  void bindEntityStore() {
+    if (entityCacheEnabled) {
+      bind(EntityStoreService.class).to(CachingEntityStoreService.class).in(Scopes.SINGLETON);
+    } else {
+      super.bindEntityStore();
+    }
   }
 
   @Override
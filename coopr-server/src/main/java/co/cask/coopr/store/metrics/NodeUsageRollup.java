@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.metrics;
+
+import com.google.common.base.Objects;
+
+/**
+ * Node creates and deletes that happened within a period. Nodes created in the period add to the node count, and to
+ * the node time by the time from their create until the end of the period. Nodes deleted in the period subtract from
+ * both in the same way. Usage within a period is then the node count at the start of the period times the length of
+ * the period, plus the node time of the rollup.
+ */
+public final class NodeUsageRollup {
+  private final long periodStart;
+  private final long nodeDelta;
+  private final long nodeMillis;
+
+  public NodeUsageRollup(long periodStart, long nodeDelta, long nodeMillis) {
+    this.periodStart = periodStart;
+    this.nodeDelta = nodeDelta;
+    this.nodeMillis = nodeMillis;
+  }
+
+  /**
+   * Get the start time of the period in milliseconds.
+   *
+   * @return Start time of the period in milliseconds
+   */
+  public long getPeriodStart() {
+    return periodStart;
+  }
+
+  /**
+   * Get the number of nodes created minus the number of nodes deleted in the period.
+   *
+   * @return Change in the number of nodes in the period
+   */
+  public long getNodeDelta() {
+    return nodeDelta;
+  }
+
+  /**
+   * Get the node time added by nodes created in the period minus the node time removed by nodes deleted in the
+   * period, in milliseconds.
+   *
+   * @return Node time of the creates and deletes in the period
+   */
+  public long getNodeMillis() {
+    return nodeMillis;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof NodeUsageRollup)) {
+      return false;
+    }
+    NodeUsageRollup other = (NodeUsageRollup) o;
+    return periodStart == other.periodStart && nodeDelta == other.nodeDelta && nodeMillis == other.nodeMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(periodStart, nodeDelta, nodeMillis);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("periodStart", periodStart)
+      .add("nodeDelta", nodeDelta)
+      .add("nodeMillis", nodeMillis)
+      .toString();
+  }
+}
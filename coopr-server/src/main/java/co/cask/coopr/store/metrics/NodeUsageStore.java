@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.metrics;
+
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import com.google.common.util.concurrent.Service;
+import org.apache.commons.lang3.time.DateUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Store of node lifetimes and of hourly and daily node usage rollups, kept up to date as nodes are created and
+ * deleted so that node usage can be computed without reading through all cluster tasks. Rollups are kept per tenant,
+ * user and cluster template, and can be filtered by the tenant, user and cluster template of a
+ * {@link ClusterTaskFilter}. Other fields of the filter are ignored.
+ */
+public interface NodeUsageStore extends Service {
+  long HOURLY = DateUtils.MILLIS_PER_HOUR;
+  long DAILY = DateUtils.MILLIS_PER_DAY;
+
+  /**
+   * Record the creation of a node by a completed CREATE task, at the status time of the task.
+   *
+   * @param task Completed CREATE task
+   * @throws IOException if there was a problem recording the creation
+   */
+  void nodeCreated(ClusterTask task) throws IOException;
+
+  /**
+   * Record the deletion of a node by a completed DELETE task, at the status time of the task. Nothing is recorded if
+   * the node was not created, or was already deleted.
+   *
+   * @param task Completed DELETE task
+   * @throws IOException if there was a problem recording the deletion
+   */
+  void nodeDeleted(ClusterTask task) throws IOException;
+
+  /**
+   * Get the time the first node matching the filter was created.
+   *
+   * @param filter Filter of the nodes
+   * @return Create time in milliseconds of the first node, or null if no nodes match
+   * @throws IOException if there was a problem reading the time
+   */
+  Long getFirstCreateTime(ClusterTaskFilter filter) throws IOException;
+
+  /**
+   * Get the time the last node matching the filter was deleted.
+   *
+   * @param filter Filter of the nodes
+   * @return Delete time in milliseconds of the last node, or null if no matching node has been deleted
+   * @throws IOException if there was a problem reading the time
+   */
+  Long getLastDeleteTime(ClusterTaskFilter filter) throws IOException;
+
+  /**
+   * Get the rollups of the given period that start in the given time range, summed across rollups that match the
+   * filter. Periods without creates or deletes are not returned.
+   *
+   * @param filter Filter of the rollups
+   * @param period Length of the rollup periods, either {@link #HOURLY} or {@link #DAILY}
+   * @param start Start of the time range in milliseconds, inclusive
+   * @param end End of the time range in milliseconds, exclusive
+   * @return Rollups in order of period start
+   * @throws IOException if there was a problem reading the rollups
+   */
+  List<NodeUsageRollup> getRollups(ClusterTaskFilter filter, long period, long start, long end) throws IOException;
+
+  /**
+   * Get the sum of all rollups of the given period that start before the given time, as a single rollup of the period
+   * that ends at the given time. Its node delta is the number of nodes alive at the time, and its node time is all
+   * node time used before the time.
+   *
+   * @param filter Filter of the rollups
+   * @param period Length of the rollup periods, either {@link #HOURLY} or {@link #DAILY}
+   * @param time Time in milliseconds, which must be a multiple of the period
+   * @return Sum of all rollups before the time
+   * @throws IOException if there was a problem reading the rollups
+   */
+  NodeUsageRollup getRollupTotal(ClusterTaskFilter filter, long period, long time) throws IOException;
+
+  /**
+   * Get the node time used in the given time range by nodes matching the filter, computed from the lifetimes of the
+   * nodes alive in the range instead of from rollups. Used for ranges shorter than a rollup period.
+   *
+   * @param filter Filter of the nodes
+   * @param start Start of the time range in milliseconds
+   * @param end End of the time range in milliseconds
+   * @return Node time in milliseconds used in the range
+   * @throws IOException if there was a problem reading the node lifetimes
+   */
+  long getUsage(ClusterTaskFilter filter, long start, long end) throws IOException;
+
+  /**
+   * Delete all node lifetimes and rollups.
+   *
+   * @throws IOException if there was a problem deleting the data
+   */
+  void deleteAll() throws IOException;
+}
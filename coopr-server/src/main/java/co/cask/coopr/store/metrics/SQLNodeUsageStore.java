@@ -0,0 +1,412 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.metrics;
+
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.store.DBConnectionPool;
+import co.cask.coopr.store.DBHelper;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Implementation of {@link NodeUsageStore} using a SQL database as the persistent store. Node lifetimes are kept in
+ * the nodeLifetimes table, and rollups in the nodeUsageRollups table. Rollup times are stored as milliseconds instead
+ * of timestamps so that totals can be summed by the database.
+ */
+public class SQLNodeUsageStore extends AbstractIdleService implements NodeUsageStore {
+  private static final Logger LOG  = LoggerFactory.getLogger(SQLNodeUsageStore.class);
+  private static final long[] ROLLUP_PERIODS = { HOURLY, DAILY };
+  private static final String UPDATE_ROLLUP_SQL =
+    "UPDATE nodeUsageRollups SET node_delta = node_delta + ?, node_millis = node_millis + ?" +
+      " WHERE tenant_id=? AND user_id=? AND cluster_template_name=? AND period=? AND period_start=?";
+  private static final String INSERT_ROLLUP_SQL =
+    "INSERT INTO nodeUsageRollups (node_delta, node_millis, tenant_id, user_id, cluster_template_name, " +
+      "period, period_start) VALUES (?, ?, ?, ?, ?, ?, ?)";
+  private final DBConnectionPool dbConnectionPool;
+
+  // for unit tests only.  Truncate is not supported in derby.
+  public void clearData() throws SQLException {
+    Connection conn = dbConnectionPool.getConnection();
+    try {
+      Statement stmt = conn.createStatement();
+      try {
+        stmt.executeUpdate("DELETE FROM nodeLifetimes");
+        stmt.executeUpdate("DELETE FROM nodeUsageRollups");
+      } finally {
+        stmt.close();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
+  @Inject
+  SQLNodeUsageStore(DBConnectionPool dbConnectionPool) {
+    this.dbConnectionPool = dbConnectionPool;
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (dbConnectionPool.isEmbeddedDerbyDB()) {
+      boolean created = DBHelper.createDerbyTableIfNotExists("CREATE TABLE nodeLifetimes ( " +
+                                                               "cluster_id BIGINT, " +
+                                                               "node_id VARCHAR(64), " +
+                                                               "tenant_id VARCHAR(64), " +
+                                                               "user_id VARCHAR(255), " +
+                                                               "cluster_template_name VARCHAR(255), " +
+                                                               "create_time TIMESTAMP, " +
+                                                               "delete_time TIMESTAMP, " +
+                                                               "PRIMARY KEY (cluster_id, node_id, create_time) )",
+                                                             dbConnectionPool);
+      if (created) {
+        DBHelper.createDerbyIndex(dbConnectionPool, "nodeLifetimes_ctime_index", "nodeLifetimes", "create_time");
+        DBHelper.createDerbyIndex(dbConnectionPool, "nodeLifetimes_dtime_index", "nodeLifetimes", "delete_time");
+      }
+
+      created = DBHelper.createDerbyTableIfNotExists("CREATE TABLE nodeUsageRollups ( " +
+                                                       "tenant_id VARCHAR(64), " +
+                                                       "user_id VARCHAR(255), " +
+                                                       "cluster_template_name VARCHAR(255), " +
+                                                       "period BIGINT, " +
+                                                       "period_start BIGINT, " +
+                                                       "node_delta BIGINT, " +
+                                                       "node_millis BIGINT, " +
+                                                       "PRIMARY KEY (tenant_id, user_id, cluster_template_name, " +
+                                                       "period, period_start) )",
+                                                     dbConnectionPool);
+      if (created) {
+        DBHelper.createDerbyIndex(dbConnectionPool, "nodeUsageRollups_period_index", "nodeUsageRollups",
+                                  "period", "period_start");
+      }
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    // No-op
+  }
+
+  @Override
+  public void nodeCreated(ClusterTask task) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection(false);
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "INSERT INTO nodeLifetimes (cluster_id, node_id, tenant_id, user_id, cluster_template_name, create_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+          statement.setLong(1, Long.parseLong(task.getClusterId()));
+          statement.setString(2, task.getNodeId());
+          statement.setString(3, task.getAccount().getTenantId());
+          statement.setString(4, task.getAccount().getUserId());
+          statement.setString(5, Strings.nullToEmpty(task.getClusterTemplateName()));
+          statement.setTimestamp(6, DBHelper.getTimestamp(task.getStatusTime()));
+          statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+        addToRollups(conn, task, 1);
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception recording creation of node {} in cluster {}", task.getNodeId(), task.getClusterId(), e);
+      throw new IOException("Exception recording creation of node " + task.getNodeId(), e);
+    }
+  }
+
+  @Override
+  public void nodeDeleted(ClusterTask task) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection(false);
+      try {
+        int rowsUpdated;
+        PreparedStatement statement = conn.prepareStatement(
+          "UPDATE nodeLifetimes SET delete_time=? WHERE cluster_id=? AND node_id=? AND delete_time IS NULL");
+        try {
+          statement.setTimestamp(1, DBHelper.getTimestamp(task.getStatusTime()));
+          statement.setLong(2, Long.parseLong(task.getClusterId()));
+          statement.setString(3, task.getNodeId());
+          rowsUpdated = statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+        // deletes of nodes that were never created, for example when rolling back a failed create, use no time
+        if (rowsUpdated > 0) {
+          addToRollups(conn, task, -rowsUpdated);
+        }
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception recording deletion of node {} in cluster {}", task.getNodeId(), task.getClusterId(), e);
+      throw new IOException("Exception recording deletion of node " + task.getNodeId(), e);
+    }
+  }
+
+  @Override
+  public Long getFirstCreateTime(ClusterTaskFilter filter) throws IOException {
+    return getTime("MIN(create_time)", filter);
+  }
+
+  @Override
+  public Long getLastDeleteTime(ClusterTaskFilter filter) throws IOException {
+    return getTime("MAX(delete_time)", filter);
+  }
+
+  @Override
+  public List<NodeUsageRollup> getRollups(ClusterTaskFilter filter, long period, long start, long end)
+    throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "SELECT period_start, SUM(node_delta), SUM(node_millis) FROM nodeUsageRollups" +
+            " WHERE period=? AND period_start>=? AND period_start<?" + getFilterClause(filter) +
+            " GROUP BY period_start ORDER BY period_start");
+        try {
+          statement.setLong(1, period);
+          statement.setLong(2, start);
+          statement.setLong(3, end);
+          setFilterParameters(statement, filter, 4);
+          ResultSet rs = statement.executeQuery();
+          try {
+            List<NodeUsageRollup> rollups = Lists.newArrayList();
+            while (rs.next()) {
+              rollups.add(new NodeUsageRollup(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+            }
+            return ImmutableList.copyOf(rollups);
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception getting node usage rollups by filters {}", filter, e);
+      throw new IOException("Exception getting node usage rollups by filters " + filter, e);
+    }
+  }
+
+  @Override
+  public NodeUsageRollup getRollupTotal(ClusterTaskFilter filter, long period, long time) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "SELECT SUM(node_delta), SUM(node_delta * (period_start + period)), SUM(node_millis)" +
+            " FROM nodeUsageRollups WHERE period=? AND period_start<?" + getFilterClause(filter));
+        try {
+          statement.setLong(1, period);
+          statement.setLong(2, time);
+          setFilterParameters(statement, filter, 3);
+          ResultSet rs = statement.executeQuery();
+          try {
+            if (!rs.next()) {
+              return new NodeUsageRollup(time, 0, 0);
+            }
+            long nodeDelta = rs.getLong(1);
+            // each create or delete counts from the end of its own period to the given time as well
+            long nodeMillis = nodeDelta * time - rs.getLong(2) + rs.getLong(3);
+            return new NodeUsageRollup(time, nodeDelta, nodeMillis);
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception getting node usage rollup total by filters {}", filter, e);
+      throw new IOException("Exception getting node usage rollup total by filters " + filter, e);
+    }
+  }
+
+  @Override
+  public long getUsage(ClusterTaskFilter filter, long start, long end) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "SELECT create_time, delete_time FROM nodeLifetimes" +
+            " WHERE create_time<? AND (delete_time IS NULL OR delete_time>?)" + getFilterClause(filter));
+        try {
+          statement.setTimestamp(1, new Timestamp(end));
+          statement.setTimestamp(2, new Timestamp(start));
+          setFilterParameters(statement, filter, 3);
+          ResultSet rs = statement.executeQuery();
+          try {
+            long usage = 0;
+            while (rs.next()) {
+              Timestamp deleteTime = rs.getTimestamp(2);
+              long localStart = Math.max(start, rs.getTimestamp(1).getTime());
+              long localEnd = deleteTime == null ? end : Math.min(end, deleteTime.getTime());
+              usage += localEnd - localStart;
+            }
+            return usage;
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception getting node usage by filters {}", filter, e);
+      throw new IOException("Exception getting node usage by filters " + filter, e);
+    }
+  }
+
+  @Override
+  public void deleteAll() throws IOException {
+    try {
+      clearData();
+    } catch (SQLException e) {
+      LOG.error("Exception deleting node usage", e);
+      throw new IOException("Exception deleting node usage", e);
+    }
+  }
+
+  // add a create (delta of 1) or delete (delta of -1) at the status time of the task to the rollups of each period
+  private void addToRollups(Connection conn, ClusterTask task, int delta) throws SQLException {
+    long time = task.getStatusTime();
+    for (long period : ROLLUP_PERIODS) {
+      long periodStart = time - time % period;
+      long nodeMillis = delta * (periodStart + period - time);
+      if (updateRollup(conn, task, period, periodStart, delta, nodeMillis) == 0) {
+        PreparedStatement statement = conn.prepareStatement(INSERT_ROLLUP_SQL);
+        try {
+          setRollupParameters(statement, task, period, periodStart, delta, nodeMillis);
+          statement.executeUpdate();
+        } catch (SQLException e) {
+          // another server inserted the row first, so it can be updated now. Integrity violations start with 23.
+          if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+            throw e;
+          }
+          updateRollup(conn, task, period, periodStart, delta, nodeMillis);
+        } finally {
+          statement.close();
+        }
+      }
+    }
+  }
+
+  private int updateRollup(Connection conn, ClusterTask task, long period, long periodStart,
+                           long delta, long nodeMillis) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(UPDATE_ROLLUP_SQL);
+    try {
+      setRollupParameters(statement, task, period, periodStart, delta, nodeMillis);
+      return statement.executeUpdate();
+    } finally {
+      statement.close();
+    }
+  }
+
+  private void setRollupParameters(PreparedStatement statement, ClusterTask task, long period, long periodStart,
+                                   long delta, long nodeMillis) throws SQLException {
+    statement.setLong(1, delta);
+    statement.setLong(2, nodeMillis);
+    statement.setString(3, task.getAccount().getTenantId());
+    statement.setString(4, task.getAccount().getUserId());
+    statement.setString(5, Strings.nullToEmpty(task.getClusterTemplateName()));
+    statement.setLong(6, period);
+    statement.setLong(7, periodStart);
+  }
+
+  private Long getTime(String aggregate, ClusterTaskFilter filter) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "SELECT " + aggregate + " FROM nodeLifetimes WHERE 1=1" + getFilterClause(filter));
+        try {
+          setFilterParameters(statement, filter, 1);
+          ResultSet rs = statement.executeQuery();
+          try {
+            Timestamp time = rs.next() ? rs.getTimestamp(1) : null;
+            return time == null ? null : time.getTime();
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception getting node lifetimes by filters {}", filter, e);
+      throw new IOException("Exception getting node lifetimes by filters " + filter, e);
+    }
+  }
+
+  private String getFilterClause(ClusterTaskFilter filter) {
+    StringBuilder builder = new StringBuilder();
+    if (filter.getTenantId() != null) {
+      builder.append(" AND tenant_id=?");
+    }
+    if (filter.getUserId() != null) {
+      builder.append(" AND user_id=?");
+    }
+    if (filter.getClusterTemplate() != null) {
+      builder.append(" AND cluster_template_name=?");
+    }
+    return builder.toString();
+  }
+
+  private void setFilterParameters(PreparedStatement statement, ClusterTaskFilter filter, int index)
+    throws SQLException {
+    if (filter.getTenantId() != null) {
+      statement.setString(index++, filter.getTenantId());
+    }
+    if (filter.getUserId() != null) {
+      statement.setString(index++, filter.getUserId());
+    }
+    if (filter.getClusterTemplate() != null) {
+      statement.setString(index, filter.getClusterTemplate());
+    }
+  }
+}
@@ -19,6 +19,9 @@ import co.cask.coopr.account.Account;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.provisioner.plugin.ResourceType;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -26,13 +29,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLEncoder;
 
 /**
  * Plugin store that writes resources to the local file system. Modules are namespaced by the data directory given
  * in the configuration, plugin type, plugin type id, resource type, name, and version.
+ * <p/>
+ * Copying a resource to another account does not copy its data. The first time a resource is copied, its file is
+ * moved into a blob directory under the data directory, where it is named by the SHA-1 of its contents, and a
+ * reference file containing the name of the blob is written next to where the file was. The copy is another
+ * reference file. Each reference also has an entry in a directory next to its blob, and the blob is deleted
+ * together with its last reference.
  */
 public class LocalFilePluginStore implements PluginStore {
+  private static final String BLOB_DIR = ".blobs";
+  private static final String REFERENCE_SUFFIX = ".ref";
+  private static final String REFERENCES_SUFFIX = ".refs";
   private String baseDir;
+  private File blobDir;
 
   @Override
   public void initialize(Configuration conf) {
@@ -40,6 +54,7 @@ public class LocalFilePluginStore implements PluginStore {
     if (!baseDir.endsWith(File.separator)) {
       baseDir = baseDir + File.separator;
     }
+    blobDir = new File(baseDir + BLOB_DIR);
   }
 
   /**
@@ -56,9 +71,11 @@ public class LocalFilePluginStore implements PluginStore {
    * @throws IOException if there was an error creating the file
    */
   @Override
-  public OutputStream getResourceOutputStream(Account account, ResourceType type, String name, int version)
-    throws IOException {
+  public synchronized OutputStream getResourceOutputStream(Account account, ResourceType type, String name,
+                                                           int version) throws IOException {
     File file = getFile(account, type, name, version);
+    // the resource is being overwritten, so it must stop sharing data with copies of it
+    removeReference(file);
     File parent = file.getParentFile();
     if (!parent.exists()) {
       if (!parent.mkdirs()) {
@@ -74,22 +91,121 @@ public class LocalFilePluginStore implements PluginStore {
   }
 
   @Override
-  public InputStream getResourceInputStream(Account account, ResourceType type, String name, int version)
-    throws IOException {
-    File file = getFile(account, type, name, version);
-    if (!file.exists()) {
+  public synchronized InputStream getResourceInputStream(Account account, ResourceType type, String name,
+                                                         int version) throws IOException {
+    File file = getDataFile(getFile(account, type, name, version));
+    if (file == null) {
       return null;
     }
     return new FileInputStream(file);
   }
 
   @Override
-  public void deleteResource(Account account, ResourceType type, String name, int version) throws IOException {
+  public synchronized void deleteResource(Account account, ResourceType type, String name, int version)
+    throws IOException {
     File file = getFile(account, type, name, version);
     if (file.exists()) {
       // TODO: delete directory structure if empty
       file.delete();
     }
+    removeReference(file);
+  }
+
+  @Override
+  public synchronized void copyResource(Account from, Account to, ResourceType type, String name, int version)
+    throws IOException {
+    File source = getFile(from, type, name, version);
+    File destination = getFile(to, type, name, version);
+    if (source.equals(destination)) {
+      return;
+    }
+    String blobName = moveToBlob(source);
+    if (blobName == null) {
+      throw new IOException("Resource " + source.getAbsolutePath() + " does not exist.");
+    }
+    if (destination.exists() && !destination.delete()) {
+      throw new IOException("Unable to delete file " + destination.getAbsolutePath());
+    }
+    removeReference(destination);
+    addReference(destination, blobName);
+  }
+
+  // get the file that holds the data of the resource at the given path, or null if there is no such resource
+  private File getDataFile(File file) throws IOException {
+    if (file.exists()) {
+      return file;
+    }
+    String blobName = readReference(file);
+    return blobName == null ? null : new File(blobDir, blobName);
+  }
+
+  // move the data of the resource at the given path into a blob, unless it is already in one, and return the name
+  // of the blob. Returns null if there is no such resource.
+  private String moveToBlob(File file) throws IOException {
+    if (!file.exists()) {
+      return readReference(file);
+    }
+    String blobName = Files.hash(file, Hashing.sha1()).toString();
+    // reference first, so that if the move fails the resource can still be read from its own file
+    addReference(file, blobName);
+    File blob = new File(blobDir, blobName);
+    if (blob.exists()) {
+      // a resource with the same contents is already in a blob
+      if (!file.delete()) {
+        throw new IOException("Unable to delete file " + file.getAbsolutePath());
+      }
+    } else if (!file.renameTo(blob)) {
+      throw new IOException("Unable to move file " + file.getAbsolutePath() + " to " + blob.getAbsolutePath());
+    }
+    return blobName;
+  }
+
+  private String readReference(File file) throws IOException {
+    File referenceFile = getReferenceFile(file);
+    return referenceFile.exists() ? Files.toString(referenceFile, Charsets.UTF_8) : null;
+  }
+
+  private void addReference(File file, String blobName) throws IOException {
+    File entry = new File(getReferencesDir(blobName), getReferenceEntryName(file));
+    Files.createParentDirs(entry);
+    if (!entry.exists() && !entry.createNewFile()) {
+      throw new IOException("Unable to create file " + entry.getAbsolutePath());
+    }
+    File referenceFile = getReferenceFile(file);
+    Files.createParentDirs(referenceFile);
+    Files.write(blobName, referenceFile, Charsets.UTF_8);
+  }
+
+  // remove the reference at the given path if there is one, deleting its blob if it was the last reference to it
+  private void removeReference(File file) throws IOException {
+    String blobName = readReference(file);
+    if (blobName == null) {
+      return;
+    }
+    File referencesDir = getReferencesDir(blobName);
+    new File(referencesDir, getReferenceEntryName(file)).delete();
+    String[] remaining = referencesDir.list();
+    if (remaining == null || remaining.length == 0) {
+      new File(blobDir, blobName).delete();
+      referencesDir.delete();
+    }
+    if (!getReferenceFile(file).delete()) {
+      throw new IOException("Unable to delete file " + getReferenceFile(file).getAbsolutePath());
+    }
+  }
+
+  private File getReferenceFile(File file) {
+    return new File(file.getPath() + REFERENCE_SUFFIX);
+  }
+
+  private File getReferencesDir(String blobName) {
+    return new File(blobDir, blobName + REFERENCES_SUFFIX);
+  }
+
+  // entry names are the encoded path of the reference relative to the data directory, so they are unique
+  private String getReferenceEntryName(File file) throws IOException {
+    String relativePath = file.getPath().substring(new File(baseDir).getPath().length() + 1);
+    return URLEncoder.encode(relativePath, Charsets.UTF_8.name());
   }
 
   private File getFile(Account account, ResourceType type,  String name, int version) {
@@ -56,6 +56,16 @@ public interface PluginResourceTypeView {
    */
   public void add(ResourceMeta meta) throws IOException;
 
+  /**
+   * Set the digest of the contents of the given resource version, once its contents have been written.
+   *
+   * @param name Name of the resource to set the digest for
+   * @param version Version of the resource to set the digest for
+   * @param digest Digest of the resource contents
+   * @throws IOException
+   */
+  public void setDigest(String name, int version, String digest) throws IOException;
+
   /**
    * Get the highest version of given resource, or 0 if the resource does not exist.
    *
@@ -72,4 +72,18 @@ public interface PluginStore {
    */
   void deleteResource(Account account, ResourceType type, String name, int version) throws IOException;
 
+  /**
+   * Copy a plugin resource from one account to another, overwriting the resource in the destination account if it
+   * already exists. Implementations may share the data of the resource between the accounts instead of copying it,
+   * as long as changes to one account do not affect the other.
+   *
+   * @param from Account to copy the resource from
+   * @param to Account to copy the resource to
+   * @param type Type of resource to copy
+   * @param name Name of the resource to copy
+   * @param version Version of the resource to copy
+   * @throws IOException if the resource does not exist or there was an error copying it
+   */
+  void copyResource(Account from, Account to, ResourceType type, String name, int version) throws IOException;
+
 }
@@ -5,6 +5,7 @@ import com.google.common.util.concurrent.Service;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Persistent store for provisioner related information, such as capacity used.
@@ -64,6 +65,17 @@ public interface ProvisionerStore extends Service {
    */
   void writeProvisioner(Provisioner provisioner) throws IOException;
 
+  /**
+   * Write the given provisioner only if the stored provisioner has not been modified since it was read, as determined
+   * by the version of the given provisioner. On success, the version of the given provisioner is updated to the
+   * version that was written.
+   *
+   * @param provisioner Provisioner to write
+   * @return true if the provisioner was written, false if it was modified or deleted since it was read
+   * @throws IOException
+   */
+  boolean tryWriteProvisioner(Provisioner provisioner) throws IOException;
+
   /**
    * Delete the provisioner with the given id.
    *
@@ -72,6 +84,16 @@ public interface ProvisionerStore extends Service {
    */
   void deleteProvisioner(String id) throws IOException;
 
+  /**
+   * Delete the given provisioner only if the stored provisioner has not been modified since it was read, as determined
+   * by the version of the given provisioner.
+   *
+   * @param provisioner Provisioner to delete
+   * @return true if the provisioner was deleted, false if it was modified or deleted since it was read
+   * @throws IOException
+   */
+  boolean tryDeleteProvisioner(Provisioner provisioner) throws IOException;
+
   /**
    * Set the last heartbeat time of the given provisioner to the given timestamp in milliseconds.
    *
@@ -81,6 +103,15 @@ public interface ProvisionerStore extends Service {
    */
   void setHeartbeat(String provisionerId, long ts) throws IOException;
 
+  /**
+   * Set the last heartbeat times of the given provisioners in a single batch. Provisioners that do not exist are
+   * ignored.
+   *
+   * @param heartbeats Timestamp in milliseconds to set the heartbeat time to for each provisioner id
+   * @throws IOException
+   */
+  void setHeartbeats(Map<String, Long> heartbeats) throws IOException;
+
   /**
    * Get the total amount of free capacity available across all provisioners.
    *
@@ -67,6 +67,7 @@ public class SQLPluginMetaStoreService extends AbstractIdleService implements Pl
           "resource_type VARCHAR(255), " +
           "name VARCHAR(255), " +
           "version INTEGER, " +
+          "digest VARCHAR(64), " +
           "live BOOLEAN, " +
           "slated BOOLEAN, " +
           "deleted BOOLEAN, " +
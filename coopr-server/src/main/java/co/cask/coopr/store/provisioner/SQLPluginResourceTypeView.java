@@ -121,18 +121,19 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
         PreparedStatement statement = conn.prepareStatement(
           "INSERT INTO pluginMeta " +
             "(tenant_id, plugin_type, plugin_name, resource_type, name," +
-            " version, slated, live, deleted, create_time, delete_time) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            " version, digest, slated, live, deleted, create_time, delete_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
         try {
           ResourceStatus status = meta.getStatus();
           setConstantFields(statement);
           statement.setString(5, meta.getName());
           statement.setInt(6, meta.getVersion());
-          statement.setBoolean(7, status.isLiveAfterSync());
-          statement.setBoolean(8, status.isLive());
-          statement.setBoolean(9, false);
-          statement.setTimestamp(10, DBHelper.getTimestamp(System.currentTimeMillis()));
-          statement.setTimestamp(11, null);
+          statement.setString(7, meta.getDigest());
+          statement.setBoolean(8, status.isLiveAfterSync());
+          statement.setBoolean(9, status.isLive());
+          statement.setBoolean(10, false);
+          statement.setTimestamp(11, DBHelper.getTimestamp(System.currentTimeMillis()));
+          statement.setTimestamp(12, null);
           statement.executeUpdate();
         } finally {
           statement.close();
@@ -147,6 +148,33 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
     }
   }
 
+  @Override
+  public void setDigest(String name, int version, String digest) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "UPDATE pluginMeta SET digest=? WHERE " +
+            "tenant_id=? AND plugin_type=? AND plugin_name=? AND resource_type=? AND name=? AND version=?");
+        try {
+          statement.setString(1, digest);
+          setConstantFields(statement, 2);
+          statement.setString(6, name);
+          statement.setInt(7, version);
+          statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception setting digest of version {} of resource {} for tenant {}.",
+                version, name, tenant, e);
+      throw new IOException(e);
+    }
+  }
+
   @Override
   public int getHighestVersion(String name) throws IOException {
     try {
@@ -220,7 +248,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta " +
             "WHERE tenant_id=? AND plugin_type=? AND plugin_name=? AND resource_type=? AND deleted=false");
         try {
           setConstantFields(statement);
@@ -243,7 +271,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta WHERE tenant_id=? AND plugin_type=? " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta WHERE tenant_id=? AND plugin_type=? " +
             "AND plugin_name=? AND resource_type=? AND slated=? AND live=? AND deleted=false");
         try {
           setConstantFields(statement);
@@ -268,7 +296,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta " +
             "WHERE tenant_id=? AND plugin_type=? AND plugin_name=? AND resource_type=? AND name=? AND deleted=false");
         try {
           setConstantFields(statement);
@@ -292,7 +320,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta " +
             "WHERE tenant_id=? AND plugin_type=? AND plugin_name=? AND " +
             "resource_type=? AND name=? AND slated=? AND live=? AND deleted=false");
         try {
@@ -319,7 +347,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta WHERE tenant_id=? AND plugin_type=? AND " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta WHERE tenant_id=? AND plugin_type=? AND " +
             "plugin_name=? AND resource_type=? AND slated=true AND deleted=false");
         try {
           setConstantFields(statement);
@@ -342,7 +370,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT name, version, slated, live FROM pluginMeta WHERE tenant_id=? AND plugin_type=? AND " +
+          "SELECT name, version, slated, live, digest FROM pluginMeta WHERE tenant_id=? AND plugin_type=? AND " +
             "plugin_name=? AND resource_type=? AND live=true AND deleted=false");
         try {
           setConstantFields(statement);
@@ -490,7 +518,7 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
 
   private ResourceMeta getMeta(Connection conn, String name, int version) throws SQLException {
     PreparedStatement statement = conn.prepareStatement(
-      "SELECT name, version, slated, live FROM pluginMeta WHERE tenant_id=? " +
+      "SELECT name, version, slated, live, digest FROM pluginMeta WHERE tenant_id=? " +
         "AND plugin_type=? AND plugin_name=? AND resource_type=? AND name=? AND version=? AND deleted=false");
     try {
       setConstantFields(statement);
@@ -507,7 +535,8 @@ public class SQLPluginResourceTypeView implements PluginResourceTypeView {
     int version = results.getInt(2);
     boolean slated = results.getBoolean(3);
     boolean live = results.getBoolean(4);
-    return new ResourceMeta(name, version, ResourceStatus.fromLiveFlags(live, slated));
+    String digest = results.getString(5);
+    return new ResourceMeta(name, version, ResourceStatus.fromLiveFlags(live, slated), digest);
   }
 
   private void setConstantFields(PreparedStatement statement) throws SQLException {
@@ -5,6 +5,7 @@ import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.DBPut;
 import co.cask.coopr.store.DBQueryExecutor;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
@@ -18,6 +19,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -65,6 +67,7 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
                                              "last_heartbeat TIMESTAMP, " +
                                              "capacity_total INTEGER, " +
                                              "capacity_free INTEGER, " +
+                                             "version BIGINT, " +
                                              "provisioner BLOB, " +
                                              "PRIMARY KEY (id) )",
                                            dbConnectionPool);
@@ -89,9 +92,9 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     try {
       Connection conn = dbConnectionPool.getConnection();
       try {
-        PreparedStatement statement = conn.prepareStatement("SELECT provisioner FROM provisioners");
+        PreparedStatement statement = conn.prepareStatement("SELECT provisioner, version FROM provisioners");
         try {
-          return dbQueryExecutor.getQueryList(statement, Provisioner.class);
+          return getProvisioners(statement);
         } finally {
           statement.close();
         }
@@ -109,9 +112,9 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT provisioner FROM provisioners WHERE capacity_free > 0");
+          "SELECT provisioner, version FROM provisioners WHERE capacity_free > 0");
         try {
-          return dbQueryExecutor.getQueryList(statement, Provisioner.class);
+          return getProvisioners(statement);
         } finally {
           statement.close();
         }
@@ -129,10 +132,10 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT provisioner FROM provisioners WHERE last_heartbeat < ?");
+          "SELECT provisioner, version FROM provisioners WHERE last_heartbeat < ?");
         try {
           statement.setTimestamp(1, DBHelper.getTimestamp(idleTimestamp));
-          return dbQueryExecutor.getQueryList(statement, Provisioner.class);
+          return getProvisioners(statement);
         } finally {
           statement.close();
         }
@@ -150,11 +153,11 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
       Connection conn = dbConnectionPool.getConnection();
       try {
         PreparedStatement statement = conn.prepareStatement(
-          "SELECT P.provisioner FROM provisioners P, provisionerWorkers W" +
+          "SELECT P.provisioner, P.version FROM provisioners P, provisionerWorkers W" +
             " WHERE W.tenant_id=? AND P.id=W.provisioner_id AND W.num_assigned > 0");
         try {
           statement.setString(1, tenantId);
-          return dbQueryExecutor.getQueryList(statement, Provisioner.class);
+          return getProvisioners(statement);
         } finally {
           statement.close();
         }
@@ -171,10 +174,10 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     try {
       Connection conn = dbConnectionPool.getConnection();
       try {
-        PreparedStatement statement = conn.prepareStatement("SELECT provisioner FROM provisioners WHERE id=?");
+        PreparedStatement statement = conn.prepareStatement("SELECT provisioner, version FROM provisioners WHERE id=?");
         statement.setString(1, id);
         try {
-          return dbQueryExecutor.getQueryItem(statement, Provisioner.class);
+          return getProvisioner(statement);
         } finally {
           statement.close();
         }
@@ -213,6 +216,51 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     }
   }
 
+  @Override
+  public boolean tryWriteProvisioner(Provisioner provisioner) throws IOException {
+    long version = provisioner.getVersion();
+    Connection conn = null;
+    try {
+      conn = dbConnectionPool.getConnection(false);
+      try {
+        PreparedStatement statement = conn.prepareStatement(
+          "UPDATE provisioners SET capacity_total=?, capacity_free=?, version=?, provisioner=? " +
+            "WHERE id=? AND version=?");
+        try {
+          statement.setInt(1, provisioner.getCapacityTotal());
+          statement.setInt(2, provisioner.getCapacityFree());
+          statement.setLong(3, version + 1);
+          statement.setBytes(4, dbQueryExecutor.toBytes(provisioner, Provisioner.class));
+          statement.setString(5, provisioner.getId());
+          statement.setLong(6, version);
+          // no rows are updated if the provisioner was modified or deleted since it was read
+          if (statement.executeUpdate() == 0) {
+            conn.rollback();
+            return false;
+          }
+        } finally {
+          statement.close();
+        }
+        writeProvisionerWorkers(conn, provisioner);
+        conn.commit();
+        provisioner.setVersion(version + 1);
+        return true;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception writing provisioner, will attempt to rollback.", e);
+      if (conn != null) {
+        try {
+          conn.rollback();
+        } catch (SQLException e1) {
+          LOG.error("Exception rolling back failed provisioner write", e);
+        }
+      }
+      throw new IOException("Exception writing provisioner " + provisioner.getId(), e);
+    }
+  }
+
   @Override
   public void deleteProvisioner(String id) throws IOException {
     Connection conn = null;
@@ -250,6 +298,50 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     }
   }
 
+  @Override
+  public boolean tryDeleteProvisioner(Provisioner provisioner) throws IOException {
+    String id = provisioner.getId();
+    Connection conn = null;
+    try {
+      conn = dbConnectionPool.getConnection(false);
+      try {
+        PreparedStatement statement = conn.prepareStatement("DELETE from provisioners WHERE id=? AND version=?");
+        try {
+          statement.setString(1, id);
+          statement.setLong(2, provisioner.getVersion());
+          // no rows are deleted if the provisioner was modified or deleted since it was read
+          if (statement.executeUpdate() == 0) {
+            conn.rollback();
+            return false;
+          }
+        } finally {
+          statement.close();
+        }
+        statement = conn.prepareStatement("DELETE from provisionerWorkers WHERE provisioner_id=?");
+        try {
+          statement.setString(1, id);
+          statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+        conn.commit();
+        return true;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Exception deleting provisioner {}", id, e);
+      if (conn != null) {
+        try {
+          conn.rollback();
+        } catch (SQLException e1) {
+          LOG.error("Exception rolling back failed provisioner delete for provisioner {}", id, e1);
+        }
+      }
+      throw new IOException("Exception deleting provisioner " + id, e);
+    }
+  }
+
   @Override
   public void setHeartbeat(String provisionerId, long ts) throws IOException {
     try {
@@ -271,6 +363,30 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     }
   }
 
+  @Override
+  public void setHeartbeats(Map<String, Long> heartbeats) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection();
+      try {
+        PreparedStatement statement = conn.prepareStatement("UPDATE provisioners SET last_heartbeat=? WHERE id=?");
+        try {
+          for (Map.Entry<String, Long> heartbeat : heartbeats.entrySet()) {
+            statement.setTimestamp(1, DBHelper.getTimestamp(heartbeat.getValue()));
+            statement.setString(2, heartbeat.getKey());
+            statement.addBatch();
+          }
+          statement.executeBatch();
+        } finally {
+          statement.close();
+        }
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      throw new IOException("Exception setting heartbeat times for " + heartbeats.size() + " provisioners", e);
+    }
+  }
+
   @Override
   public int getFreeCapacity() throws IOException {
     try {
@@ -311,6 +427,35 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     }
   }
 
+  private ImmutableList<Provisioner> getProvisioners(PreparedStatement statement) throws SQLException {
+    ResultSet rs = statement.executeQuery();
+    try {
+      ImmutableList.Builder<Provisioner> results = ImmutableList.builder();
+      while (rs.next()) {
+        results.add(readProvisioner(rs));
+      }
+      return results.build();
+    } finally {
+      rs.close();
+    }
+  }
+
+  private Provisioner getProvisioner(PreparedStatement statement) throws SQLException {
+    ResultSet rs = statement.executeQuery();
+    try {
+      return rs.next() ? readProvisioner(rs) : null;
+    } finally {
+      rs.close();
+    }
+  }
+
+  // the version lives in its own column so that conditional writes can compare against it
+  private Provisioner readProvisioner(ResultSet rs) throws SQLException {
+    Provisioner provisioner = dbQueryExecutor.deserializeBlob(rs.getBlob(1), Provisioner.class);
+    provisioner.setVersion(rs.getLong(2));
+    return provisioner;
+  }
+
   private void writeProvisionerWorkers(Connection conn, Provisioner provisioner) throws SQLException {
     // TODO: reduce i/o operations
     String provisionerId = provisioner.getId();
@@ -401,7 +546,7 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     @Override
     public PreparedStatement createUpdateStatement(Connection conn) throws SQLException {
       PreparedStatement statement = conn.prepareStatement(
-        "UPDATE provisioners SET capacity_total=?, capacity_free=?, provisioner=? WHERE id=?");
+        "UPDATE provisioners SET capacity_total=?, capacity_free=?, version=version+1, provisioner=? WHERE id=?");
       statement.setInt(1, provisioner.getCapacityTotal());
       statement.setInt(2, provisioner.getCapacityFree());
       statement.setBytes(3, provisionerBytes);
@@ -412,8 +557,8 @@ public class SQLProvisionerStore extends AbstractIdleService implements Provisio
     @Override
     public PreparedStatement createInsertStatement(Connection conn) throws SQLException {
       PreparedStatement statement = conn.prepareStatement(
-        "INSERT INTO provisioners (id, last_heartbeat, capacity_total, capacity_free, provisioner) " +
-          "VALUES (?, ?, ?, ?, ?)");
+        "INSERT INTO provisioners (id, last_heartbeat, capacity_total, capacity_free, version, provisioner) " +
+          "VALUES (?, ?, ?, ?, 0, ?)");
       statement.setString(1, provisioner.getId());
       statement.setTimestamp(2, DBHelper.getTimestamp(System.currentTimeMillis()));
       statement.setInt(3, provisioner.getCapacityTotal());
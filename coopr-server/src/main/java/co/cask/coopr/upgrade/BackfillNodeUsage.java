@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.upgrade;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.cluster.ClusterStore;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import co.cask.coopr.store.cluster.ClusterTaskVisitor;
+import co.cask.coopr.store.cluster.SQLClusterStoreService;
+import co.cask.coopr.store.guice.StoreModule;
+import co.cask.coopr.store.metrics.NodeUsageStore;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Rebuilds node lifetimes and node usage rollups from all completed CREATE and DELETE tasks. Existing node usage is
+ * deleted first. Should be run while the server is stopped, before enabling server.metrics.rollups.enabled.
+ */
+public class BackfillNodeUsage {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BackfillNodeUsage.class);
+
+  private final ClusterStore clusterStore;
+  private final NodeUsageStore nodeUsageStore;
+
+  @Inject
+  public BackfillNodeUsage(SQLClusterStoreService sqlClusterStoreService, NodeUsageStore nodeUsageStore) {
+    this.clusterStore = sqlClusterStoreService.getSystemView();
+    this.nodeUsageStore = nodeUsageStore;
+  }
+
+  public void run() throws IOException {
+    nodeUsageStore.startAndWait();
+    try {
+      LOG.info("Deleting existing node usage");
+      nodeUsageStore.deleteAll();
+
+      LOG.info("Backfilling node usage from cluster tasks");
+      ClusterTaskFilter filter = new ClusterTaskFilter(null, null, null, null, null, null, null, null);
+      final long[] counts = new long[2];
+      clusterStore.visitClusterTasks(filter, new ClusterTaskVisitor() {
+        @Override
+        public void visit(ClusterTask task) throws IOException {
+          if (task.getTaskName() == ProvisionerAction.CREATE) {
+            nodeUsageStore.nodeCreated(task);
+            counts[0]++;
+          } else if (task.getTaskName() == ProvisionerAction.DELETE) {
+            nodeUsageStore.nodeDeleted(task);
+            counts[1]++;
+          }
+        }
+      });
+      LOG.info("Backfilled {} node creates and {} node deletes", counts[0], counts[1]);
+    } finally {
+      nodeUsageStore.stopAndWait();
+    }
+  }
+
+  public static void main(String[] args) throws ClassNotFoundException {
+    final Configuration configuration = Configuration.create();
+    String jdbcConnectionString = configuration.get(Constants.JDBC_CONNECTION_STRING);
+    if (jdbcConnectionString == null) {
+      LOG.error("Missing property '{}' in coopr-site.xml", Constants.JDBC_CONNECTION_STRING);
+      System.exit(1);
+    }
+    // the entity cache needs zookeeper, which is not available to the backfill
+    configuration.setBoolean(Constants.ENTITY_CACHE_ENABLED, false);
+
+    Injector injector = Guice.createInjector(
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(Configuration.class).toInstance(configuration);
+        }
+      },
+      new StoreModule(configuration));
+
+    BackfillNodeUsage backfill = injector.getInstance(BackfillNodeUsage.class);
+    try {
+      backfill.run();
+    } catch (Exception e) {
+      LOG.error("Error backfilling node usage", e);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.upgrade;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.store.DBConnectionPool;
+import co.cask.coopr.store.blob.BlobFormat;
+import co.cask.coopr.store.guice.StoreModule;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Converts the blobs of clusters, jobs, tasks, nodes, tenants, provisioners and user profiles to the format given by
+ * server.db.blob.format. Blobs of every format can be read by the server, so conversion is only needed to get the
+ * benefits of a new format for existing rows, or before downgrading to a version that can only read json.
+ * Blobs are converted without knowing the type of object they contain.
+ */
+public class ConvertBlobFormat {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConvertBlobFormat.class);
+  private static final Gson GSON = new Gson();
+  private static final int BATCH_SIZE = 100;
+  private static final List<BlobTable> TABLES = ImmutableList.of(
+    new BlobTable("clusters", "cluster", "id"),
+    new BlobTable("jobs", "job", "cluster_id", "job_num"),
+    new BlobTable("tasks", "task", "cluster_id", "job_num", "task_num"),
+    new BlobTable("nodes", "node", "id"),
+    new BlobTable("tenants", "tenant", "id"),
+    new BlobTable("provisioners", "provisioner", "id"),
+    new BlobTable("users", "profile", "tenant_id", "user_id"));
+
+  private final DBConnectionPool dbConnectionPool;
+  private final BlobFormat format;
+
+  @Inject
+  public ConvertBlobFormat(DBConnectionPool dbConnectionPool, Configuration conf) {
+    this.dbConnectionPool = dbConnectionPool;
+    this.format = BlobFormat.valueOf(conf.get(Constants.BLOB_FORMAT, Constants.DEFAULT_BLOB_FORMAT).toUpperCase());
+  }
+
+  public void run() throws SQLException {
+    for (BlobTable table : TABLES) {
+      LOG.info("Converting {} to {}", table.name, format);
+      long numConverted = convertTable(table);
+      LOG.info("Converted {} rows of {}", numConverted, table.name);
+    }
+  }
+
+  private long convertTable(BlobTable table) throws SQLException {
+    Connection conn = dbConnectionPool.getConnection();
+    try {
+      String keys = Joiner.on(", ").join(table.keyColumns);
+      PreparedStatement select = conn.prepareStatement(
+        "SELECT " + keys + ", " + table.blobColumn + " FROM " + table.name);
+      try {
+        PreparedStatement update = conn.prepareStatement(
+          "UPDATE " + table.name + " SET " + table.blobColumn + "=? WHERE " +
+            Joiner.on("=? AND ").join(table.keyColumns) + "=?");
+        try {
+          long numConverted = 0;
+          int numKeys = table.keyColumns.size();
+          ResultSet rs = select.executeQuery();
+          try {
+            while (rs.next()) {
+              byte[] blob = rs.getBytes(numKeys + 1);
+              if (blob == null || blob.length == 0 || BlobFormat.of(blob) == format) {
+                continue;
+              }
+              update.setBytes(1, format.convert(GSON, blob));
+              for (int i = 1; i <= numKeys; i++) {
+                update.setObject(i + 1, rs.getObject(i));
+              }
+              update.addBatch();
+              numConverted++;
+              if (numConverted % BATCH_SIZE == 0) {
+                update.executeBatch();
+              }
+            }
+          } finally {
+            rs.close();
+          }
+          update.executeBatch();
+          return numConverted;
+        } finally {
+          update.close();
+        }
+      } finally {
+        select.close();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
+  public static void main(String[] args) throws ClassNotFoundException {
+    final Configuration configuration = Configuration.create();
+    String jdbcConnectionString = configuration.get(Constants.JDBC_CONNECTION_STRING);
+    if (jdbcConnectionString == null) {
+      LOG.error("Missing property '{}' in coopr-site.xml", Constants.JDBC_CONNECTION_STRING);
+      System.exit(1);
+    }
+    // the entity cache needs zookeeper, which is not available to the conversion
+    configuration.setBoolean(Constants.ENTITY_CACHE_ENABLED, false);
+
+    Injector injector = Guice.createInjector(
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(Configuration.class).toInstance(configuration);
+        }
+      },
+      new StoreModule(configuration));
+
+    ConvertBlobFormat conversion = injector.getInstance(ConvertBlobFormat.class);
+    try {
+      conversion.run();
+    } catch (Exception e) {
+      LOG.error("Error converting blob format", e);
+    }
+  }
+
+  /**
+   * Table with a blob column, and the columns of its primary key.
+   */
+  private static final class BlobTable {
+    private final String name;
+    private final String blobColumn;
+    private final List<String> keyColumns;
+
+    private BlobTable(String name, String blobColumn, String... keyColumns) {
+      this.name = name;
+      this.blobColumn = blobColumn;
+      this.keyColumns = ImmutableList.copyOf(keyColumns);
+    }
+  }
+}
@@ -167,6 +167,8 @@ public class UpgradeTo0_9_9 {
       LOG.error("Missing property '{}' in coopr-site.xml", Constants.JDBC_CONNECTION_STRING);
       System.exit(1);
     }
+    // the entity cache needs zookeeper, which is not available to the upgrade
+    configuration.setBoolean(Constants.ENTITY_CACHE_ENABLED, false);
 
     Injector injector = Guice.createInjector(
       new AbstractModule() {
@@ -30,7 +30,10 @@ import co.cask.coopr.common.zookeeper.IdService;
 import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
 import co.cask.coopr.http.guice.HttpModule;
 import co.cask.coopr.provisioner.MockProvisionerRequestService;
+import co.cask.coopr.provisioner.ProvisionerHeartbeats;
+import co.cask.coopr.provisioner.ProvisionerRegistry;
 import co.cask.coopr.provisioner.ProvisionerRequestService;
+import co.cask.coopr.provisioner.guice.ProvisionerModule;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.scheduler.callback.ClusterCallback;
 import co.cask.coopr.scheduler.callback.MockClusterCallback;
@@ -41,6 +44,7 @@ import co.cask.coopr.store.cluster.SQLClusterStoreService;
 import co.cask.coopr.store.credential.CredentialStore;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.guice.TestStoreModule;
+import co.cask.coopr.store.metrics.SQLNodeUsageStore;
 import co.cask.coopr.store.provisioner.MemoryPluginStore;
 import co.cask.coopr.store.provisioner.PluginMetaStoreService;
 import co.cask.coopr.store.provisioner.ProvisionerStore;
@@ -80,9 +84,12 @@ public class BaseTest {
   private static InMemoryZKServer zkServer;
   private static SQLClusterStoreService sqlClusterStoreService;
   private static SQLProvisionerStore sqlProvisionerStore;
+  private static ProvisionerRegistry provisionerRegistry;
+  private static ProvisionerHeartbeats provisionerHeartbeats;
   private static SQLPluginMetaStoreService sqlMetaStoreService;
   private static SQLTenantStore sqlTenantStore;
   private static SQLUserStore sqlUserStore;
+  private static SQLNodeUsageStore sqlNodeUsageStore;
   protected static Injector injector;
   protected static ZKClientService zkClientService;
   protected static EntityStoreService entityStoreService;
@@ -153,6 +160,7 @@ public class BaseTest {
         new TestStoreModule(),
         new QueueModule(zkClientService),
         new HttpModule(),
+        new ProvisionerModule(),
         new SchedulerModule(conf, MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor()),
         new CodecModules().getModule(),
         new IOModule(),
@@ -184,6 +192,8 @@ public class BaseTest {
     sqlProvisionerStore = injector.getInstance(SQLProvisionerStore.class);
     provisionerStore = sqlProvisionerStore;
     provisionerStore.startAndWait();
+    provisionerRegistry = injector.getInstance(ProvisionerRegistry.class);
+    provisionerHeartbeats = injector.getInstance(ProvisionerHeartbeats.class);
     sqlMetaStoreService = injector.getInstance(SQLPluginMetaStoreService.class);
     metaStoreService = sqlMetaStoreService;
     resourceService = injector.getInstance(ResourceService.class);
@@ -195,6 +205,8 @@ public class BaseTest {
     credentialStore = injector.getInstance(CredentialStore.class);
     sqlUserStore = injector.getInstance(SQLUserStore.class);
     sqlUserStore.startAndWait();
+    sqlNodeUsageStore = injector.getInstance(SQLNodeUsageStore.class);
+    sqlNodeUsageStore.startAndWait();
     userStore = sqlUserStore;
     queueService = injector.getInstance(QueueService.class);
     queueService.startAndWait();
@@ -212,9 +224,13 @@ public class BaseTest {
     if (shouldClearDataBetweenTests()) {
       sqlTenantStore.clearData();
       sqlClusterStoreService.clearData();
+      // write out heartbeats before clearing so that they do not carry over to the next test
+      provisionerHeartbeats.flush();
       sqlProvisionerStore.clearData();
+      provisionerRegistry.provisionersChanged();
       sqlMetaStoreService.clearData();
       sqlUserStore.clearData();
+      sqlNodeUsageStore.clearData();
       pluginStore.clearData();
       credentialStore.wipe();
     }
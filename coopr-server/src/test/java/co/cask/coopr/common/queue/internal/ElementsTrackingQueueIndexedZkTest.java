@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.queue.internal;
+
+import co.cask.coopr.common.queue.Element;
+import org.apache.twill.internal.zookeeper.InMemoryZKServer;
+import org.apache.twill.zookeeper.ZKClientService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ElementsTrackingQueueIndexedZkTest extends ElementsTrackingQueueTestBase {
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+  private InMemoryZKServer zkServer;
+  private ZKClientService zkClient;
+
+  private ElementsTrackingQueue queue;
+
+  @Before
+  public void before() throws IOException {
+    zkServer = InMemoryZKServer.builder().setDataDir(tmpFolder.newFolder()).setTickTime(1000).build();
+    zkServer.startAndWait();
+
+    zkClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    zkClient.startAndWait();
+  }
+
+  @After
+  public void after() {
+    zkClient.stopAndWait();
+    zkServer.stopAndWait();
+  }
+
+  @Override
+  protected ElementsTrackingQueue getQueue() throws Exception {
+    String queueName = "/tracking-queue";
+    System.out.println("queue name: " + queueName);
+    queue = new ElementsTrackingQueue(new IndexedZKElementsTracking(zkClient, queueName));
+    return queue;
+  }
+
+  @Test(timeout = 20000)
+  public void testTakeElementAddedByOtherInstance() throws Exception {
+    IndexedZKElementsTracking producer = new IndexedZKElementsTracking(zkClient, "/shared-queue");
+    IndexedZKElementsTracking consumer = new IndexedZKElementsTracking(zkClient, "/shared-queue");
+    producer.addToQueue(new Element("work1", "data1"));
+    producer.addToQueue(new Element("work2", "data2"));
+
+    // the consumer learns about the elements through its watch on the pending nodes
+    Element taken = consumer.startConsuming("consumer1");
+    while (taken == null) {
+      TimeUnit.MILLISECONDS.sleep(10);
+      taken = consumer.startConsuming("consumer1");
+    }
+    Assert.assertEquals("work1", taken.getId());
+
+    // the element taken by the consumer is gone from the index of the producer as well
+    Element next = producer.startConsuming("consumer2");
+    Assert.assertEquals("work2", next.getId());
+    Assert.assertNull(producer.startConsuming("consumer2"));
+  }
+
+  @Test
+  public void testFinishConsumingDeletesElementAndClaim() throws Exception {
+    IndexedZKElementsTracking tracking = new IndexedZKElementsTracking(zkClient, "/finish-queue");
+    tracking.addToQueue(new Element("work1", "data1"));
+    Assert.assertEquals("work1", tracking.startConsuming("consumer1").getId());
+    Assert.assertTrue(tracking.finishConsuming("work1", "consumer1"));
+    Assert.assertNull(zkClient.exists("/finish-queue/indexedqueue/elements/work1").get());
+    Assert.assertNull(zkClient.exists("/finish-queue/indexedqueue/inprogress/work1").get());
+    Assert.assertNull(tracking.startConsuming("consumer1"));
+  }
+
+  @Test
+  public void testWalkDeletesClaimOfFinishedElement() throws Exception {
+    IndexedZKElementsTracking tracking = new IndexedZKElementsTracking(zkClient, "/walk-queue");
+    tracking.addToQueue(new Element("work1", "data1"));
+    Assert.assertEquals("work1", tracking.startConsuming("consumer1").getId());
+    // as if finishing deleted the element but not its claim
+    zkClient.delete("/walk-queue/indexedqueue/elements/work1").get();
+
+    tracking.walkThruElementsBeingConsumed(new ElementsTracking.Walker() {
+      @Override
+      public boolean process(Element element, String consumerId, long lastProgressReportTs) {
+        Assert.fail();
+        return false;
+      }
+    });
+    Assert.assertNull(zkClient.exists("/walk-queue/indexedqueue/inprogress/work1").get());
+    Assert.assertTrue(tracking.getBeingConsumed().isEmpty());
+  }
+}
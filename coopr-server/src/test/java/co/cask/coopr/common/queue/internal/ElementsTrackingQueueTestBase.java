@@ -16,6 +16,7 @@
 package co.cask.coopr.common.queue.internal;
 
 import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import com.google.common.collect.Iterators;
@@ -168,6 +169,44 @@ public abstract class ElementsTrackingQueueTestBase {
     Assert.assertNull(queue.take("worker6"));
   }
 
+  @Test
+  public void testMetrics() throws Exception {
+    ElementsTrackingQueue queue = getQueue();
+    Assert.assertEquals(new QueueMetrics(0, 0), queue.getMetrics());
+
+    queue.add(new Element("work1", "data1"));
+    queue.add(new Element("work2", "data2"));
+    queue.add(new Element("work3", "data3"));
+    Assert.assertEquals(new QueueMetrics(3, 0), queue.getMetrics());
+
+    Element taken1 = queue.take("worker1");
+    Element taken2 = queue.take("worker2");
+    Assert.assertEquals(new QueueMetrics(1, 2), queue.getMetrics());
+
+    queue.recordProgress("worker1", taken1.getId(), TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "");
+    Assert.assertEquals(new QueueMetrics(1, 1), queue.getMetrics());
+
+    queue.recordProgress("worker2", taken2.getId(), TrackingQueue.ConsumingStatus.FAILED, "");
+    Assert.assertEquals(new QueueMetrics(2, 0), queue.getMetrics());
+
+    // not owned by the consumer, so nothing should change
+    Element taken3 = queue.take("worker3");
+    queue.recordProgress("worker1", taken3.getId(), TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "");
+    Assert.assertEquals(new QueueMetrics(1, 1), queue.getMetrics());
+
+    // removing an element adjusts the count of the state it was removed in
+    queue.remove(taken3.getId());
+    Assert.assertEquals(new QueueMetrics(1, 0), queue.getMetrics());
+    queue.add(new Element("work4", "data4"));
+    queue.remove("work4");
+    Assert.assertEquals(new QueueMetrics(1, 0), queue.getMetrics());
+    queue.remove("work4");
+    Assert.assertEquals(new QueueMetrics(1, 0), queue.getMetrics());
+
+    queue.removeAll();
+    Assert.assertEquals(new QueueMetrics(0, 0), queue.getMetrics());
+  }
+
   @Test(timeout = 90000)
   public void testConcurrentAccess() throws Exception {
     final ElementsTrackingQueue queue = getQueue();
@@ -3,10 +3,12 @@ package co.cask.coopr.common.queue.internal;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.GroupElement;
 import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.guice.QueueModule;
 import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.twill.internal.zookeeper.InMemoryZKServer;
@@ -21,6 +23,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -94,6 +97,28 @@ public class ZKQueueGroupTest extends QueueGroupTest {
     instance2.stop();
   }
 
+  @Test
+  public void testMetricsRecountedAcrossInstances() throws Exception {
+    QueueGroup instance1 = new ZKQueueGroup(zkClient, QueueType.PROVISIONER);
+    // recounts on every read
+    QueueGroup instance2 = new ZKQueueGroup(zkClient, QueueType.PROVISIONER, ElementsTrackingType.MAP, 0);
+    instance1.startAndWait();
+    instance2.startAndWait();
+
+    String tenant = "tenantMetrics";
+    Assert.assertEquals(new QueueMetrics(0, 0), instance1.getMetrics(tenant));
+    instance1.add(tenant, new Element("id1", "val1"));
+    instance1.add(tenant, new Element("id2", "val2"));
+    Assert.assertEquals(new QueueMetrics(2, 0), instance1.getMetrics(tenant));
+
+    Assert.assertEquals("id1", instance2.take(tenant, "consumer").getId());
+    Assert.assertEquals(new QueueMetrics(1, 1), instance2.getMetrics(tenant));
+    // changes made through the other instance are only seen by the counts of this one after a recount
+    Assert.assertEquals(new QueueMetrics(2, 0), instance1.getMetrics(tenant));
+    instance1.stop();
+    instance2.stop();
+  }
+
   @Test
   public void testInstanceInitializedWithExistingData() throws Exception {
     QueueGroup instance1 = new ZKQueueGroup(zkClient, QueueType.PROVISIONER);
@@ -107,6 +132,55 @@ public class ZKQueueGroupTest extends QueueGroupTest {
     instance2.stop();
   }
 
+  @Test
+  public void testElementAddedCallbackAcrossInstances() throws Exception {
+    QueueGroup instance1 = new ZKQueueGroup(zkClient, QueueType.JOB);
+    QueueGroup instance2 = new ZKQueueGroup(zkClient, QueueType.JOB);
+    final Semaphore notifications = new Semaphore(0);
+    instance2.addElementAddedCallback(new Runnable() {
+      @Override
+      public void run() {
+        notifications.release();
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    instance1.startAndWait();
+    instance2.startAndWait();
+
+    // the watch is always triggered once when it is set
+    Assert.assertTrue(notifications.tryAcquire(10, TimeUnit.SECONDS));
+    notifications.drainPermits();
+
+    instance1.add("tenant1", new Element("val1"));
+    Assert.assertTrue(notifications.tryAcquire(10, TimeUnit.SECONDS));
+    instance1.stop();
+    instance2.stop();
+  }
+
+  @Test
+  public void testQueueElementAddedCallbackAcrossInstances() throws Exception {
+    QueueGroup instance1 = new ZKQueueGroup(zkClient, QueueType.JOB);
+    QueueGroup instance2 = new ZKQueueGroup(zkClient, QueueType.JOB);
+    final Semaphore notifications = new Semaphore(0);
+    instance2.addElementAddedCallback("tenant1", new Runnable() {
+      @Override
+      public void run() {
+        notifications.release();
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    instance1.startAndWait();
+    instance2.startAndWait();
+
+    instance1.add("tenant1", new Element("val1"));
+    Assert.assertTrue(notifications.tryAcquire(10, TimeUnit.SECONDS));
+    // adds to other queues don't run the callback
+    instance1.add("tenant2", new Element("val2"));
+    Assert.assertFalse(notifications.tryAcquire(1, TimeUnit.SECONDS));
+    instance1.add("tenant1", new Element("val3"));
+    Assert.assertTrue(notifications.tryAcquire(10, TimeUnit.SECONDS));
+    instance1.stop();
+    instance2.stop();
+  }
+
   private void waitForQueueNames(Set<String> expectedQueueNames, QueueGroup queueGroup) throws InterruptedException {
     for (int i = 0; i < 20; i++) {
       Set<String> queueNames = queueGroup.getQueueNames();
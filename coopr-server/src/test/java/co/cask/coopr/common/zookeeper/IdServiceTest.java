@@ -15,7 +15,10 @@
  */
 package co.cask.coopr.common.zookeeper;
 
+import co.cask.coopr.management.ServerStats;
+import co.cask.coopr.scheduler.task.JobId;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
 import org.apache.twill.internal.zookeeper.InMemoryZKServer;
 import org.apache.twill.zookeeper.ZKClientService;
 import org.junit.AfterClass;
@@ -27,6 +30,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -91,4 +96,48 @@ public class IdServiceTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testIdBlocksAcrossServices() throws Exception {
+    final int numServices = 4;
+    final int blockSize = 7;
+    final int idsPerService = 50;
+    final ServerStats serverStats = new ServerStats();
+    final Set<Long> ids = Collections.newSetFromMap(Maps.<Long, Boolean>newConcurrentMap());
+    final CyclicBarrier barrier = new CyclicBarrier(numServices);
+    final CountDownLatch latch = new CountDownLatch(numServices);
+
+    ExecutorService executor = Executors.newFixedThreadPool(numServices);
+    for (int i = 0; i < numServices; i++) {
+      final IdService idService = new IdService(zkClient, 3, 10, blockSize, serverStats);
+      idService.startAndWait();
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+            for (int j = 0; j < idsPerService; j++) {
+              JobId jobId = idService.getNewJobId("cluster");
+              ids.add(jobId.getJobNum());
+            }
+          } catch (Exception e) {
+            Throwables.propagate(e);
+          } finally {
+            latch.countDown();
+          }
+        }
+      });
+    }
+
+    latch.await();
+    executor.shutdown();
+
+    Assert.assertEquals(numServices * idsPerService, ids.size());
+    // every id keeps the start number modulo the increment so datacenters never overlap
+    for (long id : ids) {
+      Assert.assertEquals(3, id % 10);
+    }
+    // each service needs at least ceil(50 / 7) blocks, conflicts are retried and not counted as refills
+    long refills = serverStats.getIdBlockRefillStats().getJob();
+    Assert.assertEquals(numServices * ((idsPerService + blockSize - 1) / blockSize), refills);
+  }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.zookeeper.lib;
+
+import co.cask.coopr.common.zookeeper.BaseZKTest;
+import com.google.common.base.Objects;
+import org.apache.twill.zookeeper.ZKClientService;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class WatchedZKMapTest extends BaseZKTest {
+
+  @Test(timeout = 10000)
+  public void testBasics() throws Exception {
+    final String path = "/foo/map";
+
+    WatchedZKMap<String> map1 = new WatchedZKMap<String>(zkClient, path, Serializers.stringSerializer());
+    WatchedZKMap<String> map2 = new WatchedZKMap<String>(zkClient, path, Serializers.stringSerializer());
+    Assert.assertEquals(0, map1.size());
+    Assert.assertEquals(0, map2.size());
+
+    Assert.assertNull(map2.remove("foo"));
+
+    // changes are seen right away by the map that made them, and through watches by the other
+    map1.put("key1", "value1");
+    map2.put("key2", "value2");
+    map1.put("key3", "value3");
+    Assert.assertEquals("value1", map1.get("key1"));
+    Assert.assertEquals("value3", map1.get("key3"));
+    Assert.assertEquals("value2", map2.get("key2"));
+    waitForValue(map1, "key2", "value2");
+    waitForValue(map2, "key1", "value1");
+    waitForValue(map2, "key3", "value3");
+    Assert.assertEquals(3, map1.size());
+    Assert.assertEquals(3, map2.size());
+
+    // data changes of existing keys are seen as well
+    Assert.assertEquals("value2", map1.put("key2", "value2_m"));
+    Assert.assertEquals("value2_m", map1.get("key2"));
+    waitForValue(map2, "key2", "value2_m");
+
+    // compare-and-set fails on a value that is not current
+    Assert.assertFalse(map2.replace("key2", "value2", "value2_x"));
+    Assert.assertTrue(map2.replace("key2", "value2_m", "value2_x"));
+    waitForValue(map1, "key2", "value2_x");
+    Assert.assertFalse(map1.remove("key2", "value2_m"));
+    Assert.assertEquals("value2_x", map2.putIfAbsent("key2", "value2_y"));
+
+    Assert.assertEquals("value2_x", map2.remove("key2"));
+    Assert.assertNull(map2.get("key2"));
+    waitForValue(map1, "key2", null);
+    Assert.assertEquals(2, map1.size());
+    Assert.assertEquals(2, map2.size());
+
+    // removing non-existed should be ok
+    Assert.assertNull(map1.remove("key2"));
+
+    // maps that use the synchronized map layout see each other's changes
+    SynchronizedZKMap<String> syncMap = new SynchronizedZKMap<String>(zkClient, path, Serializers.stringSerializer());
+    Assert.assertEquals(2, syncMap.size());
+    syncMap.put("key4", "value4");
+    waitForValue(map1, "key4", "value4");
+    syncMap.put("key4", "value4_m");
+    waitForValue(map1, "key4", "value4_m");
+
+    map2.clear();
+    Assert.assertEquals(0, map2.size());
+    waitForValue(map1, "key1", null);
+    waitForValue(map1, "key4", null);
+    Assert.assertEquals(0, map1.size());
+
+    // checking that we can clear an empty map
+    map1.clear();
+    Assert.assertEquals(0, map1.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testInitializedWithExistingData() throws Exception {
+    WatchedZKMap<String> map1 = new WatchedZKMap<String>(zkClient, "/map", Serializers.stringSerializer());
+    map1.put("key1", "value1");
+    map1.put("key2", "value2");
+
+    WatchedZKMap<String> map2 = new WatchedZKMap<String>(zkClient, "/map", Serializers.stringSerializer());
+    Assert.assertEquals(2, map2.size());
+    Assert.assertEquals("value1", map2.get("key1"));
+    Assert.assertEquals("value2", map2.get("key2"));
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrent() throws Exception {
+    int workersCount = 6;
+    Producer[] producers = new Producer[workersCount];
+    Thread[] producerThreads = new Thread[workersCount];
+    for (int i = 0; i < workersCount; i++) {
+      WatchedZKMap<String> map = new WatchedZKMap<String>(zkClient, "/map", Serializers.stringSerializer());
+      producers[i] = new Producer(map);
+      producerThreads[i] = new Thread(producers[i]);
+    }
+    Consumer[] consumers = new Consumer[workersCount];
+    Thread[] consumerThreads = new Thread[workersCount];
+    for (int i = 0; i < workersCount; i++) {
+      WatchedZKMap<String> map = new WatchedZKMap<String>(zkClient, "/map", Serializers.stringSerializer());
+      consumers[i] = new Consumer(map);
+      consumerThreads[i] = new Thread(consumers[i]);
+    }
+
+    for (int i = 0; i < producerThreads.length; i++) {
+      producerThreads[i].start();
+      consumerThreads[i].start();
+    }
+
+    int totalProduced = 0;
+    int totalConsumed = 0;
+    for (int i = 0; i < producerThreads.length; i++) {
+      producerThreads[i].join();
+      totalProduced += producers[i].produced;
+      consumerThreads[i].join();
+      totalConsumed += consumers[i].consumed;
+    }
+
+    Assert.assertTrue(totalProduced > 0);
+    Assert.assertEquals(totalProduced, totalConsumed);
+  }
+
+  @Test(timeout = 30000)
+  public void testWatchesAfterSessionExpiry() throws Exception {
+    ZKClientService otherClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    otherClient.startAndWait();
+    try {
+      WatchedZKMap<String> map1 = new WatchedZKMap<String>(zkClient, "/map", Serializers.stringSerializer());
+      WatchedZKMap<String> map2 = new WatchedZKMap<String>(otherClient, "/map", Serializers.stringSerializer());
+      map2.put("key1", "value1");
+      waitForValue(map1, "key1", "value1");
+
+      expireSession(zkClient);
+
+      // changes made by the other client are still seen once the session of the first one is re-established
+      map2.put("key1", "value1_m");
+      map2.put("key2", "value2");
+      waitForValue(map1, "key1", "value1_m");
+      waitForValue(map1, "key2", "value2");
+      map2.put("key2", "value2_m");
+      waitForValue(map1, "key2", "value2_m");
+      map2.remove("key1");
+      waitForValue(map1, "key1", null);
+    } finally {
+      otherClient.stopAndWait();
+    }
+  }
+
+  private void expireSession(ZKClientService client) throws Exception {
+    ZooKeeper zooKeeper = client.getZooKeeperSupplier().get();
+    final CountDownLatch connected = new CountDownLatch(1);
+    // closing another connection on the same session expires it
+    ZooKeeper other = new ZooKeeper(zkServer.getConnectionStr(), 1000, new Watcher() {
+      @Override
+      public void process(WatchedEvent event) {
+        if (event.getState() == Event.KeeperState.SyncConnected) {
+          connected.countDown();
+        }
+      }
+    }, zooKeeper.getSessionId(), zooKeeper.getSessionPasswd());
+    connected.await();
+    other.close();
+  }
+
+  private void waitForValue(Map<String, String> map, String key, String expected) throws InterruptedException {
+    while (!Objects.equal(expected, map.get(key))) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+  }
+
+  private static class Producer implements Runnable {
+    private final Map<String, String> dest;
+    private int produced = 0;
+
+    private Producer(Map<String, String> dest) {
+      this.dest = dest;
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < 10; i++) {
+        dest.put(UUID.randomUUID().toString(), "foo");
+        produced++;
+      }
+    }
+  }
+
+  private static class Consumer implements Runnable {
+    private final Map<String, String> src;
+    private int consumed = 0;
+
+    private Consumer(Map<String, String> src) {
+      this.src = src;
+    }
+
+    @Override
+    public void run() {
+      int retriesLeft = 100;
+
+      while (retriesLeft > 0) {
+        Set<String> vals = src.keySet();
+        if (vals.size() == 0) {
+          retriesLeft--;
+          try {
+            TimeUnit.MILLISECONDS.sleep(10);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+          continue;
+        }
+        if (null != src.remove(vals.iterator().next())) {
+          consumed++;
+        }
+      }
+    }
+  }
+}
@@ -19,6 +19,7 @@ import co.cask.coopr.Entities;
 import co.cask.coopr.TestHelper;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterListingPage;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.cluster.NodeProperties;
@@ -965,6 +966,48 @@ public class ClusterHandlerTest extends ServiceTestBase {
     Assert.assertEquals(5, clusterInfos.get(1).getNumNodes());
   }
 
+  @Test
+  public void testGetClusterListingPages() throws Exception {
+    for (Cluster cluster : clusterStoreService.getView(USER1_ACCOUNT).getAllClusters()) {
+      clusterStoreService.getView(USER1_ACCOUNT).deleteCluster(cluster.getId());
+    }
+
+    List<String> clusterIds = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      ClusterCreateRequest clusterCreateRequest = ClusterCreateRequest.builder()
+        .setName("cluster" + i)
+        .setClusterTemplateName(reactorTemplate.getName())
+        .setNumMachines(5)
+        .build();
+      HttpResponse response = doPostExternalAPI("/clusters", gson.toJson(clusterCreateRequest), USER1_HEADERS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      clusterIds.add(0, getIdFromResponse(response));
+    }
+
+    HttpResponse response = doGetExternalAPI("/clusters?limit=2", USER1_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    InputStreamReader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    ClusterListingPage page = gson.fromJson(reader, ClusterListingPage.class);
+    Assert.assertEquals(2, page.getClusters().size());
+    Assert.assertEquals(clusterIds.get(0), page.getClusters().get(0).getId());
+    Assert.assertEquals(clusterIds.get(1), page.getClusters().get(1).getId());
+    Assert.assertEquals(ClusterAction.SOLVE_LAYOUT, page.getClusters().get(0).getProgress().getAction());
+    Assert.assertNotNull(page.getNext());
+
+    response = doGetExternalAPI("/clusters?limit=2&cursor=" + page.getNext(), USER1_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    page = gson.fromJson(reader, ClusterListingPage.class);
+    Assert.assertEquals(1, page.getClusters().size());
+    Assert.assertEquals(clusterIds.get(2), page.getClusters().get(0).getId());
+    Assert.assertNull(page.getNext());
+
+    assertResponseStatus(doGetExternalAPI("/clusters?limit=0", USER1_HEADERS), HttpResponseStatus.BAD_REQUEST);
+    assertResponseStatus(doGetExternalAPI("/clusters?limit=abc", USER1_HEADERS), HttpResponseStatus.BAD_REQUEST);
+    assertResponseStatus(doGetExternalAPI("/clusters?limit=2&cursor=abc", USER1_HEADERS),
+                         HttpResponseStatus.BAD_REQUEST);
+  }
+
   @Test
   public void testGetNonexistantClusterReturns404() throws Exception {
     assertResponseStatus(doGetExternalAPI("/clusters/567", USER1_HEADERS), HttpResponseStatus.NOT_FOUND);
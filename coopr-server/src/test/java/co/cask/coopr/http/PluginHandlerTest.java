@@ -27,10 +27,14 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharStreams;
 import com.google.gson.reflect.TypeToken;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHeader;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.Assert;
 import org.junit.Before;
@@ -232,6 +236,7 @@ public class PluginHandlerTest extends ServiceTestBase {
     ResourceMeta responseMeta = gson.fromJson(reader, ResourceMeta.class);
     Assert.assertEquals(name, responseMeta.getName());
     Assert.assertEquals(ResourceStatus.INACTIVE, responseMeta.getStatus());
+    Assert.assertEquals(getDigest(contents), responseMeta.getDigest());
   }
 
   private void testPutAndGet(PluginType type, String pluginName, String resourceType) throws Exception {
@@ -258,7 +263,22 @@ public class PluginHandlerTest extends ServiceTestBase {
     );
     response = doGetInternalAPI(path);
     assertResponseStatus(response, HttpResponseStatus.OK);
+    String etag = "\"" + getDigest(contents) + "\"";
+    Assert.assertEquals(etag, response.getFirstHeader(HttpHeaders.Names.ETAG).getValue());
     Assert.assertEquals(contents, bodyToString(response));
+
+    // contents should not be sent again if the caller already has them
+    Header[] conditionalHeaders = { new BasicHeader(HttpHeaders.Names.IF_NONE_MATCH, etag) };
+    response = doGetInternalAPI(path, conditionalHeaders);
+    assertResponseStatus(response, HttpResponseStatus.NOT_MODIFIED);
+    conditionalHeaders = new Header[] { new BasicHeader(HttpHeaders.Names.IF_NONE_MATCH, "\"other\"") };
+    response = doGetInternalAPI(path, conditionalHeaders);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertEquals(contents, bodyToString(response));
+  }
+
+  private String getDigest(String contents) {
+    return Hashing.sha1().hashBytes(contents.getBytes(Charsets.UTF_8)).toString();
   }
 
   private void testVersions(PluginType type, String pluginName, String resourceType) throws Exception{
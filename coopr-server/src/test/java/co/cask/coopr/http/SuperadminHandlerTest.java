@@ -21,6 +21,7 @@ import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.http.request.TenantWriteRequest;
 import co.cask.coopr.provisioner.Provisioner;
 import co.cask.coopr.provisioner.TenantProvisionerService;
+import co.cask.coopr.provisioner.placement.PlacementPolicyType;
 import co.cask.coopr.provisioner.plugin.PluginType;
 import co.cask.coopr.provisioner.plugin.ResourceMeta;
 import co.cask.coopr.provisioner.plugin.ResourceStatus;
@@ -117,6 +118,21 @@ public class SuperadminHandlerTest extends ServiceTestBase {
     Assert.assertEquals(requestedTenant.getMaxNodes(), actualTenant.getMaxNodes());
   }
 
+  @Test
+  public void testCreateTenantWithPlacementPolicy() throws Exception {
+    TenantSpecification requestedTenant =
+      new TenantSpecification("companyX", "", 10, 100, 1000, PlacementPolicyType.USAGE_WEIGHTED);
+    HttpResponse response = doPostExternalAPI("/tenants", gson.toJson(new TenantWriteRequest(requestedTenant)),
+                                              SUPERADMIN_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertEquals(requestedTenant, tenantStore.getTenantByName("companyX").getSpecification());
+
+    // unknown policies are rejected
+    String body = "{ \"tenant\": { \"name\": \"companyY\", \"workers\": 10, \"placementPolicy\": \"random\" } }";
+    assertResponseStatus(doPostExternalAPI("/tenants", body, SUPERADMIN_HEADERS), HttpResponseStatus.BAD_REQUEST);
+    Assert.assertNull(tenantStore.getTenantByName("companyY"));
+  }
+
   @Test
   public void testDuplicateTenantNameNotAllowed() throws Exception {
     String name = "companyX";
@@ -38,6 +38,9 @@ import co.cask.coopr.spec.template.ClusterTemplate;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.apache.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -48,6 +51,12 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -86,6 +95,115 @@ public class TaskHandlerTest extends ServiceTestBase {
     Assert.assertEquals(clusterTask.getTaskId(), responseJson.get("taskId").getAsString());
   }
 
+  @Test
+  public void testTakeTasks() throws Exception {
+    Set<String> expectedTaskIds = Sets.newHashSet();
+    for (int i = 1; i <= 3; i++) {
+      TaskId taskId = TaskId.fromString("1-1-" + i);
+      addTask(taskId);
+      expectedTaskIds.add(taskId.getId());
+    }
+
+    TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, TENANT_ID, 2, null);
+    HttpResponse response = doPostInternalAPI("/tasks/take/batch", gson.toJson(takeRequest));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    JsonArray tasks = getResponseJsonArray(response);
+    Assert.assertEquals(2, tasks.size());
+
+    // only one task left
+    response = doPostInternalAPI("/tasks/take/batch", gson.toJson(takeRequest));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    tasks.addAll(getResponseJsonArray(response));
+    Assert.assertEquals(3, tasks.size());
+    Set<String> taskIds = Sets.newHashSet();
+    for (JsonElement task : tasks) {
+      taskIds.add(task.getAsJsonObject().get("taskId").getAsString());
+    }
+    Assert.assertEquals(expectedTaskIds, taskIds);
+
+    response = doPostInternalAPI("/tasks/take/batch", gson.toJson(takeRequest));
+    assertResponseStatus(response, HttpResponseStatus.NO_CONTENT);
+  }
+
+  @Test(timeout = 20000)
+  public void testTakeTaskWaitsForTask() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<HttpResponse> responseFuture = executor.submit(new Callable<HttpResponse>() {
+        @Override
+        public HttpResponse call() throws Exception {
+          TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, TENANT_ID, null, 10);
+          return doPostInternalAPI("/tasks/take", gson.toJson(takeRequest));
+        }
+      });
+      // the take should be waiting since there are no tasks
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertFalse(responseFuture.isDone());
+
+      TaskId taskId = TaskId.fromString("1-1-1");
+      addTask(taskId);
+      HttpResponse response = responseFuture.get(5, TimeUnit.SECONDS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertEquals(taskId.getId(), getResponseJson(response).get("taskId").getAsString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testTakeTaskNotWokenByOtherTenants() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<HttpResponse> responseFuture = executor.submit(new Callable<HttpResponse>() {
+        @Override
+        public HttpResponse call() throws Exception {
+          TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, TENANT_ID, null, 10);
+          return doPostInternalAPI("/tasks/take", gson.toJson(takeRequest));
+        }
+      });
+      TimeUnit.MILLISECONDS.sleep(500);
+      provisionerQueues.add("other-tenant", new Element("task1", "{}"));
+      // the take should keep waiting since the task is for another tenant
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertFalse(responseFuture.isDone());
+
+      TaskId taskId = TaskId.fromString("1-1-1");
+      addTask(taskId);
+      HttpResponse response = responseFuture.get(5, TimeUnit.SECONDS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertEquals(taskId.getId(), getResponseJson(response).get("taskId").getAsString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testTakeTasksReturnsTasksTakenBeforeFailure() throws Exception {
+    TaskId taskId = TaskId.fromString("1-1-1");
+    addTask(taskId);
+    // a task that can't be read fails the take
+    addTask(TaskId.fromString("1-1-2"), "not a task");
+
+    TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, TENANT_ID, 2, null);
+    HttpResponse response = doPostInternalAPI("/tasks/take/batch", gson.toJson(takeRequest));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    JsonArray tasks = getResponseJsonArray(response);
+    Assert.assertEquals(1, tasks.size());
+    Assert.assertEquals(taskId.getId(), tasks.get(0).getAsJsonObject().get("taskId").getAsString());
+    // the failed task is given back to the queue
+    Assert.assertEquals(1, provisionerQueues.getMetrics(TENANT_ID).getQueued());
+    Assert.assertEquals(1, provisionerQueues.getMetrics(TENANT_ID).getInProgress());
+  }
+
+  @Test
+  public void testTakeTaskWaitTimesOut() throws Exception {
+    TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, TENANT_ID, null, 1);
+    long start = System.currentTimeMillis();
+    HttpResponse response = doPostInternalAPI("/tasks/take", gson.toJson(takeRequest));
+    assertResponseStatus(response, HttpResponseStatus.NO_CONTENT);
+    Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+  }
+
   @Test
   public void testTakeTaskForDeadProvisionerErrors() throws Exception {
     TakeTaskRequest takeRequest = new TakeTaskRequest("workerX", "nonexistant-provider", "tenantY");
@@ -204,6 +322,35 @@ public class TaskHandlerTest extends ServiceTestBase {
     Assert.assertNull(element);
   }
 
+  private void addTask(TaskId taskId) throws Exception {
+    ClusterTask clusterTask = new ClusterTask(
+      ProvisionerAction.CREATE, taskId, "node_id", "service", ClusterAction.CLUSTER_CREATE, "test", USER1_ACCOUNT);
+    TaskConfig taskConfig = new TaskConfig(
+      NodeProperties.builder().build(),
+      Entities.ProviderExample.JOYENT,
+      ImmutableMap.<String, NodeProperties>of(),
+      new TaskServiceAction("svcA", new ServiceAction("shell", ImmutableMap.<String, String>of())),
+      new JsonObject(),
+      new JsonObject()
+    );
+    SchedulableTask schedulableTask = new SchedulableTask(clusterTask, taskConfig);
+    addTask(taskId, gson.toJson(schedulableTask));
+  }
+
+  private void addTask(TaskId taskId, String taskJson) throws Exception {
+    ClusterTask clusterTask = new ClusterTask(
+      ProvisionerAction.CREATE, taskId, "node_id", "service", ClusterAction.CLUSTER_CREATE, "test", USER1_ACCOUNT);
+    clusterStore.writeClusterTask(clusterTask);
+    ClusterJob clusterJob = new ClusterJob(JobId.fromString(clusterTask.getJobId()), ClusterAction.CLUSTER_CREATE);
+    clusterStore.writeClusterJob(clusterJob);
+    provisionerQueues.add(USER1_ACCOUNT.getTenantId(), new Element(clusterTask.getTaskId(), taskJson));
+  }
+
+  private JsonArray getResponseJsonArray(HttpResponse response) throws IOException {
+    Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    return gson.fromJson(reader, JsonArray.class);
+  }
+
   private JsonObject getResponseJson(HttpResponse response) throws IOException {
     Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
     return gson.fromJson(reader, JsonObject.class);
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.spec.template.ClusterDefaults;
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.Compatibilities;
+import co.cask.coopr.spec.template.Constraints;
+import co.cask.coopr.spec.template.LayoutConstraint;
+import co.cask.coopr.spec.template.ServiceConstraint;
+import co.cask.coopr.spec.template.SizeConstraint;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ */
+public class BranchAndBoundLayoutFinderTest extends BaseSolverTest {
+  private static final List<NodeLayout> REACTOR_LAYOUTS = ImmutableList.of(
+    new NodeLayout("large-mem", "centos6", ImmutableSet.of("namenode", "resourcemanager", "hbasemaster")),
+    new NodeLayout("large-cpu", "centos6", ImmutableSet.of("datanode", "nodemanager", "regionserver")),
+    new NodeLayout("medium", "centos6", ImmutableSet.of("reactor", "zookeeper")),
+    new NodeLayout("medium", "centos6", ImmutableSet.of("zookeeper")),
+    new NodeLayout("large", "centos6", ImmutableSet.of("reactor"))
+  );
+  private static final Set<String> REACTOR_SERVICES = ImmutableSet.of(
+    "namenode", "resourcemanager", "hbasemaster", "datanode", "nodemanager", "regionserver", "reactor", "zookeeper");
+
+  @Test
+  public void testGetClusterNodes() {
+    Assert.assertArrayEquals(new int[]{1, 3, 1, 0, 0}, find(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, 5));
+    Assert.assertArrayEquals(new int[]{1, 8, 1, 0, 0}, find(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, 10));
+    Assert.assertArrayEquals(new int[]{1, 50, 3, 0, 0}, find(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, 54));
+  }
+
+  @Test
+  public void testSameLayoutsAsIterativeFinder() {
+    for (int numMachines = 1; numMachines <= 60; numMachines++) {
+      assertSameLayout(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, numMachines);
+    }
+  }
+
+  @Test
+  public void testSameLayoutsAsIterativeFinderForRandomTemplates() {
+    Random random = new Random(0);
+    List<String> services = ImmutableList.of("svc1", "svc2", "svc3", "svc4");
+    for (int run = 0; run < 300; run++) {
+      Map<String, ServiceConstraint> serviceConstraints = Maps.newHashMap();
+      for (String service : services) {
+        if (random.nextInt(4) > 0) {
+          int min = random.nextInt(3);
+          Integer max = random.nextInt(3) == 0 ? null : min + random.nextInt(6);
+          serviceConstraints.put(service, new ServiceConstraint(null, null, min, max));
+        }
+      }
+      ClusterTemplate template = createTemplate(ImmutableSet.copyOf(services), serviceConstraints);
+
+      List<NodeLayout> nodeLayouts = Lists.newArrayList();
+      int numLayouts = 1 + random.nextInt(6);
+      for (int i = 0; i < numLayouts; i++) {
+        Set<String> layoutServices = Sets.newHashSet();
+        for (String service : services) {
+          if (random.nextBoolean()) {
+            layoutServices.add(service);
+          }
+        }
+        nodeLayouts.add(new NodeLayout("hw" + i, "centos6", layoutServices));
+      }
+
+      assertSameLayout(nodeLayouts, template, ImmutableSet.copyOf(services), 1 + random.nextInt(15));
+    }
+  }
+
+  @Test
+  public void testNoSolutionReturnsNull() {
+    Set<String> services = ImmutableSet.of("svc1", "svc2", "svc3");
+    ClusterTemplate template = createTemplate(
+      services, ImmutableMap.of("svc1", new ServiceConstraint(null, null, 1, 1)));
+    List<NodeLayout> nodePreferences = ImmutableList.of(
+      new NodeLayout("small", "centos6", ImmutableSet.of("svc1", "svc2", "svc3"))
+    );
+    BranchAndBoundLayoutFinder finder = new BranchAndBoundLayoutFinder(nodePreferences, template, services, 2, 0, 0);
+    Assert.assertNull(finder.findValidNodeCounts());
+    Assert.assertFalse(finder.isLimitReached());
+  }
+
+  @Test
+  public void testGivesUpAfterMaxIterations() {
+    BranchAndBoundLayoutFinder finder =
+      new BranchAndBoundLayoutFinder(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, 54, 1, 0);
+    Assert.assertNull(finder.findValidNodeCounts());
+    Assert.assertTrue(finder.isLimitReached());
+
+    finder = new BranchAndBoundLayoutFinder(REACTOR_LAYOUTS, reactorTemplate, REACTOR_SERVICES, 54, 1000, 0);
+    Assert.assertArrayEquals(new int[]{1, 50, 3, 0, 0}, finder.findValidNodeCounts());
+    Assert.assertFalse(finder.isLimitReached());
+  }
+
+  // the branch and bound finder should return the most preferred valid layout, which is the same layout the
+  // iterative finder returns when it finds one. The iterative finder starts from a greedy layout and gives up if that
+  // layout can not hold all the machines, so it can miss valid layouts the branch and bound finder finds.
+  private void assertSameLayout(List<NodeLayout> nodeLayouts, ClusterTemplate template, Set<String> services,
+                                int numMachines) {
+    ClusterLayoutFinder iterativeFinder = new ClusterLayoutFinder(nodeLayouts, template, services, numMachines);
+    int[] iterative = iterativeFinder.findValidNodeCounts();
+    int[] expected = null;
+    SlottedCombinationIterator iter = new SlottedCombinationIterator(nodeLayouts.size(), numMachines);
+    while (expected == null && iter.hasNext()) {
+      int[] candidate = iter.next();
+      if (iterativeFinder.isValidCluster(candidate)) {
+        expected = candidate;
+      }
+    }
+    int[] actual = find(nodeLayouts, template, services, numMachines);
+    String msg = "expected " + Arrays.toString(expected) + " but got " + Arrays.toString(actual) + " for " +
+      nodeLayouts + " and " + numMachines + " machines";
+    Assert.assertTrue(msg, Arrays.equals(expected, actual));
+    if (iterative != null) {
+      Assert.assertTrue(msg, Arrays.equals(iterative, actual));
+    }
+  }
+
+  private int[] find(List<NodeLayout> nodeLayouts, ClusterTemplate template, Set<String> services, int numMachines) {
+    return new BranchAndBoundLayoutFinder(nodeLayouts, template, services, numMachines, 0, 0).findValidNodeCounts();
+  }
+
+  private ClusterTemplate createTemplate(Set<String> services, Map<String, ServiceConstraint> serviceConstraints) {
+    return ClusterTemplate.builder()
+      .setName("simple")
+      .setDescription("template with only service constraints")
+      .setClusterDefaults(ClusterDefaults.builder().setServices(services).setProvider("joyent").build())
+      .setCompatibilities(Compatibilities.builder().setServices(services).build())
+      .setConstraints(new Constraints(
+        serviceConstraints,
+        new LayoutConstraint(ImmutableSet.<Set<String>>of(), ImmutableSet.<Set<String>>of()),
+        SizeConstraint.EMPTY))
+      .build();
+  }
+}
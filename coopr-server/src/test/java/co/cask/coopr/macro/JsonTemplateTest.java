@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.macro;
+
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+
+/**
+ * tests the compiled json template.
+ */
+public class JsonTemplateTest {
+
+  private static Set<Node> clusterNodes = ExpressionTest.clusterNodes;
+  private static Cluster cluster = ExpressionTest.cluster;
+
+  @Test
+  public void testSameAsExpander() throws SyntaxException, IncompleteClusterException {
+    JsonObject input = new Gson().fromJson(ExpanderTest.jsonIn, JsonObject.class);
+    input.addProperty("invalid-cluster-macro", "%host.service.svc4%");
+    input.addProperty("escaped", "100%% of %host.service.svc1[0]% and a trailing %");
+    JsonTemplate.ClusterExpansion expansion = JsonTemplate.compile(input).forCluster(cluster, clusterNodes);
+    for (Node node : clusterNodes) {
+      JsonElement expected = Expander.expand(input, null, cluster, clusterNodes, node);
+      Assert.assertEquals(expected, expansion.expand(node));
+    }
+  }
+
+  @Test
+  public void testNoMacrosReturnsOriginal() throws SyntaxException, IncompleteClusterException {
+    JsonObject input = new JsonObject();
+    input.addProperty("name", "no macros here, 100%% sure");
+    input.addProperty("size", 5);
+    JsonTemplate.ClusterExpansion expansion = JsonTemplate.compile(input).forCluster(cluster, clusterNodes);
+    Assert.assertSame(input, expansion.expand(ExpressionTest.node1));
+  }
+
+  @Test
+  public void testExpansionCreatesNewJson() throws SyntaxException, IncompleteClusterException {
+    JsonObject input = new JsonObject();
+    input.addProperty("host", "%host.service.svc1%");
+    JsonObject unchanged = new JsonObject();
+    unchanged.addProperty("key", "value");
+    input.add("unchanged", unchanged);
+    JsonTemplate.ClusterExpansion expansion = JsonTemplate.compile(input).forCluster(cluster, clusterNodes);
+    JsonObject output = expansion.expand(ExpressionTest.node2).getAsJsonObject();
+    Assert.assertEquals("rab,oof,eno", output.get("host").getAsString());
+    Assert.assertEquals("%host.service.svc1%", input.get("host").getAsString());
+    // subtrees without macros are not copied
+    Assert.assertSame(unchanged, output.get("unchanged"));
+  }
+
+  @Test(expected = SyntaxException.class)
+  public void testCompileValidates() throws SyntaxException {
+    JsonObject input = new JsonObject();
+    input.addProperty("bad", "%host.nothing%");
+    JsonTemplate.compile(input);
+  }
+}
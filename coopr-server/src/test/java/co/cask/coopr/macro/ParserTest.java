@@ -63,7 +63,7 @@ public class ParserTest {
     assertEquals(new Expression(new IPServiceEvaluator("nn", "access", null), null, "\n"),
                  new Parser("join(ip.access.service.nn,\"\n\")").parse());
 
-    assertEquals(new Expression(new HostServiceEvaluator("nn", null), "$:2181", ","),
+    assertEquals(new Expression(new HostServiceEvaluator("abc", null), "$:2181", ","),
                  new Parser("join(map(host.service.abc,'$:2181'),',')").parse());
 
     assertEquals(new Expression(new HostServiceEvaluator("abc", 1), null, null),
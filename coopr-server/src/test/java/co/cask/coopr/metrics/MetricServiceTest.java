@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.metrics;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import co.cask.coopr.store.metrics.NodeUsageStore;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link MetricService}.
+ */
+public class MetricServiceTest extends BaseTest {
+  private static final long BASE = 1000 * DateUtils.MILLIS_PER_DAY;
+  private static final Account[] ACCOUNTS = {
+    new Account("user1", "tenant1"), new Account("user2", "tenant1"), new Account("user3", "tenant2")
+  };
+  private static final String[] TEMPLATES = { "template1", "template2" };
+
+  @Test
+  public void testRollupsMatchTasks() throws Exception {
+    NodeUsageStore nodeUsageStore = injector.getInstance(NodeUsageStore.class);
+    Random random = new Random(0);
+    List<ClusterTask> tasks = Lists.newArrayList();
+    for (int cluster = 1; cluster <= 12; cluster++) {
+      Account account = ACCOUNTS[random.nextInt(ACCOUNTS.length)];
+      String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+      for (int node = 1; node <= 5; node++) {
+        // whole seconds, so that usage in seconds is not truncated
+        long createTime = BASE + 1000L * random.nextInt(10 * 24 * 3600);
+        tasks.add(createTask(ProvisionerAction.CREATE, cluster, 1, node, account, template, createTime));
+        if (random.nextInt(5) > 0) {
+          long deleteTime = createTime + 1000L * (1 + random.nextInt(3 * 24 * 3600));
+          tasks.add(createTask(ProvisionerAction.DELETE, cluster, 2, node, account, template, deleteTime));
+        }
+      }
+    }
+    Collections.sort(tasks, new Comparator<ClusterTask>() {
+      @Override
+      public int compare(ClusterTask task1, ClusterTask task2) {
+        return Longs.compare(task1.getStatusTime(), task2.getStatusTime());
+      }
+    });
+    for (ClusterTask task : tasks) {
+      // status time is only written when a task is updated
+      clusterStore.writeClusterTask(task);
+      clusterStore.writeClusterTask(task);
+      if (task.getTaskName() == ProvisionerAction.CREATE) {
+        nodeUsageStore.nodeCreated(task);
+      } else {
+        nodeUsageStore.nodeDeleted(task);
+      }
+    }
+
+    MetricService taskMetrics = new MetricService(clusterStore);
+    MetricService rollupMetrics = new MetricService(clusterStore, nodeUsageStore, true);
+    long baseSeconds = BASE / 1000;
+    Long[][] ranges = {
+      { null, null },
+      { baseSeconds + 2 * 24 * 3600 + 1234, null },
+      { null, baseSeconds + 7 * 24 * 3600 + 4321 },
+      { baseSeconds + 24 * 3600 + 17, baseSeconds + 9 * 24 * 3600 + 1800 },
+      { baseSeconds + 3 * 24 * 3600, baseSeconds + 4 * 24 * 3600 }
+    };
+    String[][] filters = {
+      { null, null, null },
+      { "tenant1", null, null },
+      { "tenant1", "user2", null },
+      { null, null, "template2" },
+      { "tenant3", null, null }
+    };
+    for (MetricService.Periodicity periodicity : MetricService.Periodicity.values()) {
+      for (Long[] range : ranges) {
+        for (String[] filter : filters) {
+          ClusterTaskFilter taskFilter = new ClusterTaskFilter(filter[0], filter[1], null, filter[2],
+                                                               range[0], range[1], periodicity, null);
+          Assert.assertEquals(taskFilter.toString(), taskMetrics.getNodesUsage(taskFilter),
+                              rollupMetrics.getNodesUsage(taskFilter));
+        }
+      }
+    }
+  }
+
+  private static ClusterTask createTask(ProvisionerAction action, int cluster, int job, int node, Account account,
+                                        String template, long statusTime) {
+    ClusterTask task = new ClusterTask(action, TaskId.fromString(cluster + "-" + job + "-" + node), "node" + node,
+                                       "service", ClusterAction.CLUSTER_CREATE, template, account);
+    task.setStatus(ClusterTask.Status.COMPLETE);
+    task.setStatusTime(statusTime);
+    return task;
+  }
+}
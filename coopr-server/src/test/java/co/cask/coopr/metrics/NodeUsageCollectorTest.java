@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.metrics;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.spec.ProvisionerAction;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link NodeUsageCollector}.
+ */
+public class NodeUsageCollectorTest {
+  private static final Account ACCOUNT = new Account("user1", "tenant1");
+  private static final long NOW = 1000 * DateUtils.MILLIS_PER_HOUR;
+
+  @Test
+  public void testNoTasks() {
+    NodeUsageCollector collector = new NodeUsageCollector(5000L, 9000L, DateUtils.MILLIS_PER_HOUR, TimeUnit.SECONDS);
+    Assert.assertEquals(new TimeSeries(5, 9, Lists.newArrayList(new Interval(5))), collector.getTimeSeries(NOW));
+  }
+
+  @Test
+  public void testSingleInterval() {
+    NodeUsageCollector collector = new NodeUsageCollector(null, null, null, TimeUnit.SECONDS);
+    collector.visit(createTask(ProvisionerAction.CREATE, "1", "node1", 2000));
+    collector.visit(createTask(ProvisionerAction.CREATE, "1", "node2", 3000));
+    collector.visit(createTask(ProvisionerAction.DELETE, "1", "node1", 7000));
+    collector.visit(createTask(ProvisionerAction.DELETE, "1", "node1", 8000));
+    collector.visit(createTask(ProvisionerAction.DELETE, "2", "node2", 10000));
+
+    // node2 of cluster 1 is never deleted, so it is alive until the last delete
+    Interval expected = new Interval(2);
+    expected.increaseValue(5 + 7);
+    Assert.assertEquals(new TimeSeries(2, 10, Lists.newArrayList(expected)), collector.getTimeSeries(NOW));
+  }
+
+  @Test
+  public void testIntervalsWithoutUsage() {
+    long hour = DateUtils.MILLIS_PER_HOUR;
+    NodeUsageCollector collector = new NodeUsageCollector(0L, 4 * hour, hour, TimeUnit.HOURS);
+    collector.visit(createTask(ProvisionerAction.CREATE, "1", "node1", hour));
+    collector.visit(createTask(ProvisionerAction.DELETE, "1", "node1", 2 * hour));
+
+    TimeSeries series = collector.getTimeSeries(NOW);
+    Assert.assertEquals(4, series.getData().size());
+    Assert.assertEquals(0, series.getData().get(0).getValue());
+    Assert.assertEquals(1, series.getData().get(1).getValue());
+    Assert.assertEquals(0, series.getData().get(3).getValue());
+  }
+
+  @Test
+  public void testSameAsInMemoryUsage() {
+    Random random = new Random(0);
+    for (int i = 0; i < 200; i++) {
+      List<ClusterTask> tasks = createRandomTasks(random);
+      Long start = random.nextBoolean() ? null : (long) random.nextInt(300) * 60;
+      Long end = random.nextBoolean() ? null : (long) (300 + random.nextInt(300)) * 60;
+      MetricService.Periodicity periodicity = random.nextBoolean() ? null : MetricService.Periodicity.hour;
+      TimeUnit timeUnit = random.nextBoolean() ? TimeUnit.SECONDS : TimeUnit.MINUTES;
+
+      Long period = periodicity == null ? null : DateUtils.MILLIS_PER_HOUR;
+      NodeUsageCollector collector = new NodeUsageCollector(start == null ? null : TimeUnit.SECONDS.toMillis(start),
+                                                            end == null ? null : TimeUnit.SECONDS.toMillis(end),
+                                                            period, timeUnit);
+      for (ClusterTask task : tasks) {
+        collector.visit(task);
+      }
+      Assert.assertEquals(getInMemoryUsage(tasks, start, end, periodicity, timeUnit), collector.getTimeSeries(NOW));
+    }
+  }
+
+  private List<ClusterTask> createRandomTasks(Random random) {
+    List<ClusterTask> tasks = Lists.newArrayList();
+    int numNodes = random.nextInt(20);
+    for (int i = 0; i < numNodes; i++) {
+      String clusterId = String.valueOf(random.nextInt(3));
+      String nodeId = "node" + i;
+      long createTime = random.nextInt(36000) * 1000L;
+      tasks.add(createTask(ProvisionerAction.CREATE, clusterId, nodeId, createTime));
+      if (random.nextInt(4) > 0) {
+        tasks.add(createTask(ProvisionerAction.DELETE, clusterId, nodeId, createTime + 1 + random.nextInt(36000000)));
+      }
+    }
+    // the store returns tasks in order of status time
+    Collections.sort(tasks, new Comparator<ClusterTask>() {
+      @Override
+      public int compare(ClusterTask task1, ClusterTask task2) {
+        return Longs.compare(task1.getStatusTime(), task2.getStatusTime());
+      }
+    });
+    return tasks;
+  }
+
+  private ClusterTask createTask(ProvisionerAction action, String clusterId, String nodeId, long statusTime) {
+    ClusterTask task = new ClusterTask(action, TaskId.fromString(clusterId + "-1-1"), nodeId, "service1",
+                                       ClusterAction.CLUSTER_CREATE, "template1", ACCOUNT);
+    task.setStatusTime(statusTime);
+    return task;
+  }
+
+  // usage computed with all tasks in memory, the way it was before tasks were streamed, except that the first
+  // interval ends at the first period boundary instead of a period after its start
+  private TimeSeries getInMemoryUsage(List<ClusterTask> tasks, Long start, Long end,
+                                      MetricService.Periodicity periodicity, TimeUnit timeUnit) {
+    if (tasks.isEmpty()) {
+      long startTime = start != null ? start : 0;
+      return new TimeSeries(startTime, end != null ? end : TimeUnit.MILLISECONDS.toSeconds(NOW),
+                            Lists.newArrayList(new Interval(startTime)));
+    }
+    List<ClusterTask> createTasks = Lists.newArrayList();
+    List<ClusterTask> deleteTasks = Lists.newArrayList();
+    for (ClusterTask task : tasks) {
+      (task.getTaskName() == ProvisionerAction.CREATE ? createTasks : deleteTasks).add(task);
+    }
+    long startDate = start != null ? TimeUnit.SECONDS.toMillis(start) : createTasks.isEmpty() ?
+      0 : createTasks.get(0).getStatusTime();
+    long endDate = end != null ? TimeUnit.SECONDS.toMillis(end) : deleteTasks.isEmpty() ?
+      NOW : deleteTasks.get(deleteTasks.size() - 1).getStatusTime();
+    long period = periodicity == null ? endDate : DateUtils.MILLIS_PER_HOUR;
+
+    List<Interval> intervals = Lists.newArrayList();
+    long currentStart = startDate;
+    long nextStart = Math.min(startDate - startDate % period + period, endDate);
+    while (nextStart < endDate) {
+      intervals.add(new Interval(TimeUnit.MILLISECONDS.toSeconds(currentStart)));
+      currentStart = nextStart;
+      nextStart = Math.min(currentStart + period, endDate);
+    }
+    intervals.add(new Interval(TimeUnit.MILLISECONDS.toSeconds(currentStart)));
+
+    for (ClusterTask createTask : createTasks) {
+      long deleteTaskTime = NOW;
+      for (ClusterTask deleteTask : deleteTasks) {
+        if (createTask.getClusterId().equals(deleteTask.getClusterId()) &&
+          createTask.getNodeId().equals(deleteTask.getNodeId())) {
+          deleteTaskTime = Math.min(deleteTaskTime, deleteTask.getStatusTime());
+        }
+      }
+      long localStart = Math.max(createTask.getStatusTime(), startDate);
+      long localEnd = Math.min(deleteTaskTime, endDate);
+      int currentIndex = -1;
+      for (Interval interval : intervals) {
+        if (TimeUnit.SECONDS.toMillis(interval.getTime()) > localStart) {
+          break;
+        }
+        currentIndex++;
+      }
+      Interval current = intervals.get(currentIndex);
+      long currentTimeInMillis = TimeUnit.SECONDS.toMillis(current.getTime());
+      while (getIntervalEnd(intervals, currentIndex) < localEnd) {
+        long increaseTime = getIntervalEnd(intervals, currentIndex) - Math.max(localStart, currentTimeInMillis);
+        current.increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
+        current = intervals.get(++currentIndex);
+        currentTimeInMillis = TimeUnit.SECONDS.toMillis(current.getTime());
+      }
+      long increaseTime = localStart < currentTimeInMillis ? localEnd - currentTimeInMillis : localEnd - localStart;
+      if (increaseTime > 0) {
+        current.increaseValue(timeUnit.convert(increaseTime, TimeUnit.MILLISECONDS));
+      }
+    }
+    return new TimeSeries(TimeUnit.MILLISECONDS.toSeconds(startDate), TimeUnit.MILLISECONDS.toSeconds(endDate),
+                          intervals);
+  }
+
+  private long getIntervalEnd(List<Interval> intervals, int index) {
+    return index + 1 < intervals.size() ? TimeUnit.SECONDS.toMillis(intervals.get(index + 1).getTime()) : Long.MAX_VALUE;
+  }
+}
@@ -3,6 +3,9 @@ package co.cask.coopr.provisioner;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.guice.ConfigurationModule;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.AfterClass;
@@ -11,10 +14,14 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  *
  */
 public class HttpProvisionerRequestServiceTest {
+  private static Injector injector;
   private static ProvisionerRequestService provisionerRequestService;
   private static StubProvisioner stubProvisioner;
   private static int port;
@@ -23,10 +30,11 @@ public class HttpProvisionerRequestServiceTest {
   @BeforeClass
   public static void setupTestClass() {
     Configuration conf = Configuration.create();
-    Injector injector = Guice.createInjector(
+    injector = Guice.createInjector(
       new ConfigurationModule(conf)
     );
     provisionerRequestService = injector.getInstance(HttpProvisionerRequestService.class);
+    provisionerRequestService.startAndWait();
     stubProvisioner = new StubProvisioner();
     stubProvisioner.startAndWait();
     port = stubProvisioner.getBindAddress().getPort();
@@ -35,6 +43,7 @@ public class HttpProvisionerRequestServiceTest {
 
   @AfterClass
   public static void cleanupTestClass() {
+    provisionerRequestService.stopAndWait();
     stubProvisioner.stopAndWait();
   }
 
@@ -58,6 +67,26 @@ public class HttpProvisionerRequestServiceTest {
     }
   }
 
+  @Test
+  public void testAsyncRequests() throws Exception {
+    Provisioner provisioner = new Provisioner("id", host, port, 100, null, null);
+    List<ListenableFuture<Boolean>> requests = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      requests.add(provisionerRequestService.putTenantWorkersAsync(provisioner, "tenant" + i % 5));
+      requests.add(provisionerRequestService.putTenantAsync(provisioner, "tenant" + i % 5, new ResourceCollection()));
+      requests.add(provisionerRequestService.putTenantResourcesAsync(provisioner, "tenant" + i % 5,
+                                                                     new ResourceCollection()));
+    }
+    for (Boolean success : Futures.allAsList(requests).get()) {
+      Assert.assertTrue(success);
+    }
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(10, stubProvisioner.getPutCount("tenant" + i));
+      Assert.assertEquals(10, stubProvisioner.getPutResourcesCount("tenant" + i));
+      Assert.assertEquals(10, stubProvisioner.getPutWorkersCount("tenant" + i));
+    }
+  }
+
   @Test
   public void testDeleteTenant() {
     Provisioner provisioner = new Provisioner("id", host, port, 100, null, null);
@@ -68,4 +97,27 @@ public class HttpProvisionerRequestServiceTest {
       Assert.assertEquals(2, stubProvisioner.getDeleteCount("tenant" + i));
     }
   }
+
+  @Test
+  public void testStopFinishesRequestsInProgress() throws Exception {
+    Provisioner provisioner = new Provisioner("id", host, port, 100, null, null);
+    ProvisionerRequestService requestService = injector.getInstance(HttpProvisionerRequestService.class);
+    requestService.startAndWait();
+    List<ListenableFuture<Boolean>> requests = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      requests.add(requestService.putTenantWorkersAsync(provisioner, "tenant" + i % 5));
+    }
+    requestService.stopAndWait();
+
+    for (ListenableFuture<Boolean> request : requests) {
+      Assert.assertTrue(request.isDone());
+      Assert.assertTrue(request.get());
+    }
+    try {
+      requestService.putTenantWorkersAsync(provisioner, "tenant0");
+      Assert.fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
 }
@@ -2,6 +2,9 @@ package co.cask.coopr.provisioner;
 
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Set;
 
@@ -9,8 +12,19 @@ import java.util.Set;
  * Mock service for sending requests to provisioners. Used for testing since we don't actually want to perform
  * http requests in tests.
  */
-public class MockProvisionerRequestService implements ProvisionerRequestService {
+public class MockProvisionerRequestService extends AbstractIdleService implements ProvisionerRequestService {
   private Set<String> deadProvisioners = Sets.newHashSet();
+  private int numResourcePuts = 0;
+
+  @Override
+  protected void startUp() throws Exception {
+    // no-op
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    // no-op
+  }
 
   @Override
   public boolean deleteTenant(Provisioner provisioner, String tenantId) {
@@ -19,6 +33,7 @@ public class MockProvisionerRequestService implements ProvisionerRequestService
 
   @Override
   public boolean putTenant(Provisioner provisioner, String tenantId, ResourceCollection resourceCollection) {
+    numResourcePuts++;
     return !deadProvisioners.contains(provisioner.getId());
   }
 
@@ -29,6 +44,7 @@ public class MockProvisionerRequestService implements ProvisionerRequestService
 
   @Override
   public boolean putTenantResources(Provisioner provisioner, String tenantId, ResourceCollection resourceCollection) {
+    numResourcePuts++;
     return !deadProvisioners.contains(provisioner.getId());
   }
 
@@ -40,7 +56,29 @@ public class MockProvisionerRequestService implements ProvisionerRequestService
     deadProvisioners.remove(provisionerId);
   }
 
+  @Override
+  public ListenableFuture<Boolean> putTenantAsync(Provisioner provisioner, String tenantId,
+                                                  ResourceCollection resourceCollection) {
+    return Futures.immediateFuture(putTenant(provisioner, tenantId, resourceCollection));
+  }
+
+  @Override
+  public ListenableFuture<Boolean> putTenantWorkersAsync(Provisioner provisioner, String tenantId) {
+    return Futures.immediateFuture(putTenantWorkers(provisioner, tenantId));
+  }
+
+  @Override
+  public ListenableFuture<Boolean> putTenantResourcesAsync(Provisioner provisioner, String tenantId,
+                                                           ResourceCollection resourceCollection) {
+    return Futures.immediateFuture(putTenantResources(provisioner, tenantId, resourceCollection));
+  }
+
+  public int getNumResourcePuts() {
+    return numResourcePuts;
+  }
+
   public void reset() {
     deadProvisioners.clear();
+    numResourcePuts = 0;
   }
 }
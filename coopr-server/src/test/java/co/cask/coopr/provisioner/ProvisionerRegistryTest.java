@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner;
+
+import co.cask.coopr.BaseTest;
+import com.google.common.collect.ImmutableMap;
+import org.apache.twill.zookeeper.ZKClient;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ProvisionerRegistryTest extends BaseTest {
+  private static ProvisionerRegistry registry;
+  private static ProvisionerRegistry otherRegistry;
+
+  @BeforeClass
+  public static void setupTestClass() {
+    registry = injector.getInstance(ProvisionerRegistry.class);
+    // stands in for the registry of another server
+    otherRegistry = new ProvisionerRegistry(provisionerStore, injector.getInstance(ZKClient.class));
+  }
+
+  @Test
+  public void testCapacity() throws Exception {
+    Assert.assertEquals(0, registry.getFreeCapacity());
+    provisionerStore.writeProvisioner(
+      new Provisioner("p1", "host1", 12345, 100, null, ImmutableMap.<String, Integer>of("tenant1", 10)));
+    provisionerStore.writeProvisioner(new Provisioner("p2", "host2", 12345, 50, null, null));
+    // still serving the view from before the write
+    Assert.assertEquals(0, registry.getFreeCapacity());
+
+    registry.provisionersChanged();
+    Assert.assertEquals(140, registry.getFreeCapacity());
+  }
+
+  @Test
+  public void testNewProvisionerFoundBeforeChange() throws Exception {
+    Assert.assertFalse(registry.contains("p1"));
+    provisionerStore.writeProvisioner(new Provisioner("p1", "host1", 12345, 100, null, null));
+    Assert.assertTrue(registry.contains("p1"));
+    // the lookup in the store should have dropped the old view
+    Assert.assertEquals(100, registry.getFreeCapacity());
+  }
+
+  @Test
+  public void testChangesSeenByOtherServers() throws Exception {
+    provisionerStore.writeProvisioner(new Provisioner("p1", "host1", 12345, 100, null, null));
+    registry.provisionersChanged();
+    Assert.assertTrue(otherRegistry.contains("p1"));
+    Assert.assertEquals(100, otherRegistry.getFreeCapacity());
+
+    provisionerStore.deleteProvisioner("p1");
+    registry.provisionersChanged();
+    Assert.assertFalse(registry.contains("p1"));
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (otherRegistry.contains("p1") && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(20);
+    }
+    Assert.assertFalse(otherRegistry.contains("p1"));
+    Assert.assertEquals(0, otherRegistry.getFreeCapacity());
+  }
+}
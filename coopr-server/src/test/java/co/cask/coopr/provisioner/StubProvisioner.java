@@ -5,7 +5,7 @@ import co.cask.coopr.scheduler.callback.DummyService;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
 import co.cask.http.NettyHttpService;
-import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multiset;
 import com.google.common.util.concurrent.AbstractIdleService;
@@ -44,10 +44,10 @@ public class StubProvisioner extends AbstractIdleService {
     builder.setWorkerThreadPoolSize(1);
 
     this.httpService = builder.build();
-    this.tenantPutCounts = HashMultiset.create();
-    this.tenantResourcePutCounts = HashMultiset.create();
-    this.tenantWorkerPutCounts = HashMultiset.create();
-    this.tenantDeleteCounts = HashMultiset.create();
+    this.tenantPutCounts = ConcurrentHashMultiset.create();
+    this.tenantResourcePutCounts = ConcurrentHashMultiset.create();
+    this.tenantWorkerPutCounts = ConcurrentHashMultiset.create();
+    this.tenantDeleteCounts = ConcurrentHashMultiset.create();
   }
 
   @Override
@@ -4,31 +4,47 @@ import co.cask.coopr.BaseTest;
 import co.cask.coopr.Entities;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.TrackingQueue;
+import co.cask.coopr.provisioner.placement.PlacementPolicyType;
+import co.cask.coopr.provisioner.plugin.PluginType;
+import co.cask.coopr.provisioner.plugin.ResourceMeta;
+import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.spec.TenantSpecification;
+import co.cask.coopr.spec.plugin.AutomatorType;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  *
  */
 public class TenantProvisionerServiceTest extends BaseTest {
   private static TenantProvisionerService service;
   private static MockProvisionerRequestService provisionerRequestService;
+  private static ProvisionerHeartbeats heartbeats;
 
   @BeforeClass
   public static void setupTestClass() {
     service = injector.getInstance(TenantProvisionerService.class);
     provisionerRequestService = injector.getInstance(MockProvisionerRequestService.class);
+    heartbeats = injector.getInstance(ProvisionerHeartbeats.class);
   }
 
   @Before
@@ -100,6 +116,60 @@ public class TenantProvisionerServiceTest extends BaseTest {
                         actual.getAssignedWorkers(tenant.getSpecification().getName()));
   }
 
+  @Test
+  public void testRebalanceOnlySendsResourcesToNewProvisioners() throws Exception {
+    Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 10, 10, 100));
+    Provisioner provisioner =
+      new Provisioner("p1", "host", 12345, 100, null, ImmutableMap.<String, Integer>of(tenant.getId(), 5));
+    service.writeProvisioner(provisioner);
+    tenantStore.writeTenant(tenant);
+
+    // p1 already has the tenant, so it only gets the new worker count
+    service.rebalanceTenantWorkers(tenant.getId());
+    Assert.assertEquals(0, provisionerRequestService.getNumResourcePuts());
+
+    tenantStore.writeTenant(new Tenant(tenant.getId(), new TenantSpecification("tenantX", 1, 10, 100)));
+    service.rebalanceTenantWorkers(tenant.getId());
+    Assert.assertEquals(0, provisionerRequestService.getNumResourcePuts());
+
+    // a provisioner that does not have the tenant yet needs its resources
+    service.deleteProvisioner(provisioner.getId());
+    service.writeProvisioner(new Provisioner("p2", "host", 12345, 100, null, null));
+    service.rebalanceTenantWorkers(tenant.getId());
+    Assert.assertEquals(1, provisionerRequestService.getNumResourcePuts());
+  }
+
+  @Test
+  public void testSyncSkippedWhenResourcesUnchanged() throws Exception {
+    Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 10, 10, 100));
+    Provisioner provisioner =
+      new Provisioner("p1", "host", 12345, 100, null, ImmutableMap.<String, Integer>of(tenant.getId(), 10));
+    service.writeProvisioner(provisioner);
+    tenantStore.writeTenant(tenant);
+    Account account = new Account(Constants.ADMIN_USER, tenant.getId());
+    AutomatorType chef = Entities.AutomatorTypeExample.CHEF;
+    // plugin types are defined by the superadmin
+    entityStoreService.getView(Account.SUPERADMIN).writeAutomatorType(chef);
+    ResourceType cookbooks = new ResourceType(PluginType.AUTOMATOR, chef.getName(), "cookbooks");
+    metaStoreService.getResourceTypeView(account, cookbooks).add(new ResourceMeta("hadoop", 1));
+
+    // nothing staged or live
+    service.syncResources(account);
+    Assert.assertEquals(0, provisionerRequestService.getNumResourcePuts());
+
+    resourceService.stage(account, cookbooks, "hadoop", 1);
+    service.syncResources(account);
+    Assert.assertEquals(1, provisionerRequestService.getNumResourcePuts());
+
+    // provisioners already have the live resources
+    service.syncResources(account);
+    Assert.assertEquals(1, provisionerRequestService.getNumResourcePuts());
+
+    resourceService.recall(account, cookbooks, "hadoop", 1);
+    service.syncResources(account);
+    Assert.assertEquals(2, provisionerRequestService.getNumResourcePuts());
+  }
+
   @Test
   public void testDeadProvisionerGetsDeletedDuringAddWorkers() throws Exception {
     Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 110, 10, 100));
@@ -149,6 +219,79 @@ public class TenantProvisionerServiceTest extends BaseTest {
                         p2.getAssignedWorkers(tenant.getSpecification().getName()));
   }
 
+  @Test
+  public void testTenantPlacementPolicy() throws Exception {
+    Tenant spreadTenant = new Tenant("tenant1", new TenantSpecification("tenant1", "", 20, 10, 100,
+                                                                        PlacementPolicyType.SPREAD));
+    Tenant packedTenant = new Tenant("tenant2", new TenantSpecification("tenant2", "", 20, 10, 100,
+                                                                        PlacementPolicyType.BINPACK));
+    tenantStore.writeTenant(spreadTenant);
+    tenantStore.writeTenant(packedTenant);
+    service.writeProvisioner(new Provisioner("p1", "host1", 12345, 50, null, null));
+    service.writeProvisioner(new Provisioner("p2", "host2", 12345, 50, null, null));
+
+    service.rebalanceTenantWorkers(spreadTenant.getId());
+    Assert.assertEquals(10, provisionerStore.getProvisioner("p1").getAssignedWorkers(spreadTenant.getId()));
+    Assert.assertEquals(10, provisionerStore.getProvisioner("p2").getAssignedWorkers(spreadTenant.getId()));
+
+    // both provisioners are equally loaded, so the first one gets filled up first
+    service.rebalanceTenantWorkers(packedTenant.getId());
+    Assert.assertEquals(20, provisionerStore.getProvisioner("p1").getAssignedWorkers(packedTenant.getId()));
+    Assert.assertEquals(0, provisionerStore.getProvisioner("p2").getAssignedWorkers(packedTenant.getId()));
+  }
+
+  @Test
+  public void testConcurrentRebalancesDoNotExceedCapacity() throws Exception {
+    final List<Tenant> tenants = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      Tenant tenant = new Tenant("tenant" + i, new TenantSpecification("tenant" + i, 30, 10, 100));
+      tenantStore.writeTenant(tenant);
+      tenants.add(tenant);
+    }
+    service.writeProvisioner(new Provisioner("p1", "host1", 12345, 50, null, null));
+    service.writeProvisioner(new Provisioner("p2", "host2", 12345, 50, null, null));
+
+    // each tenant only locks itself, so all of them are assigning workers on the same provisioners at once
+    final CyclicBarrier barrier = new CyclicBarrier(tenants.size());
+    ExecutorService executor = Executors.newFixedThreadPool(tenants.size());
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (final Tenant tenant : tenants) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            barrier.await();
+            try {
+              service.rebalanceTenantWorkers(tenant.getId());
+            } catch (CapacityException e) {
+              // expected for tenants that run out of capacity
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // 120 workers were requested, but only the 100 that fit should have been assigned, with no assignments lost
+    int totalAssigned = 0;
+    for (Tenant tenant : tenants) {
+      int assigned = provisionerStore.getNumAssignedWorkers(tenant.getId());
+      int assignedOnProvisioners = 0;
+      for (Provisioner provisioner : provisionerStore.getTenantProvisioners(tenant.getId())) {
+        assignedOnProvisioners += provisioner.getAssignedWorkers(tenant.getId());
+      }
+      Assert.assertEquals(assigned, assignedOnProvisioners);
+      totalAssigned += assigned;
+    }
+    Assert.assertEquals(100, totalAssigned);
+    Assert.assertEquals(0, provisionerStore.getFreeCapacity());
+  }
+
   @Test
   public void testDeleteTenant() throws Exception {
     Tenant tenant1 = new Tenant("tenant1", new TenantSpecification("tenant1", 0, 10, 100));
@@ -228,6 +371,42 @@ public class TenantProvisionerServiceTest extends BaseTest {
     Assert.assertTrue(actualProvisioner.getLiveTenants().isEmpty());
   }
 
+  @Test
+  public void testHeartbeatsAreWrittenOnFlush() throws Exception {
+    Tenant tenant = new Tenant("tenant1", new TenantSpecification("tenant1", 10, 10, 100));
+    tenantStore.writeTenant(tenant);
+    Provisioner provisioner = new Provisioner("p1", "host1", 12345, 100, null, null);
+    service.writeProvisioner(provisioner);
+    provisionerStore.setHeartbeat(provisioner.getId(), 1L);
+
+    long heartbeatTs = System.currentTimeMillis();
+    service.handleHeartbeat(provisioner.getId(),
+                            new ProvisionerHeartbeat(ImmutableMap.<String, Integer>of(tenant.getId(), 5)));
+    // nothing is written until the heartbeats are flushed, but the usage is already visible through the service
+    Assert.assertEquals(1, provisionerStore.getTimedOutProvisioners(heartbeatTs).size());
+    Assert.assertEquals(0, provisionerStore.getProvisioner(provisioner.getId()).getLiveWorkers(tenant.getId()));
+    Assert.assertEquals(5, service.getProvisioner(provisioner.getId()).getLiveWorkers(tenant.getId()));
+
+    heartbeats.flush();
+    Assert.assertTrue(provisionerStore.getTimedOutProvisioners(heartbeatTs).isEmpty());
+    Assert.assertEquals(5, provisionerStore.getProvisioner(provisioner.getId()).getLiveWorkers(tenant.getId()));
+  }
+
+  @Test
+  public void testTimeoutSkipsProvisionersWithUnflushedHeartbeats() throws Exception {
+    service.writeProvisioner(new Provisioner("p1", "host1", 12345, 100, null, null));
+    service.writeProvisioner(new Provisioner("p2", "host2", 12345, 100, null, null));
+    provisionerStore.setHeartbeat("p1", 1L);
+    provisionerStore.setHeartbeat("p2", 1L);
+
+    long timeoutTs = System.currentTimeMillis();
+    service.handleHeartbeat("p1", new ProvisionerHeartbeat(ImmutableMap.<String, Integer>of()));
+    // both stored heartbeats are too old, but this server has heard from p1 since
+    service.timeoutProvisioners(timeoutTs);
+    Assert.assertNotNull(provisionerStore.getProvisioner("p1"));
+    Assert.assertNull(provisionerStore.getProvisioner("p2"));
+  }
+
   @Test(expected = MissingEntityException.class)
   public void testHeartbeatForNonexistantProvisionerThrowsException() throws Exception {
     service.handleHeartbeat("id123", new ProvisionerHeartbeat(ImmutableMap.<String, Integer>of()));
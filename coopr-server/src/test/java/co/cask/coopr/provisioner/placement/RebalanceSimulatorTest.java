@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ */
+public class RebalanceSimulatorTest {
+  private final RebalanceSimulator simulator = new RebalanceSimulator(
+    new WorkerPlacementPolicies(new ProvisionerUsageHistory(1), PlacementPolicyType.SPREAD));
+  private final List<Provisioner> provisioners = ImmutableList.of(
+    new Provisioner("p1", "host1", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 6)),
+    new Provisioner("p2", "host2", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 2)),
+    new Provisioner("p3", "host3", 12345, 10, null, null)
+  );
+
+  @Test
+  public void testSimulateSpread() {
+    Map<String, Provisioner> result =
+      toMap(simulator.simulate(PlacementPolicyType.SPREAD, provisioners,
+                               ImmutableMap.of("tenantA", 4, "tenantB", 6)));
+    // tenantA workers are removed from the most loaded provisioner, then tenantB fills in evenly
+    Assert.assertEquals(2, result.get("p1").getAssignedWorkers("tenantA"));
+    Assert.assertEquals(2, result.get("p2").getAssignedWorkers("tenantA"));
+    Assert.assertEquals(ImmutableList.of(6, 7, 7), getFree(result));
+  }
+
+  @Test
+  public void testSimulateBinPack() {
+    Map<String, Provisioner> result =
+      toMap(simulator.simulate(PlacementPolicyType.BINPACK, provisioners,
+                               ImmutableMap.of("tenantA", 6, "tenantB", 6)));
+    // tenantA workers are removed from the least loaded provisioner, then tenantB fills up the fullest one first
+    Assert.assertEquals(6, result.get("p1").getAssignedWorkers("tenantA"));
+    Assert.assertEquals(0, result.get("p2").getAssignedWorkers("tenantA"));
+    Assert.assertEquals(4, result.get("p1").getAssignedWorkers("tenantB"));
+    Assert.assertEquals(ImmutableList.of(0, 8, 10), getFree(result));
+  }
+
+  @Test
+  public void testSimulateDoesNotModifyRecordedStates() {
+    simulator.simulate(PlacementPolicyType.SPREAD, provisioners, ImmutableMap.of("tenantA", 0, "tenantB", 30));
+    Assert.assertEquals(4, provisioners.get(0).getCapacityFree());
+    Assert.assertEquals(0, provisioners.get(0).getAssignedWorkers("tenantB"));
+  }
+
+  private Map<String, Provisioner> toMap(List<Provisioner> provisioners) {
+    ImmutableMap.Builder<String, Provisioner> builder = ImmutableMap.builder();
+    for (Provisioner provisioner : provisioners) {
+      builder.put(provisioner.getId(), provisioner);
+    }
+    return builder.build();
+  }
+
+  private List<Integer> getFree(Map<String, Provisioner> provisioners) {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (Provisioner provisioner : provisioners.values()) {
+      builder.add(provisioner.getCapacityFree());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.placement;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ */
+public class WorkerPlacementPolicyTest {
+  // p1 is half assigned, p2 and p3 are empty, p3 is twice as big as the others
+  private final List<Provisioner> provisioners = ImmutableList.of(
+    new Provisioner("p1", "host1", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 5)),
+    new Provisioner("p2", "host2", 12345, 10, null, null),
+    new Provisioner("p3", "host3", 12345, 20, null, null)
+  );
+
+  @Test
+  public void testSpreadPlacesOnLeastLoaded() {
+    WorkerPlacementPolicy policy = new SpreadPlacementPolicy();
+    // empty provisioners get workers until they are as loaded as p1, in proportion to their capacity
+    Assert.assertEquals(ImmutableMap.of("p2", 5, "p3", 10),
+                        policy.placeWorkers("tenantB", 15, provisioners));
+    // once they are even, all provisioners get workers so that their loads stay within a worker of each other
+    Map<String, Integer> placements = policy.placeWorkers("tenantB", 24, provisioners);
+    Assert.assertEquals(24, placements.get("p1") + placements.get("p2") + placements.get("p3"));
+    double p1Load = (5 + placements.get("p1")) / 10.0;
+    double p2Load = placements.get("p2") / 10.0;
+    double p3Load = placements.get("p3") / 20.0;
+    Assert.assertTrue(Math.abs(p1Load - p2Load) <= 0.1 + 1e-9);
+    Assert.assertTrue(Math.abs(p1Load - p3Load) <= 0.1 + 1e-9);
+    Assert.assertTrue(Math.abs(p2Load - p3Load) <= 0.1 + 1e-9);
+  }
+
+  @Test
+  public void testSpreadRemovesFromMostLoaded() {
+    List<Provisioner> tenantProvisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 8)),
+      new Provisioner("p2", "host2", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 4))
+    );
+    Assert.assertEquals(ImmutableMap.of("p1", 4),
+                        new SpreadPlacementPolicy().removeWorkers("tenantA", 4, tenantProvisioners));
+    Assert.assertEquals(ImmutableMap.of("p1", 5, "p2", 1),
+                        new SpreadPlacementPolicy().removeWorkers("tenantA", 6, tenantProvisioners));
+  }
+
+  @Test
+  public void testBinPackFillsMostLoadedFirst() {
+    WorkerPlacementPolicy policy = new BinPackPlacementPolicy();
+    Assert.assertEquals(ImmutableMap.of("p1", 5, "p2", 3),
+                        policy.placeWorkers("tenantB", 8, provisioners));
+    // removes from the least loaded provisioners first so they can be freed up
+    List<Provisioner> tenantProvisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 8)),
+      new Provisioner("p2", "host2", 12345, 10, null, ImmutableMap.<String, Integer>of("tenantA", 4))
+    );
+    Assert.assertEquals(ImmutableMap.of("p2", 4, "p1", 1), policy.removeWorkers("tenantA", 5, tenantProvisioners));
+  }
+
+  @Test
+  public void testPlacementLimitedByCapacity() {
+    for (WorkerPlacementPolicy policy : ImmutableList.of(new SpreadPlacementPolicy(), new BinPackPlacementPolicy())) {
+      Assert.assertEquals(ImmutableMap.of("p1", 5, "p2", 10, "p3", 20),
+                          ImmutableMap.copyOf(policy.placeWorkers("tenantB", 100, provisioners)));
+      Assert.assertEquals(ImmutableMap.of("p1", 5),
+                          policy.removeWorkers("tenantA", 100, provisioners));
+      Assert.assertTrue(policy.removeWorkers("tenantB", 10, provisioners).isEmpty());
+    }
+  }
+
+  @Test
+  public void testUsageWeightedAvoidsBusyProvisioners() {
+    ProvisionerUsageHistory usageHistory = new ProvisionerUsageHistory(3);
+    WorkerPlacementPolicy policy = new UsageWeightedPlacementPolicy(usageHistory);
+    List<Provisioner> emptyProvisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 10, null, null),
+      new Provisioner("p2", "host2", 12345, 10, null, null)
+    );
+    // without history, both provisioners look the same
+    Assert.assertEquals(ImmutableMap.of("p1", 2, "p2", 2), policy.placeWorkers("tenantB", 4, emptyProvisioners));
+
+    // p1 has been running workers that are not assigned to it, for example of a tenant that was removed
+    usageHistory.recordUsage("p1", ImmutableMap.of("tenantA", 6));
+    usageHistory.recordUsage("p1", ImmutableMap.of("tenantA", 4));
+    Assert.assertEquals(5, usageHistory.getAverageLiveWorkers(emptyProvisioners.get(0)), 0.001);
+    Assert.assertEquals(ImmutableMap.of("p2", 5, "p1", 1),
+                        ImmutableMap.copyOf(policy.placeWorkers("tenantB", 6, emptyProvisioners)));
+
+    // old heartbeats fall out of the history
+    usageHistory.recordUsage("p1", ImmutableMap.<String, Integer>of());
+    usageHistory.recordUsage("p1", ImmutableMap.<String, Integer>of());
+    usageHistory.recordUsage("p1", ImmutableMap.<String, Integer>of());
+    Assert.assertEquals(0, usageHistory.getAverageLiveWorkers(emptyProvisioners.get(0)), 0.001);
+    usageHistory.remove("p1");
+    Assert.assertEquals(ImmutableMap.of("p1", 2, "p2", 2), policy.placeWorkers("tenantB", 4, emptyProvisioners));
+  }
+
+  @Test
+  public void testUsageWeightedFallsBackToStoredUsage() {
+    ProvisionerUsageHistory usageHistory = new ProvisionerUsageHistory(3);
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 10, ImmutableMap.<String, Integer>of("tenantA", 8), null),
+      new Provisioner("p2", "host2", 12345, 10, null, null)
+    );
+    Assert.assertEquals(8, usageHistory.getAverageLiveWorkers(provisioners.get(0)), 0.001);
+    Assert.assertEquals(ImmutableMap.of("p2", 4),
+                        new UsageWeightedPlacementPolicy(usageHistory).placeWorkers("tenantB", 4, provisioners));
+  }
+}
@@ -86,6 +86,32 @@ public class JobPlannerTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testDedupManyTasksOnSameHost() throws Exception {
+    // all tasks have the same name, so the stage keeps them in insertion order instead of sorting them
+    List<Set<ClusterTask>> tasks = ImmutableList.<Set<ClusterTask>>of(
+      ImmutableSet.of(createClusterTask("INSTALL", "1-1-1", "host1"),
+                      createClusterTask("INSTALL", "1-1-2", "host1"),
+                      createClusterTask("INSTALL", "1-1-3", "host2"),
+                      createClusterTask("INSTALL", "1-1-4", "host1"),
+                      createClusterTask("INSTALL", "1-1-5", "host2"))
+    );
+
+    List<Set<ClusterTask>> actual = JobPlanner.deDupNodePerStage(tasks);
+
+    List<Set<ClusterTask>> expected = ImmutableList.<Set<ClusterTask>>of(
+      ImmutableSet.of(createClusterTask("INSTALL", "1-1-1", "host1"),
+                      createClusterTask("INSTALL", "1-1-3", "host2")),
+
+      ImmutableSet.of(createClusterTask("INSTALL", "1-1-2", "host1"),
+                      createClusterTask("INSTALL", "1-1-5", "host2")),
+
+      ImmutableSet.of(createClusterTask("INSTALL", "1-1-4", "host1"))
+    );
+
+    Assert.assertEquals(expected, actual);
+  }
+
   @Test
   public void testCreateTaskDag() {
     Service s1 = Service.builder()
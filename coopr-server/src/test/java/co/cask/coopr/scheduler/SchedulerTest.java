@@ -20,16 +20,21 @@ import co.cask.coopr.TestHelper;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.TrackingQueue;
+import co.cask.coopr.common.zookeeper.LockService;
 import co.cask.coopr.http.ServiceTestBase;
 import co.cask.coopr.http.request.FinishTaskRequest;
 import co.cask.coopr.http.request.TakeTaskRequest;
+import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.scheduler.callback.CallbackData;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.SchedulableTask;
 import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.scheduler.task.TaskService;
+import co.cask.coopr.store.cluster.ClusterStoreService;
 import com.google.common.base.Objects;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
@@ -249,6 +254,54 @@ public class SchedulerTest extends ServiceTestBase {
 
   }
 
+  @Test(timeout = 20000)
+  public void testJobSchedulerWorkers() throws Exception {
+    String tenantId = cluster.getAccount().getTenantId();
+    ClusterScheduler clusterScheduler = injector.getInstance(ClusterScheduler.class);
+    CallbackScheduler callbackScheduler = injector.getInstance(CallbackScheduler.class);
+
+    clusterQueues.add(tenantId, new Element(cluster.getId(), ClusterAction.CLUSTER_CREATE.name()));
+    clusterScheduler.run();
+    waitForCallback(callbackScheduler);
+    Assert.assertEquals(1, jobQueues.size(tenantId));
+
+    JobScheduler jobScheduler;
+    conf.setInt(Constants.JOB_SCHEDULER_NUM_THREADS, 4);
+    try {
+      // the injector binds the job scheduler as a singleton, which may already be created with a single thread
+      jobScheduler = new JobScheduler(injector.getInstance(ClusterStoreService.class), queueService,
+                                      injector.getInstance(LockService.class), injector.getInstance(TaskService.class),
+                                      conf, injector.getInstance(ServerStats.class), gson);
+    } finally {
+      conf.setInt(Constants.JOB_SCHEDULER_NUM_THREADS, Constants.DEFAULT_JOB_SCHEDULER_NUM_THREADS);
+    }
+    // jobs taken while the workers are stopped are put back into the queue
+    jobScheduler.run();
+    Assert.assertEquals(1, jobQueues.size(tenantId));
+    Assert.assertEquals(0, provisionerQueues.size(tenantId));
+
+    jobScheduler.startWorkers();
+    try {
+      // the job is scheduled by a worker, which submits the create tasks of the first stage
+      jobScheduler.run();
+      while (jobQueues.size(tenantId) > 0 || provisionerQueues.size(tenantId) < 2) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+      Assert.assertEquals(2, provisionerQueues.size(tenantId));
+    } finally {
+      jobScheduler.stopWorkers();
+    }
+  }
+
+  @Test
+  public void testJobPutBackWhenSchedulingFails() throws Exception {
+    String tenantId = cluster.getAccount().getTenantId();
+    // scheduling fails since the job does not exist
+    jobQueues.add(tenantId, new Element(new JobId(cluster.getId(), 100).getId()));
+    injector.getInstance(JobScheduler.class).run();
+    Assert.assertEquals(new QueueMetrics(1, 0), jobQueues.getMetrics(tenantId));
+  }
+
   @Test(timeout = 20000)
   public void testSuccessCallbacks() throws Exception {
     testCallbacks(false);
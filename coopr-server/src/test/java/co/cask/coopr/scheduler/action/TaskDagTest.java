@@ -17,12 +17,19 @@ package co.cask.coopr.scheduler.action;
 
 import co.cask.coopr.scheduler.dag.TaskDag;
 import co.cask.coopr.scheduler.dag.TaskNode;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -147,4 +154,76 @@ public class TaskDagTest {
     //noinspection AssertEqualsBetweenInconvertibleTypes
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void testLinearizeMatchesEdgeRemoval() {
+    Random random = new Random(0);
+    for (int i = 0; i < 20; i++) {
+      int numNodes = 1 + random.nextInt(300);
+      List<TaskNode> nodes = Lists.newArrayList();
+      for (int j = 0; j < numNodes; j++) {
+        nodes.add(new TaskNode(String.valueOf(j % 10), "task" + j, j % 3 == 0 ? "" : "service"));
+      }
+
+      // edges only go from lower to higher indexes, so there are no cycles. Some edges are added more than once.
+      TaskDag taskDag = new TaskDag();
+      Set<TaskNode> dagNodes = Sets.newHashSet();
+      SetMultimap<TaskNode, TaskNode> dagEdges = HashMultimap.create();
+      int numEdges = random.nextInt(numNodes * 3);
+      for (int j = 0; j < numEdges; j++) {
+        int from = random.nextInt(numNodes);
+        int to = random.nextInt(numNodes);
+        if (from == to) {
+          continue;
+        }
+        TaskNode fromNode = nodes.get(Math.min(from, to));
+        TaskNode toNode = nodes.get(Math.max(from, to));
+        taskDag.addDependency(fromNode, toNode);
+        dagNodes.add(fromNode);
+        dagNodes.add(toNode);
+        dagEdges.put(fromNode, toNode);
+      }
+      for (TaskNode node : nodes) {
+        if (random.nextInt(4) == 0) {
+          taskDag.addTaskNode(node);
+          dagNodes.add(node);
+        }
+      }
+      if (dagNodes.isEmpty()) {
+        continue;
+      }
+
+      Assert.assertEquals(linearizeByEdgeRemoval(dagNodes, dagEdges), taskDag.linearize());
+    }
+  }
+
+  // the original linearization, which removes the edges of each stage from a copy of all edges
+  private List<Set<TaskNode>> linearizeByEdgeRemoval(Set<TaskNode> nodes, SetMultimap<TaskNode, TaskNode> edges) {
+    List<Set<TaskNode>> linearizedNodes = Lists.newArrayList();
+    ArrayListMultimap<TaskNode, TaskNode> copyEdges = ArrayListMultimap.create(edges);
+
+    Set<TaskNode> sources = Sets.newHashSet(nodes);
+    Set<TaskNode> sinkNodes = Sets.newHashSet();
+    do {
+      sources.addAll(copyEdges.keySet());
+      sources.removeAll(copyEdges.values());
+      Assert.assertFalse(sources.isEmpty());
+      linearizedNodes.add(Sets.newHashSet(Iterables.concat(sinkNodes, sources)));
+
+      sinkNodes.clear();
+      Set<TaskNode> toNodes = Sets.newHashSet();
+      for (TaskNode fromNode : sources) {
+        toNodes.addAll(copyEdges.removeAll(fromNode));
+      }
+      toNodes.removeAll(copyEdges.keySet());
+      toNodes.removeAll(copyEdges.values());
+      sinkNodes.addAll(toNodes);
+      sources.clear();
+    } while (!copyEdges.isEmpty());
+
+    if (!sinkNodes.isEmpty()) {
+      linearizedNodes.add(sinkNodes);
+    }
+    return linearizedNodes;
+  }
 }
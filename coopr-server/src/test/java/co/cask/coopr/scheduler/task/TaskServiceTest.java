@@ -5,6 +5,10 @@ import co.cask.coopr.Entities;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.UnitOfWork;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import co.cask.coopr.store.metrics.NodeUsageStore;
 import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -63,4 +67,55 @@ public class TaskServiceTest extends BaseTest {
     taskService.completeJob(job, cluster);
     Assert.assertTrue(credentialStore.get(account.getTenantId(), clusterId).isEmpty());
   }
+
+  @Test
+  public void testCompleteTaskRecordsNodeUsage() throws Exception {
+    NodeUsageStore nodeUsageStore = injector.getInstance(NodeUsageStore.class);
+    ClusterTaskFilter filter = new ClusterTaskFilter("tenant", null, null, null, null, null, null, null);
+    Account account = new Account("user", "tenant");
+    ClusterTask create = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString("123-1-1"), "node1", "service",
+                                         ClusterAction.CLUSTER_CREATE, "template", account);
+    ClusterTask install = new ClusterTask(ProvisionerAction.INSTALL, TaskId.fromString("123-1-2"), "node1", "service",
+                                          ClusterAction.CLUSTER_CREATE, "template", account);
+    ClusterTask delete = new ClusterTask(ProvisionerAction.DELETE, TaskId.fromString("123-2-1"), "node1", "service",
+                                         ClusterAction.CLUSTER_DELETE, "template", account);
+
+    taskService.completeTask(create, 0);
+    taskService.completeTask(install, 0);
+    Assert.assertEquals(create.getStatusTime(), (long) nodeUsageStore.getFirstCreateTime(filter));
+    Assert.assertNull(nodeUsageStore.getLastDeleteTime(filter));
+
+    taskService.completeTask(delete, 0);
+    Assert.assertEquals(delete.getStatusTime(), (long) nodeUsageStore.getLastDeleteTime(filter));
+    Assert.assertEquals(delete.getStatusTime() - create.getStatusTime(),
+                        nodeUsageStore.getUsage(filter, 0, delete.getStatusTime() + 1));
+  }
+
+  @Test
+  public void testNodeUsageRecordedAfterCommit() throws Exception {
+    NodeUsageStore nodeUsageStore = injector.getInstance(NodeUsageStore.class);
+    ClusterTaskFilter filter = new ClusterTaskFilter("tenant2", null, null, null, null, null, null, null);
+    Account account = new Account("user", "tenant2");
+    ClusterTask create = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString("456-1-1"), "node1", "service",
+                                         ClusterAction.CLUSTER_CREATE, "template", account);
+
+    // usage of a task that is never written is not recorded
+    UnitOfWork unitOfWork = clusterStore.startUnitOfWork();
+    try {
+      taskService.completeTask(create, 0);
+    } finally {
+      unitOfWork.close();
+    }
+    Assert.assertNull(nodeUsageStore.getFirstCreateTime(filter));
+
+    unitOfWork = clusterStore.startUnitOfWork();
+    try {
+      taskService.completeTask(create, 0);
+      Assert.assertNull(nodeUsageStore.getFirstCreateTime(filter));
+      unitOfWork.commit();
+    } finally {
+      unitOfWork.close();
+    }
+    Assert.assertEquals(create.getStatusTime(), (long) nodeUsageStore.getFirstCreateTime(filter));
+  }
 }
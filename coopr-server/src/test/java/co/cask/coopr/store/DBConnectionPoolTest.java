@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.conf.guice.ConfigurationModule;
+import com.google.inject.Guice;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class DBConnectionPoolTest {
+
+  @Test
+  public void testMySQLStreamsResultsRowByRow() {
+    Configuration conf = Configuration.create();
+    conf.set(Constants.JDBC_DRIVER, "com.mysql.jdbc.Driver");
+    conf.set(Constants.JDBC_CONNECTION_STRING, "jdbc:mysql://127.0.0.1:3306/coopr?useLegacyDatetimeCode=false");
+    // no connection is made until one is taken from the pool
+    DBConnectionPool dbConnectionPool = Guice.createInjector(new ConfigurationModule(conf))
+      .getInstance(DBConnectionPool.class);
+    Assert.assertTrue(dbConnectionPool.isMySQLDB());
+    Assert.assertEquals(Integer.MIN_VALUE, dbConnectionPool.getStreamingFetchSize(1000));
+  }
+
+  @Test
+  public void testOtherDBsUseFetchSize() {
+    Configuration conf = Configuration.create();
+    conf.set(Constants.JDBC_DRIVER, Constants.EMBEDDED_DERBY_DRIVER);
+    conf.set(Constants.JDBC_CONNECTION_STRING, "jdbc:derby:memory:coopr;create=true");
+    DBConnectionPool dbConnectionPool = Guice.createInjector(new ConfigurationModule(conf))
+      .getInstance(DBConnectionPool.class);
+    Assert.assertFalse(dbConnectionPool.isMySQLDB());
+    Assert.assertEquals(1000, dbConnectionPool.getStreamingFetchSize(1000));
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.blob;
+
+import co.cask.coopr.Entities;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.codec.json.guice.CodecModules;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.JobId;
+import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.spec.ProvisionerAction;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.google.inject.Guice;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests for {@link BlobFormat}.
+ */
+public class BlobFormatTest {
+  private static final Gson GSON = Guice.createInjector(new CodecModules().getModule()).getInstance(Gson.class);
+
+  @Test
+  public void testStoreObjectsRoundTrip() {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+    job.setJobStatus(ClusterJob.Status.RUNNING);
+    ClusterTask task = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString(cluster.getId() + "-1-1"), "node1",
+                                       "service1", ClusterAction.CLUSTER_CREATE, "template", cluster.getAccount());
+    Node node = Entities.NodeExample.NODE1;
+
+    for (BlobFormat format : BlobFormat.values()) {
+      assertRoundTrip(format, cluster, Cluster.class);
+      assertRoundTrip(format, job, ClusterJob.class);
+      assertRoundTrip(format, task, ClusterTask.class);
+      assertRoundTrip(format, node, Node.class);
+    }
+  }
+
+  @Test
+  public void testValuesRoundTrip() {
+    Map<String, Object> map = Maps.newLinkedHashMap();
+    map.put("long", Long.MIN_VALUE);
+    map.put("negative", -1);
+    map.put("double", 0.1d);
+    map.put("float", 1.1f);
+    map.put("decimal", new BigDecimal("12345678901234567890.123456789"));
+    map.put("unicode", "é中😀");
+    map.put("empty", "");
+    map.put("bool", true);
+    map.put("list", ImmutableList.of("a", "a", ImmutableMap.of("a", "b")));
+    Type type = new TypeToken<Map<String, Object>>() { }.getType();
+
+    for (BlobFormat format : BlobFormat.values()) {
+      byte[] blob = format.encode(GSON, map, type);
+      Assert.assertEquals(format, BlobFormat.of(blob));
+      Assert.assertEquals(new JsonParser().parse(GSON.toJson(map, type)), BlobFormat.of(blob).decodeTree(blob));
+    }
+  }
+
+  @Test
+  public void testNulls() {
+    Gson serializeNulls = new GsonBuilder().serializeNulls().create();
+    Map<String, String> map = Maps.newLinkedHashMap();
+    map.put("key", null);
+    Type type = new TypeToken<Map<String, String>>() { }.getType();
+
+    for (BlobFormat format : BlobFormat.values()) {
+      Assert.assertEquals(new JsonParser().parse("{}"), format.decodeTree(format.encode(GSON, map, type)));
+      Assert.assertEquals(new JsonParser().parse("{\"key\":null}"),
+                          format.decodeTree(format.encode(serializeNulls, map, type)));
+      Assert.assertNull(BlobFormat.decodeAny(GSON, new byte[0], type));
+    }
+  }
+
+  @Test
+  public void testJsonIsUnchanged() {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    byte[] blob = BlobFormat.JSON.encode(GSON, cluster, Cluster.class);
+    Assert.assertEquals(GSON.toJson(cluster, Cluster.class), new String(blob, Charsets.UTF_8));
+    Assert.assertEquals(BlobFormat.JSON, BlobFormat.of(blob));
+    // json written by earlier versions may start with whitespace
+    Assert.assertEquals(BlobFormat.JSON, BlobFormat.of(" {}".getBytes(Charsets.UTF_8)));
+  }
+
+  @Test
+  public void testConvert() {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    for (BlobFormat from : BlobFormat.values()) {
+      for (BlobFormat to : BlobFormat.values()) {
+        byte[] converted = to.convert(GSON, from.encode(GSON, cluster, Cluster.class));
+        Assert.assertEquals(to, BlobFormat.of(converted));
+        Cluster decoded = BlobFormat.decodeAny(GSON, converted, Cluster.class);
+        Assert.assertEquals(GSON.toJson(cluster), GSON.toJson(decoded));
+      }
+    }
+  }
+
+  @Test
+  public void testBinaryIsSmaller() {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    int jsonSize = BlobFormat.JSON.encode(GSON, cluster, Cluster.class).length;
+    int binarySize = BlobFormat.BINARY.encode(GSON, cluster, Cluster.class).length;
+    int compressedSize = BlobFormat.COMPRESSED_BINARY.encode(GSON, cluster, Cluster.class).length;
+    Assert.assertTrue(binarySize < jsonSize);
+    Assert.assertTrue(compressedSize < binarySize);
+  }
+
+  @Test
+  public void testTruncatedBlobsAreInvalid() {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    for (BlobFormat format : ImmutableList.of(BlobFormat.BINARY, BlobFormat.COMPRESSED_BINARY)) {
+      byte[] blob = format.encode(GSON, cluster, Cluster.class);
+      byte[] truncated = Arrays.copyOf(blob, blob.length / 2);
+      try {
+        BlobFormat.decodeAny(GSON, truncated, Cluster.class);
+        Assert.fail("Expected truncated " + format + " blob to be invalid.");
+      } catch (JsonParseException e) {
+        // expected
+      }
+    }
+  }
+
+  private <T> void assertRoundTrip(BlobFormat format, T object, Type type) {
+    byte[] blob = format.encode(GSON, object, type);
+    Assert.assertEquals(format, BlobFormat.of(blob));
+    T decoded = BlobFormat.decodeAny(GSON, blob, type);
+    Assert.assertEquals(object, decoded);
+    Assert.assertEquals(GSON.toJson(object, type), GSON.toJson(decoded, type));
+  }
+}
@@ -18,8 +18,12 @@ package co.cask.coopr.store.cluster;
 import co.cask.coopr.Entities;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterJobProgress;
+import co.cask.coopr.cluster.ClusterListing;
+import co.cask.coopr.cluster.ClusterListingCursor;
 import co.cask.coopr.cluster.ClusterSummary;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.cluster.NodeProperties;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.scheduler.ClusterAction;
 import co.cask.coopr.scheduler.task.ClusterJob;
@@ -27,7 +31,11 @@ import co.cask.coopr.scheduler.task.ClusterTask;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
 import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.store.UnitOfWork;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Before;
@@ -35,6 +43,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -186,6 +195,46 @@ public abstract class ClusterStoreTest {
     Assert.assertNull(systemView.getClusterTask(id));
   }
 
+  @Test
+  public void testBatchGetStoreTasks() throws IOException {
+    Account account = new Account("testUser", "testTenant");
+    JobId jobId1 = new JobId("1", 1);
+    JobId jobId2 = new JobId("2", 5);
+    List<ClusterTask> tasks = Lists.newArrayList();
+    for (int i = 1; i <= 3; i++) {
+      tasks.add(new ClusterTask(ProvisionerAction.CONFIGURE, new TaskId(jobId1, i), "node" + i, "service",
+                                ClusterAction.CLUSTER_CREATE, "test", account));
+      tasks.add(new ClusterTask(ProvisionerAction.START, new TaskId(jobId2, i), "node" + i, "service",
+                                ClusterAction.CLUSTER_CREATE, "test", account));
+    }
+    List<TaskId> taskIds = Lists.newArrayList();
+    for (ClusterTask task : tasks) {
+      taskIds.add(TaskId.fromString(task.getTaskId()));
+    }
+    Assert.assertTrue(systemView.getClusterTasks(taskIds).isEmpty());
+
+    // write some of the tasks first so the batch write has to both update and insert
+    systemView.writeClusterTask(tasks.get(0));
+    systemView.writeClusterTask(tasks.get(3));
+    for (ClusterTask task : tasks) {
+      task.setStatus(ClusterTask.Status.IN_PROGRESS);
+    }
+    systemView.writeClusterTasks(tasks);
+
+    Map<String, ClusterTask> fetched = systemView.getClusterTasks(taskIds);
+    Assert.assertEquals(tasks.size(), fetched.size());
+    for (ClusterTask task : tasks) {
+      Assert.assertEquals(task, fetched.get(task.getTaskId()));
+      Assert.assertEquals(ClusterTask.Status.IN_PROGRESS, fetched.get(task.getTaskId()).getStatus());
+    }
+
+    // ids without tasks are left out
+    TaskId missingId = new TaskId(jobId1, 10);
+    fetched = systemView.getClusterTasks(ImmutableList.of(taskIds.get(0), missingId));
+    Assert.assertEquals(1, fetched.size());
+    Assert.assertEquals(tasks.get(0), fetched.get(taskIds.get(0).getId()));
+  }
+
   @Test
   public void testGetAllClusters() throws Exception {
     Assert.assertEquals(0, systemView.getAllClusters().size());
@@ -269,6 +318,103 @@ public abstract class ClusterStoreTest {
     Assert.assertNull(systemView.getNode(node.getId()));
   }
 
+  @Test
+  public void testUnitOfWork() throws Exception {
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    JobId jobId = new JobId(cluster.getId(), 1);
+    ClusterJob job = new ClusterJob(jobId, ClusterAction.CLUSTER_CREATE);
+    cluster.setLatestJobId(job.getJobId());
+    TaskId taskId = new TaskId(jobId, 1);
+    ClusterTask task = new ClusterTask(ProvisionerAction.CREATE, taskId, "node1", "service",
+                                       ClusterAction.CLUSTER_CREATE, "test", cluster.getAccount());
+    Node node = new Node("node1", cluster.getId(), ImmutableSet.<Service>of(), NodeProperties.builder().build());
+
+    UnitOfWork unitOfWork = systemView.startUnitOfWork();
+    try {
+      systemView.writeCluster(cluster);
+      systemView.writeClusterJob(job);
+      systemView.writeClusterTask(task);
+      systemView.writeNode(node);
+      // only the last write of each object is kept
+      cluster.setStatus(Cluster.Status.ACTIVE);
+      systemView.writeCluster(cluster);
+      job.setJobStatus(ClusterJob.Status.RUNNING);
+      systemView.writeClusterJob(job);
+      task.setStatus(ClusterTask.Status.IN_PROGRESS);
+      systemView.writeClusterTasks(ImmutableList.of(task));
+      node.getProperties().setHostname("node1.example.com");
+      systemView.writeNode(node);
+      Assert.assertEquals(4, unitOfWork.size());
+
+      // nothing is written until the unit of work is committed
+      Assert.assertNull(systemView.getCluster(cluster.getId()));
+      Assert.assertNull(systemView.getClusterJob(jobId));
+      Assert.assertNull(systemView.getClusterTask(taskId));
+      Assert.assertNull(systemView.getNode(node.getId()));
+
+      unitOfWork.commit();
+      Assert.assertEquals(0, unitOfWork.size());
+      Assert.assertEquals(cluster, systemView.getCluster(cluster.getId()));
+      Assert.assertEquals(Cluster.Status.ACTIVE, systemView.getCluster(cluster.getId()).getStatus());
+      Assert.assertEquals(ClusterJob.Status.RUNNING, systemView.getClusterJob(jobId).getJobStatus());
+      Assert.assertEquals(ClusterTask.Status.IN_PROGRESS, systemView.getClusterTask(taskId).getStatus());
+      Assert.assertEquals("node1.example.com", systemView.getNode(node.getId()).getProperties().getHostname());
+
+      // writes that are not committed are discarded when the unit of work is closed
+      task.setStatus(ClusterTask.Status.COMPLETE);
+      systemView.writeClusterTask(task);
+    } finally {
+      unitOfWork.close();
+    }
+    Assert.assertEquals(ClusterTask.Status.IN_PROGRESS, systemView.getClusterTask(taskId).getStatus());
+
+    // once closed, writes are done right away again
+    systemView.writeClusterTask(task);
+    Assert.assertEquals(ClusterTask.Status.COMPLETE, systemView.getClusterTask(taskId).getStatus());
+  }
+
+  @Test
+  public void testAfterCommitActions() throws Exception {
+    final List<String> ran = Lists.newArrayList();
+    UnitOfWork unitOfWork = systemView.startUnitOfWork();
+    try {
+      UnitOfWork.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          ran.add("first");
+          throw new IllegalStateException("action failure");
+        }
+      });
+      UnitOfWork.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          ran.add("second");
+        }
+      });
+      Assert.assertTrue(ran.isEmpty());
+
+      // a failing action does not stop the others or fail the commit
+      unitOfWork.commit();
+      Assert.assertEquals(ImmutableList.of("first", "second"), ran);
+
+      // actions only run once
+      unitOfWork.commit();
+      Assert.assertEquals(2, ran.size());
+    } finally {
+      unitOfWork.close();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnitOfWorksCannotBeNested() throws Exception {
+    UnitOfWork unitOfWork = systemView.startUnitOfWork();
+    try {
+      systemView.startUnitOfWork();
+    } finally {
+      unitOfWork.close();
+    }
+  }
+
   @Test
   public void testGetClusterNodes() throws Exception {
     Cluster cluster = Entities.ClusterExample.createCluster();
@@ -374,6 +520,61 @@ public abstract class ClusterStoreTest {
     Assert.assertEquals(ImmutableSet.of(summary2), ImmutableSet.copyOf(view.getAllClusterSummaries(states)));
   }
 
+  @Test
+  public void testGetClusterListings() throws Exception {
+    ClusterStore clusterStore = clusterStoreService.getSystemView();
+    // clusters 1-5 belong to user1, with clusters 3 and 4 created at the same time, and cluster 6 belongs to user2
+    List<ClusterListing> expected = Lists.newArrayList();
+    long[] createTimes = { 1000, 2000, 3000, 3000, 5000, 6000 };
+    for (int i = 0; i < createTimes.length; i++) {
+      String clusterId = String.format("%08d", i + 1);
+      JobId jobId = new JobId(clusterId, 1);
+      Cluster.Status status = i % 2 == 0 ? Cluster.Status.ACTIVE : Cluster.Status.TERMINATED;
+      Cluster cluster = Cluster.builder()
+        .setName("cluster" + clusterId)
+        .setID(clusterId)
+        .setLatestJobID(jobId.getId())
+        .setClusterTemplate(Entities.ClusterTemplateExample.HDFS)
+        .setAccount(i < 5 ? tenant1_user1 : tenant1_user2)
+        .setProvider(Entities.ProviderExample.JOYENT)
+        .setStatus(status)
+        .setCreateTime(createTimes[i])
+        .setExpireTime(createTimes[i] + 100)
+        .setServices(Entities.ClusterTemplateExample.HDFS.getClusterDefaults().getServices())
+        .setNodes(ImmutableSet.of("node1"))
+        .build();
+      ClusterJob job = new ClusterJob(jobId, ClusterAction.CLUSTER_CREATE);
+      job.setJobStatus(ClusterJob.Status.COMPLETE);
+      clusterStore.writeCluster(cluster);
+      clusterStore.writeClusterJob(job);
+      if (i < 5) {
+        expected.add(0, new ClusterListing(clusterId, cluster.getName(), tenant1_user1.getUserId(), createTimes[i],
+                                           createTimes[i] + 100, status, jobId.getId(), new ClusterJobProgress(job)));
+      }
+    }
+
+    // page through the clusters of user1, newest first
+    ClusterStoreView view = clusterStoreService.getView(tenant1_user1);
+    Set<Cluster.Status> anyState = ImmutableSet.of();
+    List<ClusterListing> page1 = view.getClusterListings(anyState, null, 2);
+    Assert.assertEquals(expected.subList(0, 2), page1);
+    List<ClusterListing> page2 = view.getClusterListings(anyState, ClusterListingCursor.of(page1.get(1)), 2);
+    Assert.assertEquals(expected.subList(2, 4), page2);
+    List<ClusterListing> page3 = view.getClusterListings(anyState, ClusterListingCursor.of(page2.get(1)), 2);
+    Assert.assertEquals(expected.subList(4, 5), page3);
+
+    // test filter
+    Set<Cluster.Status> active = ImmutableSet.of(Cluster.Status.ACTIVE);
+    Assert.assertEquals(ImmutableList.of(expected.get(0), expected.get(2), expected.get(4)),
+                        view.getClusterListings(active, null, 10));
+    Assert.assertEquals(ImmutableList.of(expected.get(4)),
+                        view.getClusterListings(active, ClusterListingCursor.of(expected.get(2)), 10));
+
+    // admin sees clusters of all users in the tenant
+    Assert.assertEquals(6, clusterStoreService.getView(tenant1_admin).getClusterListings(anyState, null, 10).size());
+    Assert.assertTrue(clusterStoreService.getView(tenant2_admin).getClusterListings(anyState, null, 10).isEmpty());
+  }
+
   @Test
   public void testGetRunningTasks() throws Exception {
     ClusterTask task1 = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString("1-1-1"), "node1", "service",
@@ -16,22 +16,39 @@
 package co.cask.coopr.store.cluster;
 
 import co.cask.coopr.BaseTest;
+import co.cask.coopr.Entities;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.ClusterJobProgress;
 import co.cask.coopr.codec.json.guice.CodecModules;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.conf.guice.ConfigurationModule;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.JobId;
+import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
 import co.cask.coopr.store.guice.TestStoreModule;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Set;
 
 /**
  *
  */
 public class SQLClusterStoreTest extends ClusterStoreTest {
   private static SQLClusterStoreService sqlClusterStoreService;
+  private static DBConnectionPool dbConnectionPool;
 
   @BeforeClass
   public static void setupSQLClusterStoreTest() throws Exception {
@@ -44,6 +61,7 @@ public class SQLClusterStoreTest extends ClusterStoreTest {
       new CodecModules().getModule()
     );
     sqlClusterStoreService = injector.getInstance(SQLClusterStoreService.class);
+    dbConnectionPool = injector.getInstance(DBConnectionPool.class);
     sqlClusterStoreService.startAndWait();
   }
 
@@ -57,6 +75,63 @@ public class SQLClusterStoreTest extends ClusterStoreTest {
     return sqlClusterStoreService;
   }
 
+  @Test
+  public void testClusterListingFillsMissingJobProgress() throws Exception {
+    Account account = new Account("user1", "tenant1");
+    JobId jobId = new JobId("00000001", 1);
+    Cluster cluster = Cluster.builder()
+      .setName("cluster1")
+      .setID(jobId.getClusterId())
+      .setLatestJobID(jobId.getId())
+      .setClusterTemplate(Entities.ClusterTemplateExample.HDFS)
+      .setAccount(account)
+      .setProvider(Entities.ProviderExample.JOYENT)
+      .setStatus(Cluster.Status.ACTIVE)
+      .build();
+    ClusterJob job = new ClusterJob(jobId, ClusterAction.CLUSTER_CREATE);
+    job.setJobStatus(ClusterJob.Status.COMPLETE);
+    ClusterStore clusterStore = sqlClusterStoreService.getSystemView();
+    clusterStore.writeCluster(cluster);
+    clusterStore.writeClusterJob(job);
+
+    // jobs written before the progress column was added have no progress
+    Connection conn = dbConnectionPool.getConnection();
+    try {
+      PreparedStatement statement = conn.prepareStatement("UPDATE jobs SET progress=NULL");
+      try {
+        statement.executeUpdate();
+      } finally {
+        statement.close();
+      }
+    } finally {
+      conn.close();
+    }
+
+    ClusterJobProgress expected = new ClusterJobProgress(job);
+    Set<Cluster.Status> anyState = ImmutableSet.of();
+    ClusterStoreView view = sqlClusterStoreService.getView(account);
+    Assert.assertEquals(expected, view.getClusterListings(anyState, null, 10).get(0).getProgress());
+
+    // progress should have been written back, so listing no longer needs the job
+    conn = dbConnectionPool.getConnection();
+    try {
+      PreparedStatement statement = conn.prepareStatement("SELECT progress FROM jobs");
+      try {
+        ResultSet rs = statement.executeQuery();
+        try {
+          Assert.assertTrue(rs.next());
+          Assert.assertEquals(expected, JobProgressColumn.fromColumn(rs.getString(1)));
+        } finally {
+          rs.close();
+        }
+      } finally {
+        statement.close();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
   @AfterClass
   public static void afterClass() {
     DBHelper.dropDerbyDB();
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.entity;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.Entities;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.codec.json.guice.CodecModules;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.conf.guice.ConfigurationModule;
+import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
+import co.cask.coopr.management.EntityCacheStats;
+import co.cask.coopr.management.ServerStats;
+import co.cask.coopr.spec.Provider;
+import co.cask.coopr.spec.plugin.ProviderType;
+import co.cask.coopr.store.DBHelper;
+import co.cask.coopr.store.guice.TestStoreModule;
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.twill.internal.zookeeper.InMemoryZKServer;
+import org.apache.twill.zookeeper.ZKClientService;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the entity store tests against the caching entity store, and tests that cached entities are invalidated.
+ */
+public class CachingEntityStoreServiceTest extends EntityStoreServiceTest {
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+  private static InMemoryZKServer zkServer;
+  private static ZKClientService zkClient;
+  private static SQLEntityStoreService sqlStore;
+  private static Gson gson;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    zkServer = InMemoryZKServer.builder().setDataDir(tmpFolder.newFolder()).setTickTime(1000).build();
+    zkServer.startAndWait();
+    zkClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    zkClient.startAndWait();
+
+    Configuration sqlConf = BaseTest.createTestConf();
+    Injector injector = Guice.createInjector(
+      new ConfigurationModule(sqlConf),
+      new ZookeeperModule(zkClient),
+      new TestStoreModule(),
+      new CodecModules().getModule()
+    );
+    sqlStore = injector.getInstance(SQLEntityStoreService.class);
+    sqlStore.startAndWait();
+    gson = injector.getInstance(Gson.class);
+  }
+
+  @Override
+  public void clearState() throws Exception {
+    sqlStore.clearData();
+    // data was cleared underneath the cache, so start each test with an empty cache
+    entityStoreService = createCachingStore();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    zkClient.stopAndWait();
+    zkServer.stopAndWait();
+    DBHelper.dropDerbyDB();
+  }
+
+  @Test
+  public void testReadsAreCached() throws Exception {
+    ServerStats serverStats = new ServerStats();
+    CachingEntityStoreService store = createCachingStore(serverStats);
+    EntityCacheStats stats = serverStats.getEntityCacheStats();
+    EntityStoreView view = store.getView(Entities.ADMIN_ACCOUNT);
+    Provider provider = Entities.ProviderExample.JOYENT;
+
+    // entities that do not exist are not cached
+    Assert.assertNull(view.getProvider(provider.getName()));
+    Assert.assertNull(view.getProvider(provider.getName()));
+    Assert.assertEquals(0, stats.getHits());
+    Assert.assertEquals(2, stats.getMisses());
+
+    view.writeProvider(provider);
+    Assert.assertEquals(provider, view.getProvider(provider.getName()));
+    Assert.assertEquals(provider, view.getProvider(provider.getName()));
+    Assert.assertEquals(1, view.getAllProviders().size());
+    Assert.assertEquals(1, view.getAllProviders().size());
+    Assert.assertEquals(2, stats.getHits());
+    Assert.assertEquals(4, stats.getMisses());
+
+    // collections returned can be modified without changing the cache
+    view.getAllProviders().clear();
+    Assert.assertEquals(1, view.getAllProviders().size());
+
+    // so can the entities returned
+    view.getProvider(provider.getName()).setVersion(100);
+    view.getAllProviders().iterator().next().setVersion(100);
+    Assert.assertEquals(1, view.getProvider(provider.getName()).getVersion());
+    Assert.assertEquals(1, view.getAllProviders().iterator().next().getVersion());
+
+    // reads through another view of the same tenant use the same cache
+    EntityStoreView userView = store.getView(Entities.USER_ACCOUNT);
+    Assert.assertEquals(provider, userView.getProvider(provider.getName()));
+    Assert.assertEquals(9, stats.getHits());
+    Assert.assertEquals(4, stats.getMisses());
+  }
+
+  @Test
+  public void testWritesInvalidate() throws Exception {
+    ServerStats serverStats = new ServerStats();
+    CachingEntityStoreService store = createCachingStore(serverStats);
+    EntityCacheStats stats = serverStats.getEntityCacheStats();
+    EntityStoreView view = store.getView(Entities.ADMIN_ACCOUNT);
+    Provider provider = Entities.ProviderExample.JOYENT;
+
+    view.writeProvider(provider);
+    Assert.assertEquals(1, view.getProvider(provider.getName()).getVersion());
+    long invalidations = stats.getInvalidations();
+
+    view.writeProvider(provider);
+    Assert.assertEquals(invalidations + 1, stats.getInvalidations());
+    Assert.assertEquals(2, view.getProvider(provider.getName()).getVersion());
+    Assert.assertEquals(1, view.getProvider(provider.getName(), 1).getVersion());
+
+    view.deleteProvider(provider.getName(), 2);
+    Assert.assertEquals(invalidations + 2, stats.getInvalidations());
+    Assert.assertEquals(1, view.getProvider(provider.getName()).getVersion());
+
+    view.deleteProvider(provider.getName());
+    Assert.assertEquals(invalidations + 3, stats.getInvalidations());
+    Assert.assertNull(view.getProvider(provider.getName()));
+    Assert.assertTrue(view.getAllProviders().isEmpty());
+  }
+
+  @Test
+  public void testFailedWritesDoNotInvalidate() throws Exception {
+    ServerStats serverStats = new ServerStats();
+    CachingEntityStoreService store = createCachingStore(serverStats);
+    EntityCacheStats stats = serverStats.getEntityCacheStats();
+    Provider provider = Entities.ProviderExample.JOYENT;
+    store.getView(Entities.ADMIN_ACCOUNT).writeProvider(provider);
+    long invalidations = stats.getInvalidations();
+
+    try {
+      store.getView(Entities.USER_ACCOUNT).writeProvider(provider);
+      Assert.fail("user should not be able to write a provider");
+    } catch (IllegalAccessException e) {
+      // expected
+    }
+    Assert.assertEquals(invalidations, stats.getInvalidations());
+  }
+
+  @Test(timeout = 20000)
+  public void testWritesInvalidateOtherServers() throws Exception {
+    CachingEntityStoreService store1 = createCachingStore();
+    CachingEntityStoreService store2 = createCachingStore();
+    EntityStoreView view1 = store1.getView(Entities.ADMIN_ACCOUNT);
+    EntityStoreView view2 = store2.getView(Entities.ADMIN_ACCOUNT);
+    Provider provider = Entities.ProviderExample.JOYENT;
+
+    view1.writeProvider(provider);
+    Assert.assertEquals(1, view2.getProvider(provider.getName()).getVersion());
+    Assert.assertEquals(1, view2.getAllProviders().size());
+
+    view1.writeProvider(provider);
+    while (view2.getProvider(provider.getName()).getVersion() != 2) {
+      TimeUnit.MILLISECONDS.sleep(20);
+    }
+
+    view1.deleteProvider(provider.getName());
+    while (view2.getProvider(provider.getName()) != null || !view2.getAllProviders().isEmpty()) {
+      TimeUnit.MILLISECONDS.sleep(20);
+    }
+  }
+
+  @Test
+  public void testPluginTypeWritesInvalidateTenants() throws Exception {
+    CachingEntityStoreService store = createCachingStore();
+    EntityStoreView superadminView = store.getView(new Account(Constants.ADMIN_USER, Constants.SUPERADMIN_TENANT));
+    EntityStoreView tenantView = store.getView(Entities.ADMIN_ACCOUNT);
+    ProviderType providerType = Entities.ProviderTypeExample.JOYENT;
+
+    Assert.assertNull(tenantView.getProviderType(providerType.getName()));
+    Assert.assertTrue(tenantView.getAllProviderTypes().isEmpty());
+    superadminView.writeProviderType(providerType);
+    Assert.assertEquals(providerType, tenantView.getProviderType(providerType.getName()));
+    Assert.assertEquals(1, tenantView.getAllProviderTypes().size());
+  }
+
+  private CachingEntityStoreService createCachingStore() {
+    return createCachingStore(new ServerStats());
+  }
+
+  private CachingEntityStoreService createCachingStore(ServerStats serverStats) {
+    CachingEntityStoreService store = new CachingEntityStoreService(sqlStore, zkClient, serverStats, gson);
+    store.startAndWait();
+    return store;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.metrics;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.store.cluster.ClusterTaskFilter;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SQLNodeUsageStore}.
+ */
+public class SQLNodeUsageStoreTest extends BaseTest {
+  private static final long HOUR = DateUtils.MILLIS_PER_HOUR;
+  private static final long MINUTE = DateUtils.MILLIS_PER_MINUTE;
+  private static final Account ACCOUNT1 = new Account("user1", "tenant1");
+  private static final Account ACCOUNT2 = new Account("user2", "tenant2");
+  private static final ClusterTaskFilter ALL = createFilter(null, null, null);
+  private static final ClusterTaskFilter TENANT1 = createFilter("tenant1", null, null);
+  private static final ClusterTaskFilter TENANT2 = createFilter("tenant2", null, null);
+  private NodeUsageStore store;
+
+  @Before
+  public void setupTest() throws Exception {
+    store = injector.getInstance(NodeUsageStore.class);
+    // node1 lives from 10:15 to 12:15, node2 from 10:30 on, and node3 of tenant2 from 11:00 to 11:10
+    store.nodeCreated(createTask(ProvisionerAction.CREATE, "1-1-1", "node1", ACCOUNT1, 10 * HOUR + 15 * MINUTE));
+    store.nodeCreated(createTask(ProvisionerAction.CREATE, "1-1-2", "node2", ACCOUNT1, 10 * HOUR + 30 * MINUTE));
+    store.nodeCreated(createTask(ProvisionerAction.CREATE, "2-1-1", "node3", ACCOUNT2, 11 * HOUR));
+    store.nodeDeleted(createTask(ProvisionerAction.DELETE, "2-2-1", "node3", ACCOUNT2, 11 * HOUR + 10 * MINUTE));
+    store.nodeDeleted(createTask(ProvisionerAction.DELETE, "1-2-1", "node1", ACCOUNT1, 12 * HOUR + 15 * MINUTE));
+    // deletes of nodes that are not alive are ignored
+    store.nodeDeleted(createTask(ProvisionerAction.DELETE, "1-3-1", "node1", ACCOUNT1, 13 * HOUR));
+    store.nodeDeleted(createTask(ProvisionerAction.DELETE, "1-3-2", "node4", ACCOUNT1, 13 * HOUR));
+  }
+
+  @Test
+  public void testRollups() throws Exception {
+    Assert.assertEquals(
+      ImmutableList.of(new NodeUsageRollup(10 * HOUR, 2, 45 * MINUTE + 30 * MINUTE),
+                       new NodeUsageRollup(11 * HOUR, 0, 60 * MINUTE - 50 * MINUTE),
+                       new NodeUsageRollup(12 * HOUR, -1, -45 * MINUTE)),
+      store.getRollups(ALL, NodeUsageStore.HOURLY, 0, 100 * HOUR));
+    Assert.assertEquals(
+      ImmutableList.of(new NodeUsageRollup(10 * HOUR, 2, 45 * MINUTE + 30 * MINUTE),
+                       new NodeUsageRollup(12 * HOUR, -1, -45 * MINUTE)),
+      store.getRollups(TENANT1, NodeUsageStore.HOURLY, 0, 100 * HOUR));
+    Assert.assertEquals(ImmutableList.of(new NodeUsageRollup(11 * HOUR, 0, 10 * MINUTE)),
+                        store.getRollups(TENANT2, NodeUsageStore.HOURLY, 11 * HOUR, 12 * HOUR));
+    Assert.assertEquals(
+      ImmutableList.of(new NodeUsageRollup(0, 1, 24 * HOUR - 10 * HOUR - 15 * MINUTE + 24 * HOUR - 10 * HOUR -
+        30 * MINUTE - 24 * HOUR + 12 * HOUR + 15 * MINUTE)),
+      store.getRollups(TENANT1, NodeUsageStore.DAILY, 0, 100 * HOUR));
+    Assert.assertTrue(store.getRollups(createFilter("tenant1", "user1", "other"), NodeUsageStore.HOURLY,
+                                       0, 100 * HOUR).isEmpty());
+  }
+
+  @Test
+  public void testRollupTotal() throws Exception {
+    // at 13:00, node1 was alive for 2 hours, node2 for 2.5 hours, and node3 for 10 minutes
+    long expected = 2 * HOUR + 150 * MINUTE + 10 * MINUTE;
+    Assert.assertEquals(new NodeUsageRollup(13 * HOUR, 1, expected),
+                        store.getRollupTotal(ALL, NodeUsageStore.HOURLY, 13 * HOUR));
+    Assert.assertEquals(new NodeUsageRollup(15 * HOUR, 1, expected + 2 * HOUR),
+                        store.getRollupTotal(ALL, NodeUsageStore.HOURLY, 15 * HOUR));
+    Assert.assertEquals(new NodeUsageRollup(24 * HOUR, 1, expected + 11 * HOUR),
+                        store.getRollupTotal(ALL, NodeUsageStore.DAILY, 24 * HOUR));
+    Assert.assertEquals(new NodeUsageRollup(11 * HOUR, 2, 45 * MINUTE + 30 * MINUTE),
+                        store.getRollupTotal(TENANT1, NodeUsageStore.HOURLY, 11 * HOUR));
+    Assert.assertEquals(new NodeUsageRollup(10 * HOUR, 0, 0),
+                        store.getRollupTotal(ALL, NodeUsageStore.HOURLY, 10 * HOUR));
+  }
+
+  @Test
+  public void testUsage() throws Exception {
+    Assert.assertEquals(15 * MINUTE + 30 * MINUTE, store.getUsage(ALL, 12 * HOUR, 12 * HOUR + 30 * MINUTE));
+    Assert.assertEquals(10 * MINUTE, store.getUsage(TENANT2, 0, 100 * HOUR));
+    Assert.assertEquals(0, store.getUsage(TENANT2, 12 * HOUR, 13 * HOUR));
+    Assert.assertEquals(2 * HOUR + 150 * MINUTE + 10 * MINUTE, store.getUsage(ALL, 0, 13 * HOUR));
+  }
+
+  @Test
+  public void testCreateAndDeleteTimes() throws Exception {
+    Assert.assertEquals(10 * HOUR + 15 * MINUTE, (long) store.getFirstCreateTime(ALL));
+    Assert.assertEquals(12 * HOUR + 15 * MINUTE, (long) store.getLastDeleteTime(ALL));
+    Assert.assertEquals(11 * HOUR, (long) store.getFirstCreateTime(TENANT2));
+    Assert.assertEquals(11 * HOUR + 10 * MINUTE, (long) store.getLastDeleteTime(TENANT2));
+    Assert.assertNull(store.getFirstCreateTime(createFilter("tenant3", null, null)));
+  }
+
+  @Test
+  public void testDeleteAll() throws Exception {
+    store.deleteAll();
+    Assert.assertNull(store.getFirstCreateTime(ALL));
+    Assert.assertNull(store.getLastDeleteTime(ALL));
+    Assert.assertTrue(store.getRollups(ALL, NodeUsageStore.HOURLY, 0, 100 * HOUR).isEmpty());
+    Assert.assertEquals(new NodeUsageRollup(100 * HOUR, 0, 0),
+                        store.getRollupTotal(ALL, NodeUsageStore.HOURLY, 100 * HOUR));
+  }
+
+  private static ClusterTaskFilter createFilter(String tenantId, String userId, String template) {
+    return new ClusterTaskFilter(tenantId, userId, null, template, null, null, null, null);
+  }
+
+  private static ClusterTask createTask(ProvisionerAction action, String taskId, String nodeId, Account account,
+                                        long statusTime) {
+    ClusterTask task = new ClusterTask(action, TaskId.fromString(taskId), nodeId, "service",
+                                       ClusterAction.CLUSTER_CREATE, "template", account);
+    task.setStatus(ClusterTask.Status.COMPLETE);
+    task.setStatusTime(statusTime);
+    return task;
+  }
+}
@@ -15,16 +15,24 @@
  */
 package co.cask.coopr.store.provisioner;
 
+import co.cask.coopr.account.Account;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.provisioner.plugin.PluginType;
+import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.store.guice.TestStoreModule;
+import com.google.common.base.Charsets;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  *
@@ -32,6 +40,7 @@ import java.io.IOException;
 public class LocalFilePluginStoreTest extends PluginStoreTest {
   private static LocalFilePluginStore store;
   private static Configuration conf;
+  private File dataDir;
   @Rule
   public TemporaryFolder tmpFolder = new TemporaryFolder();
 
@@ -46,11 +55,40 @@ public class LocalFilePluginStoreTest extends PluginStoreTest {
 
   @Override
   PluginStore getInitializedStore() throws IOException {
-    conf.set(Constants.LocalFilePluginStore.DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+    dataDir = tmpFolder.newFolder();
+    conf.set(Constants.LocalFilePluginStore.DATA_DIR, dataDir.getAbsolutePath());
     store.initialize(conf);
     return store;
   }
 
+  @Test
+  public void testCopiesShareData() throws Exception {
+    PluginStore store = getInitializedStore();
+    ResourceType resourceType = new ResourceType(PluginType.AUTOMATOR, "chef-solo", "cookbooks");
+    Account superadmin = Account.SUPERADMIN;
+    Account tenant1 = new Account(Constants.ADMIN_USER, "tenant1");
+    Account tenant2 = new Account(Constants.ADMIN_USER, "tenant2");
+    OutputStream outputStream = store.getResourceOutputStream(superadmin, resourceType, "hadoop", 1);
+    try {
+      outputStream.write("hadoop cookbook".getBytes(Charsets.UTF_8));
+    } finally {
+      outputStream.close();
+    }
+
+    store.copyResource(superadmin, tenant1, resourceType, "hadoop", 1);
+    store.copyResource(superadmin, tenant2, resourceType, "hadoop", 1);
+    File blobDir = new File(dataDir, ".blobs");
+    // one blob and the directory of its references
+    Assert.assertEquals(2, blobDir.list().length);
+
+    store.deleteResource(superadmin, resourceType, "hadoop", 1);
+    store.deleteResource(tenant1, resourceType, "hadoop", 1);
+    Assert.assertEquals(2, blobDir.list().length);
+    // last reference deletes the blob
+    store.deleteResource(tenant2, resourceType, "hadoop", 1);
+    Assert.assertEquals(0, blobDir.list().length);
+  }
+
   @Override
   void clearData() {
     // tmp folder will get deleted itself.
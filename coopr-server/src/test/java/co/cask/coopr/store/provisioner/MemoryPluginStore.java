@@ -71,6 +71,18 @@ public class MemoryPluginStore implements PluginStore {
     store.remove(new Key(account, type, name, version));
   }
 
+  @Override
+  public void copyResource(Account from, Account to, ResourceType type, String name, int version)
+    throws IOException {
+    ByteArrayOutputStream source = store.get(new Key(from, type, name, version));
+    if (source == null) {
+      throw new IOException("Resource " + name + " does not exist.");
+    }
+    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    source.writeTo(copy);
+    store.put(new Key(to, type, name, version), copy);
+  }
+
   private class Key {
     private final Account account;
     private final ResourceType type;
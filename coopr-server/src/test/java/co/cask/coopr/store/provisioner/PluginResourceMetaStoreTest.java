@@ -86,6 +86,18 @@ public abstract class PluginResourceMetaStoreTest {
     Assert.assertNull(view.get(name, version));
   }
 
+  @Test
+  public void testSetDigest() throws Exception {
+    PluginMetaStoreService service = getPluginResourceMetaStoreService();
+    PluginResourceTypeView view = service.getResourceTypeView(account1, type1);
+    view.add(new ResourceMeta("name", 1));
+    Assert.assertNull(view.get("name", 1).getDigest());
+
+    view.setDigest("name", 1, "abc123");
+    Assert.assertEquals("abc123", view.get("name", 1).getDigest());
+    Assert.assertEquals("abc123", view.getAll("name").iterator().next().getDigest());
+  }
+
   @Test
   public void testAccountSeparation() throws Exception {
     PluginMetaStoreService service = getPluginResourceMetaStoreService();
@@ -173,6 +173,38 @@ public abstract class PluginStoreTest {
     Assert.assertEquals(contents, readFromStore(store, account2, resourceType, name, version));
   }
 
+  @Test
+  public void testCopyResource() throws Exception {
+    PluginStore store = getInitializedStore();
+    String contents = "hadoop cookbook";
+    ResourceType resourceType = new ResourceType(PluginType.AUTOMATOR, "chef-solo", "cookbooks");
+    String name = "hadoop";
+    int version = 1;
+
+    writeToStore(store, account1, resourceType, name, version, contents);
+    store.copyResource(account1, account2, resourceType, name, version);
+    Assert.assertEquals(contents, readFromStore(store, account1, resourceType, name, version));
+    Assert.assertEquals(contents, readFromStore(store, account2, resourceType, name, version));
+
+    // overwriting the copy should not change the original
+    writeToStore(store, account2, resourceType, name, version, "changed cookbook");
+    Assert.assertEquals(contents, readFromStore(store, account1, resourceType, name, version));
+    Assert.assertEquals("changed cookbook", readFromStore(store, account2, resourceType, name, version));
+
+    // deleting the original should not delete a copy
+    store.copyResource(account1, account2, resourceType, name, version);
+    store.deleteResource(account1, resourceType, name, version);
+    Assert.assertNull(store.getResourceInputStream(account1, resourceType, name, version));
+    Assert.assertEquals(contents, readFromStore(store, account2, resourceType, name, version));
+  }
+
+  @Test(expected = IOException.class)
+  public void testCopyMissingResourceFails() throws Exception {
+    PluginStore store = getInitializedStore();
+    ResourceType resourceType = new ResourceType(PluginType.AUTOMATOR, "chef-solo", "cookbooks");
+    store.copyResource(account1, account2, resourceType, "hadoop", 1);
+  }
+
   private void writeToStore(PluginStore store, Account account, ResourceType resourceType,
                             String name, int version, String content) throws IOException {
     OutputStream outputStream = store.getResourceOutputStream(account, resourceType, name, version);
@@ -75,6 +75,63 @@ public abstract class ProvisionerStoreTest {
     }
   }
 
+  @Test
+  public void testTryWriteProvisionerFailsOnConcurrentChange() throws IOException {
+    ProvisionerStore store = getProvisionerStore();
+    store.writeProvisioner(provisioner2);
+    String id = provisioner2.getId();
+
+    Provisioner copy1 = store.getProvisioner(id);
+    Provisioner copy2 = store.getProvisioner(id);
+    Assert.assertEquals(50, copy1.tryAddTenantAssignments("tenantB", 50));
+    Assert.assertTrue(store.tryWriteProvisioner(copy1));
+
+    // copy2 was read before copy1 was written, so it would overwrite the workers assigned to tenantB
+    Assert.assertEquals(50, copy2.tryAddTenantAssignments("tenantC", 50));
+    Assert.assertFalse(store.tryWriteProvisioner(copy2));
+    Assert.assertEquals(50, store.getNumAssignedWorkers("tenantB"));
+    Assert.assertEquals(0, store.getNumAssignedWorkers("tenantC"));
+
+    // retrying against the latest state only assigns the capacity that is left
+    copy2 = store.getProvisioner(id);
+    Assert.assertEquals(38, copy2.tryAddTenantAssignments("tenantC", 50));
+    Assert.assertTrue(store.tryWriteProvisioner(copy2));
+    Assert.assertEquals(50, store.getNumAssignedWorkers("tenantB"));
+    Assert.assertEquals(38, store.getNumAssignedWorkers("tenantC"));
+    Assert.assertEquals(0, store.getFreeCapacity());
+
+    // the version of a successful write is kept, so the same copy can be written again
+    Assert.assertEquals(10, copy2.tryRemoveTenantAssignments("tenantC", 10));
+    Assert.assertTrue(store.tryWriteProvisioner(copy2));
+    Assert.assertEquals(28, store.getNumAssignedWorkers("tenantC"));
+
+    // unconditional writes also change the version
+    store.writeProvisioner(provisioner2);
+    Assert.assertFalse(store.tryWriteProvisioner(copy2));
+    Assert.assertEquals(provisioner2, store.getProvisioner(id));
+  }
+
+  @Test
+  public void testTryDeleteProvisionerFailsOnConcurrentChange() throws IOException {
+    ProvisionerStore store = getProvisionerStore();
+    store.writeProvisioner(provisioner2);
+    String id = provisioner2.getId();
+
+    Provisioner stale = store.getProvisioner(id);
+    Provisioner latest = store.getProvisioner(id);
+    latest.tryAddTenantAssignments("tenantB", 10);
+    Assert.assertTrue(store.tryWriteProvisioner(latest));
+
+    // deleting the stale copy would lose track of the workers assigned to tenantB
+    Assert.assertFalse(store.tryDeleteProvisioner(stale));
+    Assert.assertEquals(10, store.getNumAssignedWorkers("tenantB"));
+
+    Assert.assertTrue(store.tryDeleteProvisioner(latest));
+    Assert.assertNull(store.getProvisioner(id));
+    Assert.assertEquals(0, store.getNumAssignedWorkers("tenantB"));
+    Assert.assertFalse(store.tryDeleteProvisioner(latest));
+  }
+
   @Test
   public void testGetAllProvisioners() throws IOException {
     ProvisionerStore store = getProvisionerStore();
@@ -102,6 +159,21 @@ public abstract class ProvisionerStoreTest {
                         ImmutableSet.copyOf(store.getTimedOutProvisioners(1001L)));
   }
 
+  @Test
+  public void testSetHeartbeats() throws IOException {
+    ProvisionerStore store = getProvisionerStore();
+
+    store.writeProvisioner(provisioner1);
+    store.writeProvisioner(provisioner2);
+    store.setHeartbeats(ImmutableMap.of(provisioner1.getId(), 100L, provisioner2.getId(), 1000L, "unknown", 10L));
+
+    Assert.assertTrue(store.getTimedOutProvisioners(99L).isEmpty());
+    Assert.assertEquals(ImmutableSet.of(provisioner1), ImmutableSet.copyOf(store.getTimedOutProvisioners(101L)));
+    Assert.assertEquals(ImmutableSet.of(provisioner1, provisioner2),
+                        ImmutableSet.copyOf(store.getTimedOutProvisioners(1001L)));
+    Assert.assertNull(store.getProvisioner("unknown"));
+  }
+
   @Test
   public void testGetTenantProvisioners() throws IOException {
     ProvisionerStore store = getProvisionerStore();
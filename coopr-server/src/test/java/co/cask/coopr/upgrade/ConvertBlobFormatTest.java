@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.upgrade;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.Entities;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import co.cask.coopr.scheduler.task.JobId;
+import co.cask.coopr.scheduler.task.TaskId;
+import co.cask.coopr.spec.ProvisionerAction;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.spec.TenantSpecification;
+import co.cask.coopr.store.DBConnectionPool;
+import co.cask.coopr.store.blob.BlobFormat;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Tests for {@link ConvertBlobFormat}.
+ */
+public class ConvertBlobFormatTest extends BaseTest {
+
+  @Test
+  public void testConvertAndConvertBack() throws Exception {
+    Account account = new Account("user1", "tenant1");
+    Cluster cluster = Entities.ClusterExample.createCluster();
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+    cluster.setLatestJobId(job.getJobId());
+    ClusterTask task = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString(cluster.getId() + "-1-1"), "node1",
+                                       "service1", ClusterAction.CLUSTER_CREATE, "template", cluster.getAccount());
+    Node node = Entities.NodeExample.NODE1;
+    Tenant tenant = new Tenant("tenant1", new TenantSpecification("tenant1", 10, 100, 1000));
+    Map<String, Object> profile = ImmutableMap.<String, Object>of("name", "user1");
+    clusterStore.writeCluster(cluster);
+    clusterStore.writeClusterJob(job);
+    clusterStore.writeClusterTask(task);
+    clusterStore.writeNode(node);
+    tenantStore.writeTenant(tenant);
+    userStore.writeProfile(account, profile);
+    Assert.assertEquals(ImmutableSet.of(BlobFormat.JSON), getFormats());
+
+    for (BlobFormat format : new BlobFormat[] { BlobFormat.BINARY, BlobFormat.COMPRESSED_BINARY, BlobFormat.JSON }) {
+      Configuration formatConf = Configuration.create();
+      formatConf.set(Constants.BLOB_FORMAT, format.name().toLowerCase());
+      new ConvertBlobFormat(injector.getInstance(DBConnectionPool.class), formatConf).run();
+      Assert.assertEquals(ImmutableSet.of(format), getFormats());
+
+      Assert.assertEquals(cluster, clusterStore.getCluster(cluster.getId()));
+      Assert.assertEquals(job, clusterStore.getClusterJob(JobId.fromString(job.getJobId())));
+      Assert.assertEquals(task, clusterStore.getClusterTask(TaskId.fromString(task.getTaskId())));
+      Assert.assertEquals(node, clusterStore.getNode(node.getId()));
+      Assert.assertEquals(tenant, tenantStore.getTenantByID(tenant.getId()));
+      Assert.assertEquals(profile, userStore.getProfile(account));
+    }
+  }
+
+  private ImmutableSet<BlobFormat> getFormats() throws SQLException {
+    ImmutableSet.Builder<BlobFormat> formats = ImmutableSet.builder();
+    Connection conn = injector.getInstance(DBConnectionPool.class).getConnection();
+    try {
+      String[] queries = { "SELECT cluster FROM clusters", "SELECT job FROM jobs", "SELECT task FROM tasks",
+        "SELECT node FROM nodes", "SELECT tenant FROM tenants", "SELECT profile FROM users" };
+      for (String query : queries) {
+        PreparedStatement statement = conn.prepareStatement(query);
+        try {
+          ResultSet rs = statement.executeQuery();
+          try {
+            while (rs.next()) {
+              formats.add(BlobFormat.of(rs.getBytes(1)));
+            }
+          } finally {
+            rs.close();
+          }
+        } finally {
+          statement.close();
+        }
+      }
+    } finally {
+      conn.close();
+    }
+    return formats.build();
+  }
+}